@@ -0,0 +1,501 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import benchmarks.Fixtures;
+
+/**
+ * Sets up the workloads measured by the JMH benchmarks in the benchmarks
+ * package: moving, measuring distance, validating and resolving attacks
+ * (one at a time and in batches), rolling damage, computing exact kill
+ * distributions, rendering the board, pathfinding, range queries on a
+ * large battle map, playing full encounters, rolling back or copying the
+ * state of a fight, decoding commands, recording batch statistics in a
+ * Histogram, and planning a turn with each Planner. Every board uses Dice
+ * with the same seed, so every run does the same work.
+ *
+ * @author Mark Danza
+ */
+public class Workloads implements Fixtures {
+    /** the seed used for every board, so every run does the same work */
+    private static final long SEED = 42;
+
+    @Override
+    public LongSupplier get(String name, String param) {
+        switch (name) {
+            case "dist":
+                return dist();
+            case "move":
+                return move();
+            case "moveRejected":
+                return moveRejected();
+            case "concurrentMove":
+                return concurrentMove();
+            case "validateAttack":
+            case "observeAttack":
+            case "attack":
+            case "roundsToKillCached":
+                return attack(name);
+            case "rollDmg":
+                Dice dice = new SplitMixDice(SEED);
+                return () -> Weapon.shortsword.rollDmg(dice);
+            case "rollDmgShared":
+                return () -> Weapon.shortsword.rollDmg();
+            case "attackBatch":
+                return attackBatch();
+            case "computeRoundsToKill":
+                return () -> DamageCalculator.computeRoundsToKill(2, 15, 6, 10).getMaxRounds();
+            case "render":
+                return render(Integer.parseInt(param));
+            case "reachable":
+            case "findPath":
+                return path(name, DistanceMetric.valueOf(param));
+            case "occupancyReachable":
+                return occupancyReachable();
+            case "nearestEnemy":
+            case "countInRange":
+            case "occupancyCount":
+            case "occupancyAny":
+            case "gridScanCount":
+                return battleMap(name);
+            case "encounter":
+                return encounter();
+            case "compactEncounter":
+                return compactEncounter();
+            case "turnScheduler":
+                return turnScheduler(param);
+            case "markRollback":
+                return markRollback();
+            case "fork":
+                GameBoard board = sample().newEncounter(new SplitMixDice(SEED)).getBoard();
+                return () -> board.fork().getSize();
+            case "transposition":
+                return transposition();
+            case "parseString":
+            case "parseBuffer":
+                return parse(name);
+            case "histogramRecord":
+            case "histogramMerge":
+                return histogram(name);
+            case "expectimax":
+            case "mcts":
+                return plan(name);
+            default:
+                throw new IllegalArgumentException("No workload named " + name);
+        }
+    }
+
+    /**
+     * Creates a silent board with seeded Dice.
+     * @param size the size of the board
+     * @return a new GameBoard
+     */
+    private static GameBoard board(int size) {
+        return new GameBoard(size, new SplitMixDice(SEED));
+    }
+
+    /**
+     * Creates the 4v6 fight used by the encounter and planner workloads.
+     * @return four Players facing six Enemies on a 20x20 board
+     */
+    private static Scenario sample() {
+        Scenario scenario = new Scenario(20);
+        for (int i = 0; i < 4; i++) {
+            scenario.addPlayer("Player " + (i + 1), Weapon.shortsword, new Coords(2 + 2 * i, 2));
+        }
+        for (int i = 0; i < 6; i++) {
+            scenario.addEnemy("Goblin " + (i + 1), Weapon.shortsword, new Coords(2 * i, 12));
+        }
+        return scenario;
+    }
+
+    /**
+     * Creates a 30x30 board with 60 Enemies scattered over it.
+     * @return a new GameBoard to find paths on
+     */
+    private static GameBoard scattered() {
+        GameBoard board = board(30);
+        for (int i = 0; i < 60; i++) {
+            board.place(new Enemy("E", board, Weapon.shortsword), new Coords((i * 17) % 30, (i * 7 + i / 5) % 30));
+        }
+        return board;
+    }
+
+    /**
+     * Measures the distance between pairs of locations on a 64x64 board.
+     * @return the workload
+     */
+    private static LongSupplier dist() {
+        GameBoard board = board(64);
+        Coords[] points = new Coords[64];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Coords((i * 37) % 64, (i * 11) % 64);
+        }
+        int[] next = {0};
+        return () -> {
+            int i = next[0] = (next[0] + 1) & 63;
+            return board.dist(points[i], points[(i + 7) & 63]);
+        };
+    }
+
+    /**
+     * Moves a piece back and forth between two empty locations.
+     * @return the workload
+     */
+    private static LongSupplier move() {
+        GameBoard board = board(10);
+        Player mover = new Player("Mover", board, Weapon.shortsword);
+        Coords a = new Coords(0, 0);
+        Coords b = new Coords(3, 3);
+        board.place(mover, new Coords(a));
+        return () -> {
+            boolean there = mover.getLocation().getX() == b.getX();
+            return board.move(there ? b : a, there ? a : b) ? 1 : 0;
+        };
+    }
+
+    /**
+     * Tries to move a piece onto a location another piece is standing on.
+     * @return the workload
+     */
+    private static LongSupplier moveRejected() {
+        GameBoard board = board(10);
+        Player mover = new Player("Mover", board, Weapon.shortsword);
+        board.place(mover, new Coords(0, 0));
+        Coords blocked = new Coords(5, 5);
+        board.place(new Enemy("Blocker", board, Weapon.shortsword), blocked);
+        return () -> board.move(mover.getLocation(), blocked) ? 1 : 0;
+    }
+
+    /**
+     * Moves a piece back and forth on a board shared between threads.
+     * @return the workload
+     */
+    private static LongSupplier concurrentMove() {
+        GameBoard board = board(10);
+        ConcurrentGameBoard shared = new ConcurrentGameBoard(board);
+        Player mover = new Player("Mover", board, Weapon.shortsword);
+        Coords a = new Coords(0, 0);
+        Coords b = new Coords(3, 3);
+        shared.place(mover, new Coords(a));
+        return () -> {
+            boolean there = mover.getLocation().getX() == b.getX();
+            return shared.move(there ? b : a, there ? a : b) ? 1 : 0;
+        };
+    }
+
+    /**
+     * Has a Player attack the Enemy next to it, keeping the target alive.
+     * @param name validateAttack, observeAttack, attack or roundsToKillCached
+     * @return the workload
+     */
+    private static LongSupplier attack(String name) {
+        GameBoard board = board(10);
+        Player hero = new Player("Hero", board, Weapon.shortsword);
+        Enemy goblin = new Enemy("Goblin", board, Weapon.shortsword);
+        Coords heroLoc = new Coords(4, 4);
+        Coords goblinLoc = new Coords(5, 4);
+        board.place(hero, heroLoc);
+        board.place(goblin, goblinLoc);
+        switch (name) {
+            case "validateAttack":
+                return () -> board.validateAttack(heroLoc, goblinLoc) ? 1 : 0;
+            case "observeAttack":
+                return () -> {
+                    goblin.setHP(goblin.getMaxHP());
+                    board.observeAttack(heroLoc, goblinLoc);
+                    return goblin.getHP();
+                };
+            case "attack":
+                return () -> {
+                    goblin.setHP(goblin.getMaxHP());
+                    return hero.attack(goblin) ? 1 : 0;
+                };
+            default:
+                return () -> DamageCalculator.roundsToKill(hero, goblin).getMaxRounds();
+        }
+    }
+
+    /**
+     * Resolves 1024 attacks of varying modifiers, ACs and damage dice at once.
+     * @return the workload
+     */
+    private static LongSupplier attackBatch() {
+        Dice dice = new SplitMixDice(SEED);
+        AttackBatch batch = new AttackBatch(1024);
+        for (int i = 0; i < 1024; i++) {
+            batch.add(i % 6, 10 + i % 9, 4 + 2 * (i % 5));
+        }
+        return () -> batch.resolve(dice);
+    }
+
+    /**
+     * Draws a board with a piece on every 7th grid space.
+     * @param size the size of the board
+     * @return the workload
+     */
+    private static LongSupplier render(int size) {
+        GameBoard board = board(size);
+        for (int i = 0; i < size * size; i += 7) {
+            board.place(new Enemy("E", board, Weapon.shortsword), new Coords(i % size, i / size));
+        }
+        return () -> board.toString().length();
+    }
+
+    /**
+     * Finds the grid spaces within 30 feet of a piece, or a walk across the
+     * board, on a 30x30 board with scattered pieces.
+     * @param name reachable or findPath
+     * @param metric the way distances are measured
+     * @return the workload
+     */
+    private static LongSupplier path(String name, DistanceMetric metric) {
+        GameBoard board = scattered();
+        board.setMetric(metric);
+        int[] cells = new int[30 * 30];
+        Coords from = new Coords(14, 15);
+        Coords to = new Coords(29, 2);
+        if (name.equals("reachable")) {
+            return () -> PathFinder.forThread().reachable(board, from, 30, cells);
+        }
+        return () -> PathFinder.forThread().findPath(board, from, to, 1000, cells);
+    }
+
+    /**
+     * Finds the grid spaces within 6 steps of a piece through the occupancy
+     * bitsets of a 30x30 board with scattered pieces.
+     * @return the workload
+     */
+    private static LongSupplier occupancyReachable() {
+        GameBoard board = scattered();
+        long[] reach = board.getOccupancy().newBitmap();
+        return () -> board.getOccupancy().reachable(14, 15, 6, true, reach);
+    }
+
+    /**
+     * Runs range and nearest-enemy queries around each of 5000 pieces on a
+     * 1000x1000 battle map, through the SpatialIndex, the occupancy bitsets
+     * or a plain grid scan.
+     * @param name nearestEnemy, countInRange, occupancyCount, occupancyAny or gridScanCount
+     * @return the workload
+     */
+    private static LongSupplier battleMap(String name) {
+        GameBoard board = board(1000);
+        SplitMixDice placer = new SplitMixDice(SEED);
+        Attacker[] crowd = new Attacker[5000];
+        for (int i = 0; i < crowd.length; i++) {
+            crowd[i] = (i & 1) == 0 ? new Player("P", board, Weapon.shortsword) : new Enemy("E", board, Weapon.shortsword);
+            Coords loc;
+            do {
+                loc = new Coords(placer.roll(1000) - 1, placer.roll(1000) - 1);
+            } while (board.getPiece(loc.getX(), loc.getY()) != null);
+            board.place(crowd[i], loc);
+        }
+        int[] who = {0};
+        OccupancyBits occupancy = board.getOccupancy();
+        RangeMask mask60 = board.rangeMask(60);
+        switch (name) {
+            case "nearestEnemy":
+                return () -> {
+                    Attacker seeker = crowd[who[0] = (who[0] + 1) % crowd.length];
+                    return board.nearestEnemy(seeker.getLocation()).getHP();
+                };
+            case "countInRange":
+                return () -> {
+                    Attacker center = crowd[who[0] = (who[0] + 1) % crowd.length];
+                    return board.countInRange(center.getLocation(), 60);
+                };
+            case "occupancyCount":
+                return () -> {
+                    Coords center = crowd[who[0] = (who[0] + 1) % crowd.length].getLocation();
+                    return occupancy.count(OccupancyBits.Layer.ALL, center.getX(), center.getY(), mask60) - 1;
+                };
+            case "occupancyAny":
+                return () -> {
+                    Coords center = crowd[who[0] = (who[0] + 1) % crowd.length].getLocation();
+                    return occupancy.any(OccupancyBits.Layer.ENEMIES, center.getX(), center.getY(), mask60) ? 1 : 0;
+                };
+            default:
+                return () -> {
+                    Coords center = crowd[who[0] = (who[0] + 1) % crowd.length].getLocation();
+                    int count = 0;
+                    for (int y = 0; y < board.getSize(); y++) {
+                        for (int x = 0; x < board.getSize(); x++) {
+                            if (board.getPiece(x, y) != null && (x != center.getX() || y != center.getY())
+                                    && board.dist(center.getX(), center.getY(), x, y) * GameBoard.FEET_PER_TILE <= 60) {
+                                count++;
+                            }
+                        }
+                    }
+                    return count;
+                };
+        }
+    }
+
+    /**
+     * Plays the 4v6 fight from the start on a new board.
+     * @return the workload
+     */
+    private static LongSupplier encounter() {
+        Scenario scenario = sample();
+        SplitMixDice dice = new SplitMixDice(SEED);
+        return () -> {
+            Encounter encounter = scenario.newEncounter(dice);
+            return encounter.run().ordinal() + encounter.getRounds();
+        };
+    }
+
+    /**
+     * Plays the 4v6 fight from the start on a CombatantStore.
+     * @return the workload
+     */
+    private static LongSupplier compactEncounter() {
+        SplitMixDice dice = new SplitMixDice(SEED);
+        CompactEncounter compact = new CompactEncounter(sample().newEncounter(dice));
+        return () -> {
+            compact.reset();
+            return compact.run(dice).ordinal() + compact.getRounds();
+        };
+    }
+
+    /**
+     * Plays the 4v6 fight in initiative order with both sides using one
+     * built-in Strategy.
+     * @param strategy NEAREST_TARGET, FOCUS_FIRE or KITE
+     * @return the workload
+     */
+    private static LongSupplier turnScheduler(String strategy) {
+        Strategy chosen;
+        switch (strategy) {
+            case "NEAREST_TARGET":
+                chosen = Strategy.NEAREST_TARGET;
+                break;
+            case "FOCUS_FIRE":
+                chosen = Strategy.FOCUS_FIRE;
+                break;
+            case "KITE":
+                chosen = Strategy.KITE;
+                break;
+            default:
+                throw new IllegalArgumentException("No strategy named " + strategy);
+        }
+        Scenario scenario = sample();
+        SplitMixDice dice = new SplitMixDice(SEED);
+        return () -> {
+            Encounter encounter = scenario.newEncounter(dice);
+            for (Attacker piece : encounter.getCombatants()) {
+                piece.setStrategy(chosen);
+            }
+            TurnScheduler scheduler = new TurnScheduler(encounter.getBoard(), encounter.getCombatants());
+            scheduler.rollInitiative();
+            return scheduler.run(Encounter.MAX_ROUNDS).ordinal() + scheduler.getRound();
+        };
+    }
+
+    /**
+     * Tries ten turns of the 4v6 fight and undoes them, as a tree search would.
+     * @return the workload
+     */
+    private static LongSupplier markRollback() {
+        Encounter branch = sample().newEncounter(new SplitMixDice(SEED));
+        for (Attacker piece : branch.getCombatants()) {
+            piece.setStrategy(Strategy.NEAREST_TARGET);
+        }
+        TurnScheduler turns = new TurnScheduler(branch.getBoard(), branch.getCombatants());
+        GameBoard board = branch.getBoard();
+        return () -> {
+            board.mark();
+            int dmg = 0;
+            for (int i = 0; i < 10; i++) {
+                dmg += turns.playTurn();
+            }
+            board.rollback();
+            board.release();
+            return dmg;
+        };
+    }
+
+    /**
+     * Stores and looks up position values by board hash.
+     * @return the workload
+     */
+    private static LongSupplier transposition() {
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        long[] keys = new long[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Zobrist.key(i);
+        }
+        int[] slot = {0};
+        return () -> {
+            long key = keys[slot[0] = (slot[0] + 1) & 1023];
+            table.store(key, 2, 0.5);
+            return (int) table.probe(key, 1);
+        };
+    }
+
+    /**
+     * Decodes a command typed at the PTUI, or one read from a network
+     * buffer or script.
+     * @param name parseString or parseBuffer
+     * @return the workload
+     */
+    private static LongSupplier parse(String name) {
+        Command command = new Command();
+        if (name.equals("parseString")) {
+            String typed = "attack 12 34 13 35";
+            return () -> {
+                CommandParser.parse(typed, command);
+                return command.getCoord(3);
+            };
+        }
+        ByteBuffer received = ByteBuffer.wrap("m 12 34 13 35\r\n".getBytes());
+        return () -> {
+            CommandParser.parse(received, 0, received.limit() - 1, command);
+            return command.getCoord(3);
+        };
+    }
+
+    /**
+     * Records into, or merges, the fixed-size histograms of a batch.
+     * @param name histogramRecord or histogramMerge
+     * @return the workload
+     */
+    private static LongSupplier histogram(String name) {
+        Histogram histogram = new Histogram();
+        int[] value = {0};
+        if (name.equals("histogramRecord")) {
+            return () -> {
+                histogram.record(value[0] = (value[0] * 31 + 7) & 0xFFFF);
+                return value[0];
+            };
+        }
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(value[0] = (value[0] * 31 + 7) & 0xFFFF);
+        }
+        Histogram other = new Histogram();
+        return () -> {
+            other.merge(histogram);
+            return (int) other.getCount();
+        };
+    }
+
+    /**
+     * Plans the first turn of the 4v6 fight on one thread.
+     * @param name expectimax (to depth 2) or mcts (100 iterations)
+     * @return the workload
+     */
+    private static LongSupplier plan(String name) {
+        Encounter planned = sample().newEncounter(new SplitMixDice(SEED));
+        GameBoard board = planned.getBoard();
+        List<Attacker> order = new TurnScheduler(board, planned.getCombatants()).getTurnOrder();
+        if (name.equals("expectimax")) {
+            ExpectimaxPlanner expectimax = new ExpectimaxPlanner(1);
+            expectimax.setMaxDepth(2);
+            return () -> (int) expectimax.plan(board, order).getNodes();
+        }
+        MctsPlanner mcts = new MctsPlanner(1);
+        mcts.setIterations(100);
+        mcts.setSeed(SEED);
+        return () -> (int) mcts.plan(board, order).getNodes();
+    }
+}
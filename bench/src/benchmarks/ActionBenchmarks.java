@@ -0,0 +1,208 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the single actions a fight is made of: measuring
+ * distance, moving (on a private and on a shared board), validating and
+ * resolving attacks, one at a time and in batches, rolling damage,
+ * computing exact kill distributions and decoding commands.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionBenchmarks {
+    /** GameBoard.dist between pairs of locations on a 64x64 board */
+    private LongSupplier dist;
+    /** GameBoard.move back and forth between two empty locations */
+    private LongSupplier move;
+    /** GameBoard.move onto a location that is taken */
+    private LongSupplier moveRejected;
+    /** ConcurrentGameBoard.move back and forth between two empty locations */
+    private LongSupplier concurrentMove;
+    /** GameBoard.validateAttack on an Enemy next to a Player */
+    private LongSupplier validateAttack;
+    /** GameBoard.observeAttack on an Enemy next to a Player */
+    private LongSupplier observeAttack;
+    /** Attacker.attack on an Enemy next to a Player */
+    private LongSupplier attack;
+    /** Weapon.rollDmg with the given Dice */
+    private LongSupplier rollDmg;
+    /** Weapon.rollDmg with the calling thread's Dice */
+    private LongSupplier rollDmgShared;
+    /** AttackBatch.resolve on 1024 attacks */
+    private LongSupplier attackBatch;
+    /** DamageCalculator.computeRoundsToKill, worked out from scratch */
+    private LongSupplier computeRoundsToKill;
+    /** DamageCalculator.roundsToKill, looked up once known */
+    private LongSupplier roundsToKillCached;
+    /** CommandParser.parse of a command typed at the PTUI */
+    private LongSupplier parseString;
+    /** CommandParser.parse of a command read from a network buffer */
+    private LongSupplier parseBuffer;
+
+    /**
+     * Sets up every workload of this class.
+     */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        this.dist = fixtures.get("dist");
+        this.move = fixtures.get("move");
+        this.moveRejected = fixtures.get("moveRejected");
+        this.concurrentMove = fixtures.get("concurrentMove");
+        this.validateAttack = fixtures.get("validateAttack");
+        this.observeAttack = fixtures.get("observeAttack");
+        this.attack = fixtures.get("attack");
+        this.rollDmg = fixtures.get("rollDmg");
+        this.rollDmgShared = fixtures.get("rollDmgShared");
+        this.attackBatch = fixtures.get("attackBatch");
+        this.computeRoundsToKill = fixtures.get("computeRoundsToKill");
+        this.roundsToKillCached = fixtures.get("roundsToKillCached");
+        this.parseString = fixtures.get("parseString");
+        this.parseBuffer = fixtures.get("parseBuffer");
+    }
+
+    /**
+     * Measures the distance between two locations.
+     * @return the distance, in grid spaces
+     */
+    @Benchmark
+    public long dist() {
+        return this.dist.getAsLong();
+    }
+
+    /**
+     * Moves a piece to an empty location.
+     * @return 1 if the move was made
+     */
+    @Benchmark
+    public long move() {
+        return this.move.getAsLong();
+    }
+
+    /**
+     * Tries to move a piece onto a location that is taken.
+     * @return 1 if the move was made
+     */
+    @Benchmark
+    public long moveRejected() {
+        return this.moveRejected.getAsLong();
+    }
+
+    /**
+     * Moves a piece to an empty location on a board shared between threads.
+     * @return 1 if the move was made
+     */
+    @Benchmark
+    public long concurrentMove() {
+        return this.concurrentMove.getAsLong();
+    }
+
+    /**
+     * Checks whether a Player can attack the Enemy next to it.
+     * @return 1 if the attack is allowed
+     */
+    @Benchmark
+    public long validateAttack() {
+        return this.validateAttack.getAsLong();
+    }
+
+    /**
+     * Carries out an attack through the board.
+     * @return the hp the target has left
+     */
+    @Benchmark
+    public long observeAttack() {
+        return this.observeAttack.getAsLong();
+    }
+
+    /**
+     * Rolls an attack and its damage.
+     * @return 1 if the attack hit
+     */
+    @Benchmark
+    public long attack() {
+        return this.attack.getAsLong();
+    }
+
+    /**
+     * Rolls a Weapon's damage with a board's Dice.
+     * @return the damage rolled
+     */
+    @Benchmark
+    public long rollDmg() {
+        return this.rollDmg.getAsLong();
+    }
+
+    /**
+     * Rolls a Weapon's damage with the calling thread's Dice.
+     * @return the damage rolled
+     */
+    @Benchmark
+    public long rollDmgShared() {
+        return this.rollDmgShared.getAsLong();
+    }
+
+    /**
+     * Resolves 1024 attacks at once.
+     * @return the number of attacks that hit
+     */
+    @Benchmark
+    public long attackBatch() {
+        return this.attackBatch.getAsLong();
+    }
+
+    /**
+     * Works out an exact kill distribution from scratch.
+     * @return the most rounds the kill can take
+     */
+    @Benchmark
+    public long computeRoundsToKill() {
+        return this.computeRoundsToKill.getAsLong();
+    }
+
+    /**
+     * Looks up a kill distribution that is already known.
+     * @return the most rounds the kill can take
+     */
+    @Benchmark
+    public long roundsToKillCached() {
+        return this.roundsToKillCached.getAsLong();
+    }
+
+    /**
+     * Decodes a command typed at the PTUI.
+     * @return the last coordinate of the command
+     */
+    @Benchmark
+    public long parseString() {
+        return this.parseString.getAsLong();
+    }
+
+    /**
+     * Decodes a command read from a network buffer or script.
+     * @return the last coordinate of the command
+     */
+    @Benchmark
+    public long parseBuffer() {
+        return this.parseBuffer.getAsLong();
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for range and nearest-enemy queries on a 1000x1000 battle map
+ * with 5000 pieces on it, through the SpatialIndex, the occupancy bitsets
+ * and a plain scan of the grid. Each query is made around the next piece
+ * in turn.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BattleMapBenchmarks {
+    /** GameBoard.nearestEnemy */
+    private LongSupplier nearestEnemy;
+    /** GameBoard.countInRange within 60 feet */
+    private LongSupplier countInRange;
+    /** OccupancyBits.count of every piece within 60 feet */
+    private LongSupplier occupancyCount;
+    /** OccupancyBits.any Enemy within 60 feet */
+    private LongSupplier occupancyAny;
+    /** a scan of every grid space, counting the pieces within 60 feet */
+    private LongSupplier gridScanCount;
+
+    /**
+     * Sets up every workload of this class.
+     */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        this.nearestEnemy = fixtures.get("nearestEnemy");
+        this.countInRange = fixtures.get("countInRange");
+        this.occupancyCount = fixtures.get("occupancyCount");
+        this.occupancyAny = fixtures.get("occupancyAny");
+        this.gridScanCount = fixtures.get("gridScanCount");
+    }
+
+    /**
+     * Finds the Enemy nearest a piece.
+     * @return the hp of the Enemy found
+     */
+    @Benchmark
+    public long nearestEnemy() {
+        return this.nearestEnemy.getAsLong();
+    }
+
+    /**
+     * Counts the pieces within 60 feet of a piece through the SpatialIndex.
+     * @return the number of pieces found
+     */
+    @Benchmark
+    public long countInRange() {
+        return this.countInRange.getAsLong();
+    }
+
+    /**
+     * Counts the pieces within 60 feet of a piece through the occupancy bitsets.
+     * @return the number of pieces found
+     */
+    @Benchmark
+    public long occupancyCount() {
+        return this.occupancyCount.getAsLong();
+    }
+
+    /**
+     * Checks for an Enemy within 60 feet of a piece through the occupancy bitsets.
+     * @return 1 if there is one
+     */
+    @Benchmark
+    public long occupancyAny() {
+        return this.occupancyAny.getAsLong();
+    }
+
+    /**
+     * Counts the pieces within 60 feet of a piece by looking at every grid space.
+     * @return the number of pieces found
+     */
+    @Benchmark
+    public long gridScanCount() {
+        return this.gridScanCount.getAsLong();
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for a whole 4v6 fight on a 20x20 board: played in turn order
+ * on pieces and on a CombatantStore, played in initiative order with both
+ * sides using each built-in Strategy, tried for ten turns and rolled back,
+ * as a tree search would, and copied with fork().
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncounterBenchmarks {
+    /** Encounter.run on a new board */
+    private LongSupplier encounter;
+    /** CompactEncounter.run after a reset */
+    private LongSupplier compactEncounter;
+    /** GameBoard.mark, ten turns and GameBoard.rollback */
+    private LongSupplier markRollback;
+    /** GameBoard.fork */
+    private LongSupplier fork;
+
+    /**
+     * The fight played by a TurnScheduler with one built-in Strategy.
+     */
+    @State(Scope.Thread)
+    public static class Scheduled {
+        /** the name of the Strategy both sides use */
+        @Param({"NEAREST_TARGET", "FOCUS_FIRE", "KITE"})
+        public String strategy;
+
+        /** TurnScheduler.run on a new board */
+        private LongSupplier turnScheduler;
+
+        /**
+         * Sets up the fight.
+         */
+        @Setup
+        public void setUp() {
+            this.turnScheduler = Fixtures.load().get("turnScheduler", this.strategy);
+        }
+    }
+
+    /**
+     * Sets up every other workload of this class.
+     */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        this.encounter = fixtures.get("encounter");
+        this.compactEncounter = fixtures.get("compactEncounter");
+        this.markRollback = fixtures.get("markRollback");
+        this.fork = fixtures.get("fork");
+    }
+
+    /**
+     * Plays the fight from the start on a new board.
+     * @return the outcome and number of rounds of the fight
+     */
+    @Benchmark
+    public long encounter() {
+        return this.encounter.getAsLong();
+    }
+
+    /**
+     * Plays the fight from the start on a CombatantStore.
+     * @return the outcome and number of rounds of the fight
+     */
+    @Benchmark
+    public long compactEncounter() {
+        return this.compactEncounter.getAsLong();
+    }
+
+    /**
+     * Plays the fight from the start in initiative order.
+     * @param scheduled the fight for the current Strategy
+     * @return the outcome and number of rounds of the fight
+     */
+    @Benchmark
+    public long turnScheduler(Scheduled scheduled) {
+        return scheduled.turnScheduler.getAsLong();
+    }
+
+    /**
+     * Plays ten turns of the fight and undoes them.
+     * @return the damage dealt in those turns
+     */
+    @Benchmark
+    public long markRollback() {
+        return this.markRollback.getAsLong();
+    }
+
+    /**
+     * Copies the board of the fight.
+     * @return the size of the copy
+     */
+    @Benchmark
+    public long fork() {
+        return this.fork.getAsLong();
+    }
+}
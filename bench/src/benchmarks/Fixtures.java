@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The boards and pieces the benchmarks work on. JMH will not run a
+ * benchmark from the default package, and a class in a named package
+ * cannot use the simulator's classes, which are all in the default
+ * package. So every benchmark's setup lives in Workloads, in the default
+ * package, and reaches the benchmarks through this interface. Each
+ * workload is a LongSupplier whose result the benchmark returns, so that
+ * the JIT compiler cannot remove the work as unused.
+ *
+ * @author Mark Danza
+ */
+public interface Fixtures {
+    /** the name of the default-package class that builds every workload */
+    String WORKLOADS = "Workloads";
+
+    /**
+     * Sets up a workload to benchmark.
+     * @param name the name of the workload
+     * @param param a setting for the workload, such as a board size, or
+     *              null if it takes none
+     * @return an operation that performs the workload once per call
+     * @throws IllegalArgumentException if there is no workload with that name
+     */
+    LongSupplier get(String name, String param);
+
+    /**
+     * Sets up a workload that takes no setting.
+     * @param name the name of the workload
+     * @return an operation that performs the workload once per call
+     * @throws IllegalArgumentException if there is no workload with that name
+     */
+    default LongSupplier get(String name) {
+        return get(name, null);
+    }
+
+    /**
+     * Loads the default-package class that builds every workload.
+     * @return the Fixtures the benchmarks are set up from
+     * @throws IllegalStateException if the class cannot be loaded
+     */
+    static Fixtures load() {
+        try {
+            return (Fixtures) Class.forName(WORKLOADS).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load " + WORKLOADS, e);
+        }
+    }
+}
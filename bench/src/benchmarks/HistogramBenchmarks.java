@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the fixed-size histograms a batch records its statistics
+ * in: recording a value, and merging one worker's histogram into another.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramBenchmarks {
+    /** Histogram.record */
+    private LongSupplier record;
+    /** Histogram.merge of a histogram holding 100000 values */
+    private LongSupplier merge;
+
+    /**
+     * Sets up every workload of this class.
+     */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        this.record = fixtures.get("histogramRecord");
+        this.merge = fixtures.get("histogramMerge");
+    }
+
+    /**
+     * Records a value.
+     * @return the value recorded
+     */
+    @Benchmark
+    public long record() {
+        return this.record.getAsLong();
+    }
+
+    /**
+     * Merges one histogram into another.
+     * @return the number of values in the merged histogram
+     */
+    @Benchmark
+    public long merge() {
+        return this.merge.getAsLong();
+    }
+}
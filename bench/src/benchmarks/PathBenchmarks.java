@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for movement on a 30x30 board with 60 pieces scattered over
+ * it: the grid spaces a piece can reach and a walk across the board, with
+ * each DistanceMetric, and the spaces within a number of steps found
+ * through the occupancy bitsets.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmarks {
+    /** OccupancyBits.reachable within 6 steps */
+    private LongSupplier occupancyReachable;
+
+    /**
+     * The PathFinder workloads, set up for one DistanceMetric.
+     */
+    @State(Scope.Thread)
+    public static class Metric {
+        /** the name of the DistanceMetric the board measures with */
+        @Param({"EUCLIDEAN", "CHEBYSHEV", "ALTERNATING"})
+        public String metric;
+
+        /** PathFinder.reachable within 30 feet */
+        private LongSupplier reachable;
+        /** PathFinder.findPath across the board */
+        private LongSupplier findPath;
+
+        /**
+         * Sets up the boards to search.
+         */
+        @Setup
+        public void setUp() {
+            Fixtures fixtures = Fixtures.load();
+            this.reachable = fixtures.get("reachable", this.metric);
+            this.findPath = fixtures.get("findPath", this.metric);
+        }
+    }
+
+    /**
+     * Sets up the board searched through its occupancy bitsets.
+     */
+    @Setup
+    public void setUp() {
+        this.occupancyReachable = Fixtures.load().get("occupancyReachable");
+    }
+
+    /**
+     * Finds every grid space a piece can reach with 30 feet of movement.
+     * @param metric the workloads for the current DistanceMetric
+     * @return the number of grid spaces found
+     */
+    @Benchmark
+    public long reachable(Metric metric) {
+        return metric.reachable.getAsLong();
+    }
+
+    /**
+     * Finds the shortest walk across the board.
+     * @param metric the workloads for the current DistanceMetric
+     * @return the number of steps in the walk
+     */
+    @Benchmark
+    public long findPath(Metric metric) {
+        return metric.findPath.getAsLong();
+    }
+
+    /**
+     * Finds every grid space within 6 steps through the occupancy bitsets.
+     * @return the number of grid spaces found
+     */
+    @Benchmark
+    public long occupancyReachable() {
+        return this.occupancyReachable.getAsLong();
+    }
+}
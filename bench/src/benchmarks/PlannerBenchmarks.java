@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for planning the first turn of a 4v6 fight on one thread
+ * with each Planner, and for the TranspositionTable they can share.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlannerBenchmarks {
+    /** ExpectimaxPlanner.plan to depth 2 */
+    private LongSupplier expectimax;
+    /** MctsPlanner.plan with 100 iterations */
+    private LongSupplier mcts;
+    /** TranspositionTable.store and probe */
+    private LongSupplier transposition;
+
+    /**
+     * Sets up every workload of this class.
+     */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = Fixtures.load();
+        this.expectimax = fixtures.get("expectimax");
+        this.mcts = fixtures.get("mcts");
+        this.transposition = fixtures.get("transposition");
+    }
+
+    /**
+     * Plans the turn with expectimax search.
+     * @return the number of positions searched
+     */
+    @Benchmark
+    public long expectimax() {
+        return this.expectimax.getAsLong();
+    }
+
+    /**
+     * Plans the turn with Monte Carlo tree search.
+     * @return the number of positions searched
+     */
+    @Benchmark
+    public long mcts() {
+        return this.mcts.getAsLong();
+    }
+
+    /**
+     * Stores a position value by board hash and looks it up again.
+     * @return the value found
+     */
+    @Benchmark
+    public long transposition() {
+        return this.transposition.getAsLong();
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for drawing the whole board as text, at sizes from 10x10 to
+ * 4096x4096, with a piece on every 7th grid space.
+ *
+ * @author Mark Danza
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmarks {
+    /** the number of grid spaces on a side of the board */
+    @Param({"10", "64", "256", "1024", "4096"})
+    public int size;
+
+    /** GameBoard.toString on a board of the current size */
+    private LongSupplier render;
+
+    /**
+     * Sets up the board to draw.
+     */
+    @Setup
+    public void setUp() {
+        this.render = Fixtures.load().get("render", String.valueOf(this.size));
+    }
+
+    /**
+     * Draws the board.
+     * @return the length of the drawing
+     */
+    @Benchmark
+    public long render() {
+        return this.render.getAsLong();
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves and attacks the built-in Strategies are made of. Every decision
+ * is made from queries that only look at the part of the board near the
+ * Attacker: the SpatialIndex for finding targets and the PathFinder for
+ * finding where it can walk. Nothing scans the whole grid.
+ *
+ * The buffers those queries fill belong to the calling thread, so
+ * strategies built on this class keep no state and can be shared freely.
+ *
+ * @author Mark Danza
+ */
+public abstract class AbstractStrategy implements Strategy {
+    /** the buffers used by the calling thread's turns */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * Checks whether a target is within range of an Attacker's weapon if the
+     * Attacker were standing at (x, y).
+     * @param actor the Attacker making the attack
+     * @param x the x-coordinate the attack would be made from
+     * @param y the y-coordinate the attack would be made from
+     * @param target the target of the attack
+     * @return true if the target would be in range
+     */
+    protected static boolean inRange(Attacker actor, int x, int y, Attacker target) {
+        Coords to = target.getLocation();
+        return actor.getBoard().withinFeet(x, y, to.getX(), to.getY(), actor.getWeapon().getRange());
+    }
+
+    /**
+     * Attacks a target if it is within range of the Attacker's weapon.
+     * @param actor the Attacker making the attack
+     * @param target the target of the attack
+     * @return the damage dealt, or 0 if the attack missed or was not made
+     */
+    protected static int attack(Attacker actor, Attacker target) {
+        Coords source = actor.getLocation();
+        if (!inRange(actor, source.getX(), source.getY(), target)) {
+            return 0;
+        }
+        GameBoard board = actor.getBoard();
+        if (!board.validateAttack(source, target.getLocation())) {
+            return 0;
+        }
+        int hpBefore = target.getHP();
+        board.observeAttack(source, target.getLocation());
+        return hpBefore - target.getHP();
+    }
+
+    /**
+     * Moves an Attacker toward a target until the target is in range. The
+     * Attacker walks to the cheapest reachable grid space that puts the
+     * target in range, or, if there is none, to the reachable grid space
+     * closest to the target. It does not move if the target is already in
+     * range.
+     * @param actor the Attacker to move
+     * @param target the Attacker to move toward
+     */
+    protected static void approach(Attacker actor, Attacker target) {
+        Coords start = actor.getLocation();
+        if (inRange(actor, start.getX(), start.getY(), target)) {
+            return;
+        }
+        GameBoard board = actor.getBoard();
+        int size = board.getSize();
+        int[] cells = SCRATCH.get().cells(actor);
+        int n = board.reachableCells(start, cells);
+        Coords goal = target.getLocation();
+        int best = -1;
+        int bestDist = board.dist(start, goal);
+        for (int i = 0; i < n; i++) {
+            int x = cells[i] % size;
+            int y = cells[i] / size;
+            if (inRange(actor, x, y, target)) {
+                best = cells[i];
+                break;
+            }
+            int d = board.dist(x, y, goal.getX(), goal.getY());
+            if (d < bestDist) {
+                best = cells[i];
+                bestDist = d;
+            }
+        }
+        if (best >= 0) {
+            board.move(start, board.at(best % size, best / size));
+        }
+    }
+
+    /**
+     * Moves an Attacker to the reachable grid space farthest from a target
+     * that still has the target in range of its weapon. If no reachable
+     * grid space has the target in range, the Attacker approaches it instead.
+     * @param actor the Attacker to move
+     * @param target the Attacker to keep at range
+     */
+    protected static void keepAtRange(Attacker actor, Attacker target) {
+        Coords start = actor.getLocation();
+        GameBoard board = actor.getBoard();
+        int size = board.getSize();
+        int[] cells = SCRATCH.get().cells(actor);
+        int n = board.reachableCells(start, cells);
+        Coords goal = target.getLocation();
+        int best = -1;
+        int bestDist = inRange(actor, start.getX(), start.getY(), target) ? board.dist(start, goal) : -1;
+        for (int i = 0; i < n; i++) {
+            int x = cells[i] % size;
+            int y = cells[i] / size;
+            if (inRange(actor, x, y, target)) {
+                int d = board.dist(x, y, goal.getX(), goal.getY());
+                if (d > bestDist) {
+                    best = cells[i];
+                    bestDist = d;
+                }
+            }
+        }
+        if (best >= 0) {
+            board.move(start, board.at(best % size, best / size));
+        } else if (bestDist < 0) {
+            approach(actor, target);
+        }
+    }
+
+    /**
+     * Finds the pieces an Attacker could reach and attack this turn, going by
+     * straight-line distance.
+     * @param actor the Attacker looking for targets
+     * @return the calling thread's buffer, filled with every piece within the
+     * Attacker's speed plus its weapon's range; valid until the next call
+     */
+    protected static List<Piece> piecesInReach(Attacker actor) {
+        List<Piece> nearby = SCRATCH.get().nearby;
+        nearby.clear();
+        actor.getBoard().piecesWithinFeet(actor.getLocation(), actor.getSpeed() + actor.getWeapon().getRange(), nearby);
+        return nearby;
+    }
+
+    /**
+     * The buffers one thread's turns are computed in, grown as needed and
+     * then reused.
+     */
+    private static class Scratch {
+        /** the reachable grid spaces of the Attacker moving */
+        private int[] cells = new int[0];
+        /** the pieces near the Attacker choosing a target */
+        private final List<Piece> nearby = new ArrayList<>();
+
+        /**
+         * Getter for a buffer big enough to hold every grid space an
+         * Attacker could reach this turn.
+         * @param actor the Attacker about to move
+         * @return the reachable grid space buffer
+         */
+        private int[] cells(Attacker actor) {
+            int size = actor.getBoard().getSize();
+            int side = 2 * (actor.getSpeed() / GameBoard.FEET_PER_TILE) + 1;
+            int needed = side >= size ? size * size : side * side;
+            if (this.cells.length < needed) {
+                this.cells = new int[needed];
+            }
+            return this.cells;
+        }
+    }
+}
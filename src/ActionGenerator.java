@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the turns worth considering for an Attacker, for the planners to
+ * search over. Trying every reachable grid space paired with every target
+ * would give hundreds of turns that differ only in where the Attacker ends
+ * up standing, so for each enemy it could attack this turn only three are
+ * kept: attacking from where it stands, from the cheapest grid space that
+ * puts the enemy in range, and from the grid space in range farthest from
+ * the enemy. Three turns that make no attack are added: staying put, and
+ * moving as close to or as far from the nearest enemy as possible.
+ *
+ * A generator keeps buffers that are reused between calls, so it must only
+ * be used by one thread.
+ *
+ * @author Mark Danza
+ */
+public class ActionGenerator {
+    /** the most enemies that are considered as targets in one turn */
+    public static final int MAX_TARGETS = 8;
+    /** the most turns generate() can list */
+    public static final int MAX_ACTIONS = 3 * MAX_TARGETS + 3;
+
+    /** the grid spaces the Attacker can reach, cheapest first */
+    private int[] cells = new int[0];
+    /** the pieces near the Attacker */
+    private final List<Piece> nearby = new ArrayList<>();
+
+    /**
+     * Lists the turns worth considering for an Attacker.
+     * @param actor the living Attacker whose turn it is
+     * @param out where the turns are written, encoded as by
+     * TurnAction.encode(); must have room for MAX_ACTIONS
+     * @return the number of turns written
+     */
+    public int generate(Attacker actor, long[] out) {
+        GameBoard board = actor.getBoard();
+        int size = board.getSize();
+        Coords loc = actor.getLocation();
+        int here = loc.getY() * size + loc.getX();
+        int range = actor.getWeapon().getRange();
+        int side = 2 * (actor.getSpeed() / GameBoard.FEET_PER_TILE) + 1;
+        int needed = side >= size ? size * size : side * side;
+        if (this.cells.length < needed) {
+            this.cells = new int[needed];
+        }
+        int reachable = board.reachableCells(loc, this.cells);
+        int count = 0;
+        out[count++] = TurnAction.encode(here, TurnAction.NO_TARGET);
+
+        // attacks on each enemy within reach, if the bitsets show there are any
+        this.nearby.clear();
+        if (board.getOccupancy().any(OccupancyBits.Layer.hostileTo(actor), loc.getX(), loc.getY(),
+                board.rangeMask(actor.getSpeed() + range))) {
+            board.piecesWithinFeet(loc, actor.getSpeed() + range, this.nearby);
+        }
+        int targets = 0;
+        for (int p = 0; p < this.nearby.size() && targets < MAX_TARGETS; p++) {
+            Piece piece = this.nearby.get(p);
+            if (!(piece instanceof Attacker) || !actor.isHostileTo((Attacker) piece)) {
+                continue;
+            }
+            targets++;
+            int tx = piece.getLocation().getX();
+            int ty = piece.getLocation().getY();
+            int target = ty * size + tx;
+            boolean inRangeHere = board.withinFeet(loc.getX(), loc.getY(), tx, ty, range);
+            if (inRangeHere) {
+                count = add(out, count, TurnAction.encode(here, target));
+            }
+            int cheapest = -1;
+            int farthest = -1;
+            int farthestDist = -1;
+            for (int i = 0; i < reachable; i++) {
+                int x = this.cells[i] % size;
+                int y = this.cells[i] / size;
+                if (board.withinFeet(x, y, tx, ty, range)) {
+                    if (cheapest < 0) {
+                        cheapest = this.cells[i];
+                    }
+                    int d = board.dist(x, y, tx, ty);
+                    if (d > farthestDist) {
+                        farthest = this.cells[i];
+                        farthestDist = d;
+                    }
+                }
+            }
+            if (!inRangeHere && cheapest >= 0) {
+                count = add(out, count, TurnAction.encode(cheapest, target));
+            }
+            if (farthest >= 0) {
+                count = add(out, count, TurnAction.encode(farthest, target));
+            }
+        }
+
+        // moves toward and away from the nearest enemy
+        Attacker nearest = board.nearestEnemy(loc);
+        if (nearest != null && reachable > 0) {
+            int nx = nearest.getLocation().getX();
+            int ny = nearest.getLocation().getY();
+            int closest = -1;
+            int closestDist = board.dist(loc.getX(), loc.getY(), nx, ny);
+            int farthest = -1;
+            int farthestDist = closestDist;
+            for (int i = 0; i < reachable; i++) {
+                int d = board.dist(this.cells[i] % size, this.cells[i] / size, nx, ny);
+                if (d < closestDist) {
+                    closest = this.cells[i];
+                    closestDist = d;
+                }
+                if (d > farthestDist) {
+                    farthest = this.cells[i];
+                    farthestDist = d;
+                }
+            }
+            if (closest >= 0) {
+                count = add(out, count, TurnAction.encode(closest, TurnAction.NO_TARGET));
+            }
+            if (farthest >= 0) {
+                count = add(out, count, TurnAction.encode(farthest, TurnAction.NO_TARGET));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a turn to a list unless it is already there.
+     * @param out the list of turns
+     * @param count the number of turns in the list
+     * @param action the encoded turn to add
+     * @return the new number of turns in the list
+     */
+    private static int add(long[] out, int count, long action) {
+        for (int i = 0; i < count; i++) {
+            if (out[i] == action) {
+                return count;
+            }
+        }
+        out[count] = action;
+        return count + 1;
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.Arrays;
+
+/**
+ * Resolves many independent attacks in one call, for Monte Carlo runs that
+ * play many fights side by side and gather the attacks of all of them
+ * before rolling. Each attack (a lane) is an attack modifier, a target AC
+ * and a damage die, held in plain arrays rather than in Attackers, so that
+ * resolving a batch is a few tight loops over ints with no virtual calls.
+ *
+ * A batch is resolved in two passes. Every lane's d20 is rolled first; the
+ * lanes that hit are then gathered without branching, and their damage is
+ * rolled in a second pass. With a SplitMixDice both passes are rolled in
+ * bulk through SplitMixDice.rollAll(); with any other Dice they are rolled
+ * one die at a time in the same order, so the results are the same either
+ * way. Every roll is drawn exactly as Attacker.attack() draws it, so the
+ * hits and damage of a batch have the same distribution as attacks made
+ * one at a time, although not the same individual rolls, since attacks
+ * made one at a time roll each lane's damage straight after its d20.
+ *
+ * @author Mark Danza
+ */
+public class AttackBatch {
+    /** the most attacks a batch can hold */
+    private final int capacity;
+    /** the number of attacks added since the last clear() */
+    private int size;
+    /** modifiers[i] is the attack modifier of lane i */
+    private final int[] modifiers;
+    /** acs[i] is the AC of the target of lane i */
+    private final int[] acs;
+    /** dmgDice[i] is the number of sides on the damage die of lane i */
+    private final int[] dmgDice;
+    /** a d20 for every lane, the sides rolled in the first pass */
+    private final int[] d20s;
+    /** rolls[i] is the d20 roll plus modifier of lane i, once resolved */
+    private final int[] rolls;
+    /** damage[i] is the damage dealt by lane i, or 0 if it missed */
+    private final int[] damage;
+    /** the lanes that hit, in order, for the second pass */
+    private final int[] hitLanes;
+    /** the damage die of each lane in hitLanes */
+    private final int[] hitDice;
+    /** the damage rolled for each lane in hitLanes */
+    private final int[] hitDamage;
+    /** the number of lanes that hit when the batch was last resolved */
+    private int hits;
+
+    /**
+     * Creates a new, empty AttackBatch.
+     * @param capacity the most attacks it can hold
+     */
+    public AttackBatch(int capacity) {
+        this.capacity = capacity;
+        this.modifiers = new int[capacity];
+        this.acs = new int[capacity];
+        this.dmgDice = new int[capacity];
+        this.d20s = new int[capacity];
+        Arrays.fill(this.d20s, Attacker.D20);
+        this.rolls = new int[capacity];
+        this.damage = new int[capacity];
+        this.hitLanes = new int[capacity];
+        this.hitDice = new int[capacity];
+        this.hitDamage = new int[capacity];
+    }
+
+    /**
+     * Adds an attack to the batch.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's AC
+     * @param dmgDie the number of sides on the attacker's damage die
+     * @return the lane of the attack, for reading its result once resolved
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(int modifier, int ac, int dmgDie) {
+        if (this.size == this.capacity) {
+            throw new IllegalStateException("AttackBatch is full (" + this.capacity + " attacks)");
+        }
+        this.modifiers[this.size] = modifier;
+        this.acs[this.size] = ac;
+        this.dmgDice[this.size] = dmgDie;
+        return this.size++;
+    }
+
+    /**
+     * Adds an attack by one Attacker on another to the batch. The attack is
+     * only rolled for; no damage is dealt to the target.
+     * @param attacker the Attacker making the attack
+     * @param target the target of the attack
+     * @return the lane of the attack
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(Attacker attacker, Attacker target) {
+        return add(attacker.getModifier(), target.getAC(), attacker.getWeapon().getDmgDie());
+    }
+
+    /**
+     * Empties the batch, so that it can be filled again.
+     */
+    public void clear() {
+        this.size = 0;
+        this.hits = 0;
+    }
+
+    /**
+     * Getter for the number of attacks in the batch.
+     * @return the number of lanes added since the last clear()
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rolls every attack in the batch.
+     * @param dice the Dice to roll with
+     * @return the number of attacks that hit
+     */
+    public int resolve(Dice dice) {
+        int n = this.size;
+        SplitMixDice bulk = dice instanceof SplitMixDice ? (SplitMixDice) dice : null;
+        // first pass: every d20
+        if (bulk != null) {
+            bulk.rollAll(this.d20s, this.rolls, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                this.rolls[i] = dice.roll(Attacker.D20);
+            }
+        }
+        // gather the lanes that hit; every lane is written, but only hits move h on
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            int roll = this.rolls[i] + this.modifiers[i];
+            this.rolls[i] = roll;
+            this.hitLanes[h] = i;
+            this.hitDice[h] = this.dmgDice[i];
+            h += roll >= this.acs[i] ? 1 : 0;
+        }
+        // second pass: damage for the hits only
+        if (bulk != null) {
+            bulk.rollAll(this.hitDice, this.hitDamage, h);
+        } else {
+            for (int j = 0; j < h; j++) {
+                this.hitDamage[j] = dice.roll(this.hitDice[j]);
+            }
+        }
+        Arrays.fill(this.damage, 0, n, 0);
+        for (int j = 0; j < h; j++) {
+            this.damage[this.hitLanes[j]] = this.hitDamage[j];
+        }
+        this.hits = h;
+        SimMetrics.count(SimMetrics.Counter.ATTACKS, n);
+        SimMetrics.count(SimMetrics.Counter.HITS, h);
+        return h;
+    }
+
+    /**
+     * Getter for the attack roll of a lane.
+     * @param lane a lane returned by add()
+     * @return its d20 roll plus its modifier, once resolved
+     */
+    public int getRoll(int lane) {
+        return rolls[lane];
+    }
+
+    /**
+     * Checks whether the attack of a lane hit.
+     * @param lane a lane returned by add()
+     * @return true if it hit, once resolved
+     */
+    public boolean isHit(int lane) {
+        return rolls[lane] >= acs[lane];
+    }
+
+    /**
+     * Getter for the damage dealt by a lane.
+     * @param lane a lane returned by add()
+     * @return the damage rolled, or 0 if the attack missed
+     */
+    public int getDamage(int lane) {
+        return damage[lane];
+    }
+
+    /**
+     * Getter for the number of attacks that hit.
+     * @return the number of hits when the batch was last resolved
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Compares resolving attacks in batches with rolling them one at a time
+     * as Attacker.attack() does: prints the throughput of each, and the hit
+     * rate and damage distribution each gives, with a chi-squared statistic
+     * for how far apart the distributions are.
+     * @param args command line arguments: [attacks] [batch size] [seed]
+     */
+    public static void main(String[] args) {
+        long attacks = args.length > 0 ? Long.parseLong(args[0]) : 50000000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        // a spread of modifiers, ACs and dice, as in a mixed batch of fights
+        int[] modifiers = {0, 2, 3, 5, 7};
+        int[] acs = {10, 12, 13, 15, 18};
+        int[] dice = {4, 6, 8, 10, 12};
+        AttackBatch batch = new AttackBatch(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(modifiers[i % 5], acs[(i / 5) % 5], dice[(i / 25) % 5]);
+        }
+        long[] scalarDamage = new long[13];
+        long[] batchDamage = new long[13];
+        long rounds = attacks / batchSize;
+
+        SplitMixDice scalarDice = new SplitMixDice(seed);
+        long start = System.nanoTime();
+        for (long r = 0; r < rounds; r++) {
+            for (int i = 0; i < batchSize; i++) {
+                // the rolls Attacker.attack() makes, without a board to report to
+                int roll = scalarDice.roll(Attacker.D20) + batch.modifiers[i];
+                scalarDamage[roll >= batch.acs[i] ? scalarDice.roll(batch.dmgDice[i]) : 0]++;
+            }
+        }
+        double scalarSeconds = (System.nanoTime() - start) / 1e9;
+
+        SplitMixDice batchDice = new SplitMixDice(seed + 1);
+        start = System.nanoTime();
+        for (long r = 0; r < rounds; r++) {
+            batch.resolve(batchDice);
+            for (int i = 0; i < batchSize; i++) {
+                batchDamage[batch.damage[i]]++;
+            }
+        }
+        double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+        long total = rounds * batchSize;
+        System.out.printf("one at a time: %,.0f attacks/s, hit rate %.5f%n", total / scalarSeconds,
+                1 - (double) scalarDamage[0] / total);
+        System.out.printf("in batches of %d: %,.0f attacks/s, hit rate %.5f%n", batchSize, total / batchSeconds,
+                1 - (double) batchDamage[0] / total);
+        // chi-squared test of homogeneity over the damage dealt, 0 for a miss
+        double chi2 = 0;
+        int degrees = -1;
+        for (int d = 0; d < scalarDamage.length; d++) {
+            long both = scalarDamage[d] + batchDamage[d];
+            if (both > 0) {
+                double expected = both / 2.0;
+                chi2 += (scalarDamage[d] - expected) * (scalarDamage[d] - expected) / expected
+                        + (batchDamage[d] - expected) * (batchDamage[d] - expected) / expected;
+                degrees++;
+            }
+        }
+        System.out.printf("damage distributions: chi-squared %.1f on %d degrees of freedom%n", chi2, degrees);
+    }
+}
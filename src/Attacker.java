@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * A type of Piece which can take attack actions and be the target
  * of damage.
@@ -7,10 +5,6 @@ import java.util.Random;
  * @author Mark Danza
  */
 public abstract class Attacker extends Piece {
-    private static final int DEFAULT_MODIFIER = 2;
-    private static final int DEFAULT_AC = 15;
-    private static final int DEFAULT_MAXHP = 10;
-    private static final int DEFAULT_SPEED = 30;
     /** the number of sides on a d20 */
     public static final int D20 = 20;
 
@@ -28,6 +22,8 @@ public abstract class Attacker extends Piece {
     private int speed;
     /** the xp this attacker has */
     private int xp;
+    /** decides this attacker's turns, or null if the user decides them */
+    private Strategy strategy;
 
     /**
      * Instantiates a new Attacker with a Weapon.
@@ -36,14 +32,26 @@ public abstract class Attacker extends Piece {
      * @param weapon the Weapon this attacker uses to make attacks
      */
     public Attacker(String name, GameBoard board, Weapon weapon) {
+        this(name, board, weapon, AttackerStats.DEFAULT);
+    }
+
+    /**
+     * Instantiates a new Attacker with a Weapon and a set of stats.
+     * @param name the name of this attacker
+     * @param board the GameBoard the simulation is taking place on
+     * @param weapon the Weapon this attacker uses to make attacks
+     * @param stats the modifier, AC, maximum HP and speed of this attacker
+     */
+    public Attacker(String name, GameBoard board, Weapon weapon, AttackerStats stats) {
         super(name, board);
         this.weapon = weapon;
-        this.modifier = DEFAULT_MODIFIER;
-        this.ac = DEFAULT_AC;
-        this.maxHp = DEFAULT_MAXHP;
-        this.hp = DEFAULT_MAXHP;
-        this.speed = DEFAULT_SPEED;
+        this.modifier = stats.getModifier();
+        this.ac = stats.getAC();
+        this.maxHp = stats.getMaxHP();
+        this.hp = stats.getMaxHP();
+        this.speed = stats.getSpeed();
         this.xp = 0;
+        this.strategy = null;
     }
 
     /**
@@ -54,6 +62,52 @@ public abstract class Attacker extends Piece {
         return hp;
     }
 
+    /**
+     * Sets this attacker's HP directly, for restoring a saved state rather
+     * than for dealing damage.
+     * @param hp the new current hp
+     */
+    public void setHP(int hp) {
+        int old = this.hp;
+        if (getBoard().getUndoLog().isRecording()) {
+            getBoard().getUndoLog().recordHP(this, old);
+        }
+        this.hp = hp;
+        getBoard().hpChanged(this, old);
+    }
+
+    /**
+     * Getter for this attacker's maximum HP.
+     * @return this attacker's maximum hp
+     */
+    public int getMaxHP() {
+        return maxHp;
+    }
+
+    /**
+     * Getter for this attacker's attack modifier.
+     * @return the modifier added to this attacker's attack rolls
+     */
+    public int getModifier() {
+        return modifier;
+    }
+
+    /**
+     * Getter for this attacker's armor class.
+     * @return this attacker's AC
+     */
+    public int getAC() {
+        return ac;
+    }
+
+    /**
+     * Getter for all of this attacker's fixed stats at once.
+     * @return the modifier, AC, maximum HP and speed of this attacker
+     */
+    public AttackerStats getStats() {
+        return new AttackerStats(modifier, ac, maxHp, speed);
+    }
+
     /**
      * Getter for this attacker's xp. Used to transfer xp from killed attackers.
      * @return this attacker's current total xp
@@ -67,6 +121,9 @@ public abstract class Attacker extends Piece {
      * @param xp the amount of xp to add (use a negative value to subtract)
      */
     public void addXP(int xp) {
+        if (getBoard().getUndoLog().isRecording()) {
+            getBoard().getUndoLog().recordXP(this, this.xp);
+        }
         this.xp += xp;
     }
 
@@ -86,6 +143,33 @@ public abstract class Attacker extends Piece {
         return weapon;
     }
 
+    /**
+     * Getter for the Strategy that plays this attacker's turns.
+     * @return this attacker's Strategy, or null if the user controls it
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Hands this attacker's turns to a Strategy, or back to the user.
+     * @param strategy the Strategy to play this attacker's turns, or null to
+     * let the user control it
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Checks whether another Attacker is on the opposite side of this one.
+     * Players are hostile to Enemies and Enemies are hostile to Players.
+     * @param other another Attacker
+     * @return true if this attacker and other are on opposite sides
+     */
+    public boolean isHostileTo(Attacker other) {
+        return (this instanceof Player) != (other instanceof Player);
+    }
+
     /**
      * Handles an attack action where this Attacker attacks another
      * Attacker as the target.
@@ -94,20 +178,34 @@ public abstract class Attacker extends Piece {
      */
     public boolean attack(Attacker target) {
         // roll to hit
-        Random rand = new Random();
-        int atkRoll = rand.nextInt(D20) + 1;
+        Dice dice = getBoard().getDice();
+        int atkRoll = dice.roll(D20) + this.modifier;
+        SimMetrics.count(SimMetrics.Counter.ATTACKS);
         if (atkRoll >= target.ac) {
+            SimMetrics.count(SimMetrics.Counter.HITS);
             // roll damage
-            int dmg = this.weapon.rollDmg();
-            target.hp -= dmg;
-            System.out.println("Attack hit and dealt " + dmg + " damage."); // TODO: move this output eventually
+            int dmg = this.weapon.rollDmg(dice);
+            target.setHP(target.hp - dmg);
+            getBoard().getListener().attackHit(this, target, atkRoll, dmg);
             return true;
         } else {
-            System.out.println("Attack missed.");
+            getBoard().getListener().attackMissed(this, target, atkRoll);
             return false;
         }
     }
 
+    /**
+     * Copies this attacker's HP, XP and Strategy onto a copy of it.
+     * @param copy a new Attacker with the same name, weapon and stats
+     * @return the copy
+     */
+    protected Attacker copyStateTo(Attacker copy) {
+        copy.hp = this.hp;
+        copy.xp = this.xp;
+        copy.strategy = this.strategy;
+        return copy;
+    }
+
     @Override
     public abstract char toChar();
 }
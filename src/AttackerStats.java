@@ -0,0 +1,65 @@
+/**
+ * The combat statistics of an Attacker that stay fixed for the whole
+ * simulation: its attack modifier, armor class, maximum HP and speed.
+ *
+ * @author Mark Danza
+ */
+public class AttackerStats {
+    /** the stats every Attacker has unless it is given others */
+    public static final AttackerStats DEFAULT = new AttackerStats(2, 15, 10, 30);
+
+    /** the attack modifier */
+    private final int modifier;
+    /** the armor class */
+    private final int ac;
+    /** the maximum HP */
+    private final int maxHp;
+    /** the speed (in feet) */
+    private final int speed;
+
+    /**
+     * Creates a new set of stats.
+     * @param modifier the attack modifier
+     * @param ac the armor class
+     * @param maxHp the maximum HP
+     * @param speed the speed (in feet)
+     */
+    public AttackerStats(int modifier, int ac, int maxHp, int speed) {
+        this.modifier = modifier;
+        this.ac = ac;
+        this.maxHp = maxHp;
+        this.speed = speed;
+    }
+
+    /**
+     * Getter for the attack modifier.
+     * @return the attack modifier
+     */
+    public int getModifier() {
+        return modifier;
+    }
+
+    /**
+     * Getter for the armor class.
+     * @return the armor class
+     */
+    public int getAC() {
+        return ac;
+    }
+
+    /**
+     * Getter for the maximum HP.
+     * @return the maximum HP
+     */
+    public int getMaxHP() {
+        return maxHp;
+    }
+
+    /**
+     * Getter for the speed.
+     * @return the speed (in feet)
+     */
+    public int getSpeed() {
+        return speed;
+    }
+}
@@ -0,0 +1,509 @@
+import java.util.Arrays;
+
+/**
+ * The combined results of many Encounters run by a BatchSimulator: win
+ * counts for each side, distributions of how many rounds each fight lasted
+ * and how much damage each side dealt, and finer statistics gathered from
+ * the events of each fight: attacks, hits and damage for each Weapon, the
+ * hit rate against each armor class, the round each kill happened in, the
+ * xp gained by killers and the hp left to survivors.
+ *
+ * Each worker fills its own BatchResult with no locking, and the results are
+ * merged once the workers are finished. Every distribution is a Histogram of
+ * fixed size, so a BatchResult takes the same memory after a billion trials
+ * as after one, and merging two takes the same time.
+ *
+ * @author Mark Danza
+ */
+public class BatchResult {
+    /** the highest armor class tracked individually; higher armor classes share its count */
+    public static final int MAX_AC = 31;
+    /** the z-score of a 95% confidence interval */
+    public static final double Z_95 = 1.959964;
+
+    /** the number of encounters recorded */
+    private long trials;
+    /** the number of encounters won by the Players */
+    private long playerWins;
+    /** the number of encounters won by the Enemies */
+    private long enemyWins;
+    /** the number of encounters that ended in a draw */
+    private long draws;
+    /** the number of rounds each encounter lasted */
+    private final Histogram rounds;
+    /** the total damage dealt by the Players in each encounter */
+    private final Histogram playerDamage;
+    /** the total damage dealt by the Enemies in each encounter */
+    private final Histogram enemyDamage;
+    /** the round in which each kill happened */
+    private final Histogram killRounds;
+    /** the xp gained by the killer of each kill */
+    private final Histogram xpGained;
+    /** the hp left to each combatant still alive when its encounter ended */
+    private final Histogram survivorHp;
+    /** the Weapons attacks have been recorded for, in the order first seen */
+    private Weapon[] weapons;
+    /** the number of Weapons in weapons */
+    private int weaponCount;
+    /** weaponAttacks[w] is the number of attacks made with weapons[w] */
+    private long[] weaponAttacks;
+    /** weaponHits[w] is the number of attacks made with weapons[w] that hit */
+    private long[] weaponHits;
+    /** weaponDamage[w] is the total damage dealt with weapons[w] */
+    private long[] weaponDamage;
+    /** attacksByAC[ac] is the number of attacks made against targets with that armor class */
+    private final long[] attacksByAC;
+    /** hitsByAC[ac] is the number of attacks against targets with that armor class that hit */
+    private final long[] hitsByAC;
+
+    /**
+     * Creates a new, empty BatchResult.
+     */
+    public BatchResult() {
+        this.rounds = new Histogram();
+        this.playerDamage = new Histogram();
+        this.enemyDamage = new Histogram();
+        this.killRounds = new Histogram();
+        this.xpGained = new Histogram();
+        this.survivorHp = new Histogram();
+        this.weapons = new Weapon[4];
+        this.weaponAttacks = new long[4];
+        this.weaponHits = new long[4];
+        this.weaponDamage = new long[4];
+        this.attacksByAC = new long[MAX_AC + 1];
+        this.hitsByAC = new long[MAX_AC + 1];
+    }
+
+    /**
+     * Adds the result of one finished Encounter, including the hp of every
+     * combatant that survived it.
+     * @param encounter the encounter that was run
+     * @param outcome the outcome of that encounter
+     */
+    public void record(Encounter encounter, Encounter.Outcome outcome) {
+        record(outcome, encounter.getRounds(), encounter.getPlayerDamage(), encounter.getEnemyDamage());
+        for (Attacker piece : encounter.getCombatants()) {
+            if (piece.getHP() > 0) {
+                this.survivorHp.record(piece.getHP());
+            }
+        }
+    }
+
+    /**
+     * Adds the result of one finished CompactEncounter, including the hp of
+     * every combatant that survived it.
+     * @param encounter the encounter that was run
+     * @param outcome the outcome of that encounter
+     */
+    public void record(CompactEncounter encounter, Encounter.Outcome outcome) {
+        record(outcome, encounter.getRounds(), encounter.getPlayerDamage(), encounter.getEnemyDamage());
+        CombatantStore store = encounter.getStore();
+        for (int id = 0; id < store.getCount(); id++) {
+            if (store.getHP(id) > 0) {
+                this.survivorHp.record(store.getHP(id));
+            }
+        }
+    }
+
+    /**
+     * Adds the result of one finished fight.
+     * @param outcome the outcome of the fight
+     * @param rounds the number of rounds the fight lasted
+     * @param playerDamage the total damage dealt by Players
+     * @param enemyDamage the total damage dealt by Enemies
+     */
+    public void record(Encounter.Outcome outcome, int rounds, int playerDamage, int enemyDamage) {
+        this.trials++;
+        switch (outcome) {
+            case PLAYERS_WIN:
+                this.playerWins++;
+                break;
+            case ENEMIES_WIN:
+                this.enemyWins++;
+                break;
+            default:
+                this.draws++;
+        }
+        this.rounds.record(rounds);
+        this.playerDamage.record(playerDamage);
+        this.enemyDamage.record(enemyDamage);
+    }
+
+    /**
+     * Adds one attack made during a fight.
+     * @param weapon the Weapon the attack was made with
+     * @param targetAC the armor class of the target
+     * @param hit true if the attack hit
+     * @param dmg the damage dealt, 0 for a miss
+     */
+    public void recordAttack(Weapon weapon, int targetAC, boolean hit, int dmg) {
+        int w = slotOf(weapon);
+        int ac = Math.max(0, Math.min(targetAC, MAX_AC));
+        this.weaponAttacks[w]++;
+        this.attacksByAC[ac]++;
+        if (hit) {
+            this.weaponHits[w]++;
+            this.weaponDamage[w] += dmg;
+            this.hitsByAC[ac]++;
+        }
+    }
+
+    /**
+     * Adds one kill made during a fight.
+     * @param round the round the kill happened in
+     * @param xp the xp the killer gained from it
+     */
+    public void recordKill(int round, int xp) {
+        this.killRounds.record(round);
+        this.xpGained.record(xp);
+    }
+
+    /**
+     * Finds the slot of a Weapon's counters, adding one if the Weapon has not
+     * been seen before. Weapons are few and usually interned, so they are
+     * compared by identity first.
+     * @param weapon the Weapon
+     * @return its index in weapons
+     */
+    private int slotOf(Weapon weapon) {
+        for (int w = 0; w < this.weaponCount; w++) {
+            if (this.weapons[w] == weapon) {
+                return w;
+            }
+        }
+        for (int w = 0; w < this.weaponCount; w++) {
+            if (this.weapons[w].equals(weapon)) {
+                return w;
+            }
+        }
+        if (this.weaponCount == this.weapons.length) {
+            int larger = this.weapons.length * 2;
+            this.weapons = Arrays.copyOf(this.weapons, larger);
+            this.weaponAttacks = Arrays.copyOf(this.weaponAttacks, larger);
+            this.weaponHits = Arrays.copyOf(this.weaponHits, larger);
+            this.weaponDamage = Arrays.copyOf(this.weaponDamage, larger);
+        }
+        this.weapons[this.weaponCount] = weapon;
+        return this.weaponCount++;
+    }
+
+    /**
+     * Adds all of the results recorded in another BatchResult to this one.
+     * @param other the results to add
+     */
+    public void merge(BatchResult other) {
+        this.trials += other.trials;
+        this.playerWins += other.playerWins;
+        this.enemyWins += other.enemyWins;
+        this.draws += other.draws;
+        this.rounds.merge(other.rounds);
+        this.playerDamage.merge(other.playerDamage);
+        this.enemyDamage.merge(other.enemyDamage);
+        this.killRounds.merge(other.killRounds);
+        this.xpGained.merge(other.xpGained);
+        this.survivorHp.merge(other.survivorHp);
+        for (int o = 0; o < other.weaponCount; o++) {
+            int w = slotOf(other.weapons[o]);
+            this.weaponAttacks[w] += other.weaponAttacks[o];
+            this.weaponHits[w] += other.weaponHits[o];
+            this.weaponDamage[w] += other.weaponDamage[o];
+        }
+        for (int ac = 0; ac <= MAX_AC; ac++) {
+            this.attacksByAC[ac] += other.attacksByAC[ac];
+            this.hitsByAC[ac] += other.hitsByAC[ac];
+        }
+    }
+
+    /**
+     * Makes an independent copy of these results.
+     * @return a new BatchResult holding everything recorded in this one
+     */
+    public BatchResult copy() {
+        BatchResult copy = new BatchResult();
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Getter for the number of encounters recorded.
+     * @return the number of encounters recorded
+     */
+    public long getTrials() {
+        return trials;
+    }
+
+    /**
+     * Getter for the number of Player wins.
+     * @return the number of encounters won by the Players
+     */
+    public long getPlayerWins() {
+        return playerWins;
+    }
+
+    /**
+     * Getter for the number of Enemy wins.
+     * @return the number of encounters won by the Enemies
+     */
+    public long getEnemyWins() {
+        return enemyWins;
+    }
+
+    /**
+     * Getter for the number of draws.
+     * @return the number of encounters that ended in a draw
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Calculates the fraction of encounters won by the Players.
+     * @return the Player win rate, between 0 and 1
+     */
+    public double getWinRate() {
+        return trials == 0 ? 0 : (double) playerWins / trials;
+    }
+
+    /**
+     * Calculates a Wilson score confidence interval for the true Player win
+     * rate, which unlike the usual normal approximation stays inside [0, 1]
+     * and holds up for win rates near 0 or 1.
+     * @param z the z-score of the confidence level (Z_95 for 95%)
+     * @return the lower and upper bounds of the interval, or {0, 1} if
+     * nothing was recorded
+     */
+    public double[] getWinRateInterval(double z) {
+        return wilsonInterval(playerWins, trials, z);
+    }
+
+    /**
+     * Calculates a Wilson score confidence interval for a rate measured by
+     * counting successes.
+     * @param successes the number of successes counted
+     * @param trials the number of trials counted
+     * @param z the z-score of the confidence level (Z_95 for 95%)
+     * @return the lower and upper bounds of the interval, or {0, 1} if there
+     * were no trials
+     */
+    public static double[] wilsonInterval(long successes, long trials, double z) {
+        if (trials == 0) {
+            return new double[] {0, 1};
+        }
+        double p = (double) successes / trials;
+        double z2n = z * z / trials;
+        double center = (p + z2n / 2) / (1 + z2n);
+        double half = z * Math.sqrt(p * (1 - p) / trials + z2n / (4 * trials)) / (1 + z2n);
+        return new double[] {Math.max(0, center - half), Math.min(1, center + half)};
+    }
+
+    /**
+     * Calculates half the width of a Wilson score confidence interval for
+     * the Player win rate: how far the true win rate may be from the measured
+     * one at the given confidence.
+     * @param z the z-score of the confidence level (Z_95 for 95%)
+     * @return the half-width of the interval, or 0.5 if nothing was recorded
+     */
+    public double getWinRateHalfWidth(double z) {
+        double[] interval = getWinRateInterval(z);
+        return (interval[1] - interval[0]) / 2;
+    }
+
+    /**
+     * Calculates the average number of rounds an encounter lasted.
+     * @return the mean rounds per encounter
+     */
+    public double getMeanRounds() {
+        return rounds.getMean();
+    }
+
+    /**
+     * Finds the number of rounds that a given fraction of encounters were
+     * finished within.
+     * @param fraction a fraction between 0 and 1 (e.g. 0.5 for the median)
+     * @return the smallest round count r such that at least that fraction of
+     * encounters lasted r rounds or fewer
+     */
+    public int getRoundsPercentile(double fraction) {
+        return (int) rounds.getPercentile(fraction);
+    }
+
+    /**
+     * Calculates the average damage dealt by one side per encounter.
+     * @param players true for damage dealt by Players, false for Enemies
+     * @return the mean damage dealt by that side
+     */
+    public double getMeanDamage(boolean players) {
+        return (players ? playerDamage : enemyDamage).getMean();
+    }
+
+    /**
+     * Finds the damage total that a given fraction of encounters did not exceed
+     * for one side.
+     * @param players true for damage dealt by Players, false for Enemies
+     * @param fraction a fraction between 0 and 1 (e.g. 0.5 for the median)
+     * @return the smallest damage total d such that at least that fraction of
+     * encounters had that side deal d damage or less (within about 3% above 63)
+     */
+    public int getDamagePercentile(boolean players, double fraction) {
+        return (int) (players ? playerDamage : enemyDamage).getPercentile(fraction);
+    }
+
+    /**
+     * Getter for the distribution of the rounds kills happened in.
+     * @return a Histogram with the round of every kill
+     */
+    public Histogram getKillRounds() {
+        return killRounds;
+    }
+
+    /**
+     * Getter for the distribution of xp gained from kills.
+     * @return a Histogram with the xp gained by the killer of every kill
+     */
+    public Histogram getXPGained() {
+        return xpGained;
+    }
+
+    /**
+     * Getter for the distribution of the hp left to survivors.
+     * @return a Histogram with the hp of every combatant alive at the end of its encounter
+     */
+    public Histogram getSurvivorHP() {
+        return survivorHp;
+    }
+
+    /**
+     * Getter for the Weapons attacks have been recorded for.
+     * @return a new array of every Weapon used, in the order first seen
+     */
+    public Weapon[] getWeapons() {
+        return Arrays.copyOf(weapons, weaponCount);
+    }
+
+    /**
+     * Counts the attacks made with a Weapon.
+     * @param weapon a Weapon
+     * @return the number of attacks made with it
+     */
+    public long getAttacks(Weapon weapon) {
+        int w = indexOf(weapon);
+        return w < 0 ? 0 : weaponAttacks[w];
+    }
+
+    /**
+     * Counts the hits made with a Weapon.
+     * @param weapon a Weapon
+     * @return the number of attacks made with it that hit
+     */
+    public long getHits(Weapon weapon) {
+        int w = indexOf(weapon);
+        return w < 0 ? 0 : weaponHits[w];
+    }
+
+    /**
+     * Totals the damage dealt with a Weapon.
+     * @param weapon a Weapon
+     * @return the total damage dealt by hits made with it
+     */
+    public long getDamage(Weapon weapon) {
+        int w = indexOf(weapon);
+        return w < 0 ? 0 : weaponDamage[w];
+    }
+
+    /**
+     * Calculates the fraction of attacks against an armor class that hit.
+     * @param ac an armor class; anything above MAX_AC counts as MAX_AC
+     * @return the hit rate against that armor class, or 0 if no attacks were made against it
+     */
+    public double getHitRate(int ac) {
+        int i = Math.max(0, Math.min(ac, MAX_AC));
+        return attacksByAC[i] == 0 ? 0 : (double) hitsByAC[i] / attacksByAC[i];
+    }
+
+    /**
+     * Finds the slot of a Weapon's counters without adding one.
+     * @param weapon a Weapon
+     * @return its index in weapons, or -1 if no attacks were made with it
+     */
+    private int indexOf(Weapon weapon) {
+        for (int w = 0; w < weaponCount; w++) {
+            if (weapons[w].equals(weapon)) {
+                return w;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds a multi-line report of these results.
+     * @return a String summarizing win rates, rounds, damage, attacks and kills
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        double[] interval = getWinRateInterval(Z_95);
+        report.append("Trials: ").append(trials).append("\n");
+        report.append(String.format("Players win: %.4f (95%% CI %.4f-%.4f)  Enemies win: %.4f  Draws: %.4f%n",
+                getWinRate(), interval[0], interval[1], trials == 0 ? 0 : (double) enemyWins / trials,
+                trials == 0 ? 0 : (double) draws / trials));
+        report.append(String.format("Rounds: mean %.2f, p50 %d, p90 %d, p99 %d%n",
+                getMeanRounds(), getRoundsPercentile(0.5), getRoundsPercentile(0.9), getRoundsPercentile(0.99)));
+        report.append(String.format("Player damage: mean %.2f, p50 %d, p90 %d%n",
+                getMeanDamage(true), getDamagePercentile(true, 0.5), getDamagePercentile(true, 0.9)));
+        report.append(String.format("Enemy damage: mean %.2f, p50 %d, p90 %d",
+                getMeanDamage(false), getDamagePercentile(false, 0.5), getDamagePercentile(false, 0.9)));
+        for (int w = 0; w < weaponCount; w++) {
+            report.append(String.format("%n%s: %d attacks, %.1f%% hit, %.2f damage per attack",
+                    weapons[w].getName(), weaponAttacks[w], 100.0 * weaponHits[w] / weaponAttacks[w],
+                    (double) weaponDamage[w] / weaponAttacks[w]));
+        }
+        for (int ac = 0; ac <= MAX_AC; ac++) {
+            if (attacksByAC[ac] > 0) {
+                report.append(String.format("%nHit rate vs AC %d%s: %.1f%%", ac, ac == MAX_AC ? "+" : "",
+                        100 * getHitRate(ac)));
+            }
+        }
+        if (killRounds.getCount() > 0) {
+            report.append("\nKill round: ").append(killRounds);
+            report.append("\nXP per kill: ").append(xpGained);
+        }
+        if (survivorHp.getCount() > 0) {
+            report.append("\nSurvivor hp: ").append(survivorHp);
+        }
+        return report.toString();
+    }
+
+    /**
+     * A CombatListener that records the attacks and kills of the Encounter
+     * it is tracking into this BatchResult. Each worker makes one and points
+     * it at each new Encounter before running it.
+     */
+    public class Tracker implements CombatListener {
+        /** the encounter whose events are being recorded */
+        private Encounter encounter;
+
+        /**
+         * Starts recording the events of an Encounter, which must report its
+         * events to this Tracker.
+         * @param encounter the encounter about to be run
+         */
+        public void track(Encounter encounter) {
+            this.encounter = encounter;
+        }
+
+        @Override
+        public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+            recordAttack(attacker.getWeapon(), target.getAC(), true, dmg);
+        }
+
+        @Override
+        public void attackMissed(Attacker attacker, Attacker target, int roll) {
+            recordAttack(attacker.getWeapon(), target.getAC(), false, 0);
+        }
+
+        @Override
+        public void xpTransferred(Attacker from, Attacker to, int xp) {
+            recordKill(this.encounter.getRounds(), xp);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs many independent Encounters of the same Scenario without a user,
+ * spread across all available cores with a work-stealing ForkJoinPool.
+ * Every trial is played on its own freshly built GameBoard, so workers
+ * never share or lock any simulation state; each worker records into its
+ * own BatchResult and the results are merged as the work is joined.
+ * Each trial rolls with Dice seeded from the batch seed and the trial's
+ * index, so a batch run with the same seed gives the same results no matter
+ * how many threads run it.
+ *
+ * In compact mode, each worker copies the scenario into a CombatantStore
+ * once and replays every trial on it with a CompactEncounter, so a trial
+ * creates no objects at all. Both modes give the same results for the same
+ * seed.
+ *
+ * Every action of every trial can be recorded in a ReplayWriter log, so that
+ * any one trial can be replayed later. Each worker records into its own
+ * buffer and hands the log whole buffers of finished trials.
+ *
+ * While a batch runs, each worker also adds the results of every range of
+ * trials it finishes to a shared snapshot, which getProgress() copies; this
+ * is the only lock taken, once per TRIALS_PER_TASK trials. If a target
+ * precision is set, the batch stops early once the 95% confidence interval
+ * on the Player win rate in that snapshot is narrow enough. Which trials
+ * finish before the stop depends on timing, so a batch that stops early is
+ * not reproducible.
+ *
+ * @author Mark Danza
+ */
+public class BatchSimulator {
+    /** the number of trials a worker runs itself rather than splitting further */
+    private static final int TRIALS_PER_TASK = 1024;
+    /** the default number of trials run by main() */
+    private static final long DEFAULT_TRIALS = 1000000;
+    /** the fewest trials a batch runs before it may stop early */
+    private static final long MIN_TRIALS_BEFORE_STOP = 4 * TRIALS_PER_TASK;
+
+    /** the scenario every trial is built from */
+    private Scenario scenario;
+    /** the pool the trials are run in */
+    private ForkJoinPool pool;
+    /** the seed every trial's Dice are derived from */
+    private long seed;
+    /** whether trials are run with CompactEncounters instead of Encounters */
+    private boolean compact;
+    /** the log every action is recorded in, or null if nothing is recorded */
+    private ReplayWriter replayLog;
+    /** the half-width of the win rate's confidence interval to stop at, or 0 to run every trial */
+    private double targetHalfWidth;
+    /** guards progress, so that a new batch cannot reset it while a worker is adding to it */
+    private final Object progressLock = new Object();
+    /** the results of every range of trials finished so far in the current batch; guarded by progressLock */
+    private BatchResult progress;
+    /** set once the current batch has reached its target precision */
+    private volatile boolean converged;
+
+    /**
+     * Creates a new BatchSimulator that uses every available core.
+     * @param scenario the scenario every trial is built from
+     */
+    public BatchSimulator(Scenario scenario) {
+        this(scenario, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new BatchSimulator with a set number of worker threads.
+     * @param scenario the scenario every trial is built from
+     * @param parallelism the number of worker threads to use
+     */
+    public BatchSimulator(Scenario scenario, int parallelism) {
+        this(scenario, parallelism, System.nanoTime());
+    }
+
+    /**
+     * Creates a new BatchSimulator whose results are reproducible.
+     * @param scenario the scenario every trial is built from
+     * @param parallelism the number of worker threads to use
+     * @param seed the seed every trial's Dice are derived from
+     */
+    public BatchSimulator(Scenario scenario, int parallelism, long seed) {
+        this.scenario = scenario;
+        this.pool = new ForkJoinPool(parallelism);
+        this.seed = seed;
+        this.compact = false;
+        this.progress = new BatchResult();
+    }
+
+    /**
+     * Chooses whether trials are run on a CombatantStore with CompactEncounters
+     * (true) or on GameBoards with Encounters (false, the default).
+     * @param compact true to run trials in compact mode
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Records every action of every trial from now on in a log. While a log
+     * is set, trials are run on GameBoards even in compact mode, since a
+     * CombatantStore reports no events.
+     * @param replayLog the log to record in, or null to stop recording
+     */
+    public void setReplayLog(ReplayWriter replayLog) {
+        this.replayLog = replayLog;
+    }
+
+    /**
+     * Sets how precisely a batch must measure the Player win rate before it
+     * stops early. A batch stops once the 95% confidence interval on the win
+     * rate is no wider than twice this, or once it has run every trial asked
+     * for, whichever comes first.
+     * @param halfWidth the half-width of the interval to stop at (e.g. 0.005
+     * for plus or minus half a percent), or 0 to always run every trial
+     */
+    public void setTargetPrecision(double halfWidth) {
+        this.targetHalfWidth = halfWidth;
+    }
+
+    /**
+     * Runs a number of independent trials of the scenario and waits for all
+     * of them to finish.
+     * @param trials the number of encounters to run
+     * @return the combined results of every trial
+     */
+    public BatchResult run(long trials) {
+        return start(trials).join();
+    }
+
+    /**
+     * Starts running a number of independent trials of the scenario without
+     * waiting for them. Only one batch may run at a time.
+     * @param trials the number of encounters to run
+     * @return the running batch, whose result is the combined results of
+     * every trial
+     */
+    public ForkJoinTask<BatchResult> start(long trials) {
+        synchronized (this.progressLock) {
+            this.progress = new BatchResult();
+        }
+        this.converged = false;
+        return this.pool.submit(new TrialTask(0, trials));
+    }
+
+    /**
+     * Takes a snapshot of the batch that is running (or last ran). It can be
+     * called from any thread while the batch runs.
+     * @return a copy of the combined results of every range of trials
+     * finished so far
+     */
+    public BatchResult getProgress() {
+        synchronized (this.progressLock) {
+            return this.progress.copy();
+        }
+    }
+
+    /**
+     * Adds the results of a finished range of trials to the progress
+     * snapshot, and checks whether the batch has reached its target precision.
+     * @param result the results of the range
+     */
+    private void publish(BatchResult result) {
+        synchronized (this.progressLock) {
+            this.progress.merge(result);
+            if (this.targetHalfWidth > 0 && this.progress.getTrials() >= MIN_TRIALS_BEFORE_STOP
+                    && this.progress.getWinRateHalfWidth(BatchResult.Z_95) <= this.targetHalfWidth) {
+                this.converged = true;
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads of this simulator. It cannot be run again after
+     * this is called.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * A range of trials that is either run directly or split in half so that
+     * idle workers can steal part of it.
+     */
+    private class TrialTask extends RecursiveTask<BatchResult> {
+        /** ForkJoinTasks are Serializable, although these are never serialized */
+        private static final long serialVersionUID = 1L;
+        /** the index of the first trial in this range (inclusive) */
+        private final long from;
+        /** the index of the last trial in this range (exclusive) */
+        private final long to;
+
+        /**
+         * Creates a new TrialTask for a range of trials.
+         * @param from the first trial index (inclusive)
+         * @param to the last trial index (exclusive)
+         */
+        private TrialTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BatchResult compute() {
+            if (this.to - this.from <= TRIALS_PER_TASK) {
+                BatchResult result = new BatchResult();
+                if (converged) {
+                    return result;
+                }
+                SplitMixDice dice = new SplitMixDice(0);
+                if (replayLog != null) {
+                    runRecorded(dice, result);
+                } else if (compact) {
+                    CompactEncounter encounter = new CompactEncounter(scenario.newEncounter(dice));
+                    encounter.setStats(result);
+                    for (long trial = this.from; trial < this.to && !converged; trial++) {
+                        dice.reseed(SplitMixDice.trialSeed(seed, trial));
+                        encounter.reset();
+                        result.record(encounter, encounter.run(dice));
+                    }
+                } else {
+                    BatchResult.Tracker tracker = result.new Tracker();
+                    for (long trial = this.from; trial < this.to && !converged; trial++) {
+                        dice.reseed(SplitMixDice.trialSeed(seed, trial));
+                        Encounter encounter = scenario.newEncounter(dice);
+                        encounter.getBoard().setListener(tracker);
+                        tracker.track(encounter);
+                        result.record(encounter, encounter.run());
+                    }
+                }
+                publish(result);
+                return result;
+            }
+            long mid = (this.from + this.to) >>> 1;
+            TrialTask left = new TrialTask(this.from, mid);
+            left.fork();
+            BatchResult result = new TrialTask(mid, this.to).compute();
+            result.merge(left.join());
+            return result;
+        }
+
+        /**
+         * Runs every trial in this range on GameBoards, recording each in the
+         * replay log.
+         * @param dice the Dice to reseed for each trial
+         * @param result the results to record the trials in
+         */
+        private void runRecorded(SplitMixDice dice, BatchResult result) {
+            ReplayWriter.Recorder recorder = replayLog.newRecorder();
+            BatchResult.Tracker tracker = result.new Tracker();
+            CombatListener listener = CombatListener.both(recorder, tracker);
+            try {
+                for (long trial = this.from; trial < this.to && !converged; trial++) {
+                    long trialSeed = SplitMixDice.trialSeed(seed, trial);
+                    dice.reseed(trialSeed);
+                    Encounter encounter = scenario.newEncounter(dice);
+                    encounter.getBoard().setListener(listener);
+                    tracker.track(encounter);
+                    recorder.beginTrial(trial, trialSeed);
+                    Encounter.Outcome outcome = encounter.run();
+                    recorder.endTrial(outcome, encounter.getRounds());
+                    result.record(encounter, outcome);
+                }
+                recorder.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Builds the scenario run by main(): 4 Players in a line facing 6 Enemies
+     * across a 20x20 board.
+     * @return a new Scenario
+     */
+    public static Scenario sampleScenario() {
+        Scenario scenario = new Scenario("4v6", 20);
+        for (int i = 0; i < 4; i++) {
+            scenario.addPlayer("Player " + (i + 1), Weapon.shortsword, new Coords(2 + 2 * i, 2));
+        }
+        for (int i = 0; i < 6; i++) {
+            scenario.addEnemy("Goblin " + (i + 1), Weapon.shortsword, new Coords(2 * i, 12));
+        }
+        return scenario;
+    }
+
+    /**
+     * Runs a batch of 4 Players against 6 Enemies, printing its progress
+     * every second and a report at the end.
+     * @param args command line arguments: [number of trials] [number of threads] [seed] [compact]
+     * [precision] [metrics port or file], where precision is the half-width of the win rate's 95%
+     * confidence interval to stop at (0 to run every trial), and SimMetrics are exported every second
+     * to the port or file if one is given
+     * @throws InterruptedException if interrupted while waiting for the batch
+     * @throws ExecutionException if a trial fails
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        long trials = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TRIALS;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        BatchSimulator simulator = new BatchSimulator(sampleScenario(), threads, seed);
+        simulator.setCompact(args.length > 3 && args[3].equals("compact"));
+        simulator.setTargetPrecision(args.length > 4 ? Double.parseDouble(args[4]) : 0);
+        MetricsExporter exporter = args.length > 5 ? MetricsExporter.start(args[5], 1000) : null;
+        long start = System.nanoTime();
+        ForkJoinTask<BatchResult> batch = simulator.start(trials);
+        BatchResult result = null;
+        while (result == null) {
+            try {
+                result = batch.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                BatchResult progress = simulator.getProgress();
+                System.out.printf("%d trials, Players win %.4f +/- %.4f%n", progress.getTrials(),
+                        progress.getWinRate(), progress.getWinRateHalfWidth(BatchResult.Z_95));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        simulator.shutdown();
+        if (exporter != null) {
+            exporter.stop();
+        }
+        System.out.println(result);
+        System.out.printf("Ran %d trials on %d threads in %.2f s (%.0f trials/s)%n",
+                result.getTrials(), threads, elapsed / 1e9, result.getTrials() / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,342 @@
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws a live view of a GameBoard on an ANSI terminal while a simulation
+ * plays on it. Only a window of the board (the viewport) is shown, which can
+ * be scrolled or made to follow a piece, so boards of any size can be
+ * watched.
+ *
+ * The renderer keeps a copy of what is on screen. Each frame it takes the
+ * grid spaces the board has marked as changed in its ChangeTracker, and
+ * for each visible one whose symbol differs from the copy it moves the
+ * cursor there with an ANSI escape sequence and writes the new symbol. A
+ * frame therefore costs one check per 64 visible grid spaces plus the work
+ * for the spaces that changed, however large the board is. The whole
+ * viewport is only drawn again after scrolling or after the whole board
+ * changes at once.
+ *
+ * Frames are drawn on the renderer's own thread at a fixed rate. The
+ * simulation never waits for it: changes made between two frames are
+ * simply drawn together, and if drawing falls behind, frames are skipped.
+ *
+ * @author Mark Danza
+ */
+public class BoardRenderer {
+    /** the escape character that starts every ANSI control sequence */
+    private static final String ESC = "\u001B[";
+    /** the symbol drawn for an empty grid space */
+    private static final char EMPTY = '.';
+
+    /** the board being drawn */
+    private final GameBoard board;
+    /** the grid spaces of the board that changed since the last frame */
+    private final ChangeTracker changes;
+    /** where frames are written */
+    private final PrintStream out;
+    /** the number of grid spaces shown across */
+    private final int width;
+    /** the number of grid spaces shown down */
+    private final int height;
+    /** the symbol on screen at each visible grid space, row by row */
+    private final char[] screen;
+    /** the escape sequences and symbols of the frame being drawn */
+    private final StringBuilder frame;
+    /** the number of screen columns taken by the row numbers */
+    private final int labelWidth;
+    /** the x-coordinate of the leftmost grid space shown */
+    private volatile int left;
+    /** the y-coordinate of the topmost grid space shown */
+    private volatile int top;
+    /** set when the whole viewport must be drawn again */
+    private volatile boolean redrawAll;
+    /** the piece the viewport keeps in view, or null if it does not follow one */
+    private volatile Piece followed;
+    /** draws frames at a fixed rate, or null if not started */
+    private ScheduledExecutorService timer;
+    /** the number of frames drawn */
+    private long frames;
+    /** the number of grid spaces drawn, over every frame */
+    private long cellsDrawn;
+
+    /**
+     * Creates a new BoardRenderer showing the top left corner of a board.
+     * The board starts marking its changes for the renderer.
+     * @param board the board to draw
+     * @param out where to write frames (usually System.out)
+     * @param width the number of grid spaces to show across
+     * @param height the number of grid spaces to show down
+     */
+    public BoardRenderer(GameBoard board, PrintStream out, int width, int height) {
+        this.board = board;
+        this.changes = board.trackChanges();
+        this.out = out;
+        this.width = Math.min(width, board.getSize());
+        this.height = Math.min(height, board.getSize());
+        this.screen = new char[this.width * this.height];
+        this.frame = new StringBuilder();
+        this.labelWidth = Integer.toString(Math.max(board.getSize() - 1, 0)).length() + 2;
+        this.redrawAll = true;
+    }
+
+    /**
+     * Scrolls the viewport so that a grid space is in its top left corner,
+     * or as close to it as the edges of the board allow.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     */
+    public void scrollTo(int x, int y) {
+        int newLeft = Math.max(0, Math.min(x, this.board.getSize() - this.width));
+        int newTop = Math.max(0, Math.min(y, this.board.getSize() - this.height));
+        if (newLeft != this.left || newTop != this.top) {
+            this.left = newLeft;
+            this.top = newTop;
+            this.redrawAll = true;
+        }
+    }
+
+    /**
+     * Scrolls the viewport by a number of grid spaces.
+     * @param dx the number of grid spaces to scroll right (negative for left)
+     * @param dy the number of grid spaces to scroll down (negative for up)
+     */
+    public void scrollBy(int dx, int dy) {
+        scrollTo(this.left + dx, this.top + dy);
+    }
+
+    /**
+     * Keeps a piece in view as it moves, from the next frame on: whenever it
+     * leaves the middle half of the viewport, the viewport is centered on it.
+     * @param piece the piece to follow, or null to stop following
+     */
+    public void follow(Piece piece) {
+        this.followed = piece;
+    }
+
+    /**
+     * Starts drawing frames on a background thread.
+     * @param framesPerSecond the most frames to draw each second
+     */
+    public synchronized void start(int framesPerSecond) {
+        if (this.timer != null) {
+            return;
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "BoardRenderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.out.print(ESC + "?25l"); // hide the cursor
+        long period = 1000000000L / Math.max(1, framesPerSecond);
+        // with a fixed delay, a slow frame pushes the next one back instead of queuing more
+        this.timer.scheduleWithFixedDelay(this::drawFrame, 0, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops drawing frames, draws one last frame so the screen is up to
+     * date, and moves the cursor below the viewport.
+     */
+    public void stop() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = this.timer;
+            this.timer = null;
+        }
+        if (running == null) {
+            return;
+        }
+        // wait outside the lock, since the frame being drawn needs it
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drawFrame();
+        this.out.print(ESC + (this.height + 2) + ";1H" + ESC + "?25h");
+        this.out.flush();
+    }
+
+    /**
+     * Getter for the number of frames drawn.
+     * @return the number of frames drawn so far
+     */
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Getter for the number of grid spaces drawn.
+     * @return the number of grid spaces drawn so far, over every frame
+     */
+    public synchronized long getCellsDrawn() {
+        return cellsDrawn;
+    }
+
+    /**
+     * Draws one frame: the whole viewport if it moved or the whole board
+     * changed, otherwise only the visible grid spaces whose symbol changed.
+     * @return the number of grid spaces drawn
+     */
+    public synchronized int drawFrame() {
+        boolean timed = SimMetrics.isEnabled();
+        long began = timed ? System.nanoTime() : 0;
+        Piece target = this.followed;
+        if (target != null && target.getLocation() != null) {
+            // recenter only once the piece leaves the middle half of the viewport
+            int x = target.getLocation().getX() - this.left;
+            int y = target.getLocation().getY() - this.top;
+            if (x < this.width / 4 || x >= this.width * 3 / 4 || y < this.height / 4 || y >= this.height * 3 / 4) {
+                scrollTo(target.getLocation().getX() - this.width / 2, target.getLocation().getY() - this.height / 2);
+            }
+        }
+        this.frame.setLength(0);
+        int drawn;
+        if (this.changes.takeAll() | this.redrawAll) {
+            this.redrawAll = false;
+            drawn = drawViewport();
+        } else {
+            drawn = drawChanges();
+        }
+        if (this.frame.length() > 0) {
+            this.out.append(this.frame);
+            this.out.flush();
+        }
+        this.frames++;
+        this.cellsDrawn += drawn;
+        if (timed) {
+            SimMetrics.time(SimMetrics.Timer.RENDER_FRAME, began);
+            SimMetrics.count(SimMetrics.Counter.FRAMES);
+        }
+        return drawn;
+    }
+
+    /**
+     * Adds the whole viewport to the frame: a heading, the row numbers and
+     * every visible grid space.
+     * @return the number of grid spaces drawn
+     */
+    private int drawViewport() {
+        int left = this.left;
+        int top = this.top;
+        // marks already made are covered by drawing everything
+        for (int row = top; row < top + this.height; row++) {
+            for (int x = left; x < left + this.width; x += 64 - (x & 63)) {
+                this.changes.take(x, row);
+            }
+        }
+        this.frame.append(ESC).append("2J").append(ESC).append("1;1H");
+        this.frame.append(String.format("x %d-%d, y %d-%d of %dx%d", left, left + this.width - 1,
+                top, top + this.height - 1, this.board.getSize(), this.board.getSize()));
+        for (int i = 0; i < this.height; i++) {
+            String label = Integer.toString(top + i);
+            this.frame.append(ESC).append(i + 2).append(";1H");
+            for (int pad = label.length(); pad < this.labelWidth - 2; pad++) {
+                this.frame.append(' ');
+            }
+            this.frame.append(label).append(" |");
+            for (int j = 0; j < this.width; j++) {
+                char symbol = symbolAt(left + j, top + i);
+                this.screen[i * this.width + j] = symbol;
+                this.frame.append(symbol).append(' ');
+            }
+        }
+        return this.width * this.height;
+    }
+
+    /**
+     * Adds every visible grid space that changed since the last frame and
+     * now shows a different symbol to the frame.
+     * @return the number of grid spaces drawn
+     */
+    private int drawChanges() {
+        int left = this.left;
+        int top = this.top;
+        int drawn = 0;
+        for (int i = 0; i < this.height; i++) {
+            int row = top + i;
+            for (int x = left; x < left + this.width; x += 64 - (x & 63)) {
+                long marks = this.changes.take(x, row);
+                while (marks != 0) {
+                    int col = (x & ~63) + Long.numberOfTrailingZeros(marks);
+                    marks &= marks - 1;
+                    int j = col - left;
+                    if (j < 0 || j >= this.width) {
+                        continue;
+                    }
+                    char symbol = symbolAt(col, row);
+                    if (symbol != this.screen[i * this.width + j]) {
+                        this.screen[i * this.width + j] = symbol;
+                        this.frame.append(ESC).append(i + 2).append(';').append(this.labelWidth + 2 * j + 1).append('H')
+                                .append(symbol);
+                        drawn++;
+                    }
+                }
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Finds the symbol to draw for a grid space.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return the symbol of the piece there, or EMPTY
+     */
+    private char symbolAt(int x, int y) {
+        Piece piece = this.board.getPiece(x, y);
+        return piece == null ? EMPTY : piece.toChar();
+    }
+
+    /**
+     * Watches a battle between thousands of pieces on a large board for a
+     * few seconds, following one of them, then reports how many frames and
+     * grid spaces were drawn and how fast the battle was played.
+     * @param args command line arguments: [board size] [seconds] [frames per second]
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int fps = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        SplitMixDice dice = new SplitMixDice(42);
+        GameBoard board = new GameBoard(size, dice);
+        Attacker[] pieces = new Attacker[Math.min(size * size / 50, 200000)];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = (i & 1) == 0 ? new Player("P", board, Weapon.shortsword) : new Enemy("E", board, Weapon.shortsword);
+            int x;
+            int y;
+            do {
+                x = dice.roll(size) - 1;
+                y = dice.roll(size) - 1;
+            } while (board.getPiece(x, y) != null);
+            board.place(pieces[i], new Coords(x, y));
+        }
+        BoardRenderer renderer = new BoardRenderer(board, System.out, 60, 30);
+        renderer.follow(pieces[0]);
+        renderer.start(fps);
+        long actions = 0;
+        long end = System.nanoTime() + seconds * 1000000000L;
+        while (System.nanoTime() < end) {
+            // each piece in turn steps one space at random, or attacks whatever it bumps into
+            Attacker piece = pieces[(int) (actions % pieces.length)];
+            actions++;
+            Coords from = piece.getLocation();
+            if (from == null) {
+                continue;
+            }
+            int x = Math.max(0, Math.min(size - 1, from.getX() + dice.roll(3) - 2));
+            int y = Math.max(0, Math.min(size - 1, from.getY() + dice.roll(3) - 2));
+            Coords to = board.at(x, y);
+            if (board.getPiece(x, y) == null) {
+                board.move(from, to);
+            } else if (board.validateAttack(from, to)) {
+                board.observeAttack(from, to);
+            }
+        }
+        renderer.stop();
+        System.out.printf("%d actions/s on a %dx%d board; %d frames, %.1f grid spaces drawn per frame%n",
+                actions / seconds, size, size, renderer.getFrames(), (double) renderer.getCellsDrawn() / renderer.getFrames());
+    }
+}
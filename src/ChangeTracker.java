@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers which grid spaces of a GameBoard have changed since they were
+ * last looked at, one bit per grid space, so that a display of the board
+ * only has to redraw what changed. The board marks spaces as it changes
+ * them, and a display on another thread takes the marks. Marking never
+ * waits for the display: marking a space that is already marked is a single
+ * read, and marking a clean one is a single compare-and-set.
+ *
+ * @author Mark Danza
+ */
+public class ChangeTracker {
+    /** the number of grid spaces on a side of the board */
+    private final int size;
+    /** the number of 64-bit words holding one row of marks */
+    private final int wordsPerRow;
+    /** bit x % 64 of word y * wordsPerRow + x / 64 is set if space (x, y) has changed */
+    private final AtomicLongArray marks;
+    /** set when every grid space must be treated as changed */
+    private final AtomicBoolean allChanged = new AtomicBoolean();
+
+    /**
+     * Creates a new ChangeTracker for a board, with no spaces marked.
+     * @param size the number of grid spaces on a side of the board
+     */
+    public ChangeTracker(int size) {
+        this.size = size;
+        this.wordsPerRow = (size + 63) >>> 6;
+        this.marks = new AtomicLongArray(size * this.wordsPerRow);
+    }
+
+    /**
+     * Getter for the size of the board being tracked.
+     * @return the number of grid spaces on a side of the board
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Marks a grid space as changed.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     */
+    public void mark(int x, int y) {
+        int word = y * this.wordsPerRow + (x >>> 6);
+        long bit = 1L << x;
+        long old = this.marks.get(word);
+        while ((old & bit) == 0 && !this.marks.compareAndSet(word, old, old | bit)) {
+            old = this.marks.get(word);
+        }
+    }
+
+    /**
+     * Marks every grid space as changed, for changes made to the whole
+     * board at once.
+     */
+    public void markAll() {
+        this.allChanged.set(true);
+    }
+
+    /**
+     * Takes the flag set by markAll(), clearing it in the same step, so that
+     * a markAll() made while it is being taken is never lost.
+     * @return true if markAll() was called since this was last called
+     */
+    public boolean takeAll() {
+        return this.allChanged.get() && this.allChanged.getAndSet(false);
+    }
+
+    /**
+     * Takes the marks of the 64 grid spaces of a row that share a word,
+     * clearing them. Spaces marked after this returns stay marked.
+     * @param x the x-coordinate of any grid space in the word
+     * @param y the row of the grid spaces
+     * @return a word whose bit i is set if space (x - x % 64 + i, y) had changed
+     */
+    public long take(int x, int y) {
+        int word = y * this.wordsPerRow + (x >>> 6);
+        return this.marks.get(word) == 0 ? 0 : this.marks.getAndSet(word, 0);
+    }
+}
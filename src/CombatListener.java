@@ -0,0 +1,130 @@
+/**
+ * Receives the events that happen on a GameBoard as actions are made on it.
+ * Every event is a plain method call with the raw values involved, so a
+ * listener that ignores an event costs nothing and no text is built unless
+ * a listener chooses to build it. Every method does nothing by default, so
+ * listeners only override the events they care about.
+ *
+ * @author Mark Danza
+ */
+public interface CombatListener {
+    /** a listener that ignores every event; the default for a new GameBoard */
+    CombatListener SILENT = new CombatListener() { };
+
+    /**
+     * Combines two listeners into one that passes every event to both, the
+     * first one first.
+     * @param first the listener told of each event first
+     * @param second the listener told of each event second
+     * @return a listener reporting to both
+     */
+    static CombatListener both(CombatListener first, CombatListener second) {
+        return new CombatListener() {
+            @Override
+            public void pieceMoved(Attacker mover, Coords start, Coords end) {
+                first.pieceMoved(mover, start, end);
+                second.pieceMoved(mover, start, end);
+            }
+
+            @Override
+            public void moveRejected(Coords start, Coords end, Rejection reason) {
+                first.moveRejected(start, end, reason);
+                second.moveRejected(start, end, reason);
+            }
+
+            @Override
+            public void attackRejected(Coords source, Coords target, Rejection reason) {
+                first.attackRejected(source, target, reason);
+                second.attackRejected(source, target, reason);
+            }
+
+            @Override
+            public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+                first.attackHit(attacker, target, roll, dmg);
+                second.attackHit(attacker, target, roll, dmg);
+            }
+
+            @Override
+            public void attackMissed(Attacker attacker, Attacker target, int roll) {
+                first.attackMissed(attacker, target, roll);
+                second.attackMissed(attacker, target, roll);
+            }
+
+            @Override
+            public void pieceKilled(Attacker killer, Attacker victim) {
+                first.pieceKilled(killer, victim);
+                second.pieceKilled(killer, victim);
+            }
+
+            @Override
+            public void xpTransferred(Attacker from, Attacker to, int xp) {
+                first.xpTransferred(from, to, xp);
+                second.xpTransferred(from, to, xp);
+            }
+        };
+    }
+
+    /**
+     * Called when an Attacker is moved from one location to another.
+     * @param mover the Attacker that moved
+     * @param start the location it moved from
+     * @param end the location it moved to
+     */
+    default void pieceMoved(Attacker mover, Coords start, Coords end) {
+    }
+
+    /**
+     * Called when a proposed move is refused.
+     * @param start the location the move was proposed from
+     * @param end the location the move was proposed to
+     * @param reason why the move was refused
+     */
+    default void moveRejected(Coords start, Coords end, Rejection reason) {
+    }
+
+    /**
+     * Called when a proposed attack is refused.
+     * @param source the location the attack was proposed from
+     * @param target the location the attack was proposed against
+     * @param reason why the attack was refused
+     */
+    default void attackRejected(Coords source, Coords target, Rejection reason) {
+    }
+
+    /**
+     * Called when an attack hits and deals damage.
+     * @param attacker the Attacker that made the attack
+     * @param target the Attacker that was hit
+     * @param roll the attack roll
+     * @param dmg the damage dealt
+     */
+    default void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+    }
+
+    /**
+     * Called when an attack misses.
+     * @param attacker the Attacker that made the attack
+     * @param target the Attacker that was missed
+     * @param roll the attack roll
+     */
+    default void attackMissed(Attacker attacker, Attacker target, int roll) {
+    }
+
+    /**
+     * Called when an attack reduces its target to 0 hp and the target is
+     * removed from the board.
+     * @param killer the Attacker that made the attack
+     * @param victim the Attacker that was killed
+     */
+    default void pieceKilled(Attacker killer, Attacker victim) {
+    }
+
+    /**
+     * Called when xp is transferred from a killed Attacker to its killer.
+     * @param from the Attacker the xp came from
+     * @param to the Attacker that gained the xp
+     * @param xp the amount of xp transferred
+     */
+    default void xpTransferred(Attacker from, Attacker to, int xp) {
+    }
+}
@@ -0,0 +1,357 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact copy of the Attackers on a GameBoard, meant for simulations that
+ * must run millions of encounters. Instead of one object per piece, the
+ * state of every combatant is kept in parallel int arrays indexed by a
+ * combatant id, and the grid is a flat int array of ids. Once a store is
+ * built, nothing it does creates any objects.
+ *
+ * Combatant ids are assigned in turn order, starting from 0. The state a
+ * store is created with is remembered, so a store can be put back to the
+ * start of its encounter with reset() and used for the next trial.
+ *
+ * @author Mark Danza
+ */
+public class CombatantStore {
+    /** the grid value for a grid space with no combatant on it */
+    public static final int EMPTY = -1;
+
+    /** the size of one side of the square grid */
+    private final int size;
+    /** the number of combatants */
+    private final int count;
+    /** how distances between grid spaces are measured */
+    private final DistanceMetric metric;
+    /** the id of the combatant at each grid space (index y * size + x), or EMPTY */
+    private final int[] grid;
+    /** the current hp of each combatant */
+    private final int[] hp;
+    /** the maximum hp of each combatant */
+    private final int[] maxHp;
+    /** the armor class of each combatant */
+    private final int[] ac;
+    /** the attack modifier of each combatant */
+    private final int[] modifier;
+    /** the speed (in feet) of each combatant */
+    private final int[] speed;
+    /** the xp of each combatant */
+    private final int[] xp;
+    /** the number of sides on each combatant's weapon damage die */
+    private final int[] dmgDie;
+    /** the range (in feet) of each combatant's weapon */
+    private final int[] range;
+    /** the x-coordinate of each combatant */
+    private final int[] x;
+    /** the y-coordinate of each combatant */
+    private final int[] y;
+    /** whether each combatant is a Player (true) or an Enemy (false) */
+    private final boolean[] player;
+    /** the name of each combatant, kept only to convert back to pieces */
+    private final String[] names;
+    /** the weapon of each combatant, kept only to convert back to pieces */
+    private final Weapon[] weapons;
+    /** the hp of each combatant when this store was created */
+    private final int[] startHp;
+    /** the xp of each combatant when this store was created */
+    private final int[] startXp;
+    /** the x-coordinate of each combatant when this store was created */
+    private final int[] startX;
+    /** the y-coordinate of each combatant when this store was created */
+    private final int[] startY;
+
+    /**
+     * Copies the state of a list of Attackers on a board into a new store.
+     * The Attackers are given ids in the order they are listed.
+     * @param board the GameBoard the Attackers are on
+     * @param combatants the Attackers to copy; each must have a location
+     */
+    public CombatantStore(GameBoard board, List<? extends Attacker> combatants) {
+        this.size = board.getSize();
+        this.count = combatants.size();
+        this.metric = board.getMetric();
+        this.grid = new int[size * size];
+        Arrays.fill(this.grid, EMPTY);
+        this.hp = new int[count];
+        this.maxHp = new int[count];
+        this.ac = new int[count];
+        this.modifier = new int[count];
+        this.speed = new int[count];
+        this.xp = new int[count];
+        this.dmgDie = new int[count];
+        this.range = new int[count];
+        this.x = new int[count];
+        this.y = new int[count];
+        this.player = new boolean[count];
+        this.names = new String[count];
+        this.weapons = new Weapon[count];
+        for (int id = 0; id < count; id++) {
+            Attacker piece = combatants.get(id);
+            this.hp[id] = piece.getHP();
+            this.maxHp[id] = piece.getMaxHP();
+            this.ac[id] = piece.getAC();
+            this.modifier[id] = piece.getModifier();
+            this.speed[id] = piece.getSpeed();
+            this.xp[id] = piece.getXP();
+            this.dmgDie[id] = piece.getWeapon().getDmgDie();
+            this.range[id] = piece.getWeapon().getRange();
+            this.x[id] = piece.getLocation().getX();
+            this.y[id] = piece.getLocation().getY();
+            this.player[id] = piece instanceof Player;
+            this.names[id] = piece.getName();
+            this.weapons[id] = piece.getWeapon();
+        }
+        this.startHp = hp.clone();
+        this.startXp = xp.clone();
+        this.startX = x.clone();
+        this.startY = y.clone();
+        reset();
+    }
+
+    /**
+     * Copies every Attacker on a board into a new store. Ids are given in
+     * the order the Attackers are found scanning the board row by row.
+     * @param board the GameBoard to copy
+     * @return a new store holding every living Attacker on the board
+     */
+    public static CombatantStore fromBoard(GameBoard board) {
+        List<Attacker> combatants = new ArrayList<>();
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int col = 0; col < board.getSize(); col++) {
+                Piece piece = board.getPiece(col, row);
+                if (piece instanceof Attacker) {
+                    combatants.add((Attacker) piece);
+                }
+            }
+        }
+        return new CombatantStore(board, combatants);
+    }
+
+    /**
+     * Builds a new GameBoard holding a new Player or Enemy for every living
+     * combatant in this store, with the same stats, hp, xp and location.
+     * @return a new GameBoard matching the current state of this store
+     */
+    public GameBoard toBoard() {
+        GameBoard board = new GameBoard(this.size);
+        board.setMetric(this.metric);
+        for (int id = 0; id < this.count; id++) {
+            if (this.hp[id] <= 0) {
+                continue;
+            }
+            AttackerStats stats = new AttackerStats(this.modifier[id], this.ac[id], this.maxHp[id], this.speed[id]);
+            Attacker piece = this.player[id]
+                    ? new Player(this.names[id], board, this.weapons[id], stats)
+                    : new Enemy(this.names[id], board, this.weapons[id], stats);
+            piece.setHP(this.hp[id]);
+            piece.addXP(this.xp[id]);
+            board.place(piece, board.at(this.x[id], this.y[id]));
+        }
+        return board;
+    }
+
+    /**
+     * Puts every combatant back to the hp, xp and location it had when this
+     * store was created.
+     */
+    public void reset() {
+        // only the spaces of the living are occupied, so clear those rather than the whole grid
+        for (int id = 0; id < this.count; id++) {
+            if (this.hp[id] > 0) {
+                this.grid[this.y[id] * this.size + this.x[id]] = EMPTY;
+            }
+        }
+        System.arraycopy(this.startHp, 0, this.hp, 0, this.count);
+        System.arraycopy(this.startXp, 0, this.xp, 0, this.count);
+        System.arraycopy(this.startX, 0, this.x, 0, this.count);
+        System.arraycopy(this.startY, 0, this.y, 0, this.count);
+        for (int id = 0; id < this.count; id++) {
+            if (this.hp[id] > 0) {
+                this.grid[this.y[id] * this.size + this.x[id]] = id;
+            }
+        }
+    }
+
+    /**
+     * Getter for the size of the grid.
+     * @return the number of grid spaces on a side of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the way distances are measured, copied from the original board.
+     * @return the DistanceMetric of the grid
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Getter for the number of combatants.
+     * @return the number of combatants in this store, living or dead
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the combatant at a grid space.
+     * @param x an x-coordinate on the grid
+     * @param y a y-coordinate on the grid
+     * @return the id of the combatant at (x, y), or EMPTY
+     */
+    public int getOccupant(int x, int y) {
+        return grid[y * size + x];
+    }
+
+    /**
+     * Moves a combatant to a new grid space.
+     * @param id the id of the combatant to move
+     * @param toX the x-coordinate to move to
+     * @param toY the y-coordinate to move to
+     * @pre the grid space at (toX, toY) must be empty
+     */
+    public void move(int id, int toX, int toY) {
+        grid[y[id] * size + x[id]] = EMPTY;
+        grid[toY * size + toX] = id;
+        x[id] = toX;
+        y[id] = toY;
+    }
+
+    /**
+     * Deals damage to a combatant, removing it from the grid if it drops to
+     * 0 hp.
+     * @param id the id of the combatant taking damage
+     * @param dmg the damage dealt
+     * @return true if the damage killed the combatant
+     */
+    public boolean damage(int id, int dmg) {
+        hp[id] -= dmg;
+        if (hp[id] <= 0) {
+            grid[y[id] * size + x[id]] = EMPTY;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Getter for a combatant's current hp.
+     * @param id the id of a combatant
+     * @return its current hp
+     */
+    public int getHP(int id) {
+        return hp[id];
+    }
+
+    /**
+     * Getter for a combatant's maximum hp.
+     * @param id the id of a combatant
+     * @return its maximum hp
+     */
+    public int getMaxHP(int id) {
+        return maxHp[id];
+    }
+
+    /**
+     * Getter for a combatant's armor class.
+     * @param id the id of a combatant
+     * @return its AC
+     */
+    public int getAC(int id) {
+        return ac[id];
+    }
+
+    /**
+     * Getter for a combatant's attack modifier.
+     * @param id the id of a combatant
+     * @return its attack modifier
+     */
+    public int getModifier(int id) {
+        return modifier[id];
+    }
+
+    /**
+     * Getter for a combatant's speed.
+     * @param id the id of a combatant
+     * @return its speed (in feet)
+     */
+    public int getSpeed(int id) {
+        return speed[id];
+    }
+
+    /**
+     * Getter for a combatant's xp.
+     * @param id the id of a combatant
+     * @return its current xp
+     */
+    public int getXP(int id) {
+        return xp[id];
+    }
+
+    /**
+     * Adds to a combatant's xp total.
+     * @param id the id of a combatant
+     * @param amount the amount of xp to add
+     */
+    public void addXP(int id, int amount) {
+        xp[id] += amount;
+    }
+
+    /**
+     * Getter for a combatant's weapon damage die.
+     * @param id the id of a combatant
+     * @return the number of sides on its weapon's damage die
+     */
+    public int getDmgDie(int id) {
+        return dmgDie[id];
+    }
+
+    /**
+     * Getter for a combatant's weapon.
+     * @param id the id of a combatant
+     * @return the Weapon it carries
+     */
+    public Weapon getWeapon(int id) {
+        return weapons[id];
+    }
+
+    /**
+     * Getter for a combatant's weapon range.
+     * @param id the id of a combatant
+     * @return its weapon's range (in feet)
+     */
+    public int getRange(int id) {
+        return range[id];
+    }
+
+    /**
+     * Getter for a combatant's x-coordinate.
+     * @param id the id of a combatant
+     * @return its x-coordinate
+     */
+    public int getX(int id) {
+        return x[id];
+    }
+
+    /**
+     * Getter for a combatant's y-coordinate.
+     * @param id the id of a combatant
+     * @return its y-coordinate
+     */
+    public int getY(int id) {
+        return y[id];
+    }
+
+    /**
+     * Getter for a combatant's side.
+     * @param id the id of a combatant
+     * @return true if it is a Player, false if it is an Enemy
+     */
+    public boolean isPlayer(int id) {
+        return player[id];
+    }
+}
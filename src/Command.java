@@ -0,0 +1,182 @@
+import java.nio.ByteBuffer;
+
+/**
+ * One decoded line of the command grammar shared by the PTUI, the
+ * SessionServer and script files. A Command is filled in by CommandParser
+ * and meant to be reused for every line: the line is copied into an array
+ * the Command keeps, so decoding a command creates no objects.
+ *
+ * @author Mark Danza
+ */
+public class Command {
+    /**
+     * The commands of the grammar.
+     */
+    public enum Kind {
+        /** move x1 y1 x2 y2: move the piece at (x1, y1) to (x2, y2) */
+        MOVE,
+        /** attack x1 y1 x2 y2: the piece at (x1, y1) attacks the piece at (x2, y2) */
+        ATTACK,
+        /** end: end the user's turn */
+        END,
+        /** board: show the board */
+        BOARD,
+        /** quit: stop playing */
+        QUIT,
+        /** a line with nothing but spaces or a comment on it */
+        BLANK,
+        /** a line starting with a word that is not a command */
+        UNKNOWN
+    }
+
+    /** the number of coordinates a move or attack takes */
+    public static final int COORDINATES = 4;
+
+    /** the command on the line */
+    private Kind kind;
+    /** the number of words after the command word */
+    private int arguments;
+    /** the first COORDINATES arguments as numbers, each -1 if it is not a whole number */
+    private final int[] coords = new int[COORDINATES];
+    /** the characters of the line, copied in by CommandParser */
+    private char[] line = new char[64];
+    /** the number of characters of the line */
+    private int length;
+
+    /**
+     * Creates a new, BLANK Command.
+     */
+    public Command() {
+        this.kind = Kind.BLANK;
+    }
+
+    /**
+     * Getter for the command on the line.
+     * @return the kind of command
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Getter for the number of arguments given.
+     * @return the number of words after the command word
+     */
+    public int getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Getter for one of the coordinates of a move or attack.
+     * @param i 0 to 3, for x1, y1, x2 and y2
+     * @return the coordinate, or -1 if that argument is missing or is not a
+     * whole number of at most 9 digits
+     */
+    public int getCoord(int i) {
+        return coords[i];
+    }
+
+    /**
+     * Checks that this is a move or attack with exactly four coordinates,
+     * each on a board of a given size.
+     * @param size the number of grid spaces on a side of the board
+     * @return true if every coordinate is from 0 to size - 1
+     */
+    public boolean coordsWithin(int size) {
+        if (this.arguments != COORDINATES) {
+            return false;
+        }
+        for (int c : this.coords) {
+            if (c < 0 || c >= size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the line this Command was decoded from to a StringBuilder, for
+     * telling the user what was not understood.
+     * @param out where to add the line
+     * @return out
+     */
+    public StringBuilder appendLine(StringBuilder out) {
+        return out.append(this.line, 0, this.length);
+    }
+
+    /**
+     * Copies in a line to decode. Called by CommandParser.
+     * @param chars the line
+     * @return the array holding the line from index 0
+     */
+    char[] load(CharSequence chars) {
+        int n = chars.length();
+        char[] buffer = room(n);
+        for (int i = 0; i < n; i++) {
+            buffer[i] = chars.charAt(i);
+        }
+        return buffer;
+    }
+
+    /**
+     * Copies in a line of ASCII text from a ByteBuffer. Called by
+     * CommandParser.
+     * @param bytes the buffer
+     * @param from the index of the first byte of the line
+     * @param to the index just past the last byte of the line
+     * @return the array holding the line from index 0
+     */
+    char[] load(ByteBuffer bytes, int from, int to) {
+        char[] buffer = room(to - from);
+        for (int i = from; i < to; i++) {
+            buffer[i - from] = (char) (bytes.get(i) & 0xff);
+        }
+        return buffer;
+    }
+
+    /**
+     * Makes room for a line, growing the array only for a line longer than
+     * any before it.
+     * @param n the number of characters of the line
+     * @return the array to copy the line into
+     */
+    private char[] room(int n) {
+        if (n > this.line.length) {
+            this.line = new char[Math.max(n, this.line.length * 2)];
+        }
+        this.length = n;
+        return this.line;
+    }
+
+    /**
+     * Getter for the number of characters of the line copied in.
+     * @return the length of the line
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Starts filling in this Command for the line copied in. Called by
+     * CommandParser.
+     * @param kind the command on the line
+     */
+    void reset(Kind kind) {
+        this.kind = kind;
+        this.arguments = 0;
+        for (int i = 0; i < COORDINATES; i++) {
+            this.coords[i] = -1;
+        }
+    }
+
+    /**
+     * Adds an argument to this Command. Called by CommandParser.
+     * @param value the argument as a number, or -1 if it is not one
+     */
+    void addArgument(int value) {
+        if (this.arguments < COORDINATES) {
+            this.coords[this.arguments] = value;
+        }
+        this.arguments++;
+    }
+}
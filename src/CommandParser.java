@@ -0,0 +1,179 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes lines of the command grammar into a Command without creating any
+ * objects: the line is copied into the Command's own array, the command
+ * word is matched in place, numbers are read digit by digit, and nothing is
+ * thrown for a bad line. A line is read either from a CharSequence (a line
+ * typed at the PTUI) or straight from the bytes of a ByteBuffer (a network
+ * buffer or a script file), so no String is made of it at all.
+ *
+ * Words are separated by spaces or tabs, the command word may be written in
+ * full or as its first letter in either case, and everything from a '#' on
+ * is a comment. A trailing '\r' is ignored.
+ *
+ * @author Mark Danza
+ */
+public class CommandParser {
+    /** the most digits a coordinate may have, so that it always fits in an int */
+    private static final int MAX_DIGITS = 9;
+    /** the command words */
+    private static final String[] WORDS = {"move", "attack", "end", "board", "quit"};
+    /** the kinds matched by WORDS */
+    private static final Command.Kind[] KINDS = {
+        Command.Kind.MOVE, Command.Kind.ATTACK, Command.Kind.END, Command.Kind.BOARD, Command.Kind.QUIT
+    };
+
+    /**
+     * Not to be instantiated.
+     */
+    private CommandParser() {
+    }
+
+    /**
+     * Decodes a line of text.
+     * @param line the line, without its line ending
+     * @param out the Command to fill in
+     * @return the kind of command decoded
+     */
+    public static Command.Kind parse(CharSequence line, Command out) {
+        return decode(out.load(line), out.getLength(), out);
+    }
+
+    /**
+     * Decodes a line of ASCII text held in a ByteBuffer, without changing
+     * the buffer's position or limit.
+     * @param bytes the buffer
+     * @param from the index of the first byte of the line
+     * @param to the index just past the last byte of the line, not counting
+     * its '\n'
+     * @param out the Command to fill in
+     * @return the kind of command decoded
+     */
+    public static Command.Kind parse(ByteBuffer bytes, int from, int to, Command out) {
+        return decode(out.load(bytes, from, to), out.getLength(), out);
+    }
+
+    /**
+     * Decodes a line copied into a Command.
+     * @param line the characters of the line, from index 0
+     * @param length the number of characters of the line
+     * @param out the Command to fill in
+     * @return the kind of command decoded
+     */
+    private static Command.Kind decode(char[] line, int length, Command out) {
+        // cut off a comment and the line ending
+        int to = length;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == '#') {
+                to = i;
+                break;
+            }
+        }
+        if (to > 0 && line[to - 1] == '\r') {
+            to--;
+        }
+        int i = skipSpaces(line, 0, to);
+        if (i == to) {
+            out.reset(Command.Kind.BLANK);
+            return Command.Kind.BLANK;
+        }
+        int end = wordEnd(line, i, to);
+        Command.Kind kind = match(line, i, end);
+        out.reset(kind);
+        if (kind == Command.Kind.UNKNOWN) {
+            return kind;
+        }
+        i = skipSpaces(line, end, to);
+        while (i < to) {
+            end = wordEnd(line, i, to);
+            out.addArgument(number(line, i, end));
+            i = skipSpaces(line, end, to);
+        }
+        return kind;
+    }
+
+    /**
+     * Finds the command word a word is, if any.
+     * @param line the characters of the line
+     * @param from the index of the first character of the word
+     * @param to the index just past the word
+     * @return the kind of command, or UNKNOWN
+     */
+    private static Command.Kind match(char[] line, int from, int to) {
+        int length = to - from;
+        char first = Character.toLowerCase(line[from]);
+        for (int w = 0; w < WORDS.length; w++) {
+            String word = WORDS[w];
+            if (word.charAt(0) != first || (length != 1 && length != word.length())) {
+                continue;
+            }
+            for (int j = 1; j < length; j++) {
+                if (Character.toLowerCase(line[from + j]) != word.charAt(j)) {
+                    return Command.Kind.UNKNOWN;
+                }
+            }
+            return KINDS[w];
+        }
+        return Command.Kind.UNKNOWN;
+    }
+
+    /**
+     * Reads a word as a whole number.
+     * @param line the characters of the line
+     * @param from the index of the first character of the word
+     * @param to the index just past the word
+     * @return the number, or -1 if the word is not made of 1 to MAX_DIGITS digits
+     */
+    private static int number(char[] line, int from, int to) {
+        if (to - from > MAX_DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Skips the spaces and tabs from a position.
+     * @param line the characters of the line
+     * @param i the position to start at
+     * @param to the index just past the line
+     * @return the position of the next other character, or to
+     */
+    private static int skipSpaces(char[] line, int i, int to) {
+        while (i < to && isSpace(line[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the end of the word starting at a position.
+     * @param line the characters of the line
+     * @param i the position of the first character of the word
+     * @param to the index just past the line
+     * @return the position of the space after the word, or to
+     */
+    private static int wordEnd(char[] line, int i, int to) {
+        while (i < to && !isSpace(line[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks whether a character separates words.
+     * @param c a character
+     * @return true for a space or a tab
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
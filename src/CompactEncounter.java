@@ -0,0 +1,255 @@
+/**
+ * Plays the same fight as Encounter, by the same rules and in the same
+ * turn order, but on a CombatantStore instead of on Piece objects. Given
+ * Dice in the same state, a CompactEncounter and an Encounter built from
+ * the same pieces roll the same dice and reach the same outcome. Running a
+ * CompactEncounter creates no objects, so one can be reset() and run again
+ * for every trial of a batch.
+ *
+ * A CompactEncounter has no CombatListener, but it can record its attacks
+ * and kills directly into a BatchResult, as a BatchResult.Tracker does for
+ * an Encounter.
+ *
+ * @author Mark Danza
+ */
+public class CompactEncounter {
+    /** the combatants and grid this encounter is played on */
+    private final CombatantStore store;
+    /** the number of rounds played so far */
+    private int rounds;
+    /** the total damage dealt by Players so far */
+    private int playerDamage;
+    /** the total damage dealt by Enemies so far */
+    private int enemyDamage;
+    /** the results attacks and kills are recorded in, or null if they are not recorded */
+    private BatchResult stats;
+
+    /**
+     * Creates a new CompactEncounter played on the given store.
+     * @param store the combatants and grid of the fight
+     */
+    public CompactEncounter(CombatantStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Creates a new CompactEncounter with the same pieces and turn order as
+     * an Encounter that has not been run yet.
+     * @param encounter the encounter to copy
+     */
+    public CompactEncounter(Encounter encounter) {
+        this(new CombatantStore(encounter.getBoard(), encounter.getCombatants()));
+    }
+
+    /**
+     * Getter for the store this encounter is played on.
+     * @return the CombatantStore of this encounter
+     */
+    public CombatantStore getStore() {
+        return store;
+    }
+
+    /**
+     * Getter for the number of rounds played.
+     * @return the number of rounds played so far
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Getter for the damage dealt by the Players.
+     * @return the total damage dealt by Players so far
+     */
+    public int getPlayerDamage() {
+        return playerDamage;
+    }
+
+    /**
+     * Getter for the damage dealt by the Enemies.
+     * @return the total damage dealt by Enemies so far
+     */
+    public int getEnemyDamage() {
+        return enemyDamage;
+    }
+
+    /**
+     * Records every attack and kill from now on in a BatchResult.
+     * @param stats the results to record in, or null to stop recording
+     */
+    public void setStats(BatchResult stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Puts every combatant back where it started so the fight can be run again.
+     */
+    public void reset() {
+        this.store.reset();
+        this.rounds = 0;
+        this.playerDamage = 0;
+        this.enemyDamage = 0;
+    }
+
+    /**
+     * Plays rounds until one side is wiped out or Encounter.MAX_ROUNDS is reached.
+     * @param dice the Dice every roll in the fight comes from
+     * @return the outcome of the fight
+     */
+    public Encounter.Outcome run(Dice dice) {
+        int count = this.store.getCount();
+        while (this.rounds < Encounter.MAX_ROUNDS) {
+            this.rounds++;
+            for (int id = 0; id < count; id++) {
+                if (this.store.getHP(id) > 0) {
+                    takeTurn(id, dice);
+                }
+            }
+            boolean playersAlive = false;
+            boolean enemiesAlive = false;
+            for (int id = 0; id < count; id++) {
+                if (this.store.getHP(id) > 0) {
+                    if (this.store.isPlayer(id)) {
+                        playersAlive = true;
+                    } else {
+                        enemiesAlive = true;
+                    }
+                }
+            }
+            if (!enemiesAlive) {
+                return SimMetrics.countEncounter(Encounter.Outcome.PLAYERS_WIN);
+            } else if (!playersAlive) {
+                return SimMetrics.countEncounter(Encounter.Outcome.ENEMIES_WIN);
+            }
+        }
+        return SimMetrics.countEncounter(Encounter.Outcome.DRAW);
+    }
+
+    /**
+     * Plays one turn for a combatant: move toward the nearest hostile
+     * combatant if it is out of range, then attack it if it is in range.
+     * @param id the living combatant whose turn it is
+     * @param dice the Dice to roll with
+     */
+    private void takeTurn(int id, Dice dice) {
+        int target = nearestHostile(id);
+        if (target < 0) {
+            return;
+        }
+        if (!inRange(id, this.store.getX(id), this.store.getY(id), target)) {
+            approach(id, target);
+        }
+        if (inRange(id, this.store.getX(id), this.store.getY(id), target)) {
+            int atkRoll = dice.roll(Attacker.D20) + this.store.getModifier(id);
+            SimMetrics.count(SimMetrics.Counter.ATTACKS);
+            if (atkRoll >= this.store.getAC(target)) {
+                SimMetrics.count(SimMetrics.Counter.HITS);
+                int dmg = dice.roll(this.store.getDmgDie(id));
+                if (this.store.isPlayer(id)) {
+                    this.playerDamage += dmg;
+                } else {
+                    this.enemyDamage += dmg;
+                }
+                if (this.stats != null) {
+                    this.stats.recordAttack(this.store.getWeapon(id), this.store.getAC(target), true, dmg);
+                }
+                if (this.store.damage(target, dmg)) {
+                    this.store.addXP(id, this.store.getXP(target)); // transfer xp on kill
+                    if (this.stats != null) {
+                        this.stats.recordKill(this.rounds, this.store.getXP(target));
+                    }
+                }
+            } else if (this.stats != null) {
+                this.stats.recordAttack(this.store.getWeapon(id), this.store.getAC(target), false, 0);
+            }
+        }
+    }
+
+    /**
+     * Finds the closest living combatant on the opposite side of a given one.
+     * Ties go to the combatant with the lowest id.
+     * @param id the combatant looking for a target
+     * @return the id of the nearest hostile combatant, or -1 if there are none left
+     */
+    private int nearestHostile(int id) {
+        int nearest = -1;
+        int nearestDist = Integer.MAX_VALUE;
+        boolean side = this.store.isPlayer(id);
+        for (int other = 0; other < this.store.getCount(); other++) {
+            if (this.store.getHP(other) > 0 && this.store.isPlayer(other) != side) {
+                int d = this.store.getMetric().tiles(this.store.getX(other) - this.store.getX(id),
+                        this.store.getY(other) - this.store.getY(id));
+                if (d < nearestDist) {
+                    nearest = other;
+                    nearestDist = d;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Checks whether a target would be within range of a combatant's weapon
+     * if the combatant were standing at (x, y).
+     * @param id the combatant making the attack
+     * @param x the x-coordinate the attack would be made from
+     * @param y the y-coordinate the attack would be made from
+     * @param target the target of the attack
+     * @return true if the target would be in range
+     */
+    private boolean inRange(int id, int x, int y, int target) {
+        return this.store.getMetric().withinFeet(this.store.getX(target) - x, this.store.getY(target) - y,
+                this.store.getRange(id));
+    }
+
+    /**
+     * Walks a combatant one grid space at a time toward a target, in exactly
+     * the way Encounter does, then moves it to where the walk ended.
+     * @param id the combatant to move
+     * @param target the combatant to move toward
+     */
+    private void approach(int id, int target) {
+        int startX = this.store.getX(id);
+        int startY = this.store.getY(id);
+        int goalX = this.store.getX(target);
+        int goalY = this.store.getY(target);
+        int x = startX;
+        int y = startY;
+        int steps = this.store.getSpeed(id) / GameBoard.FEET_PER_TILE;
+        for (int i = 0; i < steps && !inRange(id, x, y, target); i++) {
+            int sx = Integer.signum(goalX - x);
+            int sy = Integer.signum(goalY - y);
+            if (canStep(id, startX, startY, x + sx, y + sy)) {
+                x += sx;
+                y += sy;
+            } else if (sx != 0 && sy != 0 && canStep(id, startX, startY, x + sx, y)) {
+                x += sx;
+            } else if (sx != 0 && sy != 0 && canStep(id, startX, startY, x, y + sy)) {
+                y += sy;
+            } else {
+                break;
+            }
+        }
+        if (x != startX || y != startY) {
+            this.store.move(id, x, y);
+        }
+    }
+
+    /**
+     * Checks whether a walking combatant may step onto a grid space: it must
+     * be on the grid, empty, and within the combatant's speed of where it started.
+     * @param id the combatant that is walking
+     * @param startX the x-coordinate the combatant started its turn at
+     * @param startY the y-coordinate the combatant started its turn at
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return true if the step is allowed
+     */
+    private boolean canStep(int id, int startX, int startY, int x, int y) {
+        int size = this.store.getSize();
+        if (x < 0 || y < 0 || x >= size || y >= size || this.store.getOccupant(x, y) != CombatantStore.EMPTY) {
+            return false;
+        }
+        return this.store.getMetric().withinFeet(x - startX, y - startY, this.store.getSpeed(id));
+    }
+}
@@ -0,0 +1,370 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets several threads (a PTUI, scripted bots, AI workers) act on one live
+ * GameBoard at once. The board is divided into square regions of
+ * REGION_SIZE grid spaces on a side, each with its own lock, and every
+ * action locks the regions covering every grid space it reads or changes
+ * before touching the board. A move or attack is therefore atomic: no other
+ * action sees it half done, and two movers can never both find the same
+ * grid space empty and land on it. Actions in regions far apart never wait
+ * for each other.
+ *
+ * Locks are always taken in ascending row-major order of region, so two
+ * actions over overlapping areas cannot deadlock. Regions line up with the
+ * 64-bit words of the board's OccupancyBits and ChangeTracker and hold
+ * whole buckets of its SpatialIndex, so threads holding different regions
+ * never write to the same word or bucket. The hash of the board is kept in
+ * an AtomicLong (see GameBoard.share()).
+ *
+ * Every roll on a shared board comes from the Dice of the thread making it,
+ * so results cannot be reproduced from a seed, and a shared board cannot be
+ * marked or rolled back. The board's CombatListener is called with the
+ * locks of the action held, from whichever thread made it, so it must be
+ * thread-safe and must not call back into this ConcurrentGameBoard from
+ * another thread and wait for it.
+ *
+ * @author Mark Danza
+ */
+public class ConcurrentGameBoard {
+    /** log2 of REGION_SIZE */
+    public static final int REGION_SHIFT = 6;
+    /** the number of grid spaces on a side of a region; one word of OccupancyBits across */
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    /** the board being shared */
+    private final GameBoard board;
+    /** the number of regions on a side of the board */
+    private final int regions;
+    /** the lock of each region, row by row */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Shares a board between threads. From now on every action on the board
+     * must go through this ConcurrentGameBoard, and its Dice are replaced by
+     * those of whichever thread is rolling.
+     * @param board the board to share
+     * @throws IllegalStateException if a mark is set on the board
+     */
+    public ConcurrentGameBoard(GameBoard board) {
+        this.board = board;
+        this.regions = (board.getSize() + REGION_SIZE - 1) >> REGION_SHIFT;
+        this.locks = new ReentrantLock[this.regions * this.regions];
+        for (int i = 0; i < this.locks.length; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        board.share();
+        board.setDice(new PerThreadDice());
+    }
+
+    /**
+     * Getter for the shared board, for reading settings such as its size
+     * and metric. Its pieces must only be read or changed through this
+     * ConcurrentGameBoard while other threads are using it.
+     * @return the shared GameBoard
+     */
+    public GameBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Places a piece on an empty grid space.
+     * @param piece the piece to place
+     * @param location the grid space to place it on
+     * @return true if the piece was placed, false if the grid space was taken
+     */
+    public boolean place(Piece piece, Coords location) {
+        int x = location.getX();
+        int y = location.getY();
+        lockArea(x, y, x, y);
+        try {
+            if (this.board.getPiece(x, y) != null) {
+                return false;
+            }
+            this.board.place(piece, location);
+            return true;
+        } finally {
+            unlockArea(x, y, x, y);
+        }
+    }
+
+    /**
+     * Moves the Attacker at one location to another, atomically, by the
+     * rules of GameBoard.move(). With pathfinding on, every grid space the
+     * mover could walk through is locked, which is every grid space within
+     * its speed of the start.
+     * @param start the location of the Attacker to move
+     * @param end the location to move it to
+     * @return true if the move was made, false if it was rejected
+     */
+    public boolean move(Coords start, Coords end) {
+        boolean pathfinding = this.board.isPathfinding();
+        // a guess at the mover's reach, made without a lock and checked once the area is locked
+        int reach = pathfinding ? reachOf(this.board.getPiece(start.getX(), start.getY())) : 0;
+        while (true) {
+            int x0 = Math.min(start.getX(), end.getX()) - reach;
+            int y0 = Math.min(start.getY(), end.getY()) - reach;
+            int x1 = Math.max(start.getX(), end.getX()) + reach;
+            int y1 = Math.max(start.getY(), end.getY()) + reach;
+            lockArea(x0, y0, x1, y1);
+            try {
+                int needed = pathfinding ? reachOf(this.board.getPiece(start.getX(), start.getY())) : 0;
+                if (needed <= reach) {
+                    return this.board.move(start, end);
+                }
+                // another piece moved onto start in the meantime, and it is faster
+                reach = needed;
+            } finally {
+                unlockArea(x0, y0, x1, y1);
+            }
+        }
+    }
+
+    /**
+     * Makes an attack from one location on another, atomically, if it is
+     * valid by the rules of GameBoard.validateAttack(); a killed target is
+     * removed and its xp given to the attacker as part of the same action.
+     * @param source the location of the attacking Attacker
+     * @param target the location of the target of the attack
+     * @return true if the attack was made, false if it was rejected
+     */
+    public boolean attack(Coords source, Coords target) {
+        int x0 = Math.min(source.getX(), target.getX());
+        int y0 = Math.min(source.getY(), target.getY());
+        int x1 = Math.max(source.getX(), target.getX());
+        int y1 = Math.max(source.getY(), target.getY());
+        lockArea(x0, y0, x1, y1);
+        try {
+            if (!this.board.validateAttack(source, target)) {
+                return false;
+            }
+            this.board.observeAttack(source, target);
+            return true;
+        } finally {
+            unlockArea(x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Getter for the Piece at a given location on the board.
+     * @param x an x-coordinate on the board
+     * @param y a y-coordinate on the board
+     * @return the Piece at (x, y), or null if that location is empty
+     */
+    public Piece getPiece(int x, int y) {
+        lockArea(x, y, x, y);
+        try {
+            return this.board.getPiece(x, y);
+        } finally {
+            unlockArea(x, y, x, y);
+        }
+    }
+
+    /**
+     * Counts the pieces within a distance of a location, other than a piece
+     * standing at that location itself, as they stand at one moment.
+     * @param center the location to measure from
+     * @param feet the distance (in feet)
+     * @return the number of pieces within that distance
+     */
+    public int countInRange(Coords center, int feet) {
+        int r = feet / GameBoard.FEET_PER_TILE;
+        int x0 = center.getX() - r;
+        int y0 = center.getY() - r;
+        int x1 = center.getX() + r;
+        int y1 = center.getY() + r;
+        lockArea(x0, y0, x1, y1);
+        try {
+            return this.board.countInRange(center, feet);
+        } finally {
+            unlockArea(x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Finds how many grid spaces from its start a piece could walk in one
+     * move, the most any grid space it passes through can be from the start.
+     * @param piece the piece at the start of a move, or null
+     * @return its speed in grid spaces, or 0 if it is not an Attacker
+     */
+    private static int reachOf(Piece piece) {
+        return piece instanceof Attacker ? ((Attacker) piece).getSpeed() / GameBoard.FEET_PER_TILE : 0;
+    }
+
+    /**
+     * Locks every region overlapping a rectangle of grid spaces, in
+     * ascending row-major order. Parts of the rectangle off the board are
+     * ignored.
+     * @param x0 the x-coordinate of the left edge of the rectangle
+     * @param y0 the y-coordinate of the top edge of the rectangle
+     * @param x1 the x-coordinate of the right edge of the rectangle (inclusive)
+     * @param y1 the y-coordinate of the bottom edge of the rectangle (inclusive)
+     */
+    private void lockArea(int x0, int y0, int x1, int y1) {
+        int last = this.regions - 1;
+        int rx0 = Math.max(0, x0 >> REGION_SHIFT);
+        int rx1 = Math.min(last, x1 >> REGION_SHIFT);
+        int ry1 = Math.min(last, y1 >> REGION_SHIFT);
+        for (int ry = Math.max(0, y0 >> REGION_SHIFT); ry <= ry1; ry++) {
+            for (int rx = rx0; rx <= rx1; rx++) {
+                this.locks[ry * this.regions + rx].lock();
+            }
+        }
+    }
+
+    /**
+     * Unlocks the regions locked by lockArea() with the same rectangle.
+     * @param x0 the x-coordinate of the left edge of the rectangle
+     * @param y0 the y-coordinate of the top edge of the rectangle
+     * @param x1 the x-coordinate of the right edge of the rectangle (inclusive)
+     * @param y1 the y-coordinate of the bottom edge of the rectangle (inclusive)
+     */
+    private void unlockArea(int x0, int y0, int x1, int y1) {
+        int last = this.regions - 1;
+        int rx0 = Math.max(0, x0 >> REGION_SHIFT);
+        int rx1 = Math.min(last, x1 >> REGION_SHIFT);
+        int ry1 = Math.min(last, y1 >> REGION_SHIFT);
+        for (int ry = Math.max(0, y0 >> REGION_SHIFT); ry <= ry1; ry++) {
+            for (int rx = rx0; rx <= rx1; rx++) {
+                this.locks[ry * this.regions + rx].unlock();
+            }
+        }
+    }
+
+    /**
+     * The Dice of a shared board: each roll comes from the Dice of the
+     * thread making it, so threads never share generator state.
+     */
+    private static class PerThreadDice implements Dice {
+        @Override
+        public int roll(int sides) {
+            return SplitMixDice.current().roll(sides);
+        }
+
+        @Override
+        public Dice split() {
+            return SplitMixDice.current().split();
+        }
+
+        @Override
+        public Dice copy() {
+            return SplitMixDice.current().copy();
+        }
+    }
+
+    /**
+     * Has threads move pieces at random and attack whatever they bump into
+     * on one shared board for a few seconds, first with one thread and then
+     * with several, and reports the actions per second of each. After each
+     * run the board is checked: every piece stands where it thinks it is
+     * and on one grid space only, the occupancy bitsets, SpatialIndex and
+     * hash agree with the grid, and the pieces left are those placed less
+     * those killed.
+     * @param args command line arguments: [threads] [seconds] [board size]
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+        for (int n : new int[] {1, Math.max(2, threads)}) {
+            GameBoard board = new GameBoard(size);
+            board.setPathfinding(true);
+            AtomicLong kills = new AtomicLong();
+            board.setListener(new CombatListener() {
+                @Override
+                public void pieceKilled(Attacker killer, Attacker victim) {
+                    kills.incrementAndGet();
+                }
+            });
+            ConcurrentGameBoard shared = new ConcurrentGameBoard(board);
+            SplitMixDice dice = new SplitMixDice(42);
+            Attacker[] pieces = new Attacker[size * size / 32];
+            for (int i = 0; i < pieces.length; i++) {
+                pieces[i] = (i & 1) == 0 ? new Player("P", board, Weapon.shortsword) : new Enemy("E", board, Weapon.shortsword);
+                while (!shared.place(pieces[i], new Coords(dice.roll(size) - 1, dice.roll(size) - 1))) {
+                    // try another grid space
+                }
+            }
+            long[] actions = new long[n];
+            long end = System.nanoTime() + seconds * 1000000000L;
+            CountDownLatch done = new CountDownLatch(n);
+            for (int t = 0; t < n; t++) {
+                int worker = t;
+                new Thread(() -> {
+                    SplitMixDice mine = SplitMixDice.current();
+                    long count = 0;
+                    for (long i = 0; (i & 255) != 0 || System.nanoTime() < end; i++) {
+                        Attacker piece = pieces[mine.roll(pieces.length) - 1];
+                        Coords from = piece.getLocation();
+                        int x = Math.max(0, Math.min(size - 1, from.getX() + mine.roll(5) - 3));
+                        int y = Math.max(0, Math.min(size - 1, from.getY() + mine.roll(5) - 3));
+                        if (piece.getHP() <= 0 || (x == from.getX() && y == from.getY())) {
+                            continue;
+                        }
+                        Coords to = board.at(x, y);
+                        if (!shared.move(from, to)) {
+                            shared.attack(from, to);
+                        }
+                        count++;
+                    }
+                    actions[worker] = count;
+                    done.countDown();
+                }, "ConcurrentGameBoard-" + t).start();
+            }
+            done.await();
+            long total = 0;
+            for (long count : actions) {
+                total += count;
+            }
+            System.out.printf("%d thread(s): %,d actions/s on a %dx%d board, %d kills; %s%n",
+                    n, total / seconds, size, size, kills.get(), check(board, pieces.length - kills.get()));
+        }
+    }
+
+    /**
+     * Checks that a board is in a consistent state once no thread is using it.
+     * @param board the board to check
+     * @param expected the number of pieces that should be on it
+     * @return "consistent", or a description of the first problem found
+     */
+    private static String check(GameBoard board, long expected) {
+        GameBoard copy = board.fork();
+        OccupancyBits occupancy = board.getOccupancy();
+        Set<Piece> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int y = 0; y < board.getSize(); y++) {
+            for (int x = 0; x < board.getSize(); x++) {
+                Piece piece = board.getPiece(x, y);
+                if (occupancy.get(OccupancyBits.Layer.ALL, x, y) != (piece != null)) {
+                    return "occupancy differs at (" + x + ", " + y + ")";
+                }
+                if (piece == null) {
+                    continue;
+                }
+                if (!seen.add(piece)) {
+                    return piece.getName() + " is on two grid spaces";
+                }
+                if (piece.getLocation().getX() != x || piece.getLocation().getY() != y) {
+                    return piece.getName() + " at (" + x + ", " + y + ") thinks it is elsewhere";
+                }
+            }
+        }
+        if (seen.size() != expected) {
+            return seen.size() + " pieces on the grid, " + expected + " expected";
+        }
+        int indexed = board.countInRange(new Coords(0, 0), board.getSize() * 2 * GameBoard.FEET_PER_TILE)
+                + (board.getPiece(0, 0) != null ? 1 : 0);
+        if (indexed != seen.size()) {
+            return indexed + " pieces in the SpatialIndex, " + seen.size() + " on the grid";
+        }
+        if (copy.getHash() != board.getHash()) {
+            return "hash differs from a rebuilt board";
+        }
+        return "consistent";
+    }
+}
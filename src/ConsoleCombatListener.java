@@ -0,0 +1,194 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A CombatListener for the PTUI that prints a message for each rejected
+ * action, hit, miss and kill. Events are copied into a fixed-size ring
+ * buffer on the simulation thread and turned into text and printed by a
+ * separate daemon thread, so the simulation never waits on formatting or
+ * on the console. If the buffer fills up, new events are dropped (and
+ * counted) rather than making the simulation wait.
+ *
+ * Events must only be published by one thread at a time.
+ *
+ * @author Mark Danza
+ */
+public class ConsoleCombatListener implements CombatListener {
+    /** the default number of events the buffer can hold; must be a power of two */
+    private static final int DEFAULT_CAPACITY = 1024;
+    /** how long the printing thread sleeps when there is nothing to print */
+    private static final long IDLE_NANOS = 1000000;
+
+    // kinds of buffered events
+    private static final int MOVE_REJECTED = 0;
+    private static final int ATTACK_REJECTED = 1;
+    private static final int HIT = 2;
+    private static final int MISS = 3;
+    private static final int KILL = 4;
+
+    /** where messages are printed */
+    private final PrintStream out;
+    /** the kind of each buffered event */
+    private final int[] kinds;
+    /** the number for each buffered event (damage dealt), if any */
+    private final int[] amounts;
+    /** the object for each buffered event (a Rejection or the killed Attacker), if any */
+    private final Object[] subjects;
+    /** capacity - 1, used to turn a sequence number into a buffer index */
+    private final int mask;
+    /** the sequence number of the next event to be published */
+    private final AtomicLong head = new AtomicLong();
+    /** the sequence number of the next event to be printed */
+    private final AtomicLong tail = new AtomicLong();
+    /** the number of events dropped because the buffer was full */
+    private final AtomicLong dropped = new AtomicLong();
+    /** the thread that formats and prints events */
+    private final Thread printer;
+    /** set when this listener is closed */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new ConsoleCombatListener that prints to standard output.
+     */
+    public ConsoleCombatListener() {
+        this(System.out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new ConsoleCombatListener.
+     * @param out where messages are printed
+     * @param capacity the number of events the buffer can hold; rounded up to
+     * a power of two
+     */
+    public ConsoleCombatListener(PrintStream out, int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.out = out;
+        this.kinds = new int[size];
+        this.amounts = new int[size];
+        this.subjects = new Object[size];
+        this.mask = size - 1;
+        this.printer = new Thread(this::printLoop, "combat-console");
+        this.printer.setDaemon(true);
+        this.printer.start();
+    }
+
+    @Override
+    public void moveRejected(Coords start, Coords end, Rejection reason) {
+        publish(MOVE_REJECTED, 0, reason);
+    }
+
+    @Override
+    public void attackRejected(Coords source, Coords target, Rejection reason) {
+        publish(ATTACK_REJECTED, 0, reason);
+    }
+
+    @Override
+    public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+        publish(HIT, dmg, null);
+    }
+
+    @Override
+    public void attackMissed(Attacker attacker, Attacker target, int roll) {
+        publish(MISS, 0, null);
+    }
+
+    @Override
+    public void pieceKilled(Attacker killer, Attacker victim) {
+        publish(KILL, 0, victim);
+    }
+
+    /**
+     * Waits until every event published so far has been printed. The PTUI
+     * calls this before printing anything itself so messages stay in order.
+     */
+    public void flush() {
+        long target = head.get();
+        while (tail.get() < target && printer.isAlive()) {
+            LockSupport.unpark(printer);
+            Thread.yield();
+        }
+        out.flush();
+    }
+
+    /**
+     * Prints anything still buffered, then stops the printing thread.
+     */
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(printer);
+    }
+
+    /**
+     * Getter for the number of events that were dropped.
+     * @return the number of events dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Copies an event into the buffer, or drops it if the buffer is full.
+     * @param kind the kind of event
+     * @param amount the number for the event, if any
+     * @param subject the object for the event, if any
+     */
+    private void publish(int kind, int amount, Object subject) {
+        long seq = head.get();
+        if (seq - tail.get() > mask) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int i = (int) seq & mask;
+        kinds[i] = kind;
+        amounts[i] = amount;
+        subjects[i] = subject;
+        head.lazySet(seq + 1); // makes the slot visible to the printer
+    }
+
+    /**
+     * The body of the printing thread: print events as they arrive, sleeping
+     * briefly whenever the buffer is empty.
+     */
+    private void printLoop() {
+        long reported = 0; // the number of dropped events already reported
+        while (!closed) {
+            long seq = tail.get();
+            if (seq == head.get()) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            int i = (int) seq & mask;
+            out.println(describe(kinds[i], amounts[i], subjects[i]));
+            subjects[i] = null;
+            tail.lazySet(seq + 1);
+            long lost = dropped.get() - reported;
+            if (lost > 0) {
+                out.println("(" + lost + " messages dropped)");
+                reported += lost;
+            }
+        }
+    }
+
+    /**
+     * Builds the message for a buffered event.
+     * @param kind the kind of event
+     * @param amount the number for the event
+     * @param subject the object for the event
+     * @return the message to print
+     */
+    private static String describe(int kind, int amount, Object subject) {
+        switch (kind) {
+            case MOVE_REJECTED:
+            case ATTACK_REJECTED:
+                return ((Rejection) subject).getMessage();
+            case HIT:
+                return "Attack hit and dealt " + amount + " damage.";
+            case MISS:
+                return "Attack missed.";
+            default:
+                return ((Attacker) subject).getName() + " was killed.";
+        }
+    }
+}
@@ -1,13 +1,18 @@
 /**
- * Wrapper class for the location data of a Piece on the GameBoard.
+ * Wrapper class for the location data of a Piece on the GameBoard. A Coords
+ * never changes once made and two Coords with the same coordinates are
+ * equal, so they can be shared freely and used as map keys. GameBoard.at()
+ * hands out one shared Coords per grid space, so code that moves pieces
+ * around need not make new ones; a location can also be packed into a
+ * single long with pack().
  *
  * @author Mark Danza
  */
 public class Coords {
     /** an x-coordinate on the GameBoard */
-    private int x;
+    private final int x;
     /** a y-coordinate on the GameBoard */
-    private int y;
+    private final int y;
 
     /**
      * Creates a new Coords object representing a set of coordinates
@@ -50,4 +55,77 @@ public class Coords {
     public int getY() {
         return y;
     }
+
+    /**
+     * Packs this location into a single long.
+     * @return pack(getX(), getY())
+     */
+    public long pack() {
+        return pack(this.x, this.y);
+    }
+
+    /**
+     * Packs a location into a single long, the y-coordinate in the high 32
+     * bits and the x-coordinate in the low 32 bits, for storing locations in
+     * primitive arrays or as primitive keys without making any objects.
+     * @param x an x-coordinate
+     * @param y a y-coordinate
+     * @return the packed location
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+
+    /**
+     * Unpacks the x-coordinate of a packed location.
+     * @param packed a location made by pack()
+     * @return its x-coordinate
+     */
+    public static int packedX(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Unpacks the y-coordinate of a packed location.
+     * @param packed a location made by pack()
+     * @return its y-coordinate
+     */
+    public static int packedY(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Checks whether another object is a Coords for the same location.
+     * @param other the object to compare to
+     * @return true if other is a Coords with the same x- and y-coordinates
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Coords)) {
+            return false;
+        }
+        Coords that = (Coords) other;
+        return this.x == that.x && this.y == that.y;
+    }
+
+    /**
+     * Computes a hash code from the coordinates, consistent with equals().
+     * @return the hash code of this location
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.x + this.y;
+    }
+
+    /**
+     * Builds a String representation of this location.
+     * @return the location as (x, y)
+     */
+    @Override
+    public String toString() {
+        return "(" + this.x + ", " + this.y + ")";
+    }
 }
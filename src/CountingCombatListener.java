@@ -0,0 +1,139 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A CombatListener that only counts events and totals damage and xp. It
+ * never builds any text, and its counters may be shared by any number of
+ * boards being simulated on different threads.
+ *
+ * @author Mark Danza
+ */
+public class CountingCombatListener implements CombatListener {
+    /** the number of successful moves */
+    private final LongAdder moves = new LongAdder();
+    /** the number of rejected moves */
+    private final LongAdder movesRejected = new LongAdder();
+    /** the number of rejected attacks */
+    private final LongAdder attacksRejected = new LongAdder();
+    /** the number of attacks that hit */
+    private final LongAdder hits = new LongAdder();
+    /** the number of attacks that missed */
+    private final LongAdder misses = new LongAdder();
+    /** the total damage dealt by attacks that hit */
+    private final LongAdder damage = new LongAdder();
+    /** the number of Attackers killed */
+    private final LongAdder kills = new LongAdder();
+    /** the total xp transferred from killed Attackers */
+    private final LongAdder xp = new LongAdder();
+
+    @Override
+    public void pieceMoved(Attacker mover, Coords start, Coords end) {
+        moves.increment();
+    }
+
+    @Override
+    public void moveRejected(Coords start, Coords end, Rejection reason) {
+        movesRejected.increment();
+    }
+
+    @Override
+    public void attackRejected(Coords source, Coords target, Rejection reason) {
+        attacksRejected.increment();
+    }
+
+    @Override
+    public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+        hits.increment();
+        damage.add(dmg);
+    }
+
+    @Override
+    public void attackMissed(Attacker attacker, Attacker target, int roll) {
+        misses.increment();
+    }
+
+    @Override
+    public void pieceKilled(Attacker killer, Attacker victim) {
+        kills.increment();
+    }
+
+    @Override
+    public void xpTransferred(Attacker from, Attacker to, int xp) {
+        this.xp.add(xp);
+    }
+
+    /**
+     * Getter for the number of successful moves.
+     * @return the number of moves counted
+     */
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * Getter for the number of rejected moves.
+     * @return the number of rejected moves counted
+     */
+    public long getMovesRejected() {
+        return movesRejected.sum();
+    }
+
+    /**
+     * Getter for the number of rejected attacks.
+     * @return the number of rejected attacks counted
+     */
+    public long getAttacksRejected() {
+        return attacksRejected.sum();
+    }
+
+    /**
+     * Getter for the number of attacks that hit.
+     * @return the number of hits counted
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of attacks that missed.
+     * @return the number of misses counted
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter for the total damage dealt.
+     * @return the sum of the damage of every hit counted
+     */
+    public long getDamage() {
+        return damage.sum();
+    }
+
+    /**
+     * Getter for the number of kills.
+     * @return the number of Attackers killed
+     */
+    public long getKills() {
+        return kills.sum();
+    }
+
+    /**
+     * Getter for the total xp transferred.
+     * @return the sum of the xp transferred on every kill counted
+     */
+    public long getXP() {
+        return xp.sum();
+    }
+
+    /**
+     * Builds a one-line summary of the counts.
+     * @return a String listing every count
+     */
+    @Override
+    public String toString() {
+        return "moves=" + getMoves() + " movesRejected=" + getMovesRejected()
+                + " attacksRejected=" + getAttacksRejected() + " hits=" + getHits()
+                + " misses=" + getMisses() + " damage=" + getDamage()
+                + " kills=" + getKills() + " xp=" + getXP();
+    }
+}
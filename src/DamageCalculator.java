@@ -0,0 +1,253 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers questions about attacks exactly, without rolling any dice. An
+ * attack hits when a d20 plus the attacker's modifier is at least the
+ * target's AC, and a hit deals one roll of the weapon's damage die, so the
+ * damage of a round and the number of rounds needed to kill a target follow
+ * directly from the modifier, the AC, the die and the target's HP. These are
+ * the same rules Attacker.attack() plays by, so the results can be used to
+ * check the simulation as well as to replace it.
+ *
+ * Kill distributions are remembered once computed and shared between
+ * threads.
+ *
+ * Usage: java DamageCalculator [modifier ac die hp] [samples]
+ *   prints the kill distribution for one matchup next to the same
+ *   distribution estimated by making that many real attacks
+ *
+ * @author Mark Danza
+ */
+public class DamageCalculator {
+    /** kill chances closer to 1 than this are treated as certain */
+    public static final double TAIL = 1e-12;
+    /** the most rounds a kill distribution is tracked for */
+    public static final int MAX_ROUNDS = 100000;
+    /** the number of attacks made by main() to check the results */
+    private static final int DEFAULT_SAMPLES = 1000000;
+
+    /** kill distributions already computed, keyed by modifier, AC, die and HP */
+    private static final ConcurrentHashMap<Long, KillDistribution> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * There is nothing to create; every method is static.
+     */
+    private DamageCalculator() {
+    }
+
+    /**
+     * Calculates the chance that an attack hits.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's armor class
+     * @return the chance that a d20 plus modifier is at least ac
+     */
+    public static double hitChance(int modifier, int ac) {
+        int needed = ac - modifier; // the lowest d20 roll that hits
+        int hits = needed <= 1 ? Attacker.D20 : needed > Attacker.D20 ? 0 : Attacker.D20 + 1 - needed;
+        return (double) hits / Attacker.D20;
+    }
+
+    /**
+     * Calculates the distribution of the damage dealt by one attack.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's armor class
+     * @param die the number of sides on the weapon's damage die
+     * @return pmf[d] is the chance the attack deals exactly d damage
+     */
+    public static double[] damagePerRound(int modifier, int ac, int die) {
+        double p = hitChance(modifier, ac);
+        double[] pmf = new double[die + 1];
+        pmf[0] = 1 - p;
+        for (int d = 1; d <= die; d++) {
+            pmf[d] = p / die;
+        }
+        return pmf;
+    }
+
+    /**
+     * Calculates the distribution of the total damage dealt by one attack a
+     * round over several rounds.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's armor class
+     * @param die the number of sides on the weapon's damage die
+     * @param rounds the number of rounds
+     * @return pmf[d] is the chance exactly d damage is dealt in total
+     */
+    public static double[] damageAfterRounds(int modifier, int ac, int die, int rounds) {
+        double p = hitChance(modifier, ac);
+        double[] pmf = {1};
+        for (int r = 0; r < rounds; r++) {
+            pmf = addAttack(pmf, pmf.length + die, 1 - p, p / die, die);
+        }
+        return pmf;
+    }
+
+    /**
+     * Getter for the distribution of how many rounds an attacker takes to
+     * kill a target, computing it the first time it is asked for.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's armor class
+     * @param die the number of sides on the weapon's damage die
+     * @param hp the target's HP
+     * @return the shared KillDistribution for that matchup
+     * @throws IllegalArgumentException if die or hp is less than 1
+     */
+    public static KillDistribution roundsToKill(int modifier, int ac, int die, int hp) {
+        checkMatchup(die, hp);
+        if ((short) modifier != modifier || (short) ac != ac || (char) die != die || (char) hp != hp) {
+            return computeRoundsToKill(modifier, ac, die, hp); // too large to share a key
+        }
+        long key = ((long) (modifier & 0xFFFF) << 48) | ((long) (ac & 0xFFFF) << 32) | ((long) die << 16) | hp;
+        KillDistribution result = CACHE.get(key);
+        if (result == null) {
+            result = CACHE.computeIfAbsent(key, k -> computeRoundsToKill(modifier, ac, die, hp));
+        }
+        return result;
+    }
+
+    /**
+     * Getter for the distribution of how many rounds one Attacker takes to
+     * kill another from full HP.
+     * @param attacker the Attacker making one attack a round
+     * @param target the Attacker being attacked
+     * @return the shared KillDistribution for that matchup
+     */
+    public static KillDistribution roundsToKill(Attacker attacker, Attacker target) {
+        return roundsToKill(attacker.getModifier(), target.getAC(), attacker.getWeapon().getDmgDie(), target.getMaxHP());
+    }
+
+    /**
+     * Checks that a matchup has a damage die and a target to kill.
+     * @param die the number of sides on the weapon's damage die
+     * @param hp the target's HP
+     * @throws IllegalArgumentException if die or hp is less than 1
+     */
+    private static void checkMatchup(int die, int hp) {
+        if (die < 1 || hp < 1) {
+            throw new IllegalArgumentException("need die >= 1 and hp >= 1, not d" + die + " against " + hp + " hp");
+        }
+    }
+
+    /**
+     * Computes the distribution of how many rounds an attacker takes to kill
+     * a target, without consulting or filling the shared cache. Rounds are
+     * tracked until the target is all but certain to be dead, or MAX_ROUNDS.
+     * @param modifier the attacker's attack modifier
+     * @param ac the target's armor class
+     * @param die the number of sides on the weapon's damage die
+     * @param hp the target's HP; at least 1
+     * @return a new KillDistribution for that matchup
+     * @throws IllegalArgumentException if die or hp is less than 1
+     */
+    public static KillDistribution computeRoundsToKill(int modifier, int ac, int die, int hp) {
+        checkMatchup(die, hp);
+        double p = hitChance(modifier, ac);
+        double miss = 1 - p;
+        double each = p / die;
+        // alive[d] is the chance the target is still alive having taken d damage
+        double[] alive = new double[hp];
+        double[] next = new double[hp];
+        alive[0] = 1;
+        double[] cdf = new double[Math.min(MAX_ROUNDS, 64) + 1];
+        double killed = 0;
+        int rounds = 0;
+        while (p > 0 && killed < 1 - TAIL && rounds < MAX_ROUNDS) {
+            // hits of at least hp - d damage kill a target that has taken d
+            for (int d = Math.max(0, hp - die); d < hp; d++) {
+                killed += alive[d] * each * (d + die - hp + 1);
+            }
+            // the rest of the hits move the target further along, as a sliding window over the die
+            double window = 0;
+            for (int d = 0; d < hp; d++) {
+                next[d] = miss * alive[d] + each * window;
+                window += alive[d];
+                if (d >= die) {
+                    window -= alive[d - die];
+                }
+            }
+            double[] swap = alive;
+            alive = next;
+            next = swap;
+            if (++rounds == cdf.length) {
+                cdf = Arrays.copyOf(cdf, Math.min(MAX_ROUNDS + 1, cdf.length * 2));
+            }
+            cdf[rounds] = Math.min(1, killed);
+        }
+        return new KillDistribution(Arrays.copyOf(cdf, rounds + 1));
+    }
+
+    /**
+     * Adds the damage of one more attack to a damage distribution.
+     * @param pmf the distribution so far
+     * @param length the length of the new distribution
+     * @param miss the chance the attack misses
+     * @param each the chance the attack hits for any one damage value
+     * @param die the number of sides on the damage die
+     * @return the new distribution
+     */
+    private static double[] addAttack(double[] pmf, int length, double miss, double each, int die) {
+        double[] result = new double[length];
+        double window = 0; // the sum of pmf[d - die .. d - 1]
+        for (int d = 0; d < length; d++) {
+            result[d] = (d < pmf.length ? miss * pmf[d] : 0) + each * window;
+            if (d < pmf.length) {
+                window += pmf[d];
+            }
+            if (d >= die && d - die < pmf.length) {
+                window -= pmf[d - die];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prints the exact kill distribution for one matchup next to one
+     * estimated by letting a real Attacker make attacks on a GameBoard.
+     * @param args command line arguments: see the class description
+     */
+    public static void main(String[] args) {
+        int modifier = args.length >= 4 ? Integer.parseInt(args[0]) : AttackerStats.DEFAULT.getModifier();
+        int ac = args.length >= 4 ? Integer.parseInt(args[1]) : AttackerStats.DEFAULT.getAC();
+        int die = args.length >= 4 ? Integer.parseInt(args[2]) : Weapon.shortsword.getDmgDie();
+        int hp = args.length >= 4 ? Integer.parseInt(args[3]) : AttackerStats.DEFAULT.getMaxHP();
+        int samples = args.length == 1 ? Integer.parseInt(args[0])
+                : args.length >= 5 ? Integer.parseInt(args[4]) : DEFAULT_SAMPLES;
+
+        long start = System.nanoTime();
+        KillDistribution exact = computeRoundsToKill(modifier, ac, die, hp);
+        long exactNanos = System.nanoTime() - start;
+
+        // the same matchup played out by a real attacker
+        GameBoard board = new GameBoard(2);
+        Player attacker = new Player("Attacker", board, new Weapon("Weapon", die, GameBoard.FEET_PER_TILE),
+                new AttackerStats(modifier, 10, 10, 30));
+        Enemy target = new Enemy("Target", board, Weapon.shortsword, new AttackerStats(0, ac, hp, 30));
+        board.place(attacker, new Coords(0, 0));
+        board.place(target, new Coords(1, 0));
+        long[] counts = new long[exact.getMaxRounds() + 2];
+        long totalRounds = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            target.setHP(hp);
+            int rounds = 0;
+            while (target.getHP() > 0 && rounds <= exact.getMaxRounds()) {
+                attacker.attack(target);
+                rounds++;
+            }
+            counts[rounds]++;
+            totalRounds += rounds;
+        }
+        long sampledNanos = System.nanoTime() - start;
+
+        System.out.printf("modifier %d vs AC %d, d%d damage, %d HP: hit chance %.2f%n",
+                modifier, ac, die, hp, hitChance(modifier, ac));
+        System.out.println("round   exact P   sampled P   exact CDF");
+        for (int r = 1; r <= exact.getMaxRounds() && exact.getKillChance(r - 1) < 0.9999; r++) {
+            System.out.printf("%5d  %8.5f  %10.5f  %10.5f%n",
+                    r, exact.getProbability(r), (double) counts[r] / samples, exact.getKillChance(r));
+        }
+        System.out.printf("mean rounds: exact %.4f, sampled %.4f%n", exact.getMeanRounds(), (double) totalRounds / samples);
+        System.out.printf("exact in %.1f us, %d samples in %.1f ms%n", exactNanos / 1e3, samples, sampledNanos / 1e6);
+    }
+}
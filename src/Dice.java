@@ -0,0 +1,32 @@
+/**
+ * A source of random dice rolls. The GameBoard owns the Dice that every
+ * roll made on it comes from, so that a whole encounter can be reproduced
+ * by giving its board Dice with a fixed seed. Dice that can also return to
+ * an earlier roll, as a board's mark() and rollback() need, implement
+ * RewindableDice.
+ *
+ * @author Mark Danza
+ */
+public interface Dice {
+    /**
+     * Rolls a single die.
+     * @param sides the number of sides on the die (e.g. 20 for a d20)
+     * @return a random number between 1 and sides (inclusive)
+     */
+    int roll(int sides);
+
+    /**
+     * Creates a new, independent Dice whose rolls are determined by the
+     * current state of this one. Splitting gives each thread of a parallel
+     * run its own Dice without any of them sharing state.
+     * @return a new Dice with its own stream of rolls
+     */
+    Dice split();
+
+    /**
+     * Creates a new Dice in exactly the same state as this one, so that both
+     * produce the same rolls from here on.
+     * @return a copy of this Dice
+     */
+    Dice copy();
+}
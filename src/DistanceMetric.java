@@ -0,0 +1,226 @@
+/**
+ * The ways the distance between two grid spaces can be measured. Every
+ * metric works on whole grid spaces using integer arithmetic only; range
+ * checks compare squared or summed integers rather than taking square roots.
+ *
+ * Whatever the metric, the distance between two grid spaces is never less
+ * than the larger of the horizontal and vertical distances between them,
+ * which is what lets SpatialIndex and RangeMask bound their searches.
+ *
+ * @author Mark Danza
+ */
+public enum DistanceMetric {
+    /**
+     * The distance formula, truncated to a whole number of grid spaces. This
+     * is the metric the GameBoard has always used, and gives exactly the same
+     * results as the old floating point calculation. Distances for offsets
+     * that fit on a 128x128 board are looked up in a precomputed table.
+     */
+    EUCLIDEAN {
+        @Override
+        public int tiles(int dx, int dy) {
+            int ax = Math.abs(dx);
+            int ay = Math.abs(dy);
+            if ((ax | ay) < TABLE_SIZE) {
+                return EUCLIDEAN_TABLE[(ax << TABLE_SHIFT) | ay] & 0xFF;
+            }
+            return isqrt(ax * ax + ay * ay);
+        }
+
+        @Override
+        public boolean withinTiles(int dx, int dy, int tiles) {
+            // floor(sqrt(d)) <= t exactly when d < (t + 1)^2; squared as longs, so long ranges cannot overflow
+            long limit = tiles + 1L;
+            return tiles >= 0 && (long) dx * dx + (long) dy * dy < limit * limit;
+        }
+    },
+    /**
+     * The D&D 5e default: every diagonal step counts as one grid space (5 ft).
+     */
+    CHEBYSHEV {
+        @Override
+        public int tiles(int dx, int dy) {
+            return Math.max(Math.abs(dx), Math.abs(dy));
+        }
+    },
+    /**
+     * The D&D 5e variant rule: diagonal steps alternate between costing one
+     * grid space (5 ft) and two grid spaces (10 ft).
+     */
+    ALTERNATING {
+        @Override
+        public int tiles(int dx, int dy) {
+            int ax = Math.abs(dx);
+            int ay = Math.abs(dy);
+            return Math.max(ax, ay) + (Math.min(ax, ay) >> 1);
+        }
+    };
+
+    /** log2 of TABLE_SIZE */
+    private static final int TABLE_SHIFT = 7;
+    /** offsets smaller than this in both directions are looked up rather than calculated */
+    private static final int TABLE_SIZE = 1 << TABLE_SHIFT;
+    /** EUCLIDEAN distances for small offsets, indexed by (|dx| << TABLE_SHIFT) | |dy| */
+    private static final byte[] EUCLIDEAN_TABLE = new byte[TABLE_SIZE * TABLE_SIZE];
+    /** the number of mismatches main() has printed */
+    private static int reported;
+
+    static {
+        for (int ax = 0; ax < TABLE_SIZE; ax++) {
+            for (int ay = 0; ay < TABLE_SIZE; ay++) {
+                EUCLIDEAN_TABLE[(ax << TABLE_SHIFT) | ay] = (byte) isqrt(ax * ax + ay * ay);
+            }
+        }
+    }
+
+    /**
+     * Measures the distance covered by an offset between two grid spaces.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @return the distance in whole grid spaces
+     */
+    public abstract int tiles(int dx, int dy);
+
+    /**
+     * Checks whether an offset is within a number of grid spaces.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @param tiles the greatest allowed distance (in grid spaces)
+     * @return true if tiles(dx, dy) <= tiles
+     */
+    public boolean withinTiles(int dx, int dy, int tiles) {
+        return tiles(dx, dy) <= tiles;
+    }
+
+    /**
+     * Checks whether an offset is within a distance in feet, the way moves
+     * and attacks are checked against speed and weapon range.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @param feet the greatest allowed distance (in feet)
+     * @return true if tiles(dx, dy) * GameBoard.FEET_PER_TILE <= feet
+     */
+    public boolean withinFeet(int dx, int dy, int feet) {
+        return feet >= 0 && withinTiles(dx, dy, feet / GameBoard.FEET_PER_TILE);
+    }
+
+    /**
+     * The distance the GameBoard measured before there were metrics, in
+     * floating point, which EUCLIDEAN must match exactly.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @return the distance formula, truncated to a whole number of grid spaces
+     */
+    static int floatingPointTiles(int dx, int dy) {
+        return (int) Math.sqrt(Math.pow(dx, 2) + Math.pow(dy, 2));
+    }
+
+    /**
+     * Checks EUCLIDEAN against the floating point formula it replaced. Every
+     * offset up to a distance in each direction is checked with tiles(), and
+     * with withinFeet() and RangeMask.contains() at every range up to a
+     * number of feet. Random offsets of up to 32767 in each direction are
+     * also checked with tiles() and withinTiles(). Prints the number of
+     * checks and any that disagree, and exits with a non-zero status if any
+     * check disagrees.
+     * @param args command line arguments: [max offset] [max feet] [random offsets] [seed]
+     */
+    public static void main(String[] args) {
+        int maxOffset = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int maxFeet = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        long randomOffsets = args.length > 2 ? Long.parseLong(args[2]) : 10000000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        long checks = 0;
+        long mismatches = 0;
+
+        // every small offset, at every range
+        for (int dy = -maxOffset; dy <= maxOffset; dy++) {
+            for (int dx = -maxOffset; dx <= maxOffset; dx++) {
+                int expected = floatingPointTiles(dx, dy);
+                checks++;
+                if (EUCLIDEAN.tiles(dx, dy) != expected) {
+                    mismatches += mismatch("tiles", dx, dy, expected);
+                }
+                for (int feet = 0; feet <= maxFeet; feet++) {
+                    checks++;
+                    if (EUCLIDEAN.withinFeet(dx, dy, feet) != expected * GameBoard.FEET_PER_TILE <= feet) {
+                        mismatches += mismatch("withinFeet " + feet, dx, dy, expected);
+                    }
+                }
+            }
+        }
+        // every offset in and just around each mask
+        for (int feet = 0; feet <= maxFeet; feet++) {
+            RangeMask mask = RangeMask.forFeet(EUCLIDEAN, feet);
+            int edge = mask.getRadius() + 1;
+            for (int dy = -edge; dy <= edge; dy++) {
+                for (int dx = -edge; dx <= edge; dx++) {
+                    int expected = floatingPointTiles(dx, dy);
+                    checks++;
+                    if (mask.contains(dx, dy) != expected * GameBoard.FEET_PER_TILE <= feet) {
+                        mismatches += mismatch("RangeMask " + feet, dx, dy, expected);
+                    }
+                }
+            }
+        }
+        // random offsets up to the largest whose squared distance fits in an int, right at the edge of range
+        SplitMixDice dice = new SplitMixDice(seed);
+        int limit = Short.MAX_VALUE;
+        for (long i = 0; i < randomOffsets; i++) {
+            int dx = dice.roll(2 * limit + 1) - limit - 1;
+            int dy = dice.roll(2 * limit + 1) - limit - 1;
+            int expected = floatingPointTiles(dx, dy);
+            checks += 3;
+            if (EUCLIDEAN.tiles(dx, dy) != expected || !EUCLIDEAN.withinTiles(dx, dy, expected)
+                    || EUCLIDEAN.withinTiles(dx, dy, expected - 1)) {
+                mismatches += mismatch("withinTiles", dx, dy, expected);
+            }
+        }
+        System.out.printf("%,d checks, %,d mismatches%n", checks, mismatches);
+
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reports a check that disagrees with the floating point formula, if it
+     * is one of the first few found.
+     * @param check the name of the check
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @param expected the distance the floating point formula gives
+     * @return 1, to add to the number of mismatches
+     */
+    private static int mismatch(String check, int dx, int dy, int expected) {
+        if (reported < 10) {
+            System.out.println(check + " disagrees at (" + dx + ", " + dy + "), floating point distance " + expected);
+            reported++;
+        }
+        return 1;
+    }
+
+    /**
+     * Calculates the integer square root of a non-negative number using only
+     * integer operations.
+     * @param n a non-negative number
+     * @return the largest r such that r * r <= n
+     */
+    static int isqrt(int n) {
+        int root = 0;
+        int bit = 1 << 30;
+        while (bit > n) {
+            bit >>= 2;
+        }
+        while (bit != 0) {
+            if (n >= root + bit) {
+                n -= root + bit;
+                root = (root >> 1) + bit;
+            } else {
+                root >>= 1;
+            }
+            bit >>= 2;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.List;
+
+/**
+ * One fight between Players and Enemies on a private GameBoard, played out
+ * without a user. Every round, each living Attacker (in the order they were
+ * given) closes in on the nearest hostile Attacker and attacks it once it is
+ * within range of its weapon. The fight ends when one side has no living
+ * pieces left, or after MAX_ROUNDS rounds.
+ *
+ * @author Mark Danza
+ */
+public class Encounter {
+    /** the number of rounds after which an undecided fight is called a draw */
+    public static final int MAX_ROUNDS = 100;
+
+    /**
+     * The possible results of an Encounter.
+     */
+    public enum Outcome {
+        /** every Enemy was killed */
+        PLAYERS_WIN,
+        /** every Player was killed */
+        ENEMIES_WIN,
+        /** both sides still had living pieces after MAX_ROUNDS rounds */
+        DRAW
+    }
+
+    /** the board this encounter is played on; it belongs to this encounter alone */
+    private GameBoard board;
+    /** every Attacker in this encounter, in turn order */
+    private List<Attacker> combatants;
+    /** the number of rounds played so far */
+    private int rounds;
+    /** the total damage dealt by Players so far */
+    private int playerDamage;
+    /** the total damage dealt by Enemies so far */
+    private int enemyDamage;
+
+    /**
+     * Creates a new Encounter from pieces that have already been placed on
+     * the given board.
+     * @param board the GameBoard the fight takes place on
+     * @param combatants every Attacker on the board, in turn order
+     */
+    public Encounter(GameBoard board, List<Attacker> combatants) {
+        this.board = board;
+        this.combatants = combatants;
+        this.rounds = 0;
+        this.playerDamage = 0;
+        this.enemyDamage = 0;
+    }
+
+    /**
+     * Getter for the board this encounter is played on.
+     * @return the GameBoard of this encounter
+     */
+    public GameBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Getter for the Attackers in this encounter.
+     * @return every Attacker in this encounter, in turn order
+     */
+    public List<Attacker> getCombatants() {
+        return combatants;
+    }
+
+    /**
+     * Getter for the number of rounds played.
+     * @return the number of rounds played so far
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Getter for the damage dealt by the Players.
+     * @return the total damage dealt by Players so far
+     */
+    public int getPlayerDamage() {
+        return playerDamage;
+    }
+
+    /**
+     * Getter for the damage dealt by the Enemies.
+     * @return the total damage dealt by Enemies so far
+     */
+    public int getEnemyDamage() {
+        return enemyDamage;
+    }
+
+    /**
+     * Plays rounds until one side is wiped out or MAX_ROUNDS is reached.
+     * @return the outcome of the fight
+     */
+    public Outcome run() {
+        while (this.rounds < MAX_ROUNDS) {
+            this.rounds++;
+            for (Attacker actor : this.combatants) {
+                if (actor.getHP() > 0) {
+                    takeTurn(actor);
+                }
+            }
+            boolean playersAlive = anyAlive(true);
+            boolean enemiesAlive = anyAlive(false);
+            if (!enemiesAlive) {
+                return SimMetrics.countEncounter(Outcome.PLAYERS_WIN);
+            } else if (!playersAlive) {
+                return SimMetrics.countEncounter(Outcome.ENEMIES_WIN);
+            }
+        }
+        return SimMetrics.countEncounter(Outcome.DRAW);
+    }
+
+    /**
+     * Checks whether either side still has a living piece.
+     * @param players true to check the Players, false to check the Enemies
+     * @return true if at least one piece on that side has hp left
+     */
+    private boolean anyAlive(boolean players) {
+        for (Attacker piece : this.combatants) {
+            if ((piece instanceof Player) == players && piece.getHP() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plays one turn for an Attacker: move toward the nearest hostile piece
+     * if it is out of range, then attack it if it is in range.
+     * @param actor the living Attacker whose turn it is
+     */
+    private void takeTurn(Attacker actor) {
+        Attacker target = nearestHostile(actor);
+        if (target == null) {
+            return;
+        }
+        if (!inRange(actor, actor.getLocation().getX(), actor.getLocation().getY(), target)) {
+            approach(actor, target);
+        }
+        Coords source = actor.getLocation();
+        Coords targetLoc = target.getLocation();
+        if (inRange(actor, source.getX(), source.getY(), target) && this.board.validateAttack(source, targetLoc)) {
+            int hpBefore = target.getHP();
+            this.board.observeAttack(source, targetLoc);
+            int dmg = hpBefore - target.getHP();
+            if (actor instanceof Player) {
+                this.playerDamage += dmg;
+            } else {
+                this.enemyDamage += dmg;
+            }
+        }
+    }
+
+    /**
+     * Finds the closest living Attacker on the opposite side of a given one.
+     * Ties go to the piece that comes first in turn order.
+     * @param actor the Attacker looking for a target
+     * @return the nearest hostile Attacker, or null if there are none left
+     */
+    private Attacker nearestHostile(Attacker actor) {
+        Coords from = actor.getLocation();
+        Attacker nearest = null;
+        int nearestDist = Integer.MAX_VALUE;
+        for (Attacker other : this.combatants) {
+            if (other.getHP() > 0 && (other instanceof Player) != (actor instanceof Player)) {
+                Coords to = other.getLocation();
+                int d = this.board.dist(from.getX(), from.getY(), to.getX(), to.getY());
+                if (d < nearestDist) {
+                    nearest = other;
+                    nearestDist = d;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Checks whether a target is within range of an Attacker's weapon if the
+     * Attacker were standing at (x, y).
+     * @param actor the Attacker making the attack
+     * @param x the x-coordinate the attack would be made from
+     * @param y the y-coordinate the attack would be made from
+     * @param target the target of the attack
+     * @return true if the target would be in range
+     */
+    private boolean inRange(Attacker actor, int x, int y, Attacker target) {
+        Coords to = target.getLocation();
+        return this.board.withinFeet(x, y, to.getX(), to.getY(), actor.getWeapon().getRange());
+    }
+
+    /**
+     * Walks an Attacker one grid space at a time toward a target, stepping
+     * around pieces in the way where it can, until the target is in range or
+     * the Attacker's speed is used up. The whole walk is then made as a single
+     * GameBoard.move().
+     * @param actor the Attacker to move
+     * @param target the Attacker to move toward
+     */
+    private void approach(Attacker actor, Attacker target) {
+        Coords start = actor.getLocation();
+        Coords goal = target.getLocation();
+        int x = start.getX();
+        int y = start.getY();
+        int steps = actor.getSpeed() / GameBoard.FEET_PER_TILE;
+        for (int i = 0; i < steps && !inRange(actor, x, y, target); i++) {
+            int sx = Integer.signum(goal.getX() - x);
+            int sy = Integer.signum(goal.getY() - y);
+            if (canStep(actor, start, x + sx, y + sy)) {
+                x += sx;
+                y += sy;
+            } else if (sx != 0 && sy != 0 && canStep(actor, start, x + sx, y)) {
+                x += sx;
+            } else if (sx != 0 && sy != 0 && canStep(actor, start, x, y + sy)) {
+                y += sy;
+            } else {
+                break;
+            }
+        }
+        if (x != start.getX() || y != start.getY()) {
+            this.board.move(start, this.board.at(x, y));
+        }
+    }
+
+    /**
+     * Checks whether a walking Attacker may step onto a grid space: it must be
+     * on the board, empty, and within the Attacker's speed of where it started.
+     * @param actor the Attacker that is walking
+     * @param start where the Attacker started its turn
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return true if the step is allowed
+     */
+    private boolean canStep(Attacker actor, Coords start, int x, int y) {
+        int size = this.board.getSize();
+        if (x < 0 || y < 0 || x >= size || y >= size || this.board.getPiece(x, y) != null) {
+            return false;
+        }
+        return this.board.withinFeet(start.getX(), start.getY(), x, y, actor.getSpeed());
+    }
+}
@@ -1,6 +1,7 @@
 /**
  * The type of Piece that is controlled by the simulation; Enemies are
- * also Attackers.
+ * also Attackers. A new Enemy plays its turns with
+ * Strategy.NEAREST_TARGET until it is given another Strategy.
  *
  * @author Mark Danza
  */
@@ -13,6 +14,19 @@ public class Enemy extends Attacker {
      */
     public Enemy(String name, GameBoard board, Weapon weapon) {
         super(name, board, weapon);
+        setStrategy(Strategy.NEAREST_TARGET);
+    }
+
+    /**
+     * Creates a new Enemy piece with a set of stats.
+     * @param name the name of this enemy
+     * @param board the GameBoard the simulation is taking place on
+     * @param weapon the Weapon this enemy uses to make attacks
+     * @param stats the modifier, AC, maximum HP and speed of this enemy
+     */
+    public Enemy(String name, GameBoard board, Weapon weapon, AttackerStats stats) {
+        super(name, board, weapon, stats);
+        setStrategy(Strategy.NEAREST_TARGET);
     }
 
     /**
@@ -23,4 +37,15 @@ public class Enemy extends Attacker {
     public char toChar() {
         return 'E';
     }
-}
+
+    /**
+     * Creates a copy of this enemy, with the same stats, HP, XP and Strategy,
+     * belonging to another board.
+     * @param board the GameBoard the copy belongs to
+     * @return a new Enemy in the same state as this one
+     */
+    @Override
+    public Piece copyTo(GameBoard board) {
+        return copyStateTo(new Enemy(getName(), board, getWeapon(), getStats()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A Planner that searches every turn listed by ActionGenerator to a fixed
+ * number of turns ahead. Attackers on the planning side pick the turn with
+ * the best expected score and the other side picks the worst, while every
+ * attack is a chance node: the search follows a miss and each possible
+ * damage roll with its exact probability (damage rolls that kill the target
+ * are all the same position, so they are followed once). Positions reached
+ * more than once are looked up in a TranspositionTable, by board hash and
+ * whose turn it is, instead of being searched again.
+ *
+ * The search deepens one turn at a time until the maximum depth or the time
+ * limit is reached, and the answer from the deepest finished search is used.
+ * The turns available at the top are shared out between the worker threads,
+ * which all share one table, so a position one worker has searched is not
+ * searched again by another.
+ *
+ * @author Mark Danza
+ */
+public class ExpectimaxPlanner extends Planner {
+    /** the default number of turns searched ahead */
+    private static final int DEFAULT_MAX_DEPTH = 3;
+    /** the number of nodes searched between checks of the clock */
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    /** the number of entries in the transposition table */
+    private static final int TABLE_SIZE = 1 << 18;
+
+    /** the most turns searched ahead, counting the turn being planned */
+    private int maxDepth;
+    /** the values of positions already searched, shared by every worker */
+    private final TranspositionTable table;
+
+    /**
+     * Creates a new ExpectimaxPlanner.
+     * @param threads the number of worker threads to search with
+     */
+    public ExpectimaxPlanner(int threads) {
+        super(threads);
+        this.maxDepth = DEFAULT_MAX_DEPTH;
+        this.table = new TranspositionTable(TABLE_SIZE);
+    }
+
+    /**
+     * Getter for the transposition table, for reading its hit and collision
+     * counts.
+     * @return the TranspositionTable shared by every worker
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Getter for the search depth.
+     * @return the most turns searched ahead, counting the turn being planned
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets how many turns ahead to search.
+     * @param maxDepth the most turns searched ahead, counting the turn being
+     * planned; at least 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public PlanResult plan(GameBoard board, List<Attacker> turnOrder) {
+        long start = System.nanoTime();
+        long deadline = deadline(start);
+        int workers = getThreads();
+        this.table.newSearch();
+        List<Worker> pool = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            pool.add(new Worker(board.fork(), turnOrder, deadline));
+        }
+        Worker first = pool.get(0);
+        int turn = nextLiving(first.order, 0);
+        if (turn < 0 || isOver(first.order)) {
+            return new PlanResult(null, evaluate(first.order, true), 0, System.nanoTime() - start);
+        }
+        long[] actions = new long[ActionGenerator.MAX_ACTIONS];
+        int count = first.generator.generate(first.order[turn], actions);
+        int size = board.getSize();
+
+        long bestAction = actions[0];
+        double bestValue = Double.NaN;
+        for (int depth = 1; depth <= this.maxDepth; depth++) {
+            double[] values = new double[count];
+            Arrays.fill(values, Double.NaN); // actions the deadline cut off stay NaN
+            List<Callable<Boolean>> tasks = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                tasks.add(pool.get(w).task(actions, count, w, workers, turn, depth, values));
+            }
+            boolean finished = true;
+            try {
+                for (Future<Boolean> future : getPool().invokeAll(tasks)) {
+                    finished &= future.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("planning failed", e);
+            }
+            if (!finished && depth > 1) {
+                break; // keep the answer from the last search that finished
+            }
+            // skip the actions a deadline in depth 1 kept from being scored
+            bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (!Double.isNaN(values[i]) && values[i] > bestValue) {
+                    bestValue = values[i];
+                    bestAction = actions[i];
+                }
+            }
+            if (!finished) {
+                break;
+            }
+        }
+        if (Double.isNaN(bestValue) || bestValue == Double.NEGATIVE_INFINITY) {
+            // not even one action was scored in time: fall back to the first, scored as things stand
+            bestAction = actions[0];
+            bestValue = evaluate(first.order, first.players);
+        }
+        long nodes = 0;
+        for (Worker worker : pool) {
+            nodes += worker.nodes;
+        }
+        return new PlanResult(TurnAction.decode(bestAction, size), bestValue, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * The search state of one worker thread: its own fork of the board and
+     * the buffers it searches with.
+     */
+    private class Worker {
+        /** this worker's copy of the board */
+        private final GameBoard board;
+        /** the Attackers on board, in turn order */
+        private final Attacker[] order;
+        /** true if the plan is for a Player, false for an Enemy */
+        private final boolean players;
+        /** lists the turns at each node */
+        private final ActionGenerator generator;
+        /** actions[d] holds the turns of the node d turns from the bottom of the search */
+        private final long[][] actions;
+        /** the System.nanoTime() value to stop searching at */
+        private final long deadline;
+        /** the number of nodes searched by this worker */
+        private long nodes;
+        /** true once the deadline has passed */
+        private boolean stopped;
+
+        /**
+         * Creates a new Worker.
+         * @param board this worker's fork of the board
+         * @param turnOrder the Attackers on the original board, in turn order
+         * @param deadline the System.nanoTime() value to stop searching at
+         */
+        private Worker(GameBoard board, List<Attacker> turnOrder, long deadline) {
+            this.board = board;
+            this.order = onFork(board, turnOrder);
+            this.players = this.order.length > 0 && this.order[0] instanceof Player;
+            this.generator = new ActionGenerator();
+            this.actions = new long[maxDepth + 1][ActionGenerator.MAX_ACTIONS];
+            this.deadline = deadline;
+        }
+
+        /**
+         * Builds a task that scores this worker's share of the top-level turns.
+         * @param top the turns available at the top of the search
+         * @param count the number of turns in top
+         * @param first the first turn this worker scores
+         * @param step the number of workers, so this worker scores every step-th turn
+         * @param turn the position in order of the Attacker being planned for
+         * @param depth the number of turns to search ahead
+         * @param values where the score of each turn is written
+         * @return a task returning false if it was stopped by the deadline
+         */
+        private Callable<Boolean> task(long[] top, int count, int first, int step, int turn, int depth, double[] values) {
+            return () -> {
+                for (int i = first; i < count && !this.stopped; i += step) {
+                    double value = value(top[i], turn, depth);
+                    if (!this.stopped) {
+                        values[i] = value; // a search the deadline cut short is not a score
+                    }
+                }
+                return !this.stopped;
+            };
+        }
+
+        /**
+         * Scores a position by searching a number of turns ahead.
+         * @param turn the position in order of the Attacker to move next,
+         * possibly past the end of order
+         * @param depth the number of turns left to search
+         * @return the expected score of the position
+         */
+        private double search(int turn, int depth) {
+            if (++this.nodes % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > this.deadline) {
+                this.stopped = true;
+            }
+            if (this.stopped || depth == 0 || isOver(this.order)) {
+                return evaluate(this.order, this.players);
+            }
+            turn = nextLiving(this.order, turn) % this.order.length;
+            long key = this.board.getHash() ^ Zobrist.key(turn);
+            double cached = table.probe(key, depth);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+            Attacker actor = this.order[turn];
+            boolean maximize = (actor instanceof Player) == this.players;
+            long[] moves = this.actions[depth];
+            int count = this.generator.generate(actor, moves);
+            double best = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                double v = value(moves[i], turn, depth);
+                best = maximize ? Math.max(best, v) : Math.min(best, v);
+            }
+            if (!this.stopped) {
+                table.store(key, depth, best);
+            }
+            return best;
+        }
+
+        /**
+         * Scores one turn: makes the move, follows every outcome of the
+         * attack with its probability, then undoes it all.
+         * @param action the encoded turn
+         * @param turn the position in order of the Attacker taking the turn
+         * @param depth the number of turns left to search, including this one
+         * @return the expected score after the turn
+         */
+        private double value(long action, int turn, int depth) {
+            Attacker actor = this.order[turn];
+            this.board.mark();
+            double v;
+            if (!moveTo(actor, TurnAction.destinationOf(action))) {
+                v = search(turn + 1, depth - 1);
+            } else if (TurnAction.targetOf(action) == TurnAction.NO_TARGET) {
+                v = search(turn + 1, depth - 1);
+            } else {
+                int cell = TurnAction.targetOf(action);
+                int size = this.board.getSize();
+                Attacker target = (Attacker) this.board.getPiece(cell % size, cell / size);
+                int die = actor.getWeapon().getDmgDie();
+                int hp = target.getHP();
+                double p = DamageCalculator.hitChance(actor.getModifier(), target.getAC());
+                v = p < 1 ? (1 - p) * search(turn + 1, depth - 1) : 0;
+                if (p > 0) {
+                    // damage that leaves the target alive, one roll at a time
+                    for (int dmg = 1; dmg <= die && dmg < hp; dmg++) {
+                        v += p / die * outcome(actor, target, dmg, turn, depth);
+                    }
+                    // every roll that kills the target leads to the same position
+                    if (die >= hp) {
+                        v += p * (die - hp + 1) / die * outcome(actor, target, hp, turn, depth);
+                    }
+                }
+            }
+            this.board.rollback();
+            this.board.release();
+            return v;
+        }
+
+        /**
+         * Scores the position after an attack deals a given amount of damage.
+         * @param actor the Attacker making the attack
+         * @param target the target of the attack
+         * @param dmg the damage dealt
+         * @param turn the position in order of the attacker
+         * @param depth the number of turns left to search, including this one
+         * @return the expected score after the attack
+         */
+        private double outcome(Attacker actor, Attacker target, int dmg, int turn, int depth) {
+            this.board.mark();
+            this.board.applyAttack(actor.getLocation(), target.getLocation(), dmg);
+            double v = search(turn + 1, depth - 1);
+            this.board.rollback();
+            this.board.release();
+            return v;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.List;
+
+/**
+ * A Strategy that finishes off wounded enemies: of the enemies it could
+ * reach and attack this turn, it goes after the one with the least HP left.
+ * When several Attackers on a side share this Strategy they tend to gang up
+ * on the same target.
+ *
+ * @author Mark Danza
+ */
+public class FocusFireStrategy extends AbstractStrategy {
+    /**
+     * Picks the enemy within reach that has the least HP left, breaking ties
+     * by distance, or the nearest enemy if none are within reach. Then moves
+     * toward it until it is in range and attacks it.
+     * @param actor the living Attacker whose turn it is
+     * @return the damage dealt during the turn
+     */
+    @Override
+    public int takeTurn(Attacker actor) {
+        GameBoard board = actor.getBoard();
+        Coords from = actor.getLocation();
+        List<Piece> nearby = piecesInReach(actor);
+        Attacker target = null;
+        int targetDist = Integer.MAX_VALUE;
+        for (int i = 0; i < nearby.size(); i++) {
+            Piece piece = nearby.get(i);
+            if (!(piece instanceof Attacker) || !actor.isHostileTo((Attacker) piece)) {
+                continue;
+            }
+            Attacker candidate = (Attacker) piece;
+            int d = board.dist(from, candidate.getLocation());
+            if (target == null || candidate.getHP() < target.getHP()
+                    || (candidate.getHP() == target.getHP() && d < targetDist)) {
+                target = candidate;
+                targetDist = d;
+            }
+        }
+        if (target == null) {
+            target = board.nearestEnemy(from);
+            if (target == null) {
+                return 0;
+            }
+        }
+        approach(actor, target);
+        return attack(actor, target);
+    }
+}
@@ -1,3 +1,8 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Stores an array of Pieces to simulate the board and controls the
  * moving and placement of pieces on that board. Also checks whether
@@ -17,14 +22,56 @@ public class GameBoard {
     private int size;
     /** the number of feet represented by one grid space */
     public static final int FEET_PER_TILE = 5;
+    /** receives the events caused by actions on this board */
+    private CombatListener listener;
+    /** the Dice every roll made on this board comes from */
+    private Dice dice;
+    /** finds the pieces near a location without scanning the grid */
+    private SpatialIndex index;
+    /** how distances between grid spaces are measured on this board */
+    private DistanceMetric metric;
+    /** whether moves must be walked around other pieces instead of made in a straight line */
+    private boolean pathfinding;
+    /** records changes to this board while a mark is set, so they can be rolled back */
+    private UndoLog undoLog;
+    /** the Zobrist hash of every piece on the board, with its location and HP */
+    private long hash;
+    /** the hash instead of hash once several threads may change the board at once, or null */
+    private AtomicLong sharedHash;
+    /** which grid spaces hold a piece, a Player or an Enemy, as bitsets */
+    private OccupancyBits occupancy;
+    /** marks the grid spaces that change, for a display to redraw; null if nothing is watching */
+    private ChangeTracker changes;
+    /** the shared Coords of each grid space handed out by at(), row by row; rows are made when first needed */
+    private Coords[][] locations;
 
     /**
-     * Creates a new square GameBoard with a side length of size.
+     * Creates a new square GameBoard with a side length of size, rolling
+     * with Dice that have an unpredictable seed.
      * @param size the number of grid spaces on a side of the board
      */
     public GameBoard(int size) {
+        this(size, new SplitMixDice());
+    }
+
+    /**
+     * Creates a new square GameBoard with a side length of size, with every
+     * roll made on it coming from the given Dice.
+     * @param size the number of grid spaces on a side of the board
+     * @param dice the Dice the board rolls with
+     */
+    public GameBoard(int size, Dice dice) {
         this.grid = new Piece[size][size];
         this.size = size;
+        this.listener = CombatListener.SILENT;
+        this.dice = dice;
+        this.index = new SpatialIndex(this);
+        this.metric = DistanceMetric.EUCLIDEAN;
+        this.pathfinding = false;
+        this.undoLog = new UndoLog();
+        this.hash = 0;
+        this.occupancy = new OccupancyBits(size);
+        this.locations = new Coords[size][];
     }
 
     /**
@@ -35,6 +82,124 @@ public class GameBoard {
         return size;
     }
 
+    /**
+     * Getter for the listener receiving the events caused by actions on this board.
+     * @return the CombatListener of this board
+     */
+    public CombatListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Replaces the listener receiving the events caused by actions on this
+     * board. A new board uses CombatListener.SILENT, which ignores every event.
+     * @param listener the CombatListener to send events to from now on
+     */
+    public void setListener(CombatListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Getter for the Dice used for rolls made on this board.
+     * @return the Dice of this board
+     */
+    public Dice getDice() {
+        return dice;
+    }
+
+    /**
+     * Replaces the Dice used for rolls made on this board. Giving the board
+     * Dice with a fixed seed makes everything that happens on it reproducible.
+     * @param dice the Dice to use from now on
+     * @throws IllegalStateException if a mark is set, since rollback() must
+     * rewind the Dice the mark was set with
+     */
+    public void setDice(Dice dice) {
+        if (this.undoLog.getDepth() > 0) {
+            throw new IllegalStateException("the Dice of a marked board cannot be replaced");
+        }
+        this.dice = dice;
+    }
+
+    /**
+     * Getter for the way distances are measured on this board.
+     * @return the DistanceMetric of this board
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Changes the way distances are measured on this board. A new board uses
+     * DistanceMetric.EUCLIDEAN.
+     * @param metric the DistanceMetric to use from now on
+     */
+    public void setMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Getter for whether moves on this board are walked around other pieces.
+     * @return true if moves must follow an open walk within the mover's speed
+     */
+    public boolean isPathfinding() {
+        return pathfinding;
+    }
+
+    /**
+     * Chooses how moves on this board are checked. When pathfinding is off
+     * (the default for a new board), a move only has to be within the mover's
+     * speed in a straight line, ignoring any pieces in between. When it is on,
+     * there must be a walk from start to end, one grid space at a time and
+     * around other pieces, that costs no more than the mover's speed (see
+     * PathFinder).
+     * @param pathfinding true to check moves by walking around pieces
+     */
+    public void setPathfinding(boolean pathfinding) {
+        this.pathfinding = pathfinding;
+    }
+
+    /**
+     * Getter for the Piece at a given location on the board.
+     * @param x an x-coordinate on the board
+     * @param y a y-coordinate on the board
+     * @return the Piece at (x, y), or null if that location is empty
+     */
+    public Piece getPiece(int x, int y) {
+        return this.grid[y][x];
+    }
+
+    /**
+     * Getter for the shared Coords of a grid space. Each grid space has one
+     * Coords, made the first time it is asked for and returned by every call
+     * after that, so code that moves pieces and makes attacks need not make
+     * any. On a shared board two threads asking for a grid space for the
+     * first time may each get their own Coords; they are still equal.
+     * @param x an x-coordinate on the board
+     * @param y a y-coordinate on the board
+     * @return the Coords of (x, y)
+     */
+    public Coords at(int x, int y) {
+        Coords[] row = this.locations[y];
+        if (row == null) {
+            row = this.locations[y] = new Coords[this.size];
+        }
+        Coords location = row[x];
+        if (location == null) {
+            location = row[x] = new Coords(x, y);
+        }
+        return location;
+    }
+
+    /**
+     * Getter for the shared Coords of a grid space given as a packed location.
+     * @param packed a location on the board made by Coords.pack()
+     * @return the Coords of that grid space
+     */
+    public Coords at(long packed) {
+        return at(Coords.packedX(packed), Coords.packedY(packed));
+    }
+
     /**
      * Moves the Attacker at a given starting location to a given end
      * location, if there is no other Piece at that end location.
@@ -44,33 +209,143 @@ public class GameBoard {
      * @return true if the move was successful, false if the move failed
      */
     public boolean move(Coords start, Coords end) {
+        if (!SimMetrics.isEnabled()) {
+            return tryMove(start, end);
+        }
+        long began = System.nanoTime();
+        boolean moved = tryMove(start, end);
+        SimMetrics.time(SimMetrics.Timer.MOVE, began);
+        SimMetrics.count(moved ? SimMetrics.Counter.MOVES : SimMetrics.Counter.MOVES_REJECTED);
+        return moved;
+    }
+
+    /**
+     * Checks that there is an Attacker at start, that end is empty and that
+     * the mover can reach it (by a path around other pieces if pathfinding
+     * is on, or in a straight line within its speed otherwise), then moves
+     * it, updating the grid, the spatial index and the mover's location.
+     * A move that fails any check is reported to the listener with the
+     * reason and leaves the board unchanged.
+     * @param start the initial location of the Piece to move
+     * @param end the location to move the Piece at start to
+     * @return true if the move was made, false if it was rejected
+     */
+    private boolean tryMove(Coords start, Coords end) {
         // look for occupied start and empty end locations
         if (!(this.grid[start.getY()][start.getX()] instanceof Attacker) || this.grid[end.getY()][end.getX()] != null) {
-            System.out.println("Cannot move: No piece at start location or occupied end location."); // TODO: move this output eventually
+            this.listener.moveRejected(start, end, Rejection.NO_MOVER_OR_BLOCKED);
             return false;
         }
         // check that proposed move is within the mover's speed
         Attacker mover = (Attacker) this.grid[start.getY()][start.getX()];
-        int distFt = dist(start, end) * FEET_PER_TILE; // proposed move distance (in feet)
-        if (distFt > mover.getSpeed()) {
-            System.out.println("Cannot move that far.");
+        if (this.pathfinding) {
+            if (PathFinder.forThread().pathCost(this, start, end, mover.getSpeed()) < 0) {
+                this.listener.moveRejected(start, end, Rejection.NO_PATH);
+                return false;
+            }
+        } else if (!withinFeet(start.getX(), start.getY(), end.getX(), end.getY(), mover.getSpeed())) {
+            this.listener.moveRejected(start, end, Rejection.TOO_FAR);
             return false;
         }
         // make move if valid
-        this.grid[start.getY()][start.getX()] = null;
-        this.grid[end.getY()][end.getX()] = mover;
+        setCell(start.getX(), start.getY(), null);
+        setCell(end.getX(), end.getY(), mover);
+        if (!this.index.sameBucket(start.getX(), start.getY(), end.getX(), end.getY())) {
+            indexRemove(mover, start.getX(), start.getY());
+            indexAdd(mover, end.getX(), end.getY());
+        }
+        mover.setLocation(end);
+        this.listener.pieceMoved(mover, start, end);
         return true;
     }
 
+    /**
+     * Finds every grid space the Attacker at a location can walk to this
+     * turn, around other pieces and within its speed.
+     * @param start the location of the Attacker
+     * @param out where the reachable grid spaces are written, as
+     * y * getSize() + x; must be long enough to hold them all
+     * @return the number of grid spaces written to out, or 0 if there is no
+     * Attacker at start
+     */
+    public int reachableCells(Coords start, int[] out) {
+        Piece piece = this.grid[start.getY()][start.getX()];
+        if (!(piece instanceof Attacker)) {
+            return 0;
+        }
+        return PathFinder.forThread().reachable(this, start, ((Attacker) piece).getSpeed(), out);
+    }
+
     /**
      * Returns the distance (in grid spaces) between any two grid locations
-     * using the distance formula.
+     * as measured by this board's DistanceMetric.
      * @param loc1 first grid location
      * @param loc2 second grid location
      * @return the distance in tiles between loc1 and loc2
      */
     public int dist(Coords loc1, Coords loc2) {
-        return (int) Math.sqrt( Math.pow(loc2.getX()-loc1.getX(), 2) + Math.pow(loc2.getY()-loc1.getY(), 2) );
+        return dist(loc1.getX(), loc1.getY(), loc2.getX(), loc2.getY());
+    }
+
+    /**
+     * Returns the distance (in grid spaces) between two grid locations given
+     * as raw coordinates, so that callers in a loop need not create Coords.
+     * @param x1 x-coordinate of the first grid location
+     * @param y1 y-coordinate of the first grid location
+     * @param x2 x-coordinate of the second grid location
+     * @param y2 y-coordinate of the second grid location
+     * @return the distance in tiles between (x1, y1) and (x2, y2)
+     */
+    public int dist(int x1, int y1, int x2, int y2) {
+        return this.metric.tiles(x2 - x1, y2 - y1);
+    }
+
+    /**
+     * Checks whether two grid locations are within a distance in feet of
+     * each other, without calculating the distance itself.
+     * @param x1 x-coordinate of the first grid location
+     * @param y1 y-coordinate of the first grid location
+     * @param x2 x-coordinate of the second grid location
+     * @param y2 y-coordinate of the second grid location
+     * @param feet the greatest allowed distance (in feet)
+     * @return true if dist(x1, y1, x2, y2) * FEET_PER_TILE <= feet
+     */
+    public boolean withinFeet(int x1, int y1, int x2, int y2, int feet) {
+        return this.metric.withinFeet(x2 - x1, y2 - y1, feet);
+    }
+
+    /**
+     * Getter for the shape of every grid space within a distance in feet,
+     * as measured by this board's DistanceMetric.
+     * @param feet the distance (in feet)
+     * @return a shared RangeMask for that distance
+     */
+    public RangeMask rangeMask(int feet) {
+        return RangeMask.forFeet(this.metric, feet);
+    }
+
+    /**
+     * Lists every grid space on the board within a distance in feet of a
+     * location, for area effects and AI. Grid spaces are written as the index
+     * y * getSize() + x, row by row.
+     * @param center the location to measure from
+     * @param feet the distance (in feet)
+     * @param out where the grid space indices are written; must be long
+     * enough to hold rangeMask(feet).getCellCount() values
+     * @return the number of grid space indices written to out
+     */
+    public int cellsWithinFeet(Coords center, int feet, int[] out) {
+        RangeMask mask = rangeMask(feet);
+        int r = mask.getRadius();
+        int count = 0;
+        for (int y = Math.max(0, center.getY() - r); y <= Math.min(this.size - 1, center.getY() + r); y++) {
+            int half = mask.getHalfWidth(y - center.getY());
+            int xEnd = Math.min(this.size - 1, center.getX() + half);
+            for (int x = Math.max(0, center.getX() - half); x <= xEnd; x++) {
+                out[count++] = y * this.size + x;
+            }
+        }
+        return count;
     }
 
     /**
@@ -82,17 +357,35 @@ public class GameBoard {
      * @return true if the given attack is valid, false otherwise
      */
     public boolean validateAttack(Coords source, Coords target) {
+        if (!SimMetrics.isEnabled()) {
+            return checkAttack(source, target);
+        }
+        long began = System.nanoTime();
+        boolean valid = checkAttack(source, target);
+        SimMetrics.time(SimMetrics.Timer.VALIDATE_ATTACK, began);
+        SimMetrics.count(valid ? SimMetrics.Counter.ATTACKS_VALIDATED : SimMetrics.Counter.ATTACKS_REJECTED);
+        return valid;
+    }
+
+    /**
+     * Looks up the Attackers at both locations and measures the distance
+     * between them against the source's weapon range, reporting an attack
+     * that fails either check to the listener with the reason.
+     * @param source the location of the Attacker making the attack
+     * @param target the location of the target of the attack
+     * @return true if both are Attackers and the target is in range
+     */
+    private boolean checkAttack(Coords source, Coords target) {
         // validate that source and target coords hold Attacker objects
         if (!(this.grid[source.getY()][source.getX()] instanceof Attacker)
                 || !(this.grid[target.getY()][target.getX()] instanceof Attacker)) {
-            System.out.println("Invalid attack source or target."); // TODO: move this output eventually
+            this.listener.attackRejected(source, target, Rejection.INVALID_ATTACK);
             return false;
         }
-        // heck that distance between source and target is within range of source's weapon
-        int distFt = dist(source, target) * FEET_PER_TILE; // distance between source and target (in feet)
+        // check that distance between source and target is within range of source's weapon
         Attacker atkerSource = (Attacker) this.grid[source.getY()][source.getX()]; // the source Attacker object
-        if (distFt > atkerSource.getWeapon().getRange()) {
-            System.out.println("Target out of attack range."); // TODO: move this output eventually
+        if (!withinFeet(source.getX(), source.getY(), target.getX(), target.getY(), atkerSource.getWeapon().getRange())) {
+            this.listener.attackRejected(source, target, Rejection.OUT_OF_RANGE);
             return false;
         }
         // attack is valid - caller should call observeAttack() with the same source and target
@@ -111,23 +404,155 @@ public class GameBoard {
      * of validateAttack()
      */
     public void observeAttack(Coords source, Coords target) {
+        boolean timed = SimMetrics.isEnabled();
+        long began = timed ? System.nanoTime() : 0;
         Attacker atkerSource = (Attacker) this.grid[source.getY()][source.getX()];
         Attacker atkerTarget = (Attacker) this.grid[target.getY()][target.getX()];
         boolean hit = atkerSource.attack(atkerTarget);
         if (hit) {
-            // if hit, remove the hit Attacker from the board if it has 0 hp
-            if (atkerTarget.getHP() <= 0) {
-                this.grid[target.getY()][target.getX()] = null;
-                atkerSource.addXP(atkerTarget.getXP()); // transfer xp on kill
-            }
+            removeIfKilled(atkerSource, atkerTarget, target);
+        }
+        if (timed) {
+            SimMetrics.time(SimMetrics.Timer.OBSERVE_ATTACK, began);
+        }
+    }
+
+    /**
+     * Resolves an attack whose outcome has already been decided instead of
+     * rolling for it, so that a search can follow each possible outcome in
+     * turn. The damage is dealt and a killed target is removed exactly as in
+     * observeAttack(), but no hit or miss is reported to the listener.
+     * @param source the location of the attacking Attacker
+     * @param target the location of the target of the attack
+     * @param dmg the damage dealt, or 0 for a miss
+     * @pre the attack must be valid by the tests of validateAttack()
+     */
+    public void applyAttack(Coords source, Coords target, int dmg) {
+        if (dmg > 0) {
+            Attacker atkerSource = (Attacker) this.grid[source.getY()][source.getX()];
+            Attacker atkerTarget = (Attacker) this.grid[target.getY()][target.getX()];
+            atkerTarget.setHP(atkerTarget.getHP() - dmg);
+            removeIfKilled(atkerSource, atkerTarget, target);
+        }
+    }
+
+    /**
+     * Removes an Attacker that was just hit from the board if it has no hp
+     * left, and gives its xp to the Attacker that killed it.
+     * @param killer the Attacker that made the attack
+     * @param victim the Attacker that was hit
+     * @param location the location of the victim
+     */
+    private void removeIfKilled(Attacker killer, Attacker victim, Coords location) {
+        if (victim.getHP() <= 0) {
+            setCell(location.getX(), location.getY(), null);
+            indexRemove(victim, location.getX(), location.getY());
+            this.listener.pieceKilled(killer, victim);
+            killer.addXP(victim.getXP()); // transfer xp on kill
+            this.listener.xpTransferred(victim, killer, victim.getXP());
         }
     }
 
     /**
-     * Makes the board empty.
+     * Makes the board empty. Any marks set with mark() are removed.
      */
     public void reset() {
         this.grid = new Piece[this.size][this.size];
+        this.index.clear();
+        this.undoLog.clear();
+        this.hash = 0;
+        if (this.sharedHash != null) {
+            this.sharedHash.set(0);
+        }
+        this.occupancy.clear();
+        if (this.changes != null) {
+            this.changes.markAll();
+        }
+    }
+
+    /**
+     * Getter for the occupancy of the grid as bitsets, for queries over
+     * areas of the board. It is kept up to date as pieces are placed, moved,
+     * killed and rolled back.
+     * @return the OccupancyBits of this board
+     */
+    public OccupancyBits getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Starts marking every grid space that changes in a ChangeTracker, so a
+     * display can redraw only those spaces. Calling this again returns the
+     * same tracker.
+     * @return the ChangeTracker of this board
+     */
+    public ChangeTracker trackChanges() {
+        if (this.changes == null) {
+            this.changes = new ChangeTracker(this.size);
+        }
+        return this.changes;
+    }
+
+    /**
+     * Getter for the hash of the current position, for looking positions up
+     * in a TranspositionTable. Two boards with the same pieces (by name and
+     * kind) on the same grid spaces with the same HP have the same hash, so
+     * a fork starts with the hash of its original. The hash is kept up to
+     * date as pieces are placed, moved, damaged and killed, and is restored
+     * by rollback().
+     * @return the Zobrist hash of this board (see Zobrist)
+     */
+    public long getHash() {
+        return this.sharedHash != null ? this.sharedHash.get() : this.hash;
+    }
+
+    /**
+     * Prepares this board to be changed by several threads at once, each
+     * holding the locks of the regions it changes (see ConcurrentGameBoard).
+     * The hash is from then on kept in an AtomicLong, since changes in
+     * different regions update it at the same time, and marks can no longer
+     * be set. A board cannot be unshared.
+     */
+    public void share() {
+        if (this.sharedHash == null) {
+            this.sharedHash = new AtomicLong(this.hash);
+        }
+    }
+
+    /**
+     * Checks whether this board may be changed by several threads at once.
+     * @return true if share() has been called
+     */
+    public boolean isShared() {
+        return sharedHash != null;
+    }
+
+    /**
+     * Folds a piece key into the hash of the board, or takes one out of it.
+     * @param key the key of a piece on a grid space with its HP
+     */
+    private void xorHash(long key) {
+        if (this.sharedHash != null) {
+            this.sharedHash.getAndAccumulate(key, (a, b) -> a ^ b);
+        } else {
+            this.hash ^= key;
+        }
+    }
+
+    /**
+     * Updates the hash of the board after an Attacker's HP changes. Called by
+     * Attacker.setHP(); Attackers that are not standing on this board are
+     * ignored.
+     * @param attacker the Attacker whose HP changed
+     * @param oldHp its HP before the change
+     */
+    public void hpChanged(Attacker attacker, int oldHp) {
+        Coords loc = attacker.getLocation();
+        if (loc != null && this.grid[loc.getY()][loc.getX()] == attacker
+                && Zobrist.hpBucket(oldHp) != Zobrist.hpBucket(attacker.getHP())) {
+            xorHash(Zobrist.pieceKey(attacker, loc.getX(), loc.getY(), oldHp)
+                    ^ Zobrist.pieceKey(attacker, loc.getX(), loc.getY(), attacker.getHP()));
+        }
     }
 
     /**
@@ -137,26 +562,216 @@ public class GameBoard {
      * @pre there must not be another Piece already at the given location
      */
     public void place(Piece piece, Coords location) {
-        this.grid[location.getY()][location.getX()] = piece;
+        Piece replaced = this.grid[location.getY()][location.getX()];
+        if (replaced != null) {
+            indexRemove(replaced, location.getX(), location.getY());
+        }
+        setCell(location.getX(), location.getY(), piece);
         piece.setLocation(location);
+        indexAdd(piece, location.getX(), location.getY());
+    }
+
+    /**
+     * Getter for the record of changes made to this board since the last
+     * mark. Pieces on this board report their own changes to it.
+     * @return the UndoLog of this board
+     */
+    public UndoLog getUndoLog() {
+        return undoLog;
+    }
+
+    /**
+     * Remembers the current state of the board, so that rollback() can
+     * return to it: the grid, the location, HP and XP of every piece, and the
+     * position of the Dice. Marks nest, and changes are only recorded while
+     * at least one is set.
+     * @throws IllegalStateException if the board is shared, or its Dice are
+     * not RewindableDice
+     */
+    public void mark() {
+        if (this.sharedHash != null) {
+            throw new IllegalStateException("a shared board cannot be marked");
+        }
+        if (!(this.dice instanceof RewindableDice)) {
+            throw new IllegalStateException("the rolls of this board's Dice cannot be rewound");
+        }
+        this.undoLog.mark((RewindableDice) this.dice, this.hash);
+    }
+
+    /**
+     * Puts the board back exactly as it was when the last mark was set. The
+     * mark stays set, so several lines of play can be tried from it in turn.
+     * @pre a mark must be set
+     */
+    public void rollback() {
+        this.hash = this.undoLog.rollback(this.grid, this.occupancy, this.index, (RewindableDice) this.dice);
+        if (this.changes != null) {
+            this.changes.markAll();
+        }
+    }
+
+    /**
+     * Removes the last mark, keeping every change made since it.
+     * @pre a mark must be set
+     */
+    public void release() {
+        this.undoLog.release();
+    }
+
+    /**
+     * Creates an independent copy of this board, with a copy of every piece
+     * on it and Dice in the same state, so that a search can be run on the
+     * copy while this board is left alone. The copy reports no events.
+     * @return a new GameBoard in the same state as this one
+     */
+    public GameBoard fork() {
+        GameBoard copy = new GameBoard(this.size, this.dice.copy());
+        copy.metric = this.metric;
+        copy.pathfinding = this.pathfinding;
+        for (int y = 0; y < this.size; y++) {
+            for (int x = 0; x < this.size; x++) {
+                if (this.grid[y][x] != null) {
+                    copy.place(this.grid[y][x].copyTo(copy), copy.at(x, y));
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Sets the contents of a grid space, recording the old contents if a
+     * mark is set and updating the hash of the board. Every change to the
+     * grid goes through here.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @param piece the new contents, or null to empty the grid space
+     */
+    private void setCell(int x, int y, Piece piece) {
+        Piece old = this.grid[y][x];
+        if (this.undoLog.isRecording()) {
+            this.undoLog.recordCell(x, y, old);
+        }
+        if (old != null) {
+            xorHash(Zobrist.pieceKey(old, x, y, hpOf(old)));
+        }
+        if (piece != null) {
+            xorHash(Zobrist.pieceKey(piece, x, y, hpOf(piece)));
+        }
+        this.grid[y][x] = piece;
+        this.occupancy.update(x, y, piece);
+        if (this.changes != null) {
+            this.changes.mark(x, y);
+        }
+    }
+
+    /**
+     * Finds the HP a piece is hashed with.
+     * @param piece a piece
+     * @return its HP if it is an Attacker, otherwise 0
+     */
+    private static int hpOf(Piece piece) {
+        return piece instanceof Attacker ? ((Attacker) piece).getHP() : 0;
+    }
+
+    /**
+     * Adds a piece to the SpatialIndex, recording it if a mark is set.
+     * @param piece the piece to add
+     * @param x the x-coordinate of the piece
+     * @param y the y-coordinate of the piece
+     */
+    private void indexAdd(Piece piece, int x, int y) {
+        this.index.add(piece, x, y);
+        if (this.undoLog.isRecording()) {
+            this.undoLog.recordIndexAdd(piece, x, y);
+        }
+    }
+
+    /**
+     * Removes a piece from the SpatialIndex, recording it if a mark is set.
+     * @param piece the piece to remove
+     * @param x the x-coordinate the piece was added at
+     * @param y the y-coordinate the piece was added at
+     */
+    private void indexRemove(Piece piece, int x, int y) {
+        int position = this.index.remove(piece, x, y);
+        if (position >= 0 && this.undoLog.isRecording()) {
+            this.undoLog.recordIndexRemove(piece, x, y, position);
+        }
+    }
+
+    /**
+     * Finds every piece within a distance of a location, other than a piece
+     * standing at that location itself. Only the part of the board near the
+     * location is searched.
+     * @param center the location to measure from
+     * @param feet the distance (in feet)
+     * @return a new list of the pieces found
+     */
+    public List<Piece> piecesWithinFeet(Coords center, int feet) {
+        List<Piece> found = new ArrayList<>();
+        this.index.within(center.getX(), center.getY(), feet, found);
+        return found;
+    }
+
+    /**
+     * Finds every piece within a distance of a location, adding them to a
+     * list the caller can reuse between queries.
+     * @param center the location to measure from
+     * @param feet the distance (in feet)
+     * @param out the list the pieces found are added to
+     * @return the number of pieces added to out
+     */
+    public int piecesWithinFeet(Coords center, int feet, List<Piece> out) {
+        return this.index.within(center.getX(), center.getY(), feet, out);
+    }
+
+    /**
+     * Counts the pieces within a distance of a location, other than a piece
+     * standing at that location itself.
+     * @param center the location to measure from
+     * @param feet the distance (in feet)
+     * @return the number of pieces within that distance
+     */
+    public int countInRange(Coords center, int feet) {
+        return this.index.within(center.getX(), center.getY(), feet, null);
+    }
+
+    /**
+     * Finds the closest Attacker hostile to the Attacker at a location.
+     * @param from the location of the Attacker looking for an enemy
+     * @return the nearest hostile Attacker, or null if there is no Attacker
+     * at from or it has no enemies on the board
+     */
+    public Attacker nearestEnemy(Coords from) {
+        Piece seeker = this.grid[from.getY()][from.getX()];
+        if (!(seeker instanceof Attacker)) {
+            return null;
+        }
+        return this.index.nearestHostile((Attacker) seeker);
     }
 
     /**
      * Builds an ASCII representation of the state of the GameBoard
-     * useful for a PTUI.
+     * useful for a PTUI. Row numbers are right-aligned, and on boards wider
+     * than 10 the column numbers are written top to bottom, one digit per
+     * line, so every number stays under its column.
      * @return a String representation of the entire board state
      */
     @Override
     public String toString() {
-        StringBuilder board = new StringBuilder("   ");
+        int digits = Integer.toString(Math.max(size - 1, 0)).length();
+        char[] margin = new char[digits + 1];
+        Arrays.fill(margin, ' ');
+        StringBuilder board = new StringBuilder((size + 3) * (2 * size + digits + 4));
         // top line
+        board.append(margin).append(' ');
         for (int i=0; i<size; i++) {
             board.append("__");
         }
         board.append("\n");
         // all grid rows
         for (int row=0; row<size; row++) {
-            board.append(row).append(" |");
+            board.append(margin, 0, digits - Integer.toString(row).length()).append(row).append(" |");
             for (int col=0; col<size; col++) {
                 // inserts '.' characters where there are nulls in the grid (unoccupied spaces)
                 char boardChar = (grid[row][col] == null) ? '.' : grid[row][col].toChar();
@@ -165,13 +780,19 @@ public class GameBoard {
             board.append("|\n");
         }
         // bottom lines
-        board.append("   ");
+        board.append(margin).append(' ');
         for (int i=0; i<size; i++) {
             board.append("--");
         }
-        board.append("\n").append("   ");
-        for (int i=0; i<size; i++) {
-            board.append(i).append(" ");
+        // column numbers, most significant digit first
+        for (int place = digits - 1; place >= 0; place--) {
+            board.append("\n").append(margin).append(' ');
+            int divisor = (int) Math.pow(10, place);
+            for (int i=0; i<size; i++) {
+                // leading zeros are left blank
+                boolean blank = place > 0 && i < divisor;
+                board.append(blank ? ' ' : (char) ('0' + i / divisor % 10)).append(" ");
+            }
         }
         return board.toString();
     }
@@ -0,0 +1,177 @@
+/**
+ * A fixed-size histogram of non-negative whole numbers, for distributions
+ * too large to keep every value of. Values below 64 each have a bucket of
+ * their own; above that, each power of two is split into 32 equal buckets,
+ * so any value is known to within about 3% (the layout used by HDR
+ * histograms). Every Histogram has the same 1920 buckets whatever it holds,
+ * so recording is a few bit operations and an array increment, and two
+ * Histograms are merged by adding their buckets.
+ *
+ * The count, sum, smallest and largest value are kept exactly, so the mean
+ * is exact even where percentiles are approximate.
+ *
+ * @author Mark Danza
+ */
+public class Histogram {
+    /** the number of bits of each value that pick its bucket within a power of two */
+    private static final int SUB_BUCKET_BITS = 5;
+    /** the number of buckets each power of two is split into */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** the number of buckets: 64 exact values, then 32 per power of two up to 2^63 */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    /** counts[b] is the number of values recorded in bucket b */
+    private final long[] counts;
+    /** the number of values recorded */
+    private long count;
+    /** the sum of every value recorded */
+    private long sum;
+    /** the smallest value recorded */
+    private long min;
+    /** the largest value recorded */
+    private long max;
+
+    /**
+     * Creates a new, empty Histogram.
+     */
+    public Histogram() {
+        this.counts = new long[BUCKETS];
+        this.min = Long.MAX_VALUE;
+        this.max = 0;
+    }
+
+    /**
+     * Records one value.
+     * @param value the value; negative values are recorded as 0
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Records a value several times.
+     * @param value the value; negative values are recorded as 0
+     * @param times the number of times to record it
+     */
+    public void record(long value, long times) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts[bucketOf(value)] += times;
+        this.count += times;
+        this.sum += value * times;
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * Adds every value recorded in another Histogram to this one.
+     * @param other the Histogram to add
+     */
+    public void merge(Histogram other) {
+        for (int b = 0; b < BUCKETS; b++) {
+            this.counts[b] += other.counts[b];
+        }
+        this.count += other.count;
+        this.sum += other.sum;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * Getter for the number of values recorded.
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the total of the values recorded.
+     * @return the sum of every value recorded
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Getter for the smallest value recorded.
+     * @return the smallest value, or 0 if nothing was recorded
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Getter for the largest value recorded.
+     * @return the largest value, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Calculates the average of the values recorded.
+     * @return the exact mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Finds the value that a given fraction of the values recorded did not
+     * exceed.
+     * @param fraction a fraction between 0 and 1 (e.g. 0.5 for the median)
+     * @return the smallest value v such that at least that fraction of the
+     * values were v or less, exact below 64 and within about 3% above; 0 if
+     * nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        long needed = Math.max(1, (long) Math.ceil(fraction * this.count));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += this.counts[b];
+            if (seen >= needed) {
+                return Math.min(this.max, Math.max(this.min, highestIn(b)));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the bucket a value is counted in.
+     * @param value a non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Finds the largest value counted in a bucket.
+     * @param bucket the index of a bucket
+     * @return the largest value that bucketOf() maps to it
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Builds a one-line summary of the distribution.
+     * @return a String with the count, mean and main percentiles
+     */
+    @Override
+    public String toString() {
+        return String.format("n %d, mean %.2f, p50 %d, p90 %d, p99 %d, max %d",
+                count, getMean(), getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), getMax());
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The exact probability distribution of how many rounds one Attacker takes
+ * to kill a target, as computed by DamageCalculator. The distribution is
+ * stored as its cumulative form: the chance the target is dead after each
+ * number of rounds. It is only tracked until the chance of the target
+ * surviving any longer becomes negligible, so the chance for any later round
+ * is taken to be the last one tracked.
+ *
+ * @author Mark Danza
+ */
+public class KillDistribution {
+    /** cdf[r] is the chance the target is dead after r rounds; cdf[0] is always 0 */
+    private final double[] cdf;
+
+    /**
+     * Creates a new distribution.
+     * @param cdf cdf[r] is the chance the target is dead after r rounds; it is
+     * kept, not copied
+     */
+    public KillDistribution(double[] cdf) {
+        this.cdf = cdf;
+    }
+
+    /**
+     * Getter for the number of rounds tracked.
+     * @return the last round whose kill chance was computed
+     */
+    public int getMaxRounds() {
+        return cdf.length - 1;
+    }
+
+    /**
+     * Calculates the chance the target is dead after a number of rounds.
+     * @param rounds a number of rounds
+     * @return the chance the target has been killed within that many rounds
+     */
+    public double getKillChance(int rounds) {
+        if (rounds <= 0) {
+            return 0;
+        }
+        return cdf[Math.min(rounds, cdf.length - 1)];
+    }
+
+    /**
+     * Calculates the chance the target dies in exactly a given round.
+     * @param round a round number, starting at 1
+     * @return the chance the killing blow lands in that round
+     */
+    public double getProbability(int round) {
+        return getKillChance(round) - getKillChance(round - 1);
+    }
+
+    /**
+     * Calculates the average number of rounds taken to kill the target.
+     * @return the mean rounds to kill, or infinity if the target might never
+     * be killed
+     */
+    public double getMeanRounds() {
+        if (cdf[cdf.length - 1] < 1 - DamageCalculator.TAIL) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // the mean of a count is the sum of its chances of exceeding each value
+        double mean = 0;
+        for (int r = 0; r < cdf.length; r++) {
+            mean += 1 - cdf[r];
+        }
+        return mean;
+    }
+
+    /**
+     * Finds the number of rounds within which the target is dead with at
+     * least a given chance.
+     * @param fraction a fraction between 0 and 1 (e.g. 0.5 for the median)
+     * @return the smallest round count r such that the target is dead after
+     * r rounds with at least that chance, or -1 if no tracked round reaches it
+     */
+    public int getRoundsPercentile(double fraction) {
+        for (int r = 0; r < cdf.length; r++) {
+            if (cdf[r] >= fraction - DamageCalculator.TAIL) {
+                return r;
+            }
+        }
+        return -1;
+    }
+}
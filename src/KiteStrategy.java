@@ -0,0 +1,24 @@
+/**
+ * A Strategy for Attackers with ranged weapons: stay as far from the nearest
+ * enemy as the weapon allows while still attacking it every turn. With a
+ * melee weapon this plays the same as NearestTargetStrategy.
+ *
+ * @author Mark Danza
+ */
+public class KiteStrategy extends AbstractStrategy {
+    /**
+     * Moves to the reachable grid space farthest from the nearest enemy that
+     * keeps it in range, then attacks it.
+     * @param actor the living Attacker whose turn it is
+     * @return the damage dealt during the turn
+     */
+    @Override
+    public int takeTurn(Attacker actor) {
+        Attacker target = actor.getBoard().nearestEnemy(actor.getLocation());
+        if (target == null) {
+            return 0;
+        }
+        keepAtRange(actor, target);
+        return attack(actor, target);
+    }
+}
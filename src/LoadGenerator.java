@@ -0,0 +1,362 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays thousands of clients against a SessionServer at once to measure how
+ * quickly it answers. Each client opens its own session and, at a steady
+ * rate, sends a batch of commands in one write (pipelining them), then
+ * waits for every reply before its next batch. The time from when a batch
+ * is written to when each of its replies arrives is recorded. A batch that
+ * falls due while the client's last one is still unanswered is skipped and
+ * counted as late, so a server too slow for the load shows up in the count
+ * of late batches rather than being hidden by clients sending less.
+ *
+ * The clients are spread over a few threads, each driving its clients
+ * with one Selector, so the generator needs as few threads as the server.
+ *
+ * @author Mark Danza
+ */
+public class LoadGenerator {
+    /** the commands clients send, in turn; each reply ends with SessionServer.END_OF_REPLY */
+    private static final String[] COMMANDS = {"m 0 0 0 1", "m 0 1 0 0", "a 0 0 1 0", "b", "e"};
+    /** the encoded commands, each with its line ending */
+    private static final byte[][] COMMAND_BYTES = new byte[COMMANDS.length][];
+
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMAND_BYTES[i] = (COMMANDS[i] + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /** the server to connect to */
+    private final InetSocketAddress address;
+    /** the number of commands in each batch */
+    private final int pipeline;
+    /** the time between the batches of one client */
+    private final long intervalNanos;
+    /** the threads driving the clients, each with its own share of them */
+    private final Driver[] drivers;
+    /** counted down by each driver once its clients have all connected and been greeted */
+    private final CountDownLatch connected;
+    /** counted down by each driver once it has finished */
+    private final CountDownLatch finished;
+    /** when batches start being sent; set once every client is connected */
+    private volatile long startNanos;
+    /** when replies start being recorded */
+    private volatile long measureNanos;
+    /** when the run ends */
+    private volatile long endNanos;
+
+    /**
+     * Creates a new LoadGenerator, not yet connected.
+     * @param address the server to connect to
+     * @param sessions the number of clients
+     * @param pipeline the number of commands each client sends at a time
+     * @param batchesPerSecond the number of batches each client sends per second
+     * @param threads the number of threads to drive the clients on
+     */
+    public LoadGenerator(InetSocketAddress address, int sessions, int pipeline, double batchesPerSecond, int threads) {
+        this.address = address;
+        this.pipeline = pipeline;
+        this.intervalNanos = (long) (1e9 / batchesPerSecond);
+        this.drivers = new Driver[threads];
+        for (int i = 0; i < threads; i++) {
+            this.drivers[i] = new Driver(sessions / threads + (i < sessions % threads ? 1 : 0));
+        }
+        this.connected = new CountDownLatch(threads);
+        this.finished = new CountDownLatch(threads);
+    }
+
+    /**
+     * Connects every client, then has them send commands for a while.
+     * @param warmupNanos how long to send commands before recording replies
+     * @param runNanos how long to record replies for
+     * @return the latency of every reply recorded, in nanoseconds
+     * @throws IOException if a selector cannot be opened
+     * @throws InterruptedException if interrupted while waiting for the run
+     */
+    public Histogram run(long warmupNanos, long runNanos) throws IOException, InterruptedException {
+        for (int i = 0; i < this.drivers.length; i++) {
+            this.drivers[i].selector = Selector.open();
+            Thread thread = new Thread(this.drivers[i], "LoadGenerator-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        this.connected.await();
+        long now = System.nanoTime();
+        this.measureNanos = now + warmupNanos;
+        this.endNanos = this.measureNanos + runNanos;
+        this.startNanos = now;
+        this.finished.await();
+        Histogram latency = new Histogram();
+        for (Driver driver : this.drivers) {
+            latency.merge(driver.latency);
+        }
+        return latency;
+    }
+
+    /**
+     * Counts the batches that were due while the client's last batch was
+     * still being answered, and so were sent late or not at all.
+     * @return the number of batches not sent on time, over every client
+     */
+    public long getLateBatches() {
+        long late = 0;
+        for (Driver driver : this.drivers) {
+            late += driver.late;
+        }
+        return late;
+    }
+
+    /**
+     * A thread driving a share of the clients.
+     */
+    private class Driver implements Runnable {
+        /** this driver's clients, in the order their batches are due */
+        private final Client[] clients;
+        /** the latency of every reply recorded by this driver, in nanoseconds */
+        private final Histogram latency = new Histogram();
+        /** waits for any of this driver's clients to be ready */
+        private Selector selector;
+        /** the number of batches that were due while the last one was unanswered */
+        private long late;
+        /** the number of clients greeted by the server */
+        private int greeted;
+
+        /**
+         * Creates a new Driver.
+         * @param clients the number of clients it drives
+         */
+        Driver(int clients) {
+            this.clients = new Client[clients];
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < this.clients.length; i++) {
+                    this.clients[i] = new Client(this);
+                }
+                while (this.greeted < this.clients.length) {
+                    this.selector.select(100);
+                    handleKeys();
+                }
+                LoadGenerator.this.connected.countDown();
+                while (LoadGenerator.this.startNanos == 0) {
+                    Thread.yield();
+                }
+                // spread the clients' batches evenly over the interval
+                long start = LoadGenerator.this.startNanos;
+                for (int i = 0; i < this.clients.length; i++) {
+                    this.clients[i].due = start + LoadGenerator.this.intervalNanos * i / this.clients.length;
+                }
+                int next = 0;
+                long end = LoadGenerator.this.endNanos;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    while (this.clients.length > 0 && this.clients[next].due <= now) {
+                        Client client = this.clients[next];
+                        if (client.unanswered == 0) {
+                            client.send(now);
+                        } else {
+                            this.late++;
+                        }
+                        client.due += LoadGenerator.this.intervalNanos;
+                        next = next + 1 == this.clients.length ? 0 : next + 1;
+                    }
+                    // sleep until the next batch is due, to the millisecond, leaving the processor to the server
+                    long wait = this.clients.length > 0 ? this.clients[next].due - now : end - now;
+                    this.selector.select(Math.max(1, (wait + 999999) / 1000000));
+                    handleKeys();
+                }
+                for (Client client : this.clients) {
+                    client.channel.close();
+                }
+                this.selector.close();
+            } catch (IOException e) {
+                System.err.println("LoadGenerator: " + e);
+                LoadGenerator.this.connected.countDown();
+            } finally {
+                LoadGenerator.this.finished.countDown();
+            }
+        }
+
+        /**
+         * Finishes connections, sends what was held back and reads replies
+         * for every client the selector found ready.
+         * @throws IOException if a connection fails
+         */
+        private void handleKeys() throws IOException {
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                if (key.isConnectable()) {
+                    client.channel.finishConnect();
+                    client.channel.socket().setTcpNoDelay(true);
+                    key.interestOps(SelectionKey.OP_READ);
+                    continue;
+                }
+                if (key.isWritable()) {
+                    client.write();
+                }
+                if (key.isReadable()) {
+                    client.read(System.nanoTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * One client: a connection to the server with its own session.
+     */
+    private class Client {
+        /** the driver this client belongs to */
+        private final Driver driver;
+        /** the connection to the server */
+        private final SocketChannel channel;
+        /** the registration of the channel with the driver's selector */
+        private final SelectionKey key;
+        /** the commands of the batch being sent */
+        private final ByteBuffer out = ByteBuffer.allocate(256);
+        /** replies being received */
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        /** the number of replies still expected, counting the greeting */
+        private int unanswered = 1;
+        /** set once the greeting has been received */
+        private boolean greeted;
+        /** when the batch being answered was written */
+        private long sentAt;
+        /** when the next batch is due */
+        private long due;
+        /** the index in COMMANDS of the next command to send */
+        private int command;
+        /** the number of bytes of the current reply line read so far */
+        private int lineLength;
+        /** true if the current reply line starts with the end of a reply */
+        private boolean endLine;
+
+        /**
+         * Creates a new Client and starts connecting it.
+         * @param driver the driver it belongs to
+         * @throws IOException if the connection cannot be started
+         */
+        Client(Driver driver) throws IOException {
+            this.driver = driver;
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            int ops = this.channel.connect(LoadGenerator.this.address) ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+            this.key = this.channel.register(driver.selector, ops, this);
+        }
+
+        /**
+         * Sends the next batch of commands.
+         * @param now the time it is sent
+         * @throws IOException if the connection fails
+         */
+        void send(long now) throws IOException {
+            this.sentAt = now;
+            this.out.clear();
+            for (int i = 0; i < LoadGenerator.this.pipeline; i++) {
+                this.out.put(COMMAND_BYTES[this.command]);
+                this.command = (this.command + 1) % COMMANDS.length;
+            }
+            this.out.flip();
+            this.unanswered = LoadGenerator.this.pipeline;
+            write();
+        }
+
+        /**
+         * Writes as much of the batch as the connection will take, waiting
+         * for it to be writable if some is left.
+         * @throws IOException if the connection fails
+         */
+        void write() throws IOException {
+            this.channel.write(this.out);
+            this.key.interestOps(this.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Reads replies, recording the latency of each one completed.
+         * @param now the time the replies were read
+         * @throws IOException if the connection fails
+         */
+        void read(long now) throws IOException {
+            if (this.channel.read(this.in) < 0) {
+                throw new IOException("the server closed a session");
+            }
+            this.in.flip();
+            while (this.in.hasRemaining()) {
+                byte b = this.in.get();
+                if (b != '\n') {
+                    this.endLine = this.lineLength == 0 ? b == '.' : this.endLine && b == '\r';
+                    this.lineLength++;
+                    continue;
+                }
+                if (this.endLine && this.unanswered > 0) {
+                    this.unanswered--;
+                    if (!this.greeted) {
+                        this.greeted = true;
+                        this.driver.greeted++;
+                    } else if (this.sentAt >= LoadGenerator.this.measureNanos) {
+                        this.driver.latency.record(now - this.sentAt);
+                    }
+                }
+                this.lineLength = 0;
+                this.endLine = false;
+            }
+            this.in.clear();
+        }
+    }
+
+    /**
+     * Connects thousands of clients to a SessionServer, has them play for a
+     * while and reports the commands answered per second and the latency of
+     * the replies. Without a host and port, a SessionServer is started in
+     * this process; on some systems the limit on open files then allows
+     * only half as many clients as against a separate server.
+     * @param args command line arguments: [sessions] [seconds]
+     * [commands per batch] [batches per second per session] [host:port]
+     * @throws IOException if the server cannot be reached or started
+     * @throws InterruptedException if interrupted while waiting for the run
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int pipeline = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        SessionServer server = null;
+        InetSocketAddress address;
+        if (args.length > 4) {
+            String[] hostPort = args[4].split(":");
+            address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        } else {
+            server = new SessionServer(Session.defaultScenario(), 0, threads, 42);
+            server.start();
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        }
+        LoadGenerator generator = new LoadGenerator(address, sessions, pipeline, rate, threads);
+        long start = System.nanoTime();
+        long warmup = TimeUnit.SECONDS.toNanos(Math.min(2, seconds));
+        Histogram latency = generator.run(warmup, TimeUnit.SECONDS.toNanos(seconds));
+        double elapsed = (System.nanoTime() - start) / 1e9 - seconds - warmup / 1e9;
+        System.out.printf("%d sessions connected in %.1f s; %,d commands/s over %d s%n",
+                sessions, elapsed, latency.getCount() / seconds, seconds);
+        System.out.printf("latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms; %d batches late%n",
+                latency.getPercentile(0.5) / 1e6, latency.getPercentile(0.99) / 1e6,
+                latency.getPercentile(0.999) / 1e6, latency.getMax() / 1e6, generator.getLateBatches());
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A Planner using Monte Carlo tree search. Each iteration walks down a tree
+ * of turns, choosing at every node the turn that balances a good average
+ * score against being tried rarely (UCB1, with the other side choosing the
+ * turns worst for the planning side), adds one new node, then plays the
+ * fight on for a few rounds with each Attacker's Strategy and scores where
+ * it ends up. Dice are rolled for real on every iteration, so chance is
+ * handled by sampling: the tree is open-loop, meaning a node stands for a
+ * sequence of turns rather than one exact position, and a turn that the
+ * dice have made impossible is simply skipped.
+ *
+ * Every worker thread grows its own tree on its own fork of the board with
+ * its own Dice (root parallelization), and the visit counts of the turns at
+ * the top are added up across workers at the end. The turn visited most is
+ * chosen.
+ *
+ * @author Mark Danza
+ */
+public class MctsPlanner extends Planner {
+    /** the default total number of iterations across all workers */
+    private static final int DEFAULT_ITERATIONS = 20000;
+    /** the default number of rounds played out after leaving the tree */
+    private static final int DEFAULT_ROLLOUT_ROUNDS = 3;
+    /** how strongly rarely tried turns are favored */
+    private static final double EXPLORATION = 0.7;
+
+    /** the most iterations run across all workers */
+    private int iterations;
+    /** the number of rounds played out after leaving the tree */
+    private int rolloutRounds;
+    /** the seed the workers' Dice are derived from */
+    private long seed;
+
+    /**
+     * Creates a new MctsPlanner.
+     * @param threads the number of worker threads to search with
+     */
+    public MctsPlanner(int threads) {
+        super(threads);
+        this.iterations = DEFAULT_ITERATIONS;
+        this.rolloutRounds = DEFAULT_ROLLOUT_ROUNDS;
+        this.seed = System.nanoTime();
+    }
+
+    /**
+     * Getter for the iteration budget.
+     * @return the most iterations run across all workers for one plan
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Sets the iteration budget. The time limit, if one is set, can stop the
+     * search sooner.
+     * @param iterations the most iterations run across all workers for one plan
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Sets how many rounds are played out after an iteration leaves the tree.
+     * @param rolloutRounds the number of rounds to play out
+     */
+    public void setRolloutRounds(int rolloutRounds) {
+        this.rolloutRounds = rolloutRounds;
+    }
+
+    /**
+     * Sets the seed the workers' Dice are derived from, so that plans made
+     * with the same seed, iteration budget and no time limit are repeatable.
+     * @param seed the seed for the workers' Dice
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public PlanResult plan(GameBoard board, List<Attacker> turnOrder) {
+        long start = System.nanoTime();
+        long deadline = deadline(start);
+        int workers = getThreads();
+        List<Callable<Worker>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            final GameBoard fork = board.fork();
+            fork.setDice(new SplitMixDice(SplitMixDice.trialSeed(this.seed, w)));
+            final int budget = this.iterations / workers + (w < this.iterations % workers ? 1 : 0);
+            tasks.add(() -> {
+                Worker worker = new Worker(fork, turnOrder);
+                worker.search(budget, deadline);
+                return worker;
+            });
+        }
+        List<Worker> done = new ArrayList<>(workers);
+        try {
+            for (Future<Worker> future : getPool().invokeAll(tasks)) {
+                done.add(future.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("planning failed", e);
+        }
+
+        // add up the top of every worker's tree; each lists the same turns in the same order
+        Node root = done.get(0).root;
+        long nodes = 0;
+        for (Worker worker : done) {
+            nodes += worker.nodes;
+        }
+        if (root.actions == null || root.actions.length == 0) {
+            return new PlanResult(null, 0, nodes, System.nanoTime() - start);
+        }
+        int count = root.actions.length;
+        long[] visits = new long[count];
+        double[] totals = new double[count];
+        for (Worker worker : done) {
+            for (int i = 0; i < count && worker.root.actions != null; i++) {
+                visits[i] += worker.root.visits[i];
+                totals[i] += worker.root.totals[i];
+            }
+        }
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (visits[i] > visits[best]) {
+                best = i;
+            }
+        }
+        double value = visits[best] == 0 ? 0 : totals[best] / visits[best];
+        return new PlanResult(TurnAction.decode(root.actions[best], board.getSize()), value, nodes,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * One node of a search tree: the turns available to the Attacker whose
+     * turn it is, and how each has scored so far.
+     */
+    private static class Node {
+        /** the encoded turns, listed when the node is first reached */
+        private long[] actions;
+        /** the node reached by each turn, or null if it has not been tried */
+        private Node[] children;
+        /** the number of times each turn has been tried */
+        private int[] visits;
+        /** the sum of the scores of every iteration through each turn */
+        private double[] totals;
+        /** the number of turns tried at least once */
+        private int tried;
+        /** the number of iterations through this node */
+        private int total;
+
+        /**
+         * Lists the turns of this node.
+         * @param buffer the turns, as written by ActionGenerator
+         * @param count the number of turns in buffer
+         */
+        private void expand(long[] buffer, int count) {
+            this.actions = new long[count];
+            System.arraycopy(buffer, 0, this.actions, 0, count);
+            this.children = new Node[count];
+            this.visits = new int[count];
+            this.totals = new double[count];
+        }
+
+        /**
+         * Chooses the turn to try next: an untried one if there is one,
+         * otherwise the one with the best UCB1 score.
+         * @param maximize true if the Attacker choosing is on the planning side
+         * @return the position of the chosen turn in actions
+         */
+        private int select(boolean maximize) {
+            if (this.tried < this.actions.length) {
+                return this.tried++;
+            }
+            double logTotal = Math.log(this.total);
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < this.actions.length; i++) {
+                double mean = this.totals[i] / this.visits[i];
+                double score = (maximize ? mean : -mean) + EXPLORATION * Math.sqrt(logTotal / this.visits[i]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The search state of one worker thread: its own fork of the board and
+     * its own tree.
+     */
+    private class Worker {
+        /** this worker's copy of the board */
+        private final GameBoard board;
+        /** the Attackers on board, in turn order */
+        private final Attacker[] order;
+        /** true if the plan is for a Player, false for an Enemy */
+        private final boolean players;
+        /** lists the turns at each new node */
+        private final ActionGenerator generator;
+        /** the turns of the node being expanded */
+        private final long[] buffer;
+        /** the top of this worker's tree */
+        private final Node root;
+        /** the nodes passed through by the current iteration */
+        private final List<Node> path;
+        /** the turn chosen at each node passed through by the current iteration */
+        private final List<Integer> choices;
+        /** the number of turns played by this worker, in and out of the tree */
+        private long nodes;
+
+        /**
+         * Creates a new Worker.
+         * @param board this worker's fork of the board
+         * @param turnOrder the Attackers on the original board, in turn order
+         */
+        private Worker(GameBoard board, List<Attacker> turnOrder) {
+            this.board = board;
+            this.order = onFork(board, turnOrder);
+            this.players = this.order.length > 0 && this.order[0] instanceof Player;
+            this.generator = new ActionGenerator();
+            this.buffer = new long[ActionGenerator.MAX_ACTIONS];
+            this.root = new Node();
+            this.path = new ArrayList<>();
+            this.choices = new ArrayList<>();
+        }
+
+        /**
+         * Runs iterations until the budget or the deadline is used up.
+         * @param budget the most iterations to run
+         * @param deadline the System.nanoTime() value to stop at
+         */
+        private void search(int budget, long deadline) {
+            if (this.order.length == 0 || isOver(this.order)) {
+                return;
+            }
+            this.board.mark();
+            for (int i = 0; i < budget && System.nanoTime() < deadline; i++) {
+                iterate();
+                this.board.rollback();
+            }
+            this.board.release();
+        }
+
+        /**
+         * Runs one iteration: down the tree, one new node, a playout, and the
+         * score added to every node passed through.
+         */
+        private void iterate() {
+            this.path.clear();
+            this.choices.clear();
+            Node node = this.root;
+            int turn = nextLiving(this.order, 0);
+            boolean expanded = false;
+            while (!expanded && !isOver(this.order)) {
+                Attacker actor = this.order[turn % this.order.length];
+                if (node.actions == null) {
+                    node.expand(this.buffer, this.generator.generate(actor, this.buffer));
+                    expanded = true;
+                }
+                if (node.actions.length == 0) {
+                    break;
+                }
+                int choice = node.select((actor instanceof Player) == this.players);
+                this.path.add(node);
+                this.choices.add(choice);
+                playEncoded(actor, node.actions[choice]);
+                if (node.children[choice] == null) {
+                    node.children[choice] = new Node();
+                }
+                node = node.children[choice];
+                turn = nextLiving(this.order, turn + 1);
+            }
+            // play on with each Attacker's own Strategy
+            int rollout = rolloutRounds * this.order.length;
+            for (int t = 0; t < rollout && !isOver(this.order); t++) {
+                Attacker actor = this.order[turn % this.order.length];
+                Strategy strategy = actor.getStrategy() != null ? actor.getStrategy() : Strategy.NEAREST_TARGET;
+                strategy.takeTurn(actor);
+                this.nodes++;
+                turn = nextLiving(this.order, turn + 1);
+            }
+            double score = evaluate(this.order, this.players);
+            for (int i = 0; i < this.path.size(); i++) {
+                Node passed = this.path.get(i);
+                int choice = this.choices.get(i);
+                passed.visits[choice]++;
+                passed.totals[choice] += score;
+                passed.total++;
+            }
+        }
+
+        /**
+         * Plays an encoded turn, rolling for the attack. Parts of the turn
+         * that are no longer possible are skipped.
+         * @param actor the Attacker taking the turn
+         * @param action the encoded turn
+         */
+        private void playEncoded(Attacker actor, long action) {
+            this.nodes++;
+            if (!moveTo(actor, TurnAction.destinationOf(action))) {
+                return;
+            }
+            int cell = TurnAction.targetOf(action);
+            if (cell == TurnAction.NO_TARGET) {
+                return;
+            }
+            int size = this.board.getSize();
+            Piece target = this.board.getPiece(cell % size, cell / size);
+            if (target instanceof Attacker && actor.isHostileTo((Attacker) target)
+                    && this.board.withinFeet(actor.getLocation().getX(), actor.getLocation().getY(),
+                            cell % size, cell / size, actor.getWeapon().getRange())) {
+                this.board.observeAttack(actor.getLocation(), target.getLocation());
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes SimMetrics for dashboards. Every period, a background thread
+ * takes a snapshot, works out each counter's rate since the last one (such
+ * as encounters and rolls per second), and renders everything in the
+ * Prometheus text format: counters as totals, rates as gauges, and each
+ * action's latency as its count, sum and percentiles in nanoseconds. The
+ * latest rendering can be written to a file, replaced whole each period so
+ * that a reader never sees half of one, and served over HTTP at /metrics.
+ *
+ * Starting an exporter switches SimMetrics collection on.
+ *
+ * @author Mark Danza
+ */
+public class MetricsExporter {
+    /** the prefix of every metric name */
+    private static final String PREFIX = "dnd_";
+    /** the latency percentiles exported */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /** the thread taking snapshots */
+    private final ScheduledExecutorService sampler;
+    /** the file the metrics are written to, or null */
+    private Path file;
+    /** the HTTP server the metrics are served from, or null */
+    private HttpServer server;
+    /** the snapshot taken last period */
+    private SimMetrics.Snapshot last;
+    /** the metrics as rendered last period */
+    private volatile String text;
+
+    /**
+     * Creates a new MetricsExporter, switches collection on and starts
+     * taking snapshots.
+     * @param periodMillis the time between snapshots, in milliseconds
+     */
+    public MetricsExporter(long periodMillis) {
+        SimMetrics.setEnabled(true);
+        this.last = SimMetrics.snapshot();
+        this.text = render(this.last, this.last);
+        this.sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "MetricsExporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sampler.scheduleAtFixedRate(this::sample, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the metrics to a file every period from now on.
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writeTo(Path file) throws IOException {
+        this.file = file;
+        write(file, this.text);
+    }
+
+    /**
+     * Serves the metrics over HTTP at /metrics from now on.
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port listened on
+     * @throws IOException if the port cannot be listened on
+     */
+    public synchronized int serve(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/metrics", exchange -> {
+            byte[] body = this.text.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Getter for the metrics as rendered last period.
+     * @return the metrics in the Prometheus text format
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Stops taking snapshots and serving the metrics, and switches
+     * collection off. The file, if any, keeps the last metrics written.
+     */
+    public synchronized void stop() {
+        this.sampler.shutdownNow();
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+        SimMetrics.setEnabled(false);
+    }
+
+    /**
+     * Takes a snapshot, renders it and writes it out. Run every period.
+     */
+    private synchronized void sample() {
+        SimMetrics.Snapshot now = SimMetrics.snapshot();
+        this.text = render(now, this.last);
+        this.last = now;
+        if (this.file != null) {
+            try {
+                write(this.file, this.text);
+            } catch (IOException e) {
+                // keep sampling for the HTTP endpoint; the file is tried again next period
+                System.err.println("Could not write metrics to " + this.file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Replaces a file with new contents all at once, by writing them next
+     * to it first.
+     * @param file the file
+     * @param contents its new contents
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(Path file, String contents) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, contents.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Renders a snapshot in the Prometheus text format.
+     * @param now the snapshot to render
+     * @param earlier the snapshot rates are measured from
+     * @return the rendered metrics
+     */
+    static String render(SimMetrics.Snapshot now, SimMetrics.Snapshot earlier) {
+        StringBuilder out = new StringBuilder();
+        for (SimMetrics.Counter counter : SimMetrics.Counter.values()) {
+            String name = PREFIX + counter.name().toLowerCase(Locale.ROOT);
+            out.append("# TYPE ").append(name).append("_total counter\n");
+            out.append(name).append("_total ").append(now.get(counter)).append('\n');
+            out.append("# TYPE ").append(name).append("_per_second gauge\n");
+            out.append(name).append("_per_second ")
+                    .append(String.format(Locale.ROOT, "%.1f", now.rate(counter, earlier))).append('\n');
+        }
+        for (SimMetrics.Timer timer : SimMetrics.Timer.values()) {
+            String name = PREFIX + timer.name().toLowerCase(Locale.ROOT) + "_nanos";
+            Histogram latency = now.getLatency(timer);
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double q : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(q).append("\"} ")
+                        .append(latency.getPercentile(q)).append('\n');
+            }
+            out.append(name).append("_sum ").append(latency.getSum()).append('\n');
+            out.append(name).append("_count ").append(latency.getCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Starts exporting to a file or an HTTP port, as given on a command line.
+     * @param target a port number to serve the metrics on, or the name of a
+     * file to write them to
+     * @param periodMillis the time between snapshots, in milliseconds
+     * @return the new MetricsExporter
+     */
+    public static MetricsExporter start(String target, long periodMillis) {
+        MetricsExporter exporter = new MetricsExporter(periodMillis);
+        try {
+            if (target.matches("\\d+")) {
+                int port = exporter.serve(Integer.parseInt(target));
+                System.out.println("Serving metrics at http://localhost:" + port + "/metrics");
+            } else {
+                exporter.writeTo(Paths.get(target));
+                System.out.println("Writing metrics to " + target);
+            }
+        } catch (IOException e) {
+            exporter.stop();
+            throw new UncheckedIOException(e);
+        }
+        return exporter;
+    }
+}
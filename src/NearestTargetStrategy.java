@@ -0,0 +1,22 @@
+/**
+ * A melee Strategy: close in on the nearest enemy and attack it as soon as
+ * it is in range.
+ *
+ * @author Mark Danza
+ */
+public class NearestTargetStrategy extends AbstractStrategy {
+    /**
+     * Moves toward the nearest enemy until it is in range, then attacks it.
+     * @param actor the living Attacker whose turn it is
+     * @return the damage dealt during the turn
+     */
+    @Override
+    public int takeTurn(Attacker actor) {
+        Attacker target = actor.getBoard().nearestEnemy(actor.getLocation());
+        if (target == null) {
+            return 0;
+        }
+        approach(actor, target);
+        return attack(actor, target);
+    }
+}
@@ -0,0 +1,334 @@
+import java.util.Arrays;
+
+/**
+ * The occupancy of a GameBoard's grid as bitsets: one bit per grid space
+ * in each of three layers, for every piece, for Players and for Enemies.
+ * Each row of a layer is stored as consecutive longs, bit x % 64 of word
+ * y * getWordsPerRow() + x / 64 standing for grid space (x, y), so a query
+ * over a span of a row tests or counts up to 64 grid spaces with one
+ * operation instead of reading and casting 64 references. The board keeps
+ * its OccupancyBits up to date on every change to its grid.
+ *
+ * Besides single grid spaces, an OccupancyBits answers questions about
+ * areas: whether any piece of a layer is inside a RangeMask, how many are,
+ * how many are adjacent to a grid space, and which grid spaces can be
+ * walked to in a number of steps, found by growing the reachable area one
+ * step at a time with shifts of whole words.
+ *
+ * @author Mark Danza
+ */
+public class OccupancyBits {
+    /**
+     * The sets of pieces that are tracked.
+     */
+    public enum Layer {
+        /** every piece */
+        ALL,
+        /** every Player */
+        PLAYERS,
+        /** every Attacker that is not a Player */
+        ENEMIES;
+
+        /**
+         * Finds the layer holding the pieces hostile to an Attacker.
+         * @param attacker an Attacker
+         * @return ENEMIES for a Player, PLAYERS for anything else
+         */
+        public static Layer hostileTo(Attacker attacker) {
+            return attacker instanceof Player ? ENEMIES : PLAYERS;
+        }
+    }
+
+    /** the number of grid spaces on a side of the board */
+    private final int size;
+    /** the number of words holding one row of a layer */
+    private final int wordsPerRow;
+    /** the bits of grid spaces past the right edge of the board are clear in this mask of a row's last word */
+    private final long lastWordMask;
+    /** the bits of every occupied grid space */
+    private final long[] all;
+    /** the bits of every grid space holding a Player */
+    private final long[] players;
+    /** the bits of every grid space holding an Enemy */
+    private final long[] enemies;
+    /** the reachable area grown by one step along rows, used by reachable() */
+    private long[] spread;
+    /** the previous row of the reachable area before the current step, used by reachable() */
+    private long[] above;
+
+    /**
+     * Creates a new OccupancyBits for an empty board.
+     * @param size the number of grid spaces on a side of the board
+     */
+    public OccupancyBits(int size) {
+        this.size = size;
+        this.wordsPerRow = (size + 63) >>> 6;
+        this.lastWordMask = (size & 63) == 0 ? -1L : (1L << size) - 1;
+        this.all = new long[size * this.wordsPerRow];
+        this.players = new long[size * this.wordsPerRow];
+        this.enemies = new long[size * this.wordsPerRow];
+    }
+
+    /**
+     * Getter for the number of words holding one row of a bitmap.
+     * @return the number of longs per row
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Creates an empty bitmap with the same layout as the layers, for
+     * reachable() to write into.
+     * @return a new bitmap with every bit clear
+     */
+    public long[] newBitmap() {
+        return new long[this.size * this.wordsPerRow];
+    }
+
+    /**
+     * Records the new contents of a grid space. Called by the board for
+     * every change to its grid.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @param piece the new contents, or null if the grid space is now empty
+     */
+    public void update(int x, int y, Piece piece) {
+        int word = y * this.wordsPerRow + (x >>> 6);
+        long bit = 1L << x;
+        this.all[word] &= ~bit;
+        this.players[word] &= ~bit;
+        this.enemies[word] &= ~bit;
+        if (piece != null) {
+            this.all[word] |= bit;
+            if (piece instanceof Player) {
+                this.players[word] |= bit;
+            } else if (piece instanceof Attacker) {
+                this.enemies[word] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Empties every layer.
+     */
+    public void clear() {
+        Arrays.fill(this.all, 0);
+        Arrays.fill(this.players, 0);
+        Arrays.fill(this.enemies, 0);
+    }
+
+    /**
+     * Checks whether a grid space holds a piece of a layer.
+     * @param layer the layer
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return true if the grid space's bit is set in that layer
+     */
+    public boolean get(Layer layer, int x, int y) {
+        return isSet(bits(layer), x, y);
+    }
+
+    /**
+     * Checks whether a grid space's bit is set in a bitmap laid out like
+     * the layers, such as one filled by reachable().
+     * @param bitmap the bitmap
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return true if the bit is set
+     */
+    public boolean isSet(long[] bitmap, int x, int y) {
+        return (bitmap[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Checks whether any piece of a layer is inside a RangeMask centered on
+     * a grid space, the center included. Stops at the first word with a
+     * piece in it.
+     * @param layer the layer
+     * @param cx the x-coordinate of the center
+     * @param cy the y-coordinate of the center
+     * @param mask the shape of the area
+     * @return true if the area holds at least one piece of the layer
+     */
+    public boolean any(Layer layer, int cx, int cy, RangeMask mask) {
+        long[] bits = bits(layer);
+        int r = mask.getRadius();
+        for (int y = Math.max(0, cy - r); y <= Math.min(this.size - 1, cy + r); y++) {
+            int half = mask.getHalfWidth(y - cy);
+            if (countRow(bits, y, Math.max(0, cx - half), Math.min(this.size - 1, cx + half), true) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the pieces of a layer inside a RangeMask centered on a grid
+     * space, the center included.
+     * @param layer the layer
+     * @param cx the x-coordinate of the center
+     * @param cy the y-coordinate of the center
+     * @param mask the shape of the area
+     * @return the number of pieces of the layer in the area
+     */
+    public int count(Layer layer, int cx, int cy, RangeMask mask) {
+        long[] bits = bits(layer);
+        int r = mask.getRadius();
+        int count = 0;
+        for (int y = Math.max(0, cy - r); y <= Math.min(this.size - 1, cy + r); y++) {
+            int half = mask.getHalfWidth(y - cy);
+            count += countRow(bits, y, Math.max(0, cx - half), Math.min(this.size - 1, cx + half), false);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the pieces of a layer on the 8 grid spaces around a grid space.
+     * @param layer the layer
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @return the number of neighbors holding a piece of the layer
+     */
+    public int countAdjacent(Layer layer, int x, int y) {
+        long[] bits = bits(layer);
+        int from = Math.max(0, x - 1);
+        int to = Math.min(this.size - 1, x + 1);
+        int count = 0;
+        for (int row = Math.max(0, y - 1); row <= Math.min(this.size - 1, y + 1); row++) {
+            count += countRow(bits, row, from, to, false);
+        }
+        return isSet(bits, x, y) ? count - 1 : count;
+    }
+
+    /**
+     * Finds every grid space that can be walked to from a start in a number
+     * of steps, one grid space per step, without stepping onto any piece.
+     * The start itself counts as free. With diagonal steps this matches
+     * PathFinder under the CHEBYSHEV metric with steps * 5 ft of movement;
+     * under the other metrics, where some diagonal steps cost more, it is
+     * a superset of what PathFinder would find, and so a cheap first cut.
+     *
+     * Only the words of out covering the square within steps of the start
+     * are written, so a bitmap reused for starts far apart should be
+     * cleared in between.
+     * @param x the x-coordinate of the start
+     * @param y the y-coordinate of the start
+     * @param steps the number of steps that may be taken
+     * @param diagonals true to allow diagonal steps, false for steps along
+     * rows and columns only
+     * @param out the bitmap the reachable grid spaces are set in, from newBitmap()
+     * @return the number of reachable grid spaces, the start included
+     */
+    public int reachable(int x, int y, int steps, boolean diagonals, long[] out) {
+        int top = Math.max(0, y - steps);
+        int bottom = Math.min(this.size - 1, y + steps);
+        int first = Math.max(0, x - steps) >>> 6;
+        int last = Math.min(this.size - 1, x + steps) >>> 6;
+        if (this.spread == null) {
+            this.spread = newBitmap();
+            this.above = new long[this.wordsPerRow];
+        }
+        for (int row = top; row <= bottom; row++) {
+            Arrays.fill(out, row * this.wordsPerRow + first, row * this.wordsPerRow + last + 1, 0);
+        }
+        int startWord = y * this.wordsPerRow + (x >>> 6);
+        long startBit = 1L << x;
+        out[startWord] = startBit;
+        for (int step = 0; step < steps; step++) {
+            // spread along each row: every bit also sets its left and right neighbors
+            for (int row = top; row <= bottom; row++) {
+                int base = row * this.wordsPerRow;
+                for (int w = first; w <= last; w++) {
+                    long v = out[base + w];
+                    long fromLeft = w > first ? out[base + w - 1] >>> 63 : 0;
+                    long fromRight = w < last ? out[base + w + 1] << 63 : 0;
+                    this.spread[base + w] = v | (v << 1) | fromLeft | (v >>> 1) | fromRight;
+                }
+            }
+            // spread up and down, then keep only free grid spaces
+            boolean grew = false;
+            for (int row = top; row <= bottom; row++) {
+                int base = row * this.wordsPerRow;
+                for (int w = first; w <= last; w++) {
+                    long old = out[base + w];
+                    long[] vertical = diagonals ? this.spread : out;
+                    long next = this.spread[base + w];
+                    if (row > top) {
+                        next |= diagonals ? this.spread[base - this.wordsPerRow + w] : this.above[w];
+                    }
+                    if (row < bottom) {
+                        next |= vertical[base + this.wordsPerRow + w];
+                    }
+                    next &= ~this.all[base + w];
+                    if (w == this.wordsPerRow - 1) {
+                        next &= this.lastWordMask;
+                    }
+                    if (base + w == startWord) {
+                        next |= startBit;
+                    }
+                    this.above[w] = old;
+                    out[base + w] = next;
+                    grew |= next != old;
+                }
+            }
+            if (!grew) {
+                break;
+            }
+        }
+        int count = 0;
+        for (int row = top; row <= bottom; row++) {
+            for (int w = first; w <= last; w++) {
+                count += Long.bitCount(out[row * this.wordsPerRow + w]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests or counts the set bits of a span of one row.
+     * @param bits the layer
+     * @param y the row
+     * @param from the first x-coordinate of the span (inclusive)
+     * @param to the last x-coordinate of the span (inclusive)
+     * @param stopAtAny true to return 1 as soon as any bit is found
+     * @return the number of set bits in the span, or 1 if stopAtAny and any is set
+     */
+    private int countRow(long[] bits, int y, int from, int to, boolean stopAtAny) {
+        if (from > to) {
+            return 0;
+        }
+        int base = y * this.wordsPerRow;
+        int firstWord = from >>> 6;
+        int lastWord = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(bits[base + firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(bits[base + firstWord] & firstMask);
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            if (stopAtAny && count != 0) {
+                return 1;
+            }
+            count += Long.bitCount(bits[base + w]);
+        }
+        return count + Long.bitCount(bits[base + lastWord] & lastMask);
+    }
+
+    /**
+     * Finds the bits of a layer.
+     * @param layer the layer
+     * @return its array of words
+     */
+    private long[] bits(Layer layer) {
+        switch (layer) {
+            case PLAYERS:
+                return this.players;
+            case ENEMIES:
+                return this.enemies;
+            default:
+                return this.all;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches a grid of Player builds (attack modifier, AC, HP, speed and
+ * Weapon) for the ones that win most often against the Enemies of a
+ * Scenario. Every Player in the scenario is given the build being tried,
+ * and the Enemies stay as they are.
+ *
+ * Rather than running the same number of fights for every build, the sweep
+ * uses successive halving: every build is tried with a few fights, the
+ * worst are dropped, and the survivors are given more fights, until only the
+ * finalists are left. Most of the fights are spent telling good builds
+ * apart, not confirming that bad ones are bad.
+ *
+ * Trial n of every build rolls with the same Dice seed (common random
+ * numbers), so two builds are compared on the same luck and the difference
+ * between them is measured far more precisely than their win rates alone.
+ * Each build is copied into a CompactEncounter once and reset for every
+ * fight after that, and builds share their Enemies, so the setup cost of a
+ * build is paid once however many rungs it survives. The builds of each
+ * rung are spread across all available cores with a ForkJoinPool.
+ *
+ * @author Mark Danza
+ */
+public class ParameterSweep {
+    /** the default number of fights every build gets in the first rung */
+    public static final int DEFAULT_INITIAL_TRIALS = 64;
+    /** the default fraction of builds (one in this many) kept after each rung */
+    public static final int DEFAULT_REDUCTION = 3;
+    /** the default number of builds left when the sweep stops */
+    public static final int DEFAULT_FINALISTS = 10;
+    /** the number of builds a task evaluates itself rather than splitting further */
+    private static final int BUILDS_PER_TASK = 8;
+    /** orders builds by win rate, then by damage dealt, best first */
+    private static final Comparator<Build> BEST_FIRST = (a, b) -> {
+        int byWins = Double.compare(b.getWinRate(), a.getWinRate());
+        return byWins != 0 ? byWins : Double.compare(b.getMeanDamage(true), a.getMeanDamage(true));
+    };
+
+    /** the scenario whose Players are given each build */
+    private final Scenario scenario;
+    /** the pool the builds are evaluated in */
+    private final ForkJoinPool pool;
+    /** the seed every build's trial n is rolled from */
+    private long seed;
+    /** the attack modifiers to try */
+    private int[] modifiers;
+    /** the armor classes to try */
+    private int[] acs;
+    /** the maximum HPs to try */
+    private int[] hps;
+    /** the speeds to try */
+    private int[] speeds;
+    /** the Weapons to try */
+    private List<Weapon> weapons;
+    /** the number of fights every build gets in the first rung */
+    private int initialTrials;
+    /** the fraction of builds (one in this many) kept after each rung */
+    private int reduction;
+    /** the number of builds left when the sweep stops */
+    private int finalists;
+    /** the number of fights run by the last sweep */
+    private long totalTrials;
+
+    /**
+     * Creates a new ParameterSweep that uses every available core. Until
+     * they are set, every stat is only tried at its default value and the
+     * only Weapon tried is the shortsword.
+     * @param scenario the scenario whose Players are given each build
+     */
+    public ParameterSweep(Scenario scenario) {
+        this(scenario, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new ParameterSweep with a set number of worker threads.
+     * @param scenario the scenario whose Players are given each build
+     * @param parallelism the number of worker threads to use
+     */
+    public ParameterSweep(Scenario scenario, int parallelism) {
+        this.scenario = scenario;
+        this.pool = new ForkJoinPool(parallelism);
+        this.seed = System.nanoTime();
+        AttackerStats stats = AttackerStats.DEFAULT;
+        this.modifiers = new int[] {stats.getModifier()};
+        this.acs = new int[] {stats.getAC()};
+        this.hps = new int[] {stats.getMaxHP()};
+        this.speeds = new int[] {stats.getSpeed()};
+        this.weapons = new ArrayList<>();
+        this.weapons.add(Weapon.shortsword);
+        this.initialTrials = DEFAULT_INITIAL_TRIALS;
+        this.reduction = DEFAULT_REDUCTION;
+        this.finalists = DEFAULT_FINALISTS;
+    }
+
+    /**
+     * Sets the seed the fights are rolled from, so that a sweep can be
+     * repeated exactly.
+     * @param seed the seed every build's trial n is rolled from
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the attack modifiers to try.
+     * @param modifiers the values to try
+     */
+    public void setModifiers(int... modifiers) {
+        this.modifiers = modifiers.clone();
+    }
+
+    /**
+     * Sets the armor classes to try.
+     * @param acs the values to try
+     */
+    public void setACs(int... acs) {
+        this.acs = acs.clone();
+    }
+
+    /**
+     * Sets the maximum HPs to try.
+     * @param hps the values to try
+     */
+    public void setHPs(int... hps) {
+        this.hps = hps.clone();
+    }
+
+    /**
+     * Sets the speeds to try.
+     * @param speeds the values to try (in feet)
+     */
+    public void setSpeeds(int... speeds) {
+        this.speeds = speeds.clone();
+    }
+
+    /**
+     * Sets the Weapons to try.
+     * @param weapons the Weapons to try
+     */
+    public void setWeapons(List<Weapon> weapons) {
+        this.weapons = new ArrayList<>(weapons);
+    }
+
+    /**
+     * Sets the Weapons to try to every combination of a set of damage dice
+     * and a set of ranges, each named after its die and range (e.g. "d8/5ft").
+     * @param dice the numbers of sides of the damage dice to try
+     * @param ranges the ranges to try (in feet)
+     */
+    public void setWeapons(int[] dice, int[] ranges) {
+        this.weapons = new ArrayList<>();
+        for (int die : dice) {
+            for (int range : ranges) {
+                this.weapons.add(new Weapon("d" + die + "/" + range + "ft", die, range));
+            }
+        }
+    }
+
+    /**
+     * Sets how the sweep narrows down the builds.
+     * @param initialTrials the number of fights every build gets in the first rung
+     * @param reduction after each rung, one build in this many is kept (at least 2)
+     * @param finalists the number of builds left when the sweep stops
+     */
+    public void setSchedule(int initialTrials, int reduction, int finalists) {
+        if (initialTrials < 1 || reduction < 2 || finalists < 1) {
+            throw new IllegalArgumentException("need initialTrials >= 1, reduction >= 2 and finalists >= 1");
+        }
+        this.initialTrials = initialTrials;
+        this.reduction = reduction;
+        this.finalists = finalists;
+    }
+
+    /**
+     * Counts the builds in the grid.
+     * @return the number of combinations of the values set for each stat and Weapon
+     */
+    public int getBuildCount() {
+        return modifiers.length * acs.length * hps.length * speeds.length * weapons.size();
+    }
+
+    /**
+     * Getter for the work done by the last sweep.
+     * @return the number of fights run by the last call to run()
+     */
+    public long getTotalTrials() {
+        return totalTrials;
+    }
+
+    /**
+     * Runs the sweep over every build in the grid.
+     * @return the finalists, best first, each with the results of every
+     * fight it played
+     */
+    public List<Build> run() {
+        List<Build> alive = new ArrayList<>(getBuildCount());
+        for (Weapon weapon : this.weapons) {
+            for (int modifier : this.modifiers) {
+                for (int ac : this.acs) {
+                    for (int hp : this.hps) {
+                        for (int speed : this.speeds) {
+                            alive.add(new Build(weapon, new AttackerStats(modifier, ac, hp, speed)));
+                        }
+                    }
+                }
+            }
+        }
+        this.totalTrials = 0;
+        long budget = this.initialTrials;
+        while (true) {
+            this.pool.invoke(new RungTask(alive, 0, alive.size(), budget));
+            this.totalTrials += countTrials(alive);
+            Collections.sort(alive, BEST_FIRST);
+            if (alive.size() <= this.finalists) {
+                break;
+            }
+            int keep = Math.max(this.finalists, (alive.size() + this.reduction - 1) / this.reduction);
+            for (Build dropped : alive.subList(keep, alive.size())) {
+                dropped.encounter = null;
+            }
+            alive = new ArrayList<>(alive.subList(0, keep));
+            budget *= this.reduction;
+        }
+        for (Build build : alive) {
+            build.encounter = null;
+        }
+        return alive;
+    }
+
+    /**
+     * Counts the fights played so far by a list of builds that have not yet
+     * been counted, marking them counted.
+     * @param builds the builds
+     * @return the number of fights played since they were last counted
+     */
+    private static long countTrials(List<Build> builds) {
+        long sum = 0;
+        for (Build build : builds) {
+            sum += build.trials - build.counted;
+            build.counted = build.trials;
+        }
+        return sum;
+    }
+
+    /**
+     * Stops the worker threads of this sweep. It cannot be run again after
+     * this is called.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * One point of the grid: a Weapon and a set of stats given to every
+     * Player, with the results of the fights it has played so far.
+     */
+    public static class Build {
+        /** the Weapon every Player carries */
+        private final Weapon weapon;
+        /** the stats every Player has */
+        private final AttackerStats stats;
+        /** the fight this build plays, or null before its first rung or once it is dropped */
+        private CompactEncounter encounter;
+        /** the number of fights played */
+        private long trials;
+        /** the number of fights won by the Players */
+        private long wins;
+        /** the total damage dealt by the Players */
+        private long playerDamage;
+        /** the total damage dealt by the Enemies */
+        private long enemyDamage;
+        /** the number of fights already added to the sweep's total */
+        private long counted;
+
+        /**
+         * Creates a new Build that has played no fights.
+         * @param weapon the Weapon every Player carries
+         * @param stats the stats every Player has
+         */
+        private Build(Weapon weapon, AttackerStats stats) {
+            this.weapon = weapon;
+            this.stats = stats;
+        }
+
+        /**
+         * Getter for the Weapon of this build.
+         * @return the Weapon every Player carries
+         */
+        public Weapon getWeapon() {
+            return weapon;
+        }
+
+        /**
+         * Getter for the stats of this build.
+         * @return the stats every Player has
+         */
+        public AttackerStats getStats() {
+            return stats;
+        }
+
+        /**
+         * Getter for the number of fights this build played.
+         * @return the number of fights played
+         */
+        public long getTrials() {
+            return trials;
+        }
+
+        /**
+         * Calculates the fraction of fights the Players won with this build.
+         * @return the Player win rate, between 0 and 1
+         */
+        public double getWinRate() {
+            return trials == 0 ? 0 : (double) wins / trials;
+        }
+
+        /**
+         * Calculates the half-width of the 95% confidence interval on the
+         * Player win rate with this build.
+         * @return how far the true win rate may be from the measured one
+         */
+        public double getWinRateHalfWidth() {
+            double[] interval = BatchResult.wilsonInterval(wins, trials, BatchResult.Z_95);
+            return (interval[1] - interval[0]) / 2;
+        }
+
+        /**
+         * Calculates the average damage dealt by one side per fight.
+         * @param players true for damage dealt by Players, false for Enemies
+         * @return the mean damage dealt by that side
+         */
+        public double getMeanDamage(boolean players) {
+            return trials == 0 ? 0 : (double) (players ? playerDamage : enemyDamage) / trials;
+        }
+
+        /**
+         * Plays fights with this build until it has played a given number.
+         * Trial n is always rolled from the same seed, whichever build plays it.
+         * @param scenario the scenario whose Players are given this build
+         * @param seed the seed of the sweep
+         * @param budget the number of fights to have played
+         * @param dice the Dice to reseed for each fight
+         */
+        private void playUntil(Scenario scenario, long seed, long budget, SplitMixDice dice) {
+            if (this.encounter == null) {
+                this.encounter = new CompactEncounter(scenario.withPlayerBuild(this.weapon, this.stats).newEncounter(dice));
+            }
+            for (long trial = this.trials; trial < budget; trial++) {
+                dice.reseed(SplitMixDice.trialSeed(seed, trial));
+                this.encounter.reset();
+                if (this.encounter.run(dice) == Encounter.Outcome.PLAYERS_WIN) {
+                    this.wins++;
+                }
+                this.playerDamage += this.encounter.getPlayerDamage();
+                this.enemyDamage += this.encounter.getEnemyDamage();
+            }
+            this.trials = Math.max(this.trials, budget);
+        }
+
+        /**
+         * Describes this build and how well it did.
+         * @return a one-line summary of the build and its results
+         */
+        @Override
+        public String toString() {
+            return String.format("%-10s mod %+d ac %2d hp %2d speed %2d: win %.4f +/- %.4f, damage %.1f dealt, %.1f taken (%d fights)",
+                    weapon.getName(), stats.getModifier(), stats.getAC(), stats.getMaxHP(), stats.getSpeed(),
+                    getWinRate(), getWinRateHalfWidth(), getMeanDamage(true), getMeanDamage(false), trials);
+        }
+    }
+
+    /**
+     * A range of builds that is either evaluated directly or split in half
+     * so that idle workers can steal part of it.
+     */
+    private class RungTask extends RecursiveAction {
+        /** ForkJoinTasks are Serializable, although these are never serialized */
+        private static final long serialVersionUID = 1L;
+        /** the builds of the current rung */
+        private final List<Build> builds;
+        /** the index of the first build in this range (inclusive) */
+        private final int from;
+        /** the index of the last build in this range (exclusive) */
+        private final int to;
+        /** the number of fights every build must have played by the end of the rung */
+        private final long budget;
+
+        /**
+         * Creates a new RungTask for a range of builds.
+         * @param builds the builds of the current rung
+         * @param from the first build index (inclusive)
+         * @param to the last build index (exclusive)
+         * @param budget the number of fights every build must have played
+         */
+        private RungTask(List<Build> builds, int from, int to, long budget) {
+            this.builds = builds;
+            this.from = from;
+            this.to = to;
+            this.budget = budget;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= BUILDS_PER_TASK) {
+                SplitMixDice dice = new SplitMixDice(0);
+                for (int i = this.from; i < this.to; i++) {
+                    this.builds.get(i).playUntil(scenario, seed, this.budget, dice);
+                }
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new RungTask(this.builds, this.from, mid, this.budget),
+                    new RungTask(this.builds, mid, this.to, this.budget));
+        }
+    }
+
+    /**
+     * Sweeps 3,600 builds for the Players of the 4v6 sample scenario and
+     * prints the best ones, along with how many fights the sweep took
+     * compared to giving every build as many fights as the finalists got.
+     * @param args command line arguments: [threads] [seed]
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        ParameterSweep sweep = new ParameterSweep(BatchSimulator.sampleScenario(), threads);
+        sweep.setSeed(seed);
+        sweep.setModifiers(0, 1, 2, 3, 4, 5);
+        sweep.setACs(10, 12, 14, 16, 18);
+        sweep.setHPs(6, 10, 14, 18);
+        sweep.setSpeeds(25, 30, 35);
+        sweep.setWeapons(new int[] {4, 6, 8, 10, 12}, new int[] {5, 80});
+        long start = System.nanoTime();
+        List<Build> best = sweep.run();
+        long elapsed = System.nanoTime() - start;
+        sweep.shutdown();
+        for (Build build : best) {
+            System.out.println(build);
+        }
+        long exhaustive = best.get(0).getTrials() * sweep.getBuildCount();
+        System.out.printf("Swept %d builds with %d fights in %.2f s (%.1fx fewer than %d fights for every build)%n",
+                sweep.getBuildCount(), sweep.getTotalTrials(), elapsed / 1e9,
+                (double) exhaustive / sweep.getTotalTrials(), best.get(0).getTrials());
+    }
+}
@@ -0,0 +1,381 @@
+import java.util.Arrays;
+
+/**
+ * Finds the ways a piece can walk across a GameBoard, one grid space at a
+ * time, without walking through other pieces. Each step costs feet of
+ * movement according to the board's DistanceMetric:
+ *  - a step along a row or column always costs 5 ft
+ *  - a diagonal step costs 5 ft under CHEBYSHEV
+ *  - diagonal steps alternate between 5 ft and 10 ft under ALTERNATING
+ *  - a diagonal step costs 7 ft under EUCLIDEAN (5 ft times the square root
+ *    of 2, rounded down), so a walk never costs less than the straight line
+ *
+ * All of the search state lives in arrays owned by the PathFinder, which
+ * grow to fit the largest board searched and are then reused, so searching
+ * allocates nothing once a PathFinder is warmed up. A PathFinder must only
+ * be used by one thread; forThread() gives each thread its own.
+ *
+ * @author Mark Danza
+ */
+public class PathFinder {
+    /** the cost (in feet) of a step along a row or column */
+    private static final int STRAIGHT_COST = GameBoard.FEET_PER_TILE;
+    /** the cost (in feet) of a diagonal step under EUCLIDEAN */
+    private static final int EUCLIDEAN_DIAGONAL_COST = 7;
+    /** the x offsets of the 8 neighboring grid spaces; diagonals are the odd indices */
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    /** the y offsets of the 8 neighboring grid spaces */
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    /** a PathFinder for each thread */
+    private static final ThreadLocal<PathFinder> PER_THREAD = new ThreadLocal<PathFinder>() {
+        @Override
+        protected PathFinder initialValue() {
+            return new PathFinder();
+        }
+    };
+
+    // Search nodes are (grid space, parity) pairs: node = cell * 2 + parity, where
+    // cell = (y << shift) | x and parity is 1 when the next diagonal step costs 10 ft
+    // under ALTERNATING (it is always 0 under the other metrics). Rows are padded
+    // to a power of two so a node's coordinates never need a division.
+
+    /** the cheapest known cost (in feet) to reach each node, valid when nodeStamp matches */
+    private int[] cost = new int[0];
+    /** the node each node was reached from on its cheapest known walk */
+    private int[] parent = new int[0];
+    /** the search that last touched each node, so arrays never need clearing */
+    private int[] nodeStamp = new int[0];
+    /** the search that last reported each grid space as reachable */
+    private int[] cellStamp = new int[0];
+    /** the number of the current search */
+    private int stamp = 0;
+    /** log2 of the padded row length of the board being searched */
+    private int shift;
+    /** the cost of a step in each direction, for parity 0 then parity 1 */
+    private final int[] stepCosts = new int[16];
+    /** the parity after a step in each direction, for parity 0 then parity 1 */
+    private final int[] stepParities = new int[16];
+
+    /** the first queue entry holding each cost, or -1 (the bucket queue for reachable()) */
+    private int[] bucketHead = new int[0];
+    /** the node of each queue entry */
+    private int[] entryNode = new int[64];
+    /** the next queue entry with the same cost, or -1 */
+    private int[] entryNext = new int[64];
+    /** the number of queue entries in use */
+    private int entries;
+
+    /** the binary heap for findPath(), each entry (estimated total cost << 32) | node */
+    private long[] heap = new long[64];
+    /** the number of entries in the heap */
+    private int heapSize;
+    /** the cost (in feet) of the last walk found by findPath() */
+    private int lastCost;
+
+    /**
+     * Getter for the PathFinder belonging to the calling thread.
+     * @return a PathFinder that only the calling thread uses
+     */
+    public static PathFinder forThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Finds every grid space a piece can walk to from a starting location
+     * without spending more than a given amount of movement. The starting
+     * location itself is not included.
+     * @param board the board to search
+     * @param start the starting location
+     * @param feet the amount of movement available (in feet)
+     * @param out where the reachable grid spaces are written, as y * size + x;
+     * must be long enough to hold every grid space that could be reached
+     * @return the number of grid spaces written to out
+     */
+    public int reachable(GameBoard board, Coords start, int feet, int[] out) {
+        int size = board.getSize();
+        prepare(size, board.getMetric());
+        int shift = this.shift;
+        int xMask = (1 << shift) - 1;
+        if (this.bucketHead.length < feet + 1) {
+            this.bucketHead = new int[feet + 1];
+        }
+        Arrays.fill(this.bucketHead, 0, feet + 1, -1);
+        this.entries = 0;
+        int found = 0;
+        int startNode = ((start.getY() << shift) | start.getX()) << 1;
+        this.nodeStamp[startNode] = this.stamp;
+        this.cost[startNode] = 0;
+        this.cellStamp[startNode >> 1] = this.stamp;
+        push(startNode, 0);
+        for (int c = 0; c <= feet; c++) {
+            while (this.bucketHead[c] >= 0) {
+                int entry = this.bucketHead[c];
+                this.bucketHead[c] = this.entryNext[entry];
+                int node = this.entryNode[entry];
+                if (this.cost[node] < c) {
+                    continue; // a cheaper walk to this node was already expanded
+                }
+                int cell = node >> 1;
+                int x = cell & xMask;
+                int y = cell >> shift;
+                if (this.cellStamp[cell] != this.stamp) {
+                    this.cellStamp[cell] = this.stamp;
+                    out[found++] = y * size + x;
+                }
+                int parityBase = (node & 1) << 3;
+                for (int dir = 0; dir < 8; dir++) {
+                    int nx = x + DX[dir];
+                    int ny = y + DY[dir];
+                    int nc = c + this.stepCosts[parityBase + dir];
+                    if (nc > feet || nx < 0 || ny < 0 || nx >= size || ny >= size || board.getPiece(nx, ny) != null) {
+                        continue;
+                    }
+                    int next = (((ny << shift) | nx) << 1) | this.stepParities[parityBase + dir];
+                    if (this.nodeStamp[next] != this.stamp || nc < this.cost[next]) {
+                        this.nodeStamp[next] = this.stamp;
+                        this.cost[next] = nc;
+                        push(next, nc);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the cheapest walk from one location to another using A* search.
+     * The goal location must be empty.
+     * @param board the board to search
+     * @param start the starting location
+     * @param goal the location to walk to
+     * @param maxFeet the most movement the walk may cost (in feet)
+     * @param out where the walk is written, as the grid spaces (y * size + x)
+     * stepped onto in order, ending with the goal; may be null if only the
+     * cost is wanted, and must otherwise be long enough to hold the walk
+     * @return the number of steps in the walk, or -1 if there is no walk
+     * within maxFeet
+     */
+    public int findPath(GameBoard board, Coords start, Coords goal, int maxFeet, int[] out) {
+        int size = board.getSize();
+        DistanceMetric metric = board.getMetric();
+        int gx = goal.getX();
+        int gy = goal.getY();
+        if (board.getPiece(gx, gy) != null) {
+            return -1;
+        }
+        prepare(size, metric);
+        int shift = this.shift;
+        int xMask = (1 << shift) - 1;
+        this.heapSize = 0;
+        int startNode = ((start.getY() << shift) | start.getX()) << 1;
+        this.nodeStamp[startNode] = this.stamp;
+        this.cost[startNode] = 0;
+        this.parent[startNode] = -1;
+        heapPush(estimate(metric, start.getX(), start.getY(), gx, gy), startNode);
+        while (this.heapSize > 0) {
+            long top = heapPop();
+            int node = (int) top;
+            int c = this.cost[node];
+            int cell = node >> 1;
+            int x = cell & xMask;
+            int y = cell >> shift;
+            if ((int) (top >>> 32) - estimate(metric, x, y, gx, gy) > c) {
+                continue; // a cheaper walk to this node was already expanded
+            }
+            if (x == gx && y == gy) {
+                this.lastCost = c;
+                return out == null ? countSteps(node) : writePath(node, out, size);
+            }
+            int parityBase = (node & 1) << 3;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                int nc = c + this.stepCosts[parityBase + dir];
+                if (nc > maxFeet || nx < 0 || ny < 0 || nx >= size || ny >= size || board.getPiece(nx, ny) != null) {
+                    continue;
+                }
+                int next = (((ny << shift) | nx) << 1) | this.stepParities[parityBase + dir];
+                if (this.nodeStamp[next] != this.stamp || nc < this.cost[next]) {
+                    this.nodeStamp[next] = this.stamp;
+                    this.cost[next] = nc;
+                    this.parent[next] = node;
+                    heapPush(nc + estimate(metric, nx, ny, gx, gy), next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the cost of the cheapest walk from one location to another.
+     * @param board the board to search
+     * @param start the starting location
+     * @param goal the location to walk to; must be empty
+     * @param maxFeet the most movement the walk may cost (in feet)
+     * @return the cost of the walk (in feet), or -1 if there is no walk
+     * within maxFeet
+     */
+    public int pathCost(GameBoard board, Coords start, Coords goal, int maxFeet) {
+        return findPath(board, start, goal, maxFeet, null) < 0 ? -1 : this.lastCost;
+    }
+
+    /**
+     * Getter for the cost of the last walk found.
+     * @return the cost (in feet) of the walk last found by findPath()
+     */
+    public int getLastCost() {
+        return lastCost;
+    }
+
+    /**
+     * Starts a new search: grows the per-node arrays if the board is larger
+     * than any searched before, and fills in the step costs for the metric.
+     * @param size the size of the board about to be searched
+     * @param metric the metric of the board about to be searched
+     */
+    private void prepare(int size, DistanceMetric metric) {
+        this.shift = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+        int nodes = (size << this.shift) * 2;
+        if (this.cost.length < nodes) {
+            this.cost = new int[nodes];
+            this.parent = new int[nodes];
+            this.nodeStamp = new int[nodes];
+            this.cellStamp = new int[nodes / 2];
+            this.stamp = 0;
+        }
+        if (++this.stamp == 0) {
+            // the stamp wrapped around, so old stamps could look current
+            Arrays.fill(this.nodeStamp, 0);
+            Arrays.fill(this.cellStamp, 0);
+            this.stamp = 1;
+        }
+        for (int parity = 0; parity < 2; parity++) {
+            for (int dir = 0; dir < 8; dir++) {
+                boolean diagonal = (dir & 1) == 1;
+                int cost = STRAIGHT_COST;
+                int nextParity = parity;
+                if (diagonal && metric == DistanceMetric.ALTERNATING) {
+                    cost = STRAIGHT_COST << parity;
+                    nextParity = parity ^ 1;
+                } else if (diagonal && metric == DistanceMetric.EUCLIDEAN) {
+                    cost = EUCLIDEAN_DIAGONAL_COST;
+                }
+                this.stepCosts[(parity << 3) + dir] = cost;
+                this.stepParities[(parity << 3) + dir] = nextParity;
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of walking between two grid spaces on an empty
+     * board. The estimate is never more than the true cost, which A* needs.
+     * @param metric the metric of the board
+     * @param x1 x-coordinate of the first grid space
+     * @param y1 y-coordinate of the first grid space
+     * @param x2 x-coordinate of the second grid space
+     * @param y2 y-coordinate of the second grid space
+     * @return the estimated cost (in feet)
+     */
+    private static int estimate(DistanceMetric metric, int x1, int y1, int x2, int y2) {
+        int ax = Math.abs(x2 - x1);
+        int ay = Math.abs(y2 - y1);
+        int diagonals = Math.min(ax, ay);
+        int straights = Math.max(ax, ay) - diagonals;
+        if (metric == DistanceMetric.EUCLIDEAN) {
+            return straights * STRAIGHT_COST + diagonals * EUCLIDEAN_DIAGONAL_COST;
+        }
+        return metric.tiles(ax, ay) * STRAIGHT_COST;
+    }
+
+    /**
+     * Adds an entry to the bucket queue.
+     * @param node the node to add
+     * @param c the cost it was reached with
+     */
+    private void push(int node, int c) {
+        if (this.entries == this.entryNode.length) {
+            this.entryNode = Arrays.copyOf(this.entryNode, this.entries * 2);
+            this.entryNext = Arrays.copyOf(this.entryNext, this.entries * 2);
+        }
+        this.entryNode[this.entries] = node;
+        this.entryNext[this.entries] = this.bucketHead[c];
+        this.bucketHead[c] = this.entries++;
+    }
+
+    /**
+     * Adds an entry to the heap.
+     * @param priority the estimated total cost of the node
+     * @param node the node to add
+     */
+    private void heapPush(int priority, int node) {
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.heapSize * 2);
+        }
+        long entry = ((long) priority << 32) | node;
+        int i = this.heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >> 1;
+            if (this.heap[up] <= entry) {
+                break;
+            }
+            this.heap[i] = this.heap[up];
+            i = up;
+        }
+        this.heap[i] = entry;
+    }
+
+    /**
+     * Removes the entry with the lowest estimated total cost from the heap.
+     * @return the removed entry
+     */
+    private long heapPop() {
+        long top = this.heap[0];
+        long last = this.heap[--this.heapSize];
+        int i = 0;
+        int half = this.heapSize >> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+                child++;
+            }
+            if (last <= this.heap[child]) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        this.heap[i] = last;
+        return top;
+    }
+
+    /**
+     * Counts the steps on the walk ending at a node.
+     * @param node the last node of the walk
+     * @return the number of steps from the start
+     */
+    private int countSteps(int node) {
+        int steps = 0;
+        for (int n = node; this.parent[n] >= 0; n = this.parent[n]) {
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Writes the walk ending at a node, in order from the first step.
+     * @param node the last node of the walk
+     * @param out where the grid spaces of the walk are written
+     * @param size the size of the board searched
+     * @return the number of steps written
+     */
+    private int writePath(int node, int[] out, int size) {
+        int steps = countSteps(node);
+        int i = steps;
+        int xMask = (1 << this.shift) - 1;
+        for (int n = node; this.parent[n] >= 0; n = this.parent[n]) {
+            int cell = n >> 1;
+            out[--i] = (cell >> this.shift) * size + (cell & xMask);
+        }
+        return steps;
+    }
+}
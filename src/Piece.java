@@ -40,9 +40,20 @@ public abstract class Piece {
      * @param location the new location the piece will have on the board
      */
     public void setLocation(Coords location) {
+        if (this.board.getUndoLog().isRecording()) {
+            this.board.getUndoLog().recordLocation(this, this.location);
+        }
         this.location = location;
     }
 
+    /**
+     * Getter for the board this piece belongs to.
+     * @return the GameBoard the simulation is taking place on
+     */
+    public GameBoard getBoard() {
+        return board;
+    }
+
     /**
      * Getter for this piece's name.
      * @return the name of this piece
@@ -58,4 +69,12 @@ public abstract class Piece {
      * piece for the user
      */
     public abstract char toChar();
+
+    /**
+     * Creates a copy of this piece belonging to another board. The copy is
+     * not placed on that board.
+     * @param board the GameBoard the copy belongs to
+     * @return a new piece in the same state as this one
+     */
+    public abstract Piece copyTo(GameBoard board);
 }
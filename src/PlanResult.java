@@ -0,0 +1,80 @@
+/**
+ * The turn a Planner chose, with how good it expects that turn to be and
+ * how much searching it took to decide.
+ *
+ * @author Mark Danza
+ */
+public class PlanResult {
+    /** the chosen turn */
+    private final TurnAction action;
+    /** the expected value of the chosen turn, from -1 (certain loss) to 1 (certain win) */
+    private final double value;
+    /** the number of positions searched */
+    private final long nodes;
+    /** the time spent searching (in nanoseconds) */
+    private final long nanos;
+
+    /**
+     * Creates a new PlanResult.
+     * @param action the chosen turn
+     * @param value the expected value of the chosen turn, from -1 to 1
+     * @param nodes the number of positions searched
+     * @param nanos the time spent searching (in nanoseconds)
+     */
+    public PlanResult(TurnAction action, double value, long nodes, long nanos) {
+        this.action = action;
+        this.value = value;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Getter for the chosen turn.
+     * @return the turn the planner chose, or null if there was nothing to do
+     */
+    public TurnAction getAction() {
+        return action;
+    }
+
+    /**
+     * Getter for the expected value of the chosen turn.
+     * @return the expected value, from -1 (certain loss) to 1 (certain win)
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Getter for the number of positions searched.
+     * @return the number of positions searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Getter for the time spent searching.
+     * @return the time spent searching (in nanoseconds)
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Calculates how fast the search went.
+     * @return the number of positions searched per second
+     */
+    public double getNodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Builds a one-line summary of this result.
+     * @return a String describing the turn, its value and the search speed
+     */
+    @Override
+    public String toString() {
+        return String.format("%s (value %.3f, %d nodes in %.1f ms, %.0f nodes/s)",
+                action, value, nodes, nanos / 1e6, getNodesPerSecond());
+    }
+}
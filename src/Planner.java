@@ -0,0 +1,234 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Searches ahead to pick the best turn for an Attacker. Each worker thread
+ * searches its own fork of the board, trying turns with GameBoard.mark() and
+ * undoing them with rollback(), so the real board is never touched and no
+ * thread shares any state with another while searching.
+ *
+ * Positions are scored from the side of the Attacker being planned for:
+ * 1 if every enemy is dead, -1 if every ally is, and otherwise the fraction
+ * of its side's total HP left minus the fraction of the other side's.
+ *
+ * Usage: java Planner [millis] [threads]
+ *   plans the first turn of a sample fight with both planners, each given
+ *   that much time on that many threads
+ *
+ * @author Mark Danza
+ */
+public abstract class Planner {
+    /** the default time given to each planner by main() */
+    private static final long DEFAULT_MILLIS = 1000;
+
+    /** the pool the workers search in */
+    private final ForkJoinPool pool;
+    /** the number of worker threads */
+    private final int threads;
+    /** the most time (in milliseconds) one plan may take, or 0 for no limit */
+    private long timeLimit;
+
+    /**
+     * Creates a new Planner.
+     * @param threads the number of worker threads to search with
+     */
+    public Planner(int threads) {
+        this.pool = new ForkJoinPool(threads);
+        this.threads = threads;
+        this.timeLimit = 0;
+    }
+
+    /**
+     * Getter for the pool the workers search in.
+     * @return the ForkJoinPool of this planner
+     */
+    protected ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Getter for the number of worker threads.
+     * @return the number of threads searched with
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Getter for the time limit of one plan.
+     * @return the most time (in milliseconds) one plan may take, or 0 for no limit
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Limits the time one plan may take. The search stops once the limit is
+     * reached and the best turn found so far is returned.
+     * @param timeLimit the limit (in milliseconds), or 0 for no limit
+     */
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Works out when a search started now has to stop.
+     * @param start the time the search started, from System.nanoTime()
+     * @return the System.nanoTime() value to stop at
+     */
+    protected long deadline(long start) {
+        return this.timeLimit == 0 ? Long.MAX_VALUE : start + this.timeLimit * 1000000L;
+    }
+
+    /**
+     * Picks the best turn for the first living Attacker in a turn order. The
+     * board is not changed.
+     * @param board the board the fight is on
+     * @param turnOrder every Attacker in the fight in turn order, starting
+     * with the one to plan for (as from TurnScheduler.getTurnOrder())
+     * @return the chosen turn, with statistics about the search
+     */
+    public abstract PlanResult plan(GameBoard board, List<Attacker> turnOrder);
+
+    /**
+     * Stops the worker threads of this planner. It cannot plan again after
+     * this is called.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Finds the copies of the Attackers in a turn order on a fork of their
+     * board. Attackers that are no longer on the board are left out.
+     * @param fork a board made by GameBoard.fork()
+     * @param turnOrder the Attackers on the original board, in turn order
+     * @return the Attackers on the fork, in the same turn order
+     */
+    protected static Attacker[] onFork(GameBoard fork, List<Attacker> turnOrder) {
+        int living = 0;
+        Attacker[] order = new Attacker[turnOrder.size()];
+        for (Attacker piece : turnOrder) {
+            if (piece.getHP() > 0) {
+                Coords loc = piece.getLocation();
+                order[living++] = (Attacker) fork.getPiece(loc.getX(), loc.getY());
+            }
+        }
+        Attacker[] result = new Attacker[living];
+        System.arraycopy(order, 0, result, 0, living);
+        return result;
+    }
+
+    /**
+     * Scores a position from one side's point of view.
+     * @param order every Attacker in the fight
+     * @param players true to score for the Players, false for the Enemies
+     * @return 1 if the other side is wiped out, -1 if this side is, and
+     * otherwise the difference between the fractions of HP each side has left
+     */
+    protected static double evaluate(Attacker[] order, boolean players) {
+        int ownHp = 0;
+        int ownMax = 0;
+        int otherHp = 0;
+        int otherMax = 0;
+        for (Attacker piece : order) {
+            int hp = Math.max(0, piece.getHP());
+            if ((piece instanceof Player) == players) {
+                ownHp += hp;
+                ownMax += piece.getMaxHP();
+            } else {
+                otherHp += hp;
+                otherMax += piece.getMaxHP();
+            }
+        }
+        if (otherHp == 0) {
+            return 1;
+        } else if (ownHp == 0) {
+            return -1;
+        }
+        return (double) ownHp / ownMax - (double) otherHp / otherMax;
+    }
+
+    /**
+     * Checks whether a fight is over.
+     * @param order every Attacker in the fight
+     * @return true if either side has no living Attackers
+     */
+    protected static boolean isOver(Attacker[] order) {
+        boolean players = false;
+        boolean enemies = false;
+        for (Attacker piece : order) {
+            if (piece.getHP() > 0) {
+                if (piece instanceof Player) {
+                    players = true;
+                } else {
+                    enemies = true;
+                }
+            }
+        }
+        return !players || !enemies;
+    }
+
+    /**
+     * Finds the next living Attacker in turn order.
+     * @param order every Attacker in the fight, in turn order
+     * @param turn the position to start looking from; may be past the end of
+     * order, in which case it wraps around
+     * @return the position in order of the next living Attacker, at or after
+     * turn (without wrapping), or -1 if every Attacker is dead
+     */
+    protected static int nextLiving(Attacker[] order, int turn) {
+        for (int i = 0; i < order.length; i++) {
+            if (order[(turn + i) % order.length].getHP() > 0) {
+                return turn + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves an Attacker to a grid space as part of a searched turn.
+     * @param actor the Attacker to move
+     * @param cell the grid space to move to, as y * size + x
+     * @return true if the Attacker is now at cell
+     */
+    protected static boolean moveTo(Attacker actor, int cell) {
+        GameBoard board = actor.getBoard();
+        int size = board.getSize();
+        Coords loc = actor.getLocation();
+        if (loc.getY() * size + loc.getX() == cell) {
+            return true;
+        }
+        return board.move(loc, board.at(cell % size, cell / size));
+    }
+
+    /**
+     * Plans the first turn of a sample fight with each planner and prints
+     * what each chose and how fast it searched.
+     * @param args command line arguments: see the class description
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MILLIS;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        // 2 players facing 3 goblins, close enough to fight on the first turn
+        Scenario scenario = new Scenario(12);
+        scenario.addPlayer("Fighter", Weapon.shortsword, new Coords(4, 4));
+        scenario.addPlayer("Archer", Weapon.shortbow, new Coords(2, 3));
+        for (int i = 0; i < 3; i++) {
+            scenario.addEnemy("Goblin " + (i + 1), Weapon.shortsword, new Coords(3 + 2 * i, 8));
+        }
+        Encounter encounter = scenario.newEncounter(new SplitMixDice(42));
+        TurnScheduler scheduler = new TurnScheduler(encounter.getBoard(), encounter.getCombatants());
+        Planner[] planners = {new ExpectimaxPlanner(threads), new MctsPlanner(threads)};
+        for (Planner planner : planners) {
+            planner.setTimeLimit(millis);
+            PlanResult result = planner.plan(encounter.getBoard(), scheduler.getTurnOrder());
+            System.out.println(planner.getClass().getSimpleName() + " for " + scheduler.getCurrent().getName()
+                    + ": " + result);
+            if (planner instanceof ExpectimaxPlanner) {
+                System.out.println("  transposition table: " + ((ExpectimaxPlanner) planner).getTable());
+            }
+            planner.shutdown();
+        }
+    }
+}
@@ -15,6 +15,17 @@ public class Player extends Attacker {
         super(name, board, weapon);
     }
 
+    /**
+     * Creates a new Player piece with a set of stats.
+     * @param name the name of this player
+     * @param board the GameBoard the simulation is taking place on
+     * @param weapon the Weapon this player uses to make attacks
+     * @param stats the modifier, AC, maximum HP and speed of this player
+     */
+    public Player(String name, GameBoard board, Weapon weapon, AttackerStats stats) {
+        super(name, board, weapon, stats);
+    }
+
     /**
      * The character representing a Player piece is 'P'.
      * @return the character representing this piece
@@ -23,4 +34,15 @@ public class Player extends Attacker {
     public char toChar() {
         return 'P';
     }
-}
+
+    /**
+     * Creates a copy of this player, with the same stats, HP, XP and Strategy,
+     * belonging to another board.
+     * @param board the GameBoard the copy belongs to
+     * @return a new Player in the same state as this one
+     */
+    @Override
+    public Piece copyTo(GameBoard board) {
+        return copyStateTo(new Player(getName(), board, getWeapon(), getStats()));
+    }
+}
\ No newline at end of file
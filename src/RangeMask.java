@@ -0,0 +1,108 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape of every grid space within a distance of a center grid space
+ * under one DistanceMetric, for area effects and AI queries that need all of
+ * those spaces at once. Because every metric measures a shape that is
+ * symmetric and has no gaps, the mask is stored as the half-width of each
+ * row: the grid space at offset (dx, dy) is inside the mask exactly when
+ * |dx| <= getHalfWidth(dy).
+ *
+ * Masks do not depend on the board, so they are built once per metric and
+ * distance and shared.
+ *
+ * @author Mark Danza
+ */
+public class RangeMask {
+    /** masks already built, keyed by metric and distance in grid spaces */
+    private static final ConcurrentHashMap<Long, RangeMask> CACHE = new ConcurrentHashMap<>();
+
+    /** the metric this mask was built with */
+    private final DistanceMetric metric;
+    /** the distance (in grid spaces) covered by this mask */
+    private final int radius;
+    /** halfWidths[dy + radius] is the largest |dx| inside the mask in row dy */
+    private final int[] halfWidths;
+    /** the number of grid spaces inside the mask */
+    private final int cellCount;
+
+    /**
+     * Builds a new mask.
+     * @param metric the metric distances are measured with
+     * @param radius the distance (in grid spaces) covered by the mask
+     */
+    private RangeMask(DistanceMetric metric, int radius) {
+        this.metric = metric;
+        this.radius = radius;
+        this.halfWidths = new int[2 * radius + 1];
+        int cells = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            int half = radius;
+            while (half > 0 && !metric.withinTiles(half, dy, radius)) {
+                half--;
+            }
+            this.halfWidths[dy + radius] = half;
+            cells += 2 * half + 1;
+        }
+        this.cellCount = cells;
+    }
+
+    /**
+     * Getter for the mask of every grid space within a distance in feet.
+     * @param metric the metric distances are measured with
+     * @param feet the distance (in feet); must not be negative
+     * @return the shared mask for that metric and distance
+     */
+    public static RangeMask forFeet(DistanceMetric metric, int feet) {
+        final int radius = feet / GameBoard.FEET_PER_TILE;
+        long key = ((long) metric.ordinal() << 32) | radius;
+        RangeMask mask = CACHE.get(key);
+        if (mask == null) {
+            mask = CACHE.computeIfAbsent(key, k -> new RangeMask(metric, radius));
+        }
+        return mask;
+    }
+
+    /**
+     * Getter for the metric of this mask.
+     * @return the metric distances are measured with
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Getter for the radius of this mask.
+     * @return the distance (in grid spaces) covered by this mask
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Getter for the width of one row of this mask.
+     * @param dy a vertical offset between -getRadius() and getRadius()
+     * @return the largest |dx| inside the mask in that row
+     */
+    public int getHalfWidth(int dy) {
+        return halfWidths[dy + radius];
+    }
+
+    /**
+     * Checks whether an offset from the center is inside this mask.
+     * @param dx the horizontal offset
+     * @param dy the vertical offset
+     * @return true if (dx, dy) is within the mask's distance
+     */
+    public boolean contains(int dx, int dy) {
+        return dy >= -radius && dy <= radius && Math.abs(dx) <= halfWidths[dy + radius];
+    }
+
+    /**
+     * Getter for the size of this mask.
+     * @return the number of grid spaces inside the mask (including the center)
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * The reasons a GameBoard can refuse a proposed move or attack action.
+ *
+ * @author Mark Danza
+ */
+public enum Rejection {
+    /** a move was proposed from a location without an Attacker, or to an occupied location */
+    NO_MOVER_OR_BLOCKED("Cannot move: No piece at start location or occupied end location."),
+    /** a move was proposed that is longer than the mover's speed */
+    TOO_FAR("Cannot move that far."),
+    /** a move was proposed with no walk around other pieces that fits within the mover's speed */
+    NO_PATH("Cannot move there: no open path within the piece's speed."),
+    /** an attack was proposed from or against a location without an Attacker */
+    INVALID_ATTACK("Invalid attack source or target."),
+    /** an attack was proposed against a target outside the range of the source's weapon */
+    OUT_OF_RANGE("Target out of attack range.");
+
+    /** the message shown to the user when an action is rejected for this reason */
+    private final String message;
+
+    /**
+     * Creates a Rejection with a message for the user.
+     * @param message the message shown to the user
+     */
+    Rejection(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Getter for the message describing this rejection.
+     * @return a message suitable for showing to the user
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,442 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a log written by ReplayWriter. The log is memory-mapped rather than
+ * read through a stream, so jumping to a trial costs nothing but the page
+ * faults of the bytes actually read, and reading every trial in order runs
+ * as fast as the disk can supply pages.
+ *
+ * When the reader is opened, the index is read once to find where each
+ * trial's block is; after that, replay() can go straight to any trial and
+ * play it again on a GameBoard, and scan() decodes every trial in the order
+ * they were written.
+ *
+ * Usage: java ReplayReader [trials] [trial] [seed]
+ *   runs a batch of the sample scenario with and without a log to measure
+ *   the cost of logging, replays one trial from the log with its events
+ *   printed and checks it against the trial played again from its seed, then
+ *   times reading the whole log
+ *
+ * @author Mark Danza
+ */
+public class ReplayReader implements Closeable {
+    /** the most bytes mapped at once */
+    private static final long WINDOW_SIZE = 1L << 30;
+    /** the default number of trials run by main() */
+    private static final long DEFAULT_TRIALS = 200000;
+
+    /** the channel of the main file */
+    private final FileChannel log;
+    /** the size of the main file */
+    private final long size;
+    /** the position of each trial's block in the main file, by trial number, or -1 if it was not recorded */
+    private final long[] offsets;
+    /** the number of trials in the log */
+    private final long trials;
+    /** the part of the main file mapped at the moment */
+    private MappedByteBuffer window;
+    /** the position in the main file of the first byte of window */
+    private long windowStart;
+    /** the position in window of the next byte to decode */
+    private int pos;
+
+    /**
+     * Opens a log and reads its index.
+     * @param file the name of the main file of the log
+     * @throws IOException if the files cannot be read or are not a log
+     */
+    public ReplayReader(String file) throws IOException {
+        this.log = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        this.size = this.log.size();
+        mapAt(0);
+        if (this.size < 5 || this.window.getInt(0) != ReplayWriter.MAGIC
+                || this.window.get(4) != ReplayWriter.VERSION) {
+            this.log.close();
+            throw new IOException(file + " is not a replay log of version " + ReplayWriter.VERSION);
+        }
+        try (FileChannel index = FileChannel.open(Paths.get(file + ReplayWriter.INDEX_SUFFIX),
+                StandardOpenOption.READ)) {
+            long entries = index.size() / ReplayWriter.INDEX_ENTRY_SIZE;
+            MappedByteBuffer map = index.map(FileChannel.MapMode.READ_ONLY, 0, entries * ReplayWriter.INDEX_ENTRY_SIZE);
+            long highest = -1;
+            for (int i = 0; i < entries; i++) {
+                highest = Math.max(highest, map.getLong(i * ReplayWriter.INDEX_ENTRY_SIZE));
+            }
+            this.offsets = new long[(int) (highest + 1)];
+            Arrays.fill(this.offsets, -1);
+            for (int i = 0; i < entries; i++) {
+                int at = i * ReplayWriter.INDEX_ENTRY_SIZE;
+                this.offsets[(int) map.getLong(at)] = map.getLong(at + 8);
+            }
+            this.trials = entries;
+        }
+    }
+
+    /**
+     * Getter for the number of trials in the log.
+     * @return the number of trials recorded
+     */
+    public long getTrials() {
+        return trials;
+    }
+
+    /**
+     * Checks whether a trial was recorded.
+     * @param trial a trial number
+     * @return true if the log has a block for that trial
+     */
+    public boolean hasTrial(long trial) {
+        return trial >= 0 && trial < this.offsets.length && this.offsets[(int) trial] >= 0;
+    }
+
+    /**
+     * Looks up the seed a trial's Dice were given, so that the trial can be
+     * played again from scratch.
+     * @param trial the number of a recorded trial
+     * @return the seed of the trial's Dice
+     * @throws IOException if the log cannot be read
+     */
+    public long getSeed(long trial) throws IOException {
+        seek(trial);
+        readLong(); // the trial number
+        return readSigned();
+    }
+
+    /**
+     * Plays a recorded trial again on a board. Every move is made with
+     * GameBoard.move() and every hit is dealt with GameBoard.applyAttack(),
+     * so the board's listener hears the same events, in the same order, as
+     * it would have during the trial itself.
+     * @param trial the number of a recorded trial
+     * @param board a board in the state the trial started in, as built by
+     * Scenario.newEncounter()
+     * @return the outcome recorded for the trial
+     * @throws IOException if the log cannot be read, or the trial does not
+     * fit the board
+     */
+    public Encounter.Outcome replay(long trial, GameBoard board) throws IOException {
+        seek(trial);
+        readLong();
+        readSigned();
+        CombatListener listener = board.getListener();
+        while (true) {
+            byte tag = this.window.get(this.pos++);
+            if (tag == ReplayWriter.END) {
+                return Encounter.Outcome.values()[readInt()];
+            }
+            int x1 = readInt();
+            int y1 = readInt();
+            if (tag == ReplayWriter.KILL) {
+                continue; // the kill follows from the hit before it
+            }
+            Coords from = board.at(x1, y1);
+            Coords to = board.at(readInt(), readInt());
+            if (tag == ReplayWriter.MOVE) {
+                if (!board.move(from, to)) {
+                    throw new IOException("trial " + trial + " moves (" + x1 + ", " + y1 + ") to (" + to.getX() + ", "
+                            + to.getY() + "), which the board rejects");
+                }
+                continue;
+            }
+            Piece attacker = board.getPiece(from.getX(), from.getY());
+            Piece target = board.getPiece(to.getX(), to.getY());
+            if (!(attacker instanceof Attacker) || !(target instanceof Attacker)) {
+                throw new IOException("trial " + trial + " attacks from (" + x1 + ", " + y1 + ") to (" + to.getX() + ", "
+                        + to.getY() + "), which the board has no pieces for");
+            }
+            int roll = readSignedInt();
+            if (tag == ReplayWriter.HIT) {
+                int dmg = readInt();
+                listener.attackHit((Attacker) attacker, (Attacker) target, roll, dmg);
+                board.applyAttack(from, to, dmg);
+            } else {
+                listener.attackMissed((Attacker) attacker, (Attacker) target, roll);
+            }
+        }
+    }
+
+    /**
+     * Decodes every trial in the log, in the order they were written, and
+     * passes each record to a Handler. No board is needed.
+     * @param handler receives the records
+     * @return the number of trials decoded
+     */
+    public long scan(Handler handler) {
+        long count = 0;
+        long position = 5;
+        while (position < this.size) {
+            ensureMapped(position, 10);
+            int length = readInt();
+            long start = this.windowStart + this.pos;
+            ensureMapped(start, length);
+            handler.trialStarted(readLong(), readSigned());
+            while (true) {
+                byte tag = this.window.get(this.pos++);
+                if (tag == ReplayWriter.END) {
+                    handler.trialEnded(Encounter.Outcome.values()[readInt()], readInt());
+                    break;
+                }
+                int x1 = readInt();
+                int y1 = readInt();
+                if (tag == ReplayWriter.KILL) {
+                    handler.killed(x1, y1);
+                } else if (tag == ReplayWriter.MOVE) {
+                    handler.moved(x1, y1, readInt(), readInt());
+                } else if (tag == ReplayWriter.HIT) {
+                    handler.hit(x1, y1, readInt(), readInt(), readSignedInt(), readInt());
+                } else {
+                    handler.missed(x1, y1, readInt(), readInt(), readSignedInt());
+                }
+            }
+            position = start + length;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Closes the log.
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.log.close();
+    }
+
+    /**
+     * Receives the records of a log from scan(). Every method does nothing
+     * unless it is overridden.
+     */
+    public interface Handler {
+        /**
+         * Called at the start of each trial.
+         * @param trial the trial number
+         * @param seed the seed of the trial's Dice
+         */
+        default void trialStarted(long trial, long seed) {
+        }
+
+        /**
+         * Called for each move.
+         * @param fromX the x-coordinate moved from
+         * @param fromY the y-coordinate moved from
+         * @param toX the x-coordinate moved to
+         * @param toY the y-coordinate moved to
+         */
+        default void moved(int fromX, int fromY, int toX, int toY) {
+        }
+
+        /**
+         * Called for each hit.
+         * @param sourceX the x-coordinate of the attacker
+         * @param sourceY the y-coordinate of the attacker
+         * @param targetX the x-coordinate of the target
+         * @param targetY the y-coordinate of the target
+         * @param roll the attack roll
+         * @param dmg the damage dealt
+         */
+        default void hit(int sourceX, int sourceY, int targetX, int targetY, int roll, int dmg) {
+        }
+
+        /**
+         * Called for each miss.
+         * @param sourceX the x-coordinate of the attacker
+         * @param sourceY the y-coordinate of the attacker
+         * @param targetX the x-coordinate of the target
+         * @param targetY the y-coordinate of the target
+         * @param roll the attack roll
+         */
+        default void missed(int sourceX, int sourceY, int targetX, int targetY, int roll) {
+        }
+
+        /**
+         * Called for each piece killed.
+         * @param x the x-coordinate of the piece
+         * @param y the y-coordinate of the piece
+         */
+        default void killed(int x, int y) {
+        }
+
+        /**
+         * Called at the end of each trial.
+         * @param outcome the outcome of the trial
+         * @param rounds the number of rounds played
+         */
+        default void trialEnded(Encounter.Outcome outcome, int rounds) {
+        }
+    }
+
+    /**
+     * Moves to the start of a trial's block, past its length.
+     * @param trial the number of a recorded trial
+     * @throws IOException if the trial was not recorded
+     */
+    private void seek(long trial) throws IOException {
+        if (!hasTrial(trial)) {
+            throw new IOException("trial " + trial + " is not in the log");
+        }
+        long position = this.offsets[(int) trial];
+        ensureMapped(position, 10);
+        int length = readInt();
+        ensureMapped(this.windowStart + this.pos, length);
+    }
+
+    /**
+     * Makes sure a range of the main file is mapped, moving the window if it
+     * is not, and moves to the start of the range.
+     * @param position the position in the main file of the range
+     * @param length the number of bytes in the range; it may run past the end of the file
+     */
+    private void ensureMapped(long position, int length) {
+        long end = Math.min(this.size, position + length);
+        if (position < this.windowStart || end > this.windowStart + this.window.limit()) {
+            mapAt(position);
+        }
+        this.pos = (int) (position - this.windowStart);
+    }
+
+    /**
+     * Maps the part of the main file starting at a position.
+     * @param position the position in the main file to map from
+     */
+    private void mapAt(long position) {
+        try {
+            this.window = this.log.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, this.size - position));
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot map the replay log", e);
+        }
+        this.windowStart = position;
+        this.pos = 0;
+    }
+
+    /**
+     * Decodes a varint that fits in an int.
+     * @return the value
+     */
+    private int readInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = this.window.get(this.pos++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Decodes a zigzag-encoded varint that fits in an int.
+     * @return the value, which may be negative
+     */
+    private int readSignedInt() {
+        int z = readInt();
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /**
+     * Decodes a varint.
+     * @return the value
+     */
+    private long readLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = this.window.get(this.pos++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Decodes a zigzag-encoded varint.
+     * @return the value, which may be negative
+     */
+    private long readSigned() {
+        long z = readLong();
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /**
+     * Runs a logged batch, replays one trial from the log and reads the
+     * whole log back, printing how long each step took.
+     * @param args command line arguments: see the class description
+     * @throws IOException if the log cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        long trials = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TRIALS;
+        long chosen = args.length > 1 ? Long.parseLong(args[1]) : trials / 2;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Scenario scenario = BatchSimulator.sampleScenario();
+        File file = File.createTempFile("replay", ".log");
+        file.deleteOnExit();
+        new File(file.getPath() + ReplayWriter.INDEX_SUFFIX).deleteOnExit();
+
+        // the same batch with and without a log, each run twice so the second runs are warmed up
+        long plain = 0;
+        long logged = 0;
+        ReplayWriter writer = null;
+        for (int run = 0; run < 2; run++) {
+            BatchSimulator simulator = new BatchSimulator(scenario, threads, seed);
+            long start = System.nanoTime();
+            simulator.run(trials);
+            plain = System.nanoTime() - start;
+            writer = new ReplayWriter(file.getPath());
+            simulator.setReplayLog(writer);
+            start = System.nanoTime();
+            simulator.run(trials);
+            logged = System.nanoTime() - start;
+            writer.close();
+            simulator.shutdown();
+        }
+        System.out.printf("%d trials: %.0f ms without a log, %.0f ms with one (%+.1f%%), %.1f bytes per trial%n",
+                trials, plain / 1e6, logged / 1e6, (logged - plain) * 100.0 / plain,
+                (double) writer.getBytes() / trials);
+
+        try (ReplayReader reader = new ReplayReader(file.getPath())) {
+            // replay one trial with its events printed, then check it against the trial played from its seed
+            Encounter replayed = scenario.newEncounter();
+            ConsoleCombatListener console = new ConsoleCombatListener();
+            replayed.getBoard().setListener(console);
+            Encounter.Outcome outcome = reader.replay(chosen, replayed.getBoard());
+            console.flush();
+            console.close();
+            Encounter original = scenario.newEncounter(new SplitMixDice(reader.getSeed(chosen)));
+            Encounter.Outcome played = original.run();
+            System.out.println("Trial " + chosen + ": " + outcome + " in the log, " + played + " played again; boards "
+                    + (replayed.getBoard().getHash() == original.getBoard().getHash() ? "match" : "DIFFER"));
+
+            // read the whole log
+            long start = System.nanoTime();
+            final long[] events = {0};
+            long count = reader.scan(new Handler() {
+                @Override
+                public void moved(int fromX, int fromY, int toX, int toY) {
+                    events[0]++;
+                }
+
+                @Override
+                public void hit(int sourceX, int sourceY, int targetX, int targetY, int roll, int dmg) {
+                    events[0]++;
+                }
+
+                @Override
+                public void missed(int sourceX, int sourceY, int targetX, int targetY, int roll) {
+                    events[0]++;
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Read %d trials (%d events, %.1f MB) in %.0f ms (%.0f MB/s)%n", count, events[0],
+                    reader.size / 1e6, elapsed / 1e6, reader.size / 1e6 / (elapsed / 1e9));
+        }
+    }
+}
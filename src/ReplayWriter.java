@@ -0,0 +1,366 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary log of every action taken in a batch of fights, so that
+ * any single fight can be found and replayed later with ReplayReader.
+ *
+ * The log is two files. The main file starts with a header (MAGIC and
+ * VERSION) followed by one block per trial: the length of the block, then
+ * the trial number and Dice seed, then one record per event, then an END
+ * record with the outcome and number of rounds. Each record is a tag byte
+ * followed by its fields as varints (7 bits per byte, low bits first), so a
+ * move or an attack between nearby grid spaces takes 5 to 7 bytes. The
+ * index file (the main file's name plus INDEX_SUFFIX) holds one fixed-width
+ * entry per trial, its number and the position of its block, so a reader
+ * can go straight to any trial.
+ *
+ * Each thread records its trials with its own Recorder, which encodes
+ * events into its own buffer with no locking and only hands whole buffers
+ * of finished trials to the writer. The writer appends them to the files
+ * through FileChannels, one write per buffer.
+ *
+ * @author Mark Danza
+ */
+public class ReplayWriter implements Closeable {
+    /** the first four bytes of every log: "DNDR" */
+    public static final int MAGIC = 0x444E4452;
+    /** the version of the format written */
+    public static final byte VERSION = 1;
+    /** added to the name of a log to name its index */
+    public static final String INDEX_SUFFIX = ".idx";
+    /** the number of bytes in one index entry: the trial number and the position of its block */
+    public static final int INDEX_ENTRY_SIZE = 16;
+    /** tag of a record of a move: from x, from y, to x, to y */
+    public static final byte MOVE = 1;
+    /** tag of a record of a hit: source x, source y, target x, target y, attack roll, damage */
+    public static final byte HIT = 2;
+    /** tag of a record of a miss: source x, source y, target x, target y, attack roll */
+    public static final byte MISS = 3;
+    /** tag of a record of a kill: the x and y of the piece killed */
+    public static final byte KILL = 4;
+    /** tag of the last record of a trial: the outcome and the number of rounds */
+    public static final byte END = 5;
+    /** the size of the buffer each Recorder fills before handing it to the writer */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** the most bytes one record can take: a tag and six varints */
+    private static final int MAX_RECORD_SIZE = 1 + 6 * 5;
+
+    /** the channel of the main file */
+    private final FileChannel log;
+    /** the channel of the index file */
+    private final FileChannel index;
+    /** the number of bytes in the main file so far */
+    private long position;
+    /** the number of trials written so far */
+    private long trials;
+
+    /**
+     * Creates a new log, replacing any log with the same name.
+     * @param file the name of the main file of the log
+     * @throws IOException if the files cannot be created
+     */
+    public ReplayWriter(String file) throws IOException {
+        this.log = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.index = FileChannel.open(Paths.get(file + INDEX_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(MAGIC).put(VERSION).flip();
+        writeFully(this.log, header);
+        this.position = header.limit();
+        this.trials = 0;
+    }
+
+    /**
+     * Creates a Recorder for one thread to record its trials with.
+     * @return a new Recorder writing to this log
+     */
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Getter for the number of trials written.
+     * @return the number of trials whose blocks have been written to the files
+     */
+    public synchronized long getTrials() {
+        return trials;
+    }
+
+    /**
+     * Getter for the size of the main file.
+     * @return the number of bytes written to the main file
+     */
+    public synchronized long getBytes() {
+        return position;
+    }
+
+    /**
+     * Appends finished trials to the files.
+     * @param blocks the blocks of the trials, one after another
+     * @param entries an index entry for each trial, with the position of
+     * each block relative to the start of blocks
+     * @param count the number of trials
+     * @throws IOException if the files cannot be written
+     */
+    private synchronized void append(ByteBuffer blocks, ByteBuffer entries, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            int at = i * INDEX_ENTRY_SIZE + 8;
+            entries.putLong(at, entries.getLong(at) + this.position);
+        }
+        this.position += blocks.remaining();
+        this.trials += count;
+        writeFully(this.log, blocks);
+        writeFully(this.index, entries);
+    }
+
+    /**
+     * Writes everything left in a buffer to a channel.
+     * @param channel the channel
+     * @param buffer the bytes to write
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Closes the files. Every Recorder must be flushed first.
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.log.close();
+        this.index.close();
+    }
+
+    /**
+     * Records the trials of one thread. Set a Recorder as the listener of
+     * each trial's board, call beginTrial() before the trial and endTrial()
+     * after it, and flush() when the thread is done.
+     */
+    public class Recorder implements CombatListener {
+        /** the blocks of finished trials not yet handed to the writer */
+        private final ByteBuffer blocks;
+        /** the index entries of the trials in blocks */
+        private final ByteBuffer entries;
+        /** the number of trials in blocks */
+        private int count;
+        /** the encoded records of the trial in progress */
+        private byte[] trial;
+        /** the number of bytes in trial */
+        private int length;
+
+        /**
+         * Creates a new Recorder.
+         */
+        private Recorder() {
+            this.blocks = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.entries = ByteBuffer.allocateDirect(BUFFER_SIZE / 4);
+            this.trial = new byte[256];
+        }
+
+        /**
+         * Starts recording a trial.
+         * @param number the number of the trial
+         * @param seed the seed of the trial's Dice
+         */
+        public void beginTrial(long number, long seed) {
+            this.length = 0;
+            reserve();
+            putLong(number);
+            putLong((seed << 1) ^ (seed >> 63));
+        }
+
+        /**
+         * Finishes recording a trial, handing the buffer to the writer first
+         * if the trial does not fit in it.
+         * @param outcome the outcome of the trial
+         * @param rounds the number of rounds played
+         * @throws IOException if the log cannot be written
+         */
+        public void endTrial(Encounter.Outcome outcome, int rounds) throws IOException {
+            reserve();
+            putByte(END);
+            putInt(outcome.ordinal());
+            putInt(rounds);
+            int blockSize = varintSize(this.length) + this.length;
+            if (this.blocks.remaining() < blockSize || this.entries.remaining() < INDEX_ENTRY_SIZE) {
+                flush();
+            }
+            if (this.blocks.remaining() < blockSize) {
+                // a trial too big for the buffer is written on its own
+                ByteBuffer alone = ByteBuffer.allocate(blockSize);
+                writeBlock(alone);
+                alone.flip();
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+                entry.putLong(number()).putLong(0).flip();
+                append(alone, entry, 1);
+                return;
+            }
+            this.entries.putLong(number()).putLong(this.blocks.position());
+            writeBlock(this.blocks);
+            this.count++;
+        }
+
+        /**
+         * Hands every finished trial to the writer.
+         * @throws IOException if the log cannot be written
+         */
+        public void flush() throws IOException {
+            if (this.count > 0) {
+                this.blocks.flip();
+                this.entries.flip();
+                append(this.blocks, this.entries, this.count);
+                this.blocks.clear();
+                this.entries.clear();
+                this.count = 0;
+            }
+        }
+
+        @Override
+        public void pieceMoved(Attacker mover, Coords start, Coords end) {
+            reserve();
+            putByte(MOVE);
+            putInt(start.getX());
+            putInt(start.getY());
+            putInt(end.getX());
+            putInt(end.getY());
+        }
+
+        @Override
+        public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+            putAttack(HIT, attacker, target, roll);
+            putInt(dmg);
+        }
+
+        @Override
+        public void attackMissed(Attacker attacker, Attacker target, int roll) {
+            putAttack(MISS, attacker, target, roll);
+        }
+
+        @Override
+        public void pieceKilled(Attacker killer, Attacker victim) {
+            reserve();
+            putByte(KILL);
+            putInt(victim.getLocation().getX());
+            putInt(victim.getLocation().getY());
+        }
+
+        /**
+         * Encodes the fields shared by hits and misses.
+         * @param tag HIT or MISS
+         * @param attacker the Attacker making the attack
+         * @param target the target of the attack
+         * @param roll the attack roll, which may be negative
+         */
+        private void putAttack(byte tag, Attacker attacker, Attacker target, int roll) {
+            reserve();
+            putByte(tag);
+            putInt(attacker.getLocation().getX());
+            putInt(attacker.getLocation().getY());
+            putInt(target.getLocation().getX());
+            putInt(target.getLocation().getY());
+            putInt((roll << 1) ^ (roll >> 31));
+        }
+
+        /**
+         * Copies the trial in progress into a buffer as a block.
+         * @param out the buffer, with room for the block
+         */
+        private void writeBlock(ByteBuffer out) {
+            int n = this.length;
+            while ((n & ~0x7F) != 0) {
+                out.put((byte) ((n & 0x7F) | 0x80));
+                n >>>= 7;
+            }
+            out.put((byte) n);
+            out.put(this.trial, 0, this.length);
+        }
+
+        /**
+         * Decodes the number of the trial in progress from its first field.
+         * @return the trial number
+         */
+        private long number() {
+            long value = 0;
+            for (int i = 0, shift = 0; ; i++, shift += 7) {
+                value |= (long) (this.trial[i] & 0x7F) << shift;
+                if (this.trial[i] >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        /**
+         * Makes sure there is room for one more record in the trial in
+         * progress, so that the put methods need not check.
+         */
+        private void reserve() {
+            if (this.length + MAX_RECORD_SIZE > this.trial.length) {
+                byte[] larger = new byte[this.trial.length * 2];
+                System.arraycopy(this.trial, 0, larger, 0, this.length);
+                this.trial = larger;
+            }
+        }
+
+        /**
+         * Appends one byte to the trial in progress.
+         * @param b the byte
+         */
+        private void putByte(byte b) {
+            this.trial[this.length++] = b;
+        }
+
+        /**
+         * Appends a non-negative int to the trial in progress as a varint.
+         * @param value the value, treated as unsigned
+         */
+        private void putInt(int value) {
+            byte[] out = this.trial;
+            int i = this.length;
+            while ((value & ~0x7F) != 0) {
+                out[i++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[i++] = (byte) value;
+            this.length = i;
+        }
+
+        /**
+         * Appends a long to the trial in progress as a varint.
+         * @param value the value, treated as unsigned
+         */
+        private void putLong(long value) {
+            byte[] out = this.trial;
+            int i = this.length;
+            while ((value & ~0x7FL) != 0) {
+                out[i++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[i++] = (byte) value;
+            this.length = i;
+        }
+    }
+
+    /**
+     * Calculates the number of bytes a value takes as a varint.
+     * @param value a non-negative value
+     * @return the number of bytes in its encoding
+     */
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
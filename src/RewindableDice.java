@@ -0,0 +1,21 @@
+/**
+ * Dice whose position in their stream of rolls can be saved and returned
+ * to, so that the rolls made since then are made again. A GameBoard can
+ * only be marked and rolled back while it rolls with RewindableDice.
+ *
+ * @author Mark Danza
+ */
+public interface RewindableDice extends Dice {
+    /**
+     * Getter for the position of this Dice in its stream of rolls.
+     * @return a value that setState() can return this Dice to
+     */
+    long getState();
+
+    /**
+     * Returns this Dice to an earlier position in its stream of rolls, so
+     * that the rolls made since then are made again.
+     * @param state a value returned by getState()
+     */
+    void setState(long state);
+}
@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A description of the starting state of a fight: the size of the board
+ * and the Players and Enemies on it, each with a Weapon, stats and a
+ * starting location. A Scenario never holds a GameBoard itself, so one
+ * Scenario can be shared by any number of threads, each building its own
+ * private copy of the fight with newEncounter(). Scenarios can be written
+ * in code or read from a file by ScenarioLoader.
+ *
+ * @author Mark Danza
+ */
+public class Scenario {
+    /** the name used to identify this scenario */
+    private String name;
+    /** the size of one side of the square board the fight takes place on */
+    private int boardSize;
+    /** the pieces in this scenario, in the order they take their turns */
+    private List<Entry> entries;
+
+    /**
+     * Creates a new Scenario with an empty board of the given size.
+     * @param boardSize the number of grid spaces on a side of the board
+     */
+    public Scenario(int boardSize) {
+        this("Scenario", boardSize);
+    }
+
+    /**
+     * Creates a new named Scenario with an empty board of the given size.
+     * @param name the name of the scenario
+     * @param boardSize the number of grid spaces on a side of the board
+     */
+    public Scenario(String name, int boardSize) {
+        this.name = name;
+        this.boardSize = boardSize;
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * Getter for the name of this scenario.
+     * @return the name of this scenario
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the board size of this scenario.
+     * @return the number of grid spaces on a side of the board
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Getter for the number of pieces in this scenario.
+     * @return the number of Players and Enemies added so far
+     */
+    public int getPieceCount() {
+        return entries.size();
+    }
+
+    /**
+     * Adds a Player to this scenario.
+     * @param name the name of the player
+     * @param weapon the Weapon the player uses to make attacks
+     * @param location the starting location of the player
+     */
+    public void addPlayer(String name, Weapon weapon, Coords location) {
+        addPlayer(name, weapon, location, AttackerStats.DEFAULT);
+    }
+
+    /**
+     * Adds a Player with its own stats to this scenario.
+     * @param name the name of the player
+     * @param weapon the Weapon the player uses to make attacks
+     * @param location the starting location of the player
+     * @param stats the modifier, AC, maximum HP and speed of the player
+     */
+    public void addPlayer(String name, Weapon weapon, Coords location, AttackerStats stats) {
+        this.entries.add(new Entry(true, name, weapon, location, stats));
+    }
+
+    /**
+     * Adds an Enemy to this scenario.
+     * @param name the name of the enemy
+     * @param weapon the Weapon the enemy uses to make attacks
+     * @param location the starting location of the enemy
+     */
+    public void addEnemy(String name, Weapon weapon, Coords location) {
+        addEnemy(name, weapon, location, AttackerStats.DEFAULT);
+    }
+
+    /**
+     * Adds an Enemy with its own stats to this scenario.
+     * @param name the name of the enemy
+     * @param weapon the Weapon the enemy uses to make attacks
+     * @param location the starting location of the enemy
+     * @param stats the modifier, AC, maximum HP and speed of the enemy
+     */
+    public void addEnemy(String name, Weapon weapon, Coords location, AttackerStats stats) {
+        this.entries.add(new Entry(false, name, weapon, location, stats));
+    }
+
+    /**
+     * Makes a copy of this scenario in which every Player carries the same
+     * Weapon and has the same stats. The Enemies are shared with this
+     * scenario rather than copied.
+     * @param weapon the Weapon every Player uses to make attacks
+     * @param stats the modifier, AC, maximum HP and speed of every Player
+     * @return a new Scenario with the same name, board size and pieces
+     */
+    public Scenario withPlayerBuild(Weapon weapon, AttackerStats stats) {
+        Scenario variant = new Scenario(this.name, this.boardSize);
+        for (Entry entry : this.entries) {
+            variant.entries.add(entry.player ? new Entry(true, entry.name, weapon, entry.location, stats) : entry);
+        }
+        return variant;
+    }
+
+    /**
+     * Builds a fresh GameBoard holding new copies of every piece in this
+     * scenario at their starting locations.
+     * @return a new Encounter ready to be run
+     */
+    public Encounter newEncounter() {
+        return newEncounter(new SplitMixDice());
+    }
+
+    /**
+     * Builds a fresh GameBoard holding new copies of every piece in this
+     * scenario, with every roll on it coming from the given Dice.
+     * @param dice the Dice the new board rolls with
+     * @return a new Encounter ready to be run
+     */
+    public Encounter newEncounter(Dice dice) {
+        GameBoard board = new GameBoard(this.boardSize, dice);
+        List<Attacker> combatants = new ArrayList<>(this.entries.size());
+        for (Entry entry : this.entries) {
+            Attacker piece = entry.player
+                    ? new Player(entry.name, board, entry.weapon, entry.stats)
+                    : new Enemy(entry.name, board, entry.weapon, entry.stats);
+            board.place(piece, board.at(entry.location.getX(), entry.location.getY()));
+            combatants.add(piece);
+        }
+        return new Encounter(board, combatants);
+    }
+
+    /**
+     * The starting information for one piece in a Scenario.
+     */
+    private static class Entry {
+        /** true if this piece is a Player, false if it is an Enemy */
+        private final boolean player;
+        /** the name of the piece */
+        private final String name;
+        /** the Weapon the piece uses to make attacks */
+        private final Weapon weapon;
+        /** the starting location of the piece */
+        private final Coords location;
+        /** the modifier, AC, maximum HP and speed of the piece */
+        private final AttackerStats stats;
+
+        /**
+         * Creates a new Entry.
+         * @param player true for a Player, false for an Enemy
+         * @param name the name of the piece
+         * @param weapon the Weapon the piece uses to make attacks
+         * @param location the starting location of the piece
+         * @param stats the modifier, AC, maximum HP and speed of the piece
+         */
+        private Entry(boolean player, String name, Weapon weapon, Coords location, AttackerStats stats) {
+            this.player = player;
+            this.name = name;
+            this.weapon = weapon;
+            this.location = location;
+            this.stats = stats;
+        }
+    }
+}
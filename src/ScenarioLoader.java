@@ -0,0 +1,507 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads Scenarios from a text file, one at a time. A file is a list of
+ * statements, one per line:
+ *
+ *   weapon NAME DIE RANGE
+ *     defines a Weapon for every scenario after it, e.g. "weapon Longbow d8 150"
+ *   scenario NAME SIZE
+ *     starts a new Scenario on a SIZE x SIZE board
+ *   player NAME WEAPON X Y [mod=N] [ac=N] [hp=N] [speed=N]
+ *   enemy NAME WEAPON X Y [mod=N] [ac=N] [hp=N] [speed=N]
+ *     adds a piece to the current scenario; stats that are not given are
+ *     those of AttackerStats.DEFAULT
+ *
+ * Names containing spaces are written in double quotes, and everything from
+ * a '#' to the end of a line is a comment. The predefined weapons
+ * (Shortsword and Shortbow) can be used without being defined.
+ *
+ * The file is read through a fixed buffer and parsed as it is read: numbers
+ * are read straight from the buffer, and the only objects made are the
+ * names of pieces and scenarios, the Scenarios themselves and one shared
+ * copy of each distinct Weapon (from the WeaponCatalog) and set of stats. A
+ * catalog of tens of thousands of scenarios can therefore be streamed
+ * through next() without ever holding more than one in memory.
+ *
+ * Usage: java ScenarioLoader [file]
+ *   reads every scenario in file and reports how long it took; without a
+ *   file, generates and reads 20000 scenarios instead
+ *
+ * @author Mark Danza
+ */
+public class ScenarioLoader implements Closeable {
+    /** the size of the buffer the file is read through */
+    private static final int BUFFER_SIZE = 8192;
+    /** the number of scenarios generated by main() when no file is given */
+    private static final int GENERATED_SCENARIOS = 20000;
+
+    /** the source of the text being parsed */
+    private final Reader in;
+    /** the Weapons pieces may use, which weapon statements add to */
+    private final WeaponCatalog weapons;
+    /** the shared copy of each distinct set of stats read so far, by packed value */
+    private final Map<Long, AttackerStats> stats;
+    /** the text read from in but not yet parsed */
+    private final char[] buffer;
+    /** the position of the next character to parse in buffer */
+    private int pos;
+    /** the number of characters in buffer */
+    private int limit;
+    /** the characters of the last token read */
+    private char[] token;
+    /** the number of characters in token */
+    private int tokenLength;
+    /** the number of the line being parsed, starting at 1 */
+    private int line;
+    /** the scenario started by the last scenario statement, not yet returned */
+    private Scenario pending;
+    /** the grid spaces taken in the scenario being read, as y * size + x */
+    private int[] taken;
+
+    /**
+     * Creates a new ScenarioLoader.
+     * @param in the text to read scenarios from
+     * @param weapons the Weapons pieces may use; weapon statements are added to it
+     */
+    public ScenarioLoader(Reader in, WeaponCatalog weapons) {
+        this.in = in;
+        this.weapons = weapons;
+        this.stats = new HashMap<>();
+        this.stats.put(pack(AttackerStats.DEFAULT.getModifier(), AttackerStats.DEFAULT.getAC(),
+                AttackerStats.DEFAULT.getMaxHP(), AttackerStats.DEFAULT.getSpeed()), AttackerStats.DEFAULT);
+        this.buffer = new char[BUFFER_SIZE];
+        this.token = new char[64];
+        this.line = 1;
+        this.taken = new int[16];
+    }
+
+    /**
+     * Reads every scenario in a file.
+     * @param file the name of the file
+     * @param weapons the Weapons pieces may use; weapon statements are added to it
+     * @return the scenarios in the file, in order
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static List<Scenario> load(String file, WeaponCatalog weapons) throws IOException {
+        try (ScenarioLoader loader = new ScenarioLoader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), weapons)) {
+            List<Scenario> scenarios = new ArrayList<>();
+            for (Scenario scenario = loader.next(); scenario != null; scenario = loader.next()) {
+                scenarios.add(scenario);
+            }
+            return scenarios;
+        }
+    }
+
+    /**
+     * Reads the next scenario.
+     * @return the next scenario, with every piece listed under it, or null
+     * if there are no more
+     * @throws IOException if the text cannot be read or is not valid
+     */
+    public Scenario next() throws IOException {
+        Scenario current = this.pending;
+        this.pending = null;
+        this.tokenLength = 0;
+        int pieces = 0;
+        while (true) {
+            if (!readToken()) {
+                if (peek() < 0) {
+                    return current;
+                }
+                endLine();
+                continue;
+            }
+            if (tokenIs("weapon")) {
+                String name = readName("weapon name");
+                int die = readInt("damage die", true);
+                int range = readInt("range", false);
+                if (die < 1 || range < 0) {
+                    throw error("weapon " + name + " needs a damage die of at least 1 and a range of at least 0");
+                }
+                try {
+                    this.weapons.define(name, die, range);
+                } catch (IllegalArgumentException e) {
+                    throw error(e.getMessage());
+                }
+            } else if (tokenIs("scenario")) {
+                String name = readName("scenario name");
+                int size = readInt("board size", false);
+                if (size < 1) {
+                    throw error("board size must be at least 1");
+                }
+                Scenario scenario = new Scenario(name, size);
+                if (current != null) {
+                    this.pending = scenario;
+                    endStatement();
+                    return current;
+                }
+                current = scenario;
+            } else if (tokenIs("player") || tokenIs("enemy")) {
+                boolean player = tokenIs("player");
+                if (current == null) {
+                    throw error("pieces must come after a scenario statement");
+                }
+                String name = readName("piece name");
+                String weaponName = readName("weapon name");
+                Weapon weapon = this.weapons.get(weaponName);
+                if (weapon == null) {
+                    throw error("unknown weapon " + weaponName);
+                }
+                int x = readInt("x-coordinate", false);
+                int y = readInt("y-coordinate", false);
+                int size = current.getBoardSize();
+                if (x < 0 || y < 0 || x >= size || y >= size) {
+                    throw error("(" + x + ", " + y + ") is not on a " + size + "x" + size + " board");
+                }
+                if (pieces == this.taken.length) {
+                    int[] larger = new int[pieces * 2];
+                    System.arraycopy(this.taken, 0, larger, 0, pieces);
+                    this.taken = larger;
+                }
+                int cell = y * size + x;
+                for (int i = 0; i < pieces; i++) {
+                    if (this.taken[i] == cell) {
+                        throw error("(" + x + ", " + y + ") already has a piece on it");
+                    }
+                }
+                this.taken[pieces++] = cell;
+                AttackerStats pieceStats = readStats();
+                if (player) {
+                    current.addPlayer(name, weapon, new Coords(x, y), pieceStats);
+                } else {
+                    current.addEnemy(name, weapon, new Coords(x, y), pieceStats);
+                }
+                continue; // readStats() has already read to the end of the line
+            } else {
+                throw error("unknown statement " + tokenString());
+            }
+            endStatement();
+        }
+    }
+
+    /**
+     * Closes the text being read.
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Reads the optional stats at the end of a piece statement, and the end
+     * of the line.
+     * @return the shared copy of the stats read
+     * @throws IOException if the text cannot be read or is not valid
+     */
+    private AttackerStats readStats() throws IOException {
+        int modifier = AttackerStats.DEFAULT.getModifier();
+        int ac = AttackerStats.DEFAULT.getAC();
+        int hp = AttackerStats.DEFAULT.getMaxHP();
+        int speed = AttackerStats.DEFAULT.getSpeed();
+        while (readToken()) {
+            if (keyIs("mod")) {
+                modifier = parseInt(4, "mod", false);
+            } else if (keyIs("ac")) {
+                ac = parseInt(3, "ac", false);
+            } else if (keyIs("hp")) {
+                hp = parseInt(3, "hp", false);
+            } else if (keyIs("speed")) {
+                speed = parseInt(6, "speed", false);
+            } else {
+                throw error("expected mod=, ac=, hp= or speed= but found " + tokenString());
+            }
+        }
+        if (hp < 1 || speed < 0) {
+            throw error("hp must be at least 1 and speed at least 0");
+        }
+        if ((short) modifier != modifier || (short) ac != ac || (short) hp != hp || (short) speed != speed) {
+            // pack() keeps 16 bits of each, so larger stats would share a copy with smaller ones
+            throw error("mod, ac, hp and speed must each be between " + Short.MIN_VALUE + " and " + Short.MAX_VALUE);
+        }
+        endLine();
+        long key = pack(modifier, ac, hp, speed);
+        AttackerStats shared = this.stats.get(key);
+        if (shared == null) {
+            shared = new AttackerStats(modifier, ac, hp, speed);
+            this.stats.put(key, shared);
+        }
+        return shared;
+    }
+
+    /**
+     * Packs a set of stats into one number, for finding their shared copy.
+     * @param modifier the attack modifier
+     * @param ac the armor class
+     * @param hp the maximum HP
+     * @param speed the speed (in feet)
+     * @return the four values side by side, 16 bits each
+     * @pre every value fits in a short, so that no two sets of stats share a key
+     */
+    private static long pack(int modifier, int ac, int hp, int speed) {
+        return ((long) (modifier & 0xFFFF) << 48) | ((long) (ac & 0xFFFF) << 32)
+                | ((long) (hp & 0xFFFF) << 16) | (speed & 0xFFFF);
+    }
+
+    /**
+     * Checks that nothing but a comment follows on the current line, then
+     * moves to the next line.
+     * @throws IOException if the text cannot be read or is not valid
+     */
+    private void endStatement() throws IOException {
+        if (readToken()) {
+            throw error("unexpected " + tokenString());
+        }
+        endLine();
+    }
+
+    /**
+     * Reads a name.
+     * @param what what the name is, for the error message
+     * @return the name
+     * @throws IOException if the text cannot be read or there is no name
+     */
+    private String readName(String what) throws IOException {
+        if (!readToken()) {
+            throw error("missing " + what);
+        }
+        return tokenString();
+    }
+
+    /**
+     * Reads a whole number.
+     * @param what what the number is, for the error message
+     * @param die true if the number may be written as a die, like "d8"
+     * @return the number
+     * @throws IOException if the text cannot be read or there is no number
+     */
+    private int readInt(String what, boolean die) throws IOException {
+        if (!readToken()) {
+            throw error("missing " + what);
+        }
+        return parseInt(0, what, die);
+    }
+
+    /**
+     * Parses the last token read as a whole number.
+     * @param start the position in the token the number starts at
+     * @param what what the number is, for the error message
+     * @param die true if the number may start with a 'd', as in "d8"
+     * @return the number
+     * @throws IOException if the token is not a number
+     */
+    private int parseInt(int start, String what, boolean die) throws IOException {
+        int i = start;
+        if (die && i < this.tokenLength && this.token[i] == 'd') {
+            i++;
+        }
+        boolean negative = i < this.tokenLength && this.token[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == this.tokenLength || this.tokenLength - i > 9) {
+            throw error("expected a number for " + what + " but found " + tokenString());
+        }
+        int value = 0;
+        for (; i < this.tokenLength; i++) {
+            int digit = this.token[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("expected a number for " + what + " but found " + tokenString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks whether the last token read is a given word.
+     * @param word the word
+     * @return true if the token is exactly word
+     */
+    private boolean tokenIs(String word) {
+        if (this.tokenLength != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < this.tokenLength; i++) {
+            if (this.token[i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the last token read starts with a key and '='.
+     * @param key the key
+     * @return true if the token starts with key followed by '='
+     */
+    private boolean keyIs(String key) {
+        if (this.tokenLength <= key.length() || this.token[key.length()] != '=') {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (this.token[i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a String of the last token read.
+     * @return the characters of the token
+     */
+    private String tokenString() {
+        return new String(this.token, 0, this.tokenLength);
+    }
+
+    /**
+     * Reads the next token on the current line: a word, or a name in double
+     * quotes. Spaces and comments are skipped.
+     * @return true if a token was read, false if the line (or the text) ended first
+     * @throws IOException if the text cannot be read or a quote is not closed
+     */
+    private boolean readToken() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            this.pos++;
+            c = peek();
+        }
+        if (c == '#') {
+            while (c >= 0 && c != '\n') {
+                this.pos++;
+                c = peek();
+            }
+        }
+        if (c < 0 || c == '\n') {
+            return false;
+        }
+        this.tokenLength = 0;
+        if (c == '"') {
+            this.pos++;
+            for (c = peek(); c != '"'; c = peek()) {
+                if (c < 0 || c == '\n') {
+                    throw error("missing closing quote");
+                }
+                append((char) c);
+                this.pos++;
+            }
+            this.pos++;
+        } else {
+            while (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n' && c != '#') {
+                append((char) c);
+                this.pos++;
+                c = peek();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips to the start of the next line.
+     * @throws IOException if the text cannot be read
+     */
+    private void endLine() throws IOException {
+        int c = peek();
+        while (c >= 0 && c != '\n') {
+            this.pos++;
+            c = peek();
+        }
+        if (c == '\n') {
+            this.pos++;
+            this.line++;
+        }
+    }
+
+    /**
+     * Adds a character to the token being read.
+     * @param c the character
+     */
+    private void append(char c) {
+        if (this.tokenLength == this.token.length) {
+            char[] larger = new char[this.tokenLength * 2];
+            System.arraycopy(this.token, 0, larger, 0, this.tokenLength);
+            this.token = larger;
+        }
+        this.token[this.tokenLength++] = c;
+    }
+
+    /**
+     * Looks at the next character without moving past it, reading more text
+     * into the buffer if it has all been parsed.
+     * @return the next character, or -1 at the end of the text
+     * @throws IOException if the text cannot be read
+     */
+    private int peek() throws IOException {
+        if (this.pos == this.limit) {
+            int read = this.in.read(this.buffer, 0, this.buffer.length);
+            this.pos = 0;
+            this.limit = Math.max(0, read);
+            if (read <= 0) {
+                return -1;
+            }
+        }
+        return this.buffer[this.pos];
+    }
+
+    /**
+     * Builds the exception for invalid text on the current line.
+     * @param message what is wrong
+     * @return an IOException naming the line
+     */
+    private IOException error(String message) {
+        return new IOException("line " + this.line + ": " + message);
+    }
+
+    /**
+     * Reads every scenario in a file, or in generated text if none is given,
+     * and prints how many were read and how fast.
+     * @param args command line arguments: see the class description
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static void main(String[] args) throws IOException {
+        WeaponCatalog weapons = new WeaponCatalog();
+        Reader in;
+        if (args.length > 0) {
+            in = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8);
+        } else {
+            StringBuilder text = new StringBuilder("weapon Longsword d8 5\nweapon Longbow d8 150\n");
+            for (int i = 0; i < GENERATED_SCENARIOS; i++) {
+                text.append("scenario \"Skirmish ").append(i).append("\" 20\n");
+                for (int j = 0; j < 4; j++) {
+                    text.append("player \"Player ").append(j + 1).append("\" ").append(j % 2 == 0 ? "Longsword" : "Longbow")
+                            .append(' ').append(2 + 2 * j).append(" 2 hp=").append(10 + i % 5).append('\n');
+                }
+                for (int j = 0; j < 6; j++) {
+                    text.append("enemy \"Goblin ").append(j + 1).append("\" Shortsword ").append(2 * j)
+                            .append(" 12 ac=13 hp=7 # ").append(j).append('\n');
+                }
+            }
+            in = new StringReader(text.toString());
+        }
+        long start = System.nanoTime();
+        int scenarios = 0;
+        long pieces = 0;
+        try (ScenarioLoader loader = new ScenarioLoader(in, weapons)) {
+            for (Scenario scenario = loader.next(); scenario != null; scenario = loader.next()) {
+                scenarios++;
+                pieces += scenario.getPieceCount();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Read %d scenarios (%d pieces, %d distinct weapons) in %.1f ms (%.0f scenarios/s)%n",
+                scenarios, pieces, weapons.size(), elapsed / 1e6, scenarios / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Plays a script of commands straight onto a GameBoard, for bots and tests
+ * that issue thousands of moves and attacks at a time. A script is a text
+ * file in the PTUI's grammar with one command per line; blank lines and
+ * '#' comments are allowed. The file is read in large blocks and each line
+ * is decoded by CommandParser straight from the bytes read, so a script of
+ * millions of commands is played without making a String for any of them.
+ *
+ * Moves and attacks are carried out as the PTUI would, their results going
+ * to the board's listener. There is no turn order on a bare board, so end
+ * and board commands are skipped, and quit ends the script. A line that
+ * cannot be carried out (an unknown command, the wrong number of
+ * coordinates, or a grid space off the board) is counted and skipped.
+ *
+ * @author Mark Danza
+ */
+public class ScriptRunner {
+    /** the number of bytes of a script read at a time; also the longest line */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** the board the script is played on */
+    private final GameBoard board;
+    /** the command being carried out, reused for every line */
+    private final Command command = new Command();
+    /** the number of lines read */
+    private long lines;
+    /** the number of moves and attacks carried out or attempted */
+    private long actions;
+    /** the number of moves and attacks the board rejected */
+    private long rejected;
+    /** the number of lines that could not be carried out */
+    private long malformed;
+    /** the number of the first line that could not be carried out, or 0 */
+    private long firstMalformed;
+    /** set once a quit command is read */
+    private boolean quit;
+
+    /**
+     * Creates a new ScriptRunner for a board.
+     * @param board the board scripts are played on
+     */
+    public ScriptRunner(GameBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Plays a script file from start to end, or up to a quit command.
+     * @param script the script file
+     * @throws IOException if the file cannot be read
+     */
+    public void run(Path script) throws IOException {
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            boolean skipping = false; // set while skipping the rest of a line too long for the block
+            while (!this.quit) {
+                boolean atEnd = channel.read(block) < 0;
+                block.flip();
+                int start = 0;
+                for (int i = 0; i < block.limit() && !this.quit; i++) {
+                    if (block.get(i) == '\n') {
+                        if (!skipping) {
+                            runLine(block, start, i);
+                        }
+                        skipping = false;
+                        start = i + 1;
+                    }
+                }
+                if (atEnd) {
+                    if (start < block.limit() && !skipping && !this.quit) {
+                        runLine(block, start, block.limit()); // the last line has no '\n'
+                    }
+                    return;
+                }
+                if (start == 0 && block.limit() == block.capacity()) {
+                    // the whole block is one line: count it once and drop the rest of it
+                    if (!skipping) {
+                        this.lines++;
+                        malformed();
+                    }
+                    skipping = true;
+                    start = block.limit();
+                }
+                block.position(start);
+                block.compact();
+            }
+        }
+    }
+
+    /**
+     * Decodes and carries out one line of a script.
+     * @param block the bytes read from the script
+     * @param from the index of the first byte of the line
+     * @param to the index of the '\n' ending the line, or the end of the script
+     */
+    private void runLine(ByteBuffer block, int from, int to) {
+        this.lines++;
+        apply(CommandParser.parse(block, from, to, this.command));
+    }
+
+    /**
+     * Carries out the command just decoded.
+     * @param kind the kind of command
+     */
+    private void apply(Command.Kind kind) {
+        switch (kind) {
+            case MOVE:
+            case ATTACK:
+                if (!this.command.coordsWithin(this.board.getSize())) {
+                    malformed();
+                    return;
+                }
+                this.actions++;
+                Coords from = this.board.at(this.command.getCoord(0), this.command.getCoord(1));
+                Coords to = this.board.at(this.command.getCoord(2), this.command.getCoord(3));
+                boolean done;
+                if (kind == Command.Kind.MOVE) {
+                    done = this.board.move(from, to);
+                } else {
+                    done = this.board.validateAttack(from, to);
+                    if (done) {
+                        this.board.observeAttack(from, to);
+                    }
+                }
+                if (!done) {
+                    this.rejected++;
+                }
+                return;
+            case QUIT:
+                this.quit = true;
+                return;
+            case UNKNOWN:
+                malformed();
+                return;
+            default:
+                // blank lines, and end and board, which have no meaning without a turn order or a display
+        }
+    }
+
+    /**
+     * Counts the current line as one that could not be carried out.
+     */
+    private void malformed() {
+        if (this.malformed++ == 0) {
+            this.firstMalformed = this.lines;
+        }
+    }
+
+    /**
+     * Getter for the number of lines read.
+     * @return the number of lines of every script run so far
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Getter for the number of moves and attacks carried out or attempted.
+     * @return the number of moves and attacks given to the board
+     */
+    public long getActions() {
+        return actions;
+    }
+
+    /**
+     * Getter for the number of moves and attacks the board rejected.
+     * @return the number of invalid moves and attacks
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Getter for the number of lines that could not be carried out.
+     * @return the number of malformed lines
+     */
+    public long getMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Getter for the number of the first line that could not be carried out.
+     * @return its line number, counting from 1 over every script run, or 0
+     * if every line was good
+     */
+    public long getFirstMalformed() {
+        return firstMalformed;
+    }
+
+    /**
+     * Plays a script on the board of a scenario and reports how many lines
+     * were played per second. Without a script, one of a million random
+     * moves and attacks is written to a temporary file and played on a
+     * 100x100 board of 2000 pieces.
+     * @param args command line arguments: [script] [scenario file] [seed]
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        SplitMixDice dice = new SplitMixDice(seed);
+        GameBoard board;
+        Path script;
+        if (args.length > 1) {
+            List<Scenario> loaded = ScenarioLoader.load(args[1], new WeaponCatalog());
+            if (loaded.isEmpty()) {
+                System.out.println(args[1] + " has no scenarios in it.");
+                return;
+            }
+            board = loaded.get(0).newEncounter(dice).getBoard();
+        } else {
+            board = new GameBoard(100, dice);
+            for (int i = 0; i < 2000; i++) {
+                Attacker piece = (i & 1) == 0 ? new Player("P", board, Weapon.shortsword) : new Enemy("E", board, Weapon.shortsword);
+                Coords loc;
+                do {
+                    loc = new Coords(dice.roll(100) - 1, dice.roll(100) - 1);
+                } while (board.getPiece(loc.getX(), loc.getY()) != null);
+                board.place(piece, loc);
+            }
+        }
+        if (args.length > 0) {
+            script = Paths.get(args[0]);
+        } else {
+            script = Files.createTempFile("script", ".txt");
+            script.toFile().deleteOnExit();
+            try (BufferedWriter out = Files.newBufferedWriter(script, StandardCharsets.US_ASCII)) {
+                out.write("# a million random moves and attacks\n");
+                for (int i = 0; i < 1000000; i++) {
+                    int x = dice.roll(100) - 1;
+                    int y = dice.roll(100) - 1;
+                    int x2 = Math.max(0, Math.min(99, x + dice.roll(3) - 2));
+                    int y2 = Math.max(0, Math.min(99, y + dice.roll(3) - 2));
+                    out.write((i & 1) == 0 ? "m " : "attack ");
+                    out.write(x + " " + y + " " + x2 + " " + y2 + "\n");
+                }
+            }
+        }
+        ScriptRunner runner = new ScriptRunner(board);
+        long start = System.nanoTime();
+        runner.run(script);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d lines in %.3f s (%,.0f lines/s): %,d moves and attacks, %,d rejected, %,d malformed%n",
+                runner.getLines(), seconds, runner.getLines() / seconds, runner.getActions(), runner.getRejected(),
+                runner.getMalformed());
+        if (runner.getMalformed() > 0) {
+            System.out.println("first malformed line: " + runner.getFirstMalformed());
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -17,10 +19,57 @@ public class Session {
     private Piece player;
     /** the data structure the simulation takes place on */
     private GameBoard board;
+    /** prints the results of actions on the board for the user */
+    private ConsoleCombatListener console;
+    /** plays the turns of the pieces the user does not control */
+    private TurnScheduler scheduler;
+    /** the command being carried out, reused for every command */
+    private final Command command = new Command();
 
-    public Session(Piece player, GameBoard board) {
-        this.player = player;
-        this.board = board;
+    /**
+     * Creates a new session for the PTUI playing an encounter, with the
+     * first Player of the encounter as the user's Piece and initiative
+     * already rolled. The results of actions on the board are printed to
+     * standard output.
+     * @param encounter the encounter to play
+     */
+    public Session(Encounter encounter) {
+        this.console = new ConsoleCombatListener();
+        setUp(encounter, this.console);
+    }
+
+    /**
+     * Creates a new session playing an encounter, with the first Player of
+     * the encounter as the user's Piece and initiative already rolled. The
+     * results of actions on the board are reported to the given listener
+     * instead of the console, so a SessionServer can send them to a client.
+     * @param encounter the encounter to play
+     * @param listener where the results of actions on the board are reported
+     */
+    public Session(Encounter encounter, CombatListener listener) {
+        setUp(encounter, listener);
+    }
+
+    /**
+     * Takes the user's Piece and the board from an encounter, and rolls
+     * initiative for everyone in it.
+     * @param encounter the encounter to play
+     * @param listener where the results of actions on the board are reported
+     */
+    private void setUp(Encounter encounter, CombatListener listener) {
+        this.player = firstPlayer(encounter);
+        this.board = encounter.getBoard();
+        this.board.setListener(listener);
+        this.scheduler = new TurnScheduler(this.board, encounter.getCombatants());
+        this.scheduler.rollInitiative();
+    }
+
+    /**
+     * Getter for the board the simulation takes place on.
+     * @return the GameBoard of this session
+     */
+    public GameBoard getBoard() {
+        return board;
     }
 
     /**
@@ -31,103 +80,199 @@ public class Session {
         this.player = player;
     }
 
+    /**
+     * Starts the fight: writes the turn order, then plays the turns of the
+     * pieces the user does not control until it is the user's turn.
+     * @param out where the text for the user is written
+     */
+    public void start(StringBuilder out) {
+        out.append(this.scheduler).append('\n');
+        playOtherTurns(out);
+    }
+
     /**
      * Start and run the entire simulation: repeatedly print the board state,
      * then get a command from the user via standard input and process it.
      */
     private void runGame() {
         Scanner in = new Scanner(System.in);
-        boolean running = true;
+        StringBuilder out = new StringBuilder();
+        start(out);
         while(true) {
-            // print board
+            // print the results of the last command once the events it caused are printed
+            this.console.flush();
+            System.out.print(out);
+            out.setLength(0);
             System.out.println(this.board);
             // get input
             System.out.println("Make a move.");
             System.out.print("> ");
-            String input = in.nextLine();
-            // parse input
-            String[] inputArgs = input.split(" ");
-            String comm = inputArgs[0];
-            switch (comm.toLowerCase()) {
-                case "q":
-                case "quit":
-                    return;
-                case "m":
-                case "move": // TODO: refactor check # args, check valid coords, and creating coords after good input args steps that occur in move and attack (MVC?)
-                    // check number of arguments
-                    if (inputArgs.length != 5) {
-                        System.out.println("Usage: move x1 y1 x2 y2");
-                        break;
-                    }
-                    // check arguments for valid board coordinates
-                    int max = this.board.getSize() - 1;
-                    boolean goodCoords = true;
-                    for (int i=1; i<5; i++) {
-                        if (Integer.parseInt(inputArgs[i]) > max || Integer.parseInt(inputArgs[i]) < 0) {
-                            goodCoords = false;
-                        }
-                    }
-                    if (!goodCoords) {
-                        System.out.println("Invalid coordinates.");
-                        break;
-                    }
-                    // if execution reaches here, input arguments are good, so attempt the move
-                    Coords start = new Coords(Integer.parseInt(inputArgs[1]), Integer.parseInt(inputArgs[2]));
-                    Coords end = new Coords(Integer.parseInt(inputArgs[3]), Integer.parseInt(inputArgs[4]));
-                    if (!board.move(start, end)) {
-                        // bad move
-
-                    } else {
-                        System.out.println("Moved successfully.");
-                    }
+            if (!execute(in.nextLine(), out)) {
+                this.console.close();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Carries out one command from the user: move x1 y1 x2 y2, attack x1 y1
+     * x2 y2, end, board or quit, each of which may be shortened to its first
+     * letter. Messages for the user are written to out; the results of the
+     * actions themselves are reported to the board's listener.
+     * @param input the command, as typed by the user
+     * @param out where messages for the user are written, one per line
+     * @return false if the user quit, true otherwise
+     */
+    public boolean execute(CharSequence input, StringBuilder out) {
+        CommandParser.parse(input, this.command);
+        return execute(this.command, out);
+    }
+
+    /**
+     * Carries out one command from the user, already decoded by
+     * CommandParser.
+     * @param command the command
+     * @param out where messages for the user are written, one per line
+     * @return false if the user quit, true otherwise
+     */
+    public boolean execute(Command command, StringBuilder out) {
+        if (!SimMetrics.isEnabled()) {
+            return carryOut(command, out);
+        }
+        long began = System.nanoTime();
+        boolean playing = carryOut(command, out);
+        SimMetrics.time(SimMetrics.Timer.COMMAND, began);
+        SimMetrics.count(SimMetrics.Counter.COMMANDS);
+        return playing;
+    }
+
+    /**
+     * Dispatches a command by its kind: checks the coordinates of a move or
+     * attack and hands it to the board, plays the other pieces' turns after
+     * an end, prints the board, or reports a line that is not a command.
+     * @param command the command
+     * @param out where usage and error messages are written, one per line
+     * @return false for quit, true for every other command
+     */
+    private boolean carryOut(Command command, StringBuilder out) {
+        switch (command.getKind()) {
+            case QUIT:
+                return false;
+            case MOVE:
+                // check number of arguments
+                if (command.getArguments() != Command.COORDINATES) {
+                    out.append("Usage: move x1 y1 x2 y2\n");
+                    break;
+                }
+                // check arguments for valid board coordinates
+                if (!command.coordsWithin(this.board.getSize())) {
+                    out.append("Invalid coordinates.\n");
                     break;
-                case "a":
-                case "attack":
-                    // check number of arguments
-                    if (inputArgs.length != 5) {
-                        System.out.println("Usage: attack x1 y1 x2 y2");
-                        break;
-                    }
-                    // check arguments for valid board coordinates
-                    max = this.board.getSize() - 1;
-                    goodCoords = true;
-                    for (int i=1; i<5; i++) {
-                        if (Integer.parseInt(inputArgs[i]) > max || Integer.parseInt(inputArgs[i]) < 0) {
-                            goodCoords = false;
-                        }
-                    }
-                    if (!goodCoords) {
-                        System.out.println("Invalid coordinates.");
-                        break;
-                    }
-                    // if execution reaches here, input arguments are good, so attempt the attack
-                    Coords source = new Coords(Integer.parseInt(inputArgs[1]), Integer.parseInt(inputArgs[2]));
-                    Coords target = new Coords(Integer.parseInt(inputArgs[3]), Integer.parseInt(inputArgs[4]));
-                    if (this.board.validateAttack(source, target)) {
-                        this.board.observeAttack(source, target);
-                    }
+                }
+                // if execution reaches here, input arguments are good, so attempt the move
+                Coords start = this.board.at(command.getCoord(0), command.getCoord(1));
+                Coords end = this.board.at(command.getCoord(2), command.getCoord(3));
+                if (this.board.move(start, end)) {
+                    out.append("Moved successfully.\n");
+                }
+                break;
+            case ATTACK:
+                // check number of arguments
+                if (command.getArguments() != Command.COORDINATES) {
+                    out.append("Usage: attack x1 y1 x2 y2\n");
                     break;
-                default:
-                    System.out.println("Unrecognized command: " + input);
+                }
+                // check arguments for valid board coordinates
+                if (!command.coordsWithin(this.board.getSize())) {
+                    out.append("Invalid coordinates.\n");
+                    break;
+                }
+                // if execution reaches here, input arguments are good, so attempt the attack
+                Coords source = this.board.at(command.getCoord(0), command.getCoord(1));
+                Coords target = this.board.at(command.getCoord(2), command.getCoord(3));
+                if (this.board.validateAttack(source, target)) {
+                    this.board.observeAttack(source, target);
+                }
+                break;
+            case END:
+                this.scheduler.endTurn();
+                playOtherTurns(out);
+                break;
+            case BOARD:
+                out.append(this.board).append('\n');
+                break;
+            case BLANK:
+                break;
+            default:
+                command.appendLine(out.append("Unrecognized command: ")).append('\n');
+        }
+        return true;
+    }
+
+    /**
+     * Plays the turns of the pieces the user does not control until it is the
+     * user's turn again, then reports the outcome if the fight is over.
+     * @param out where the outcome is written
+     */
+    private void playOtherTurns(StringBuilder out) {
+        this.scheduler.playUntilUser();
+        if (this.scheduler.isOver()) {
+            out.append("The fight is over: ").append(this.scheduler.getOutcome()).append('\n');
+        }
+    }
+
+    /**
+     * Finds the Piece the user controls in an encounter.
+     * @param encounter an encounter
+     * @return the first Player among its combatants, or null if there is none
+     */
+    private static Piece firstPlayer(Encounter encounter) {
+        for (Attacker piece : encounter.getCombatants()) {
+            if (piece instanceof Player) {
+                return piece;
             }
         }
+        return null;
     }
 
     /**
-     * Creates a GameBoard for the simulation, then creates a new session and
-     * a Piece for the user to control, then runs the simulation.
-     * @param args command line arguments: none
+     * Builds the scenario played when no scenario file is given: a Player at
+     * (0, 0) and a Goblin at (4, 0) on a 10x10 board.
+     * @return the default Scenario
      */
-    public static void main(String[] args) {
-        // create board and player
-        GameBoard board = new GameBoard(DEFAULT_BOARD_SIZE);
-        Player player = new Player(DEFAULT_NAME, board, DEFAULT_WEAPON);
-        // create session
-        Session session = new Session(player, board);
-        // place pieces
-        session.board.place(player, new Coords(0, 0));
-        Enemy goblin = new Enemy("Goblin", session.board, DEFAULT_WEAPON);
-        session.board.place(goblin, new Coords(4, 0));
+    static Scenario defaultScenario() {
+        Scenario scenario = new Scenario("Default", DEFAULT_BOARD_SIZE);
+        scenario.addPlayer(DEFAULT_NAME, DEFAULT_WEAPON, new Coords(0, 0));
+        scenario.addEnemy("Goblin", DEFAULT_WEAPON, new Coords(4, 0));
+        return scenario;
+    }
+
+    /**
+     * Builds the board for the simulation from a scenario, then creates a new
+     * session with the first Player of the scenario as the user's Piece, then
+     * runs the simulation. The user controls every Player in the scenario.
+     * @param args command line arguments, in either order: [seed], to make
+     * every roll in the session reproducible, and [file], a scenario file (see
+     * ScenarioLoader) whose first scenario is played
+     * @throws IOException if the scenario file cannot be read or is not valid
+     */
+    public static void main(String[] args) throws IOException {
+        Dice dice = new SplitMixDice();
+        Scenario scenario = defaultScenario();
+        for (String arg : args) {
+            if (arg.matches("-?\\d+")) {
+                dice = new SplitMixDice(Long.parseLong(arg));
+            } else {
+                List<Scenario> loaded = ScenarioLoader.load(arg, new WeaponCatalog());
+                if (loaded.isEmpty()) {
+                    System.out.println(arg + " has no scenarios in it.");
+                    return;
+                }
+                scenario = loaded.get(0);
+            }
+        }
+        // create board and pieces, and decide turn order
+        Session session = new Session(scenario.newEncounter(dice));
         // start session
         session.runGame();
     }
@@ -0,0 +1,495 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many games at once over TCP, each connection playing its own
+ * Session on its own GameBoard. Clients speak the PTUI's command grammar
+ * (move x1 y1 x2 y2, attack x1 y1 x2 y2, end, board, quit, or their first
+ * letters), one command per line. The server answers every command with
+ * the lines the PTUI would have printed for it, the results of the actions
+ * included, followed by a line holding only END_OF_REPLY. When a client
+ * connects it is first sent the turn order and the result of any turns
+ * played before the user's, ended the same way.
+ *
+ * Connections are spread over a few worker threads, each waiting on its
+ * own Selector, so thousands of sessions need only as many threads as
+ * there are cores. A session's commands are only ever run by its worker,
+ * so sessions need no locks. Clients may pipeline: every complete command
+ * in what has been received is run, and their replies sent together in
+ * one write.
+ *
+ * Each session's queue is bounded. At most INPUT_LIMIT bytes of commands
+ * are held waiting to be run, and once OUTPUT_LIMIT bytes of replies are
+ * waiting to be sent, the server stops reading from that connection until
+ * the client catches up, so a client that sends faster than it reads slows
+ * itself down instead of filling the server's memory.
+ *
+ * @author Mark Danza
+ */
+public class SessionServer {
+    /** the port listened on when none is given */
+    public static final int DEFAULT_PORT = 7777;
+    /** the line that ends every reply */
+    public static final String END_OF_REPLY = ".";
+    /** the most bytes of commands held for a session before they are run; also the longest command */
+    private static final int INPUT_LIMIT = 1024;
+    /** the bytes of replies waiting to be sent to a session above which no more of its commands are read */
+    private static final int OUTPUT_LIMIT = 16 * 1024;
+    /** the initial size of a session's buffer of replies */
+    private static final int OUTPUT_SIZE = 1024;
+
+    /** the scenario every session plays a copy of */
+    private final Scenario scenario;
+    /** the seed the Dice of every session are derived from */
+    private final long seed;
+    /** accepts new connections */
+    private final ServerSocketChannel server;
+    /** the threads running sessions, each with its own connections */
+    private final Worker[] workers;
+    /** the number of sessions opened, used to number them */
+    private final AtomicLong opened = new AtomicLong();
+    /** the number of sessions open now */
+    private final AtomicInteger open = new AtomicInteger();
+    /** the number of commands run, over every session */
+    private final AtomicLong commands = new AtomicLong();
+    /** the number of sessions closed because a command failed */
+    private final AtomicLong failed = new AtomicLong();
+    /** the thread accepting connections, or null if not started */
+    private Thread acceptor;
+    /** cleared to stop every thread of the server */
+    private volatile boolean running;
+
+    /**
+     * Creates a new SessionServer listening on a port, not yet accepting
+     * connections.
+     * @param scenario the scenario every session plays a copy of
+     * @param port the port to listen on, or 0 for any free port
+     * @param threads the number of worker threads to run sessions on
+     * @param seed the seed the Dice of every session are derived from
+     * @throws IOException if the port cannot be listened on
+     */
+    public SessionServer(Scenario scenario, int port, int threads, long seed) throws IOException {
+        this.scenario = scenario;
+        this.seed = seed;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port), 4096);
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            this.workers[i] = new Worker(Selector.open());
+        }
+    }
+
+    /**
+     * Getter for the port this server listens on.
+     * @return the local port, useful when the server was created with port 0
+     * @throws IOException if the server is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Getter for the number of sessions open now.
+     * @return the number of connected clients
+     */
+    public int getOpenSessions() {
+        return open.get();
+    }
+
+    /**
+     * Getter for the number of commands run.
+     * @return the number of commands run so far, over every session
+     */
+    public long getCommands() {
+        return commands.get();
+    }
+
+    /**
+     * Getter for the number of sessions closed because a command failed.
+     * @return the number of sessions ended by an error in the simulation
+     */
+    public long getFailedSessions() {
+        return failed.get();
+    }
+
+    /**
+     * Starts accepting connections and running sessions on background
+     * threads.
+     */
+    public synchronized void start() {
+        if (this.acceptor != null) {
+            return;
+        }
+        this.running = true;
+        for (int i = 0; i < this.workers.length; i++) {
+            Thread thread = new Thread(this.workers[i], "SessionServer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        this.acceptor = new Thread(this::acceptLoop, "SessionServer-accept");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Stops accepting connections and closes every session.
+     */
+    public void stop() {
+        this.running = false;
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (Worker worker : this.workers) {
+            worker.selector.wakeup();
+        }
+    }
+
+    /**
+     * Records a session that is being closed because one of its commands
+     * failed: counts it, both here and in SimMetrics, and reports the error
+     * on standard error as the server's other errors are.
+     * @param e the error the command failed with
+     */
+    private void sessionFailed(RuntimeException e) {
+        this.failed.incrementAndGet();
+        SimMetrics.count(SimMetrics.Counter.SESSION_ERRORS);
+        System.err.println("SessionServer: closing a session after " + e);
+    }
+
+    /**
+     * The body of the accepting thread: hands each new connection to the
+     * workers in turn.
+     */
+    private void acceptLoop() {
+        int next = 0;
+        while (this.running) {
+            try {
+                SocketChannel channel = this.server.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                this.workers[next].add(channel);
+                next = (next + 1) % this.workers.length;
+            } catch (IOException e) {
+                if (this.running) {
+                    System.err.println("SessionServer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A thread running the sessions of its own connections as their
+     * commands arrive.
+     */
+    private class Worker implements Runnable {
+        /** waits for any of this worker's connections to be readable or writable */
+        private final Selector selector;
+        /** connections accepted but not yet registered with the selector */
+        private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Creates a new Worker with no connections.
+         * @param selector the selector its connections will be registered with
+         */
+        Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Gives a new connection to this worker. Called from the accepting thread.
+         * @param channel the connection
+         */
+        void add(SocketChannel channel) {
+            this.added.add(channel);
+            this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (SessionServer.this.running) {
+                try {
+                    this.selector.select();
+                } catch (IOException e) {
+                    break;
+                }
+                SocketChannel channel;
+                while ((channel = this.added.poll()) != null) {
+                    Connection connection = new Connection(channel);
+                    try {
+                        connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+                        connection.open();
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        } else if (key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    } catch (RuntimeException e) {
+                        // a bug in one session must not end the others on this worker
+                        sessionFailed(e);
+                        connection.close();
+                    }
+                }
+            }
+            for (SelectionKey key : this.selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * One client's connection and the Session it plays. Also the listener
+     * of the session's board, writing the result of each action into the
+     * reply being built.
+     */
+    private class Connection implements CombatListener {
+        /** the connection to the client */
+        private final SocketChannel channel;
+        /** the registration of the channel with its worker's selector */
+        private SelectionKey key;
+        /** the game played over this connection */
+        private Session session;
+        /** bytes received and not yet run as commands */
+        private final ByteBuffer in = ByteBuffer.allocate(INPUT_LIMIT);
+        /** bytes of replies not yet sent, from position 0 to position() */
+        private ByteBuffer out = ByteBuffer.allocate(OUTPUT_SIZE);
+        /** the reply to the command being run */
+        private final StringBuilder reply = new StringBuilder();
+        /** the command being run, decoded straight from the input buffer */
+        private final Command command = new Command();
+        /** set once the client has quit; the connection closes when its replies are sent */
+        private boolean quitting;
+
+        /**
+         * Creates a new Connection for a client that just connected.
+         * @param channel the connection to the client
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Starts the client's session and sends it the start of the fight.
+         * @throws IOException if the client cannot be written to
+         */
+        void open() throws IOException {
+            long number = SessionServer.this.opened.getAndIncrement();
+            Dice dice = new SplitMixDice(SplitMixDice.trialSeed(SessionServer.this.seed, number));
+            this.session = new Session(SessionServer.this.scenario.newEncounter(dice), this);
+            SessionServer.this.open.incrementAndGet();
+            this.session.start(this.reply);
+            endReply();
+            flush();
+        }
+
+        /**
+         * Reads whatever the client has sent, runs every complete command in
+         * it and sends the replies.
+         * @throws IOException if the connection fails
+         */
+        void read() throws IOException {
+            if (this.channel.read(this.in) < 0) {
+                close();
+                return;
+            }
+            runCommands();
+            flush();
+        }
+
+        /**
+         * Runs the complete commands waiting in the input buffer, one per
+         * line, until it is empty or too many replies are waiting to be sent.
+         * A line too long to fit in the buffer is thrown away.
+         */
+        private void runCommands() {
+            this.in.flip();
+            int start = this.in.position();
+            boolean stopped = false;
+            for (int i = start; i < this.in.limit(); i++) {
+                if (this.quitting || this.out.position() >= OUTPUT_LIMIT) {
+                    stopped = true;
+                    break;
+                }
+                if (this.in.get(i) != '\n') {
+                    continue;
+                }
+                CommandParser.parse(this.in, start, i, this.command);
+                start = i + 1;
+                SessionServer.this.commands.incrementAndGet();
+                this.quitting = !this.session.execute(this.command, this.reply);
+                endReply();
+            }
+            this.in.position(start);
+            if (!stopped && this.in.position() == 0 && this.in.limit() == this.in.capacity()) {
+                this.in.clear();
+                this.reply.append("Command too long.\n");
+                endReply();
+            } else {
+                this.in.compact();
+            }
+        }
+
+        /**
+         * Ends the reply being built and moves it into the output buffer,
+         * growing the buffer if it does not fit.
+         */
+        private void endReply() {
+            this.reply.append(END_OF_REPLY).append('\n');
+            int length = this.reply.length();
+            if (this.out.remaining() < length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.out.capacity() * 2, this.out.position() + length));
+                this.out.flip();
+                bigger.put(this.out);
+                this.out = bigger;
+            }
+            for (int i = 0; i < length; i++) {
+                this.out.put((byte) this.reply.charAt(i));
+            }
+            this.reply.setLength(0);
+        }
+
+        /**
+         * Sends as much of the waiting replies as the client will take, then
+         * waits for the rest to be sent before reading more commands if too
+         * many are waiting, or runs commands held back until now otherwise.
+         * @throws IOException if the connection fails
+         */
+        void flush() throws IOException {
+            while (true) {
+                this.out.flip();
+                this.channel.write(this.out);
+                this.out.compact();
+                boolean blocked = this.out.position() > 0;
+                if (this.quitting && !blocked) {
+                    close();
+                    return;
+                }
+                boolean heldBack = this.in.position() > 0 && this.out.position() < OUTPUT_LIMIT && !this.quitting;
+                if (heldBack && !blocked) {
+                    int before = this.in.position();
+                    runCommands();
+                    if (this.in.position() != before) {
+                        continue; // commands were run, so there are replies to send
+                    }
+                }
+                int ops = (blocked ? SelectionKey.OP_WRITE : 0)
+                        | (this.out.position() < OUTPUT_LIMIT && !this.quitting ? SelectionKey.OP_READ : 0);
+                if (this.key.interestOps() != ops) {
+                    this.key.interestOps(ops);
+                }
+                return;
+            }
+        }
+
+        /**
+         * Closes the connection, ending its session.
+         */
+        void close() {
+            if (this.key != null) {
+                this.key.cancel();
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            if (this.session != null) {
+                this.session = null;
+                SessionServer.this.open.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void moveRejected(Coords start, Coords end, Rejection reason) {
+            this.reply.append(reason.getMessage()).append('\n');
+        }
+
+        @Override
+        public void attackRejected(Coords source, Coords target, Rejection reason) {
+            this.reply.append(reason.getMessage()).append('\n');
+        }
+
+        @Override
+        public void attackHit(Attacker attacker, Attacker target, int roll, int dmg) {
+            this.reply.append("Attack hit and dealt ").append(dmg).append(" damage.\n");
+        }
+
+        @Override
+        public void attackMissed(Attacker attacker, Attacker target, int roll) {
+            this.reply.append("Attack missed.\n");
+        }
+
+        @Override
+        public void pieceKilled(Attacker killer, Attacker victim) {
+            this.reply.append(victim.getName()).append(" was killed.\n");
+        }
+    }
+
+    /**
+     * Runs a SessionServer until the process is killed, printing the number
+     * of open sessions, commands run and failed sessions every few seconds. Given a port or a
+     * file to export SimMetrics to, metrics are collected and exported every
+     * second.
+     * @param args command line arguments: [port] [threads] [scenario file, or - for the default]
+     * [metrics port or file]
+     * @throws IOException if the port cannot be listened on or the scenario
+     * file cannot be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Scenario scenario = Session.defaultScenario();
+        if (args.length > 2 && !args[2].equals("-")) {
+            List<Scenario> loaded = ScenarioLoader.load(args[2], new WeaponCatalog());
+            if (loaded.isEmpty()) {
+                System.out.println(args[2] + " has no scenarios in it.");
+                return;
+            }
+            scenario = loaded.get(0);
+        }
+        if (args.length > 3) {
+            MetricsExporter.start(args[3], 1000);
+        }
+        SessionServer server = new SessionServer(scenario, port, threads, System.nanoTime());
+        server.start();
+        System.out.println("Serving " + scenario.getName() + " on port " + server.getPort() + " with " + threads + " threads");
+        long last = 0;
+        while (true) {
+            Thread.sleep(5000);
+            long now = server.getCommands();
+            System.out.printf("%d sessions open, %,d commands/s, %d failed%n", server.getOpenSessions(), (now - last) / 5,
+                    server.getFailedSessions());
+            last = now;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the core actions of the simulation (moves, attack
+ * validation and resolution, dice rolls, finished encounters, PTUI and
+ * network commands, and rendered frames) so that a slow run can be traced
+ * to where its time goes. Collection is off until setEnabled(true) is
+ * called and can be switched on and off at any time; while it is off, each
+ * instrumented action costs one read of a volatile flag.
+ *
+ * Counters are LongAdders, so threads counting at once do not contend.
+ * Latencies are recorded in nanoseconds into a Histogram per thread and per
+ * Timer; each thread's Histograms are guarded by a lock only that thread
+ * and snapshot() take, so recording never waits on another recorder. Once
+ * a thread has died, its latencies are folded into a shared total and its
+ * Histograms dropped, so short-lived threads do not pile up.
+ * MetricsExporter turns snapshots into rates and exports them.
+ *
+ * @author Mark Danza
+ */
+public class SimMetrics {
+    /**
+     * The things that are counted.
+     */
+    public enum Counter {
+        /** moves made */
+        MOVES,
+        /** moves the board rejected */
+        MOVES_REJECTED,
+        /** attacks that passed validateAttack() */
+        ATTACKS_VALIDATED,
+        /** attacks validateAttack() rejected */
+        ATTACKS_REJECTED,
+        /** attacks rolled for, on a GameBoard or in a CompactEncounter */
+        ATTACKS,
+        /** attacks that hit */
+        HITS,
+        /** dice rolled by SplitMixDice */
+        ROLLS,
+        /** encounters played to the end */
+        ENCOUNTERS,
+        /** commands carried out by a Session */
+        COMMANDS,
+        /** sessions a SessionServer closed because a command failed */
+        SESSION_ERRORS,
+        /** frames drawn by a BoardRenderer */
+        FRAMES
+    }
+
+    /**
+     * The actions whose latency is recorded.
+     */
+    public enum Timer {
+        /** GameBoard.move() */
+        MOVE,
+        /** GameBoard.validateAttack() */
+        VALIDATE_ATTACK,
+        /** GameBoard.observeAttack(), including the rolls and any kill */
+        OBSERVE_ATTACK,
+        /** Session.execute(), including the turns of the other pieces after an end */
+        COMMAND,
+        /** BoardRenderer drawing one frame */
+        RENDER_FRAME
+    }
+
+    /** whether actions are being counted and timed */
+    private static volatile boolean enabled;
+    /** one LongAdder per Counter, in ordinal order */
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    /** the Recorder of every live thread that has timed an action; guarded by itself */
+    private static final List<Recorder> RECORDERS = new ArrayList<>();
+    /** the latencies recorded by threads that have died, one Histogram per Timer; guarded by RECORDERS */
+    private static Histogram[] retired = newHistograms();
+    /** each thread's own Recorder */
+    private static final ThreadLocal<Recorder> RECORDER = ThreadLocal.withInitial(() -> {
+        Recorder recorder = new Recorder(Thread.currentThread());
+        synchronized (RECORDERS) {
+            retireDead();
+            RECORDERS.add(recorder);
+        }
+        return recorder;
+    });
+
+    static {
+        for (int c = 0; c < COUNTERS.length; c++) {
+            COUNTERS[c] = new LongAdder();
+        }
+    }
+
+    /**
+     * Not to be instantiated.
+     */
+    private SimMetrics() {
+    }
+
+    /**
+     * Checks whether actions are being counted and timed. Instrumented code
+     * checks this before doing anything else.
+     * @return true if collection is on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches collection on or off. Counts and latencies recorded so far
+     * are kept either way.
+     * @param on true to start collecting, false to stop
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Adds one to a counter, if collection is on.
+     * @param counter the counter
+     */
+    public static void count(Counter counter) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Adds to a counter, if collection is on.
+     * @param counter the counter
+     * @param n the amount to add
+     */
+    public static void count(Counter counter, long n) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].add(n);
+        }
+    }
+
+    /**
+     * Counts a finished fight, for the encounters of either kind to call as
+     * they return their outcome.
+     * @param outcome the outcome of the fight
+     * @return outcome
+     */
+    public static Encounter.Outcome countEncounter(Encounter.Outcome outcome) {
+        count(Counter.ENCOUNTERS);
+        return outcome;
+    }
+
+    /**
+     * Records how long an action took. Callers read System.nanoTime() before
+     * the action only if isEnabled(), and pass it here afterwards.
+     * @param timer the action
+     * @param startNanos System.nanoTime() when the action began
+     */
+    public static void time(Timer timer, long startNanos) {
+        RECORDER.get().record(timer, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Clears every counter and latency, for measuring a run from its start.
+     */
+    public static void reset() {
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        synchronized (RECORDERS) {
+            retired = newHistograms();
+            for (Recorder recorder : RECORDERS) {
+                recorder.clear();
+            }
+        }
+    }
+
+    /**
+     * Copies the current value of every counter and the latencies recorded
+     * by every thread so far.
+     * @return a new Snapshot
+     */
+    public static Snapshot snapshot() {
+        long[] counts = new long[COUNTERS.length];
+        for (int c = 0; c < counts.length; c++) {
+            counts[c] = COUNTERS[c].sum();
+        }
+        Histogram[] latencies = newHistograms();
+        synchronized (RECORDERS) {
+            retireDead();
+            for (int t = 0; t < latencies.length; t++) {
+                latencies[t].merge(retired[t]);
+            }
+            for (Recorder recorder : RECORDERS) {
+                recorder.addTo(latencies);
+            }
+        }
+        return new Snapshot(System.nanoTime(), counts, latencies);
+    }
+
+    /**
+     * Folds the latencies of every thread that has died into the retired
+     * totals and drops its Recorder. Called holding the lock on RECORDERS.
+     */
+    private static void retireDead() {
+        for (Iterator<Recorder> it = RECORDERS.iterator(); it.hasNext();) {
+            Recorder recorder = it.next();
+            if (!recorder.owner.isAlive()) {
+                recorder.addTo(retired);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Creates one empty Histogram per Timer.
+     * @return the Histograms, in ordinal order
+     */
+    private static Histogram[] newHistograms() {
+        Histogram[] histograms = new Histogram[Timer.values().length];
+        for (int t = 0; t < histograms.length; t++) {
+            histograms[t] = new Histogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * The latencies recorded by one thread.
+     */
+    private static class Recorder {
+        /** the thread recording into this */
+        private final Thread owner;
+        /** one Histogram per Timer, in ordinal order; guarded by this */
+        private Histogram[] latencies = newHistograms();
+
+        /**
+         * Creates a new, empty Recorder for a thread.
+         * @param owner the thread that will record into it
+         */
+        private Recorder(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Records the latency of one action.
+         * @param timer the action
+         * @param nanos how long it took
+         */
+        private synchronized void record(Timer timer, long nanos) {
+            this.latencies[timer.ordinal()].record(nanos);
+        }
+
+        /**
+         * Adds every latency recorded here to a set of Histograms.
+         * @param out one Histogram per Timer
+         */
+        private synchronized void addTo(Histogram[] out) {
+            for (int t = 0; t < out.length; t++) {
+                out[t].merge(this.latencies[t]);
+            }
+        }
+
+        /**
+         * Forgets every latency recorded here.
+         */
+        private synchronized void clear() {
+            this.latencies = newHistograms();
+        }
+    }
+
+    /**
+     * The counters and latencies as they were at one moment.
+     */
+    public static class Snapshot {
+        /** System.nanoTime() when the snapshot was taken */
+        private final long nanoTime;
+        /** the value of every Counter, in ordinal order */
+        private final long[] counts;
+        /** the latencies of every Timer, in ordinal order */
+        private final Histogram[] latencies;
+
+        /**
+         * Creates a new Snapshot.
+         * @param nanoTime System.nanoTime() when it was taken
+         * @param counts the value of every Counter
+         * @param latencies the latencies of every Timer
+         */
+        private Snapshot(long nanoTime, long[] counts, Histogram[] latencies) {
+            this.nanoTime = nanoTime;
+            this.counts = counts;
+            this.latencies = latencies;
+        }
+
+        /**
+         * Getter for when this snapshot was taken.
+         * @return System.nanoTime() at the time
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        /**
+         * Getter for the value of a counter.
+         * @param counter the counter
+         * @return its value when this snapshot was taken
+         */
+        public long get(Counter counter) {
+            return counts[counter.ordinal()];
+        }
+
+        /**
+         * Getter for the latencies of an action.
+         * @param timer the action
+         * @return every latency recorded for it, in nanoseconds
+         */
+        public Histogram getLatency(Timer timer) {
+            return latencies[timer.ordinal()];
+        }
+
+        /**
+         * Calculates how fast a counter went up between an earlier snapshot
+         * and this one.
+         * @param counter the counter
+         * @param earlier a snapshot taken before this one
+         * @return the average increase per second, or 0 if no time passed
+         */
+        public double rate(Counter counter, Snapshot earlier) {
+            long nanos = this.nanoTime - earlier.nanoTime;
+            return nanos <= 0 ? 0 : (get(counter) - earlier.get(counter)) * 1e9 / nanos;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform bucket grid over the GameBoard that finds the pieces near a
+ * location without scanning the whole board. The board is divided into
+ * square buckets of BUCKET_SIZE x BUCKET_SIZE grid spaces, and each bucket
+ * keeps a small array of the pieces standing in it. A query only visits the
+ * buckets that overlap the area it covers, so its cost depends on the
+ * number of pieces nearby rather than on the size of the board.
+ *
+ * The index is kept up to date by the GameBoard that owns it whenever a
+ * piece is placed, moved, killed or the board is reset.
+ *
+ * @author Mark Danza
+ */
+public class SpatialIndex {
+    /** log2 of the bucket size */
+    private static final int BUCKET_SHIFT = 3;
+    /** the number of grid spaces on a side of one bucket */
+    public static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+    /** the number of pieces a bucket has room for before it grows */
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    /** the board this index covers */
+    private final GameBoard board;
+    /** the number of buckets on a side of the index */
+    private final int buckets;
+    /** the pieces in each bucket (index by * buckets + bx); created when first needed */
+    private final Piece[][] contents;
+    /** the number of pieces in each bucket */
+    private final int[] counts;
+
+    /**
+     * Creates a new, empty index for a board.
+     * @param board the GameBoard this index covers
+     */
+    public SpatialIndex(GameBoard board) {
+        this.board = board;
+        this.buckets = (board.getSize() + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+        this.contents = new Piece[buckets * buckets][];
+        this.counts = new int[buckets * buckets];
+    }
+
+    /**
+     * Adds a piece standing at a grid space.
+     * @param piece the piece to add
+     * @param x the x-coordinate of the piece
+     * @param y the y-coordinate of the piece
+     */
+    public void add(Piece piece, int x, int y) {
+        int b = bucketOf(x, y);
+        Piece[] items = this.contents[b];
+        if (items == null) {
+            items = this.contents[b] = new Piece[INITIAL_BUCKET_CAPACITY];
+        } else if (this.counts[b] == items.length) {
+            items = this.contents[b] = Arrays.copyOf(items, items.length * 2);
+        }
+        items[this.counts[b]++] = piece;
+    }
+
+    /**
+     * Removes a piece that was added at a grid space.
+     * @param piece the piece to remove
+     * @param x the x-coordinate the piece was added at
+     * @param y the y-coordinate the piece was added at
+     * @return where the piece was in its bucket, for restore(), or -1 if it
+     * was not in the index
+     */
+    public int remove(Piece piece, int x, int y) {
+        int b = bucketOf(x, y);
+        Piece[] items = this.contents[b];
+        int n = this.counts[b];
+        for (int i = 0; i < n; i++) {
+            if (items[i] == piece) {
+                // fill the gap with the last piece in the bucket
+                items[i] = items[n - 1];
+                items[n - 1] = null;
+                this.counts[b] = n - 1;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Undoes a call to remove(), putting the piece back exactly where it was
+     * in its bucket. Only valid if nothing else in the bucket has changed
+     * since the removal.
+     * @param piece the piece that was removed
+     * @param x the x-coordinate the piece was added at
+     * @param y the y-coordinate the piece was added at
+     * @param position the position returned by remove()
+     */
+    public void restore(Piece piece, int x, int y, int position) {
+        int b = bucketOf(x, y);
+        add(piece, x, y);
+        Piece[] items = this.contents[b];
+        int last = this.counts[b] - 1;
+        items[last] = items[position];
+        items[position] = piece;
+    }
+
+    /**
+     * Checks whether two grid spaces share a bucket, in which case a piece
+     * moving between them does not need to be removed and added again.
+     * @param x1 the x-coordinate of the first grid space
+     * @param y1 the y-coordinate of the first grid space
+     * @param x2 the x-coordinate of the second grid space
+     * @param y2 the y-coordinate of the second grid space
+     * @return true if both grid spaces are in the same bucket
+     */
+    public boolean sameBucket(int x1, int y1, int x2, int y2) {
+        return bucketOf(x1, y1) == bucketOf(x2, y2);
+    }
+
+    /**
+     * Removes every piece from the index.
+     */
+    public void clear() {
+        for (int b = 0; b < this.counts.length; b++) {
+            if (this.counts[b] > 0) {
+                Arrays.fill(this.contents[b], 0, this.counts[b], null);
+                this.counts[b] = 0;
+            }
+        }
+    }
+
+    /**
+     * Counts the pieces in the index. The count is added up from the
+     * buckets rather than kept, so that threads changing different buckets
+     * of a shared board never write to the same field.
+     * @return the number of pieces on the board
+     */
+    public int size() {
+        int total = 0;
+        for (int count : this.counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Finds every piece within a distance of a location, other than a piece
+     * standing at that location itself.
+     * @param x the x-coordinate of the location
+     * @param y the y-coordinate of the location
+     * @param feet the distance (in feet)
+     * @param out the list the pieces found are added to
+     * @return the number of pieces added to out
+     */
+    public int within(int x, int y, int feet, List<Piece> out) {
+        int radius = feet / GameBoard.FEET_PER_TILE;
+        int found = 0;
+        int bx0 = Math.max(0, (x - radius) >> BUCKET_SHIFT);
+        int by0 = Math.max(0, (y - radius) >> BUCKET_SHIFT);
+        int bx1 = Math.min(this.buckets - 1, (x + radius) >> BUCKET_SHIFT);
+        int by1 = Math.min(this.buckets - 1, (y + radius) >> BUCKET_SHIFT);
+        for (int by = by0; by <= by1; by++) {
+            for (int bx = bx0; bx <= bx1; bx++) {
+                int b = by * this.buckets + bx;
+                Piece[] items = this.contents[b];
+                for (int i = 0; i < this.counts[b]; i++) {
+                    Coords loc = items[i].getLocation();
+                    int px = loc.getX();
+                    int py = loc.getY();
+                    if ((px != x || py != y) && this.board.getMetric().withinTiles(px - x, py - y, radius)) {
+                        if (out != null) {
+                            out.add(items[i]);
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the closest Attacker that is hostile to a given Attacker. Buckets
+     * are searched in rings of increasing distance from the Attacker, and the
+     * search stops as soon as no unsearched ring could hold anything closer.
+     * @param seeker the Attacker looking for an enemy; must be on the board
+     * @return the nearest hostile Attacker, or null if there is none
+     */
+    public Attacker nearestHostile(Attacker seeker) {
+        int x = seeker.getLocation().getX();
+        int y = seeker.getLocation().getY();
+        int cbx = x >> BUCKET_SHIFT;
+        int cby = y >> BUCKET_SHIFT;
+        Attacker nearest = null;
+        int nearestDist = Integer.MAX_VALUE;
+        for (int ring = 0; ring < this.buckets; ring++) {
+            // every grid space in this ring is at least this far away, whatever the metric
+            int ringMin = ring == 0 ? 0 : (ring - 1) * BUCKET_SIZE + 1;
+            if (ringMin > nearestDist) {
+                break;
+            }
+            for (int by = cby - ring; by <= cby + ring; by++) {
+                if (by < 0 || by >= this.buckets) {
+                    continue;
+                }
+                // inner rows of the ring only have a left and right bucket
+                int step = (by == cby - ring || by == cby + ring || ring == 0) ? 1 : 2 * ring;
+                for (int bx = cbx - ring; bx <= cbx + ring; bx += step) {
+                    if (bx < 0 || bx >= this.buckets) {
+                        continue;
+                    }
+                    int b = by * this.buckets + bx;
+                    Piece[] items = this.contents[b];
+                    for (int i = 0; i < this.counts[b]; i++) {
+                        if (!(items[i] instanceof Attacker) || !seeker.isHostileTo((Attacker) items[i])) {
+                            continue;
+                        }
+                        Coords loc = items[i].getLocation();
+                        int d = this.board.dist(x, y, loc.getX(), loc.getY());
+                        if (d < nearestDist) {
+                            nearest = (Attacker) items[i];
+                            nearestDist = d;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the bucket holding a grid space.
+     * @param x an x-coordinate on the board
+     * @param y a y-coordinate on the board
+     * @return the index of the bucket in contents and counts
+     */
+    private int bucketOf(int x, int y) {
+        return (y >> BUCKET_SHIFT) * this.buckets + (x >> BUCKET_SHIFT);
+    }
+}
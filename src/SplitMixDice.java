@@ -0,0 +1,158 @@
+import java.util.SplittableRandom;
+
+/**
+ * The default Dice, using the same SplitMix64 generator as
+ * java.util.SplittableRandom. The generator state is kept in a plain field
+ * rather than in a SplittableRandom so that it can be reseeded without
+ * creating any objects, which lets a batch worker reuse one SplitMixDice for
+ * every trial it runs. A SplitMixDice must only be used by one thread.
+ *
+ * @author Mark Danza
+ */
+public class SplitMixDice implements RewindableDice {
+    /** the odd constant the generator state is advanced by on every roll */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    /** a Dice for each thread, used where no board's Dice are available */
+    private static final ThreadLocal<SplitMixDice> CURRENT = new ThreadLocal<SplitMixDice>() {
+        @Override
+        protected SplitMixDice initialValue() {
+            return new SplitMixDice();
+        }
+    };
+
+    /** the state of the generator */
+    private long state;
+
+    /**
+     * Creates a new SplitMixDice with an unpredictable seed.
+     */
+    public SplitMixDice() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a new SplitMixDice with a fixed seed. Two SplitMixDice created
+     * with the same seed produce exactly the same rolls.
+     * @param seed the seed for the generator
+     */
+    public SplitMixDice(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Getter for the Dice belonging to the calling thread.
+     * @return a SplitMixDice that only the calling thread uses
+     */
+    public static SplitMixDice current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Restarts the generator from a new seed.
+     * @param seed the seed for the generator
+     */
+    public void reseed(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Combines a base seed with the index of a trial, so that every trial of
+     * a batch gets its own seed no matter which thread ends up running it.
+     * @param seed the seed of the whole batch
+     * @param trial the index of the trial
+     * @return a seed for that trial alone
+     */
+    public static long trialSeed(long seed, long trial) {
+        return mix64(seed + mix64(trial * GOLDEN_GAMMA));
+    }
+
+    @Override
+    public int roll(int sides) {
+        SimMetrics.count(SimMetrics.Counter.ROLLS);
+        int bits = (int) (nextLong() >>> 33); // 31 random bits
+        int max = sides - 1;
+        if ((sides & max) == 0) {
+            // power of two: the low bits are already uniform
+            return (bits & max) + 1;
+        }
+        // reject the few values at the top that would make low results more likely
+        int result = bits % sides;
+        while (bits - result + max < 0) {
+            bits = (int) (nextLong() >>> 33);
+            result = bits % sides;
+        }
+        return result + 1;
+    }
+
+    /**
+     * Rolls many dice at once, each with its own number of sides. The
+     * results are exactly those of calling roll() for each die in turn, but
+     * the generator is advanced in a local variable rather than through the
+     * field, so a long run of rolls is much cheaper.
+     * @param sides sides[i] is the number of sides on die i
+     * @param out where the rolls are written; out[i] is the roll of die i
+     * @param n the number of dice to roll
+     */
+    public void rollAll(int[] sides, int[] out, int n) {
+        SimMetrics.count(SimMetrics.Counter.ROLLS, n);
+        long s = this.state;
+        for (int i = 0; i < n; i++) {
+            int die = sides[i];
+            int max = die - 1;
+            s += GOLDEN_GAMMA;
+            int bits = (int) (mix64(s) >>> 33);
+            if ((die & max) == 0) {
+                out[i] = (bits & max) + 1;
+                continue;
+            }
+            int result = bits % die;
+            while (bits - result + max < 0) {
+                s += GOLDEN_GAMMA;
+                bits = (int) (mix64(s) >>> 33);
+                result = bits % die;
+            }
+            out[i] = result + 1;
+        }
+        this.state = s;
+    }
+
+    @Override
+    public Dice split() {
+        return new SplitMixDice(nextLong());
+    }
+
+    @Override
+    public Dice copy() {
+        return new SplitMixDice(this.state);
+    }
+
+    @Override
+    public long getState() {
+        return state;
+    }
+
+    @Override
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Advances the generator and produces 64 random bits.
+     * @return the next random long
+     */
+    private long nextLong() {
+        this.state += GOLDEN_GAMMA;
+        return mix64(this.state);
+    }
+
+    /**
+     * Scrambles the bits of a long so that nearby inputs give unrelated outputs.
+     * @param z the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Decides and plays the turns of an Attacker that is not controlled by the
+ * user. A turn is made of ordinary GameBoard actions (move(),
+ * validateAttack() and observeAttack()), so the board's CombatListener sees
+ * an automated turn exactly as it would see the user's.
+ *
+ * The built-in strategies keep no state of their own, so one instance can be
+ * shared by every Attacker on every board and thread.
+ *
+ * @author Mark Danza
+ */
+public interface Strategy {
+    /** close in on the nearest enemy and attack it */
+    Strategy NEAREST_TARGET = new NearestTargetStrategy();
+    /** attack the enemy with the least HP left that can be reached this turn */
+    Strategy FOCUS_FIRE = new FocusFireStrategy();
+    /** attack the nearest enemy from as far away as the weapon allows */
+    Strategy KITE = new KiteStrategy();
+
+    /**
+     * Plays one turn for an Attacker.
+     * @param actor the living Attacker whose turn it is; it must be on its board
+     * @return the damage dealt by the Attacker during the turn
+     */
+    int takeTurn(Attacker actor);
+}
@@ -0,0 +1,218 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of values found for positions, looked up by position
+ * hash (see GameBoard.getHash()), that any number of threads can read and
+ * write at once without locking.
+ *
+ * Each slot holds three longs: a check word, the packed depth and search
+ * generation, and the value. The check word is the key XORed with the other
+ * two, so a reader recomputes it from what it read and only accepts the
+ * entry if it matches. If two threads write the same slot at once and the
+ * words of their entries get mixed, the check fails and the entry reads as a
+ * miss rather than as a wrong answer.
+ *
+ * A key maps to one slot. A new entry replaces the one in its slot if the
+ * old entry is from an earlier search (see newSearch()) or was searched no
+ * deeper than the new one; otherwise the deeper entry is kept. Hits, misses
+ * and collisions (misses where the slot held a different position) are
+ * counted for tuning the table size.
+ *
+ * @author Mark Danza
+ */
+public class TranspositionTable {
+    /** the number of longs in one slot */
+    private static final int SLOT_WIDTH = 3;
+    /** the bit set in the packed word of every slot that has been written */
+    private static final long USED = 1L << 63;
+    /** the number of bits the generation is shifted by in the packed word */
+    private static final int GENERATION_SHIFT = 32;
+    /** the mask of the depth in the packed word */
+    private static final long DEPTH_MASK = 0xFFFFFFFFL;
+    /** the mask of the generation once shifted down */
+    private static final int GENERATION_MASK = 0x7FFFFFFF;
+
+    /** the slots, SLOT_WIDTH longs each */
+    private final AtomicLongArray slots;
+    /** the number of slots minus one; the number of slots is a power of two */
+    private final int mask;
+    /** the generation of the search in progress */
+    private final AtomicInteger generation;
+    /** the number of lookups that found their position */
+    private final LongAdder hits;
+    /** the number of lookups that did not find their position */
+    private final LongAdder misses;
+    /** the number of misses where the slot held a different position */
+    private final LongAdder collisions;
+    /** the number of entries written */
+    private final LongAdder stores;
+
+    /**
+     * Creates a new, empty TranspositionTable.
+     * @param capacity the least number of entries the table should hold; it
+     * is rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        int slotCount = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(slotCount * SLOT_WIDTH);
+        this.mask = slotCount - 1;
+        this.generation = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.collisions = new LongAdder();
+        this.stores = new LongAdder();
+    }
+
+    /**
+     * Getter for the size of the table.
+     * @return the number of entries the table can hold
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Looks up the value of a position.
+     * @param key the hash of the position
+     * @param depth the least depth the value must have been searched to
+     * @return the value stored for key, or NaN if there is none from the
+     * current search that was searched at least depth deep
+     */
+    public double probe(long key, int depth) {
+        int base = slotOf(key);
+        long packed = this.slots.get(base + 1);
+        long value = this.slots.get(base + 2);
+        long check = this.slots.get(base);
+        if ((packed & USED) == 0 || (check ^ packed ^ value) != key) {
+            this.misses.increment();
+            if ((packed & USED) != 0) {
+                this.collisions.increment();
+            }
+            return Double.NaN;
+        }
+        if (generationOf(packed) != this.generation.get() || (int) (packed & DEPTH_MASK) < depth) {
+            this.misses.increment();
+            return Double.NaN;
+        }
+        this.hits.increment();
+        return Double.longBitsToDouble(value);
+    }
+
+    /**
+     * Stores the value of a position, unless its slot holds a deeper entry
+     * from the current search.
+     * @param key the hash of the position
+     * @param depth the depth the position was searched to
+     * @param value the value found for it; must not be NaN
+     */
+    public void store(long key, int depth, double value) {
+        int base = slotOf(key);
+        int current = this.generation.get();
+        long old = this.slots.get(base + 1);
+        if ((old & USED) != 0 && generationOf(old) == current && (int) (old & DEPTH_MASK) > depth) {
+            return;
+        }
+        long packed = USED | ((long) current << GENERATION_SHIFT) | (depth & DEPTH_MASK);
+        long bits = Double.doubleToRawLongBits(value);
+        this.slots.set(base + 1, packed);
+        this.slots.set(base + 2, bits);
+        this.slots.set(base, key ^ packed ^ bits);
+        this.stores.increment();
+    }
+
+    /**
+     * Starts a new search. Entries from earlier searches are no longer found
+     * by probe() and are replaced by any new entry, which empties the table
+     * without touching every slot.
+     */
+    public void newSearch() {
+        this.generation.updateAndGet(g -> (g + 1) & GENERATION_MASK);
+    }
+
+    /**
+     * Empties the table and resets its counters.
+     */
+    public void clear() {
+        for (int i = 0; i < this.slots.length(); i++) {
+            this.slots.set(i, 0);
+        }
+        this.hits.reset();
+        this.misses.reset();
+        this.collisions.reset();
+        this.stores.reset();
+    }
+
+    /**
+     * Getter for the number of successful lookups.
+     * @return the number of calls to probe() that found a value
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of failed lookups.
+     * @return the number of calls to probe() that returned NaN
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter for the number of lookups that failed because another position
+     * was in the slot.
+     * @return the number of misses where the slot held a different position
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Getter for the number of entries written.
+     * @return the number of calls to store() that wrote their entry
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Calculates how often lookups succeed.
+     * @return the fraction of calls to probe() that found a value, or 0 if
+     * there have been none
+     */
+    public double getHitRate() {
+        long found = getHits();
+        long total = found + getMisses();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * Finds the first long of the slot a key maps to.
+     * @param key the hash of a position
+     * @return the index in slots of the slot's check word
+     */
+    private int slotOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.mask) * SLOT_WIDTH;
+    }
+
+    /**
+     * Extracts the generation from a packed word.
+     * @param packed the packed depth and generation of a slot
+     * @return the generation of the search that wrote the slot
+     */
+    private static int generationOf(long packed) {
+        return (int) (packed >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /**
+     * Builds a one-line summary of the table's use.
+     * @return a String with the capacity, hits, misses, collisions and hit rate
+     */
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d hits, %d misses (%d collisions), %.1f%% hit rate",
+                getCapacity(), getHits(), getMisses(), getCollisions(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * One complete turn for an Attacker: a grid space to move to (possibly the
+ * one it is standing on) and, optionally, a piece to attack from there.
+ *
+ * Planners handle huge numbers of turns, so while searching they store each
+ * turn as a single long: the grid space moved to (y * size + x) in the high
+ * half and the grid space attacked in the low half, or NO_TARGET when the
+ * turn makes no attack. A TurnAction is only built for the turn that is
+ * finally chosen.
+ *
+ * @author Mark Danza
+ */
+public class TurnAction {
+    /** the grid space number meaning that a turn makes no attack */
+    public static final int NO_TARGET = -1;
+
+    /** the location to move to; the Attacker's own location if it stays put */
+    private final Coords destination;
+    /** the location of the piece to attack, or null to make no attack */
+    private final Coords target;
+
+    /**
+     * Creates a new TurnAction.
+     * @param destination the location to move to
+     * @param target the location of the piece to attack, or null for none
+     */
+    public TurnAction(Coords destination, Coords target) {
+        this.destination = destination;
+        this.target = target;
+    }
+
+    /**
+     * Rebuilds a TurnAction from its encoded form.
+     * @param action an encoded turn, as made by encode()
+     * @param size the size of the board the turn was encoded for
+     * @return the turn as a TurnAction
+     */
+    public static TurnAction decode(long action, int size) {
+        int dest = destinationOf(action);
+        int tgt = targetOf(action);
+        return new TurnAction(new Coords(dest % size, dest / size),
+                tgt == NO_TARGET ? null : new Coords(tgt % size, tgt / size));
+    }
+
+    /**
+     * Encodes a turn as a single long.
+     * @param destination the grid space moved to, as y * size + x
+     * @param target the grid space attacked, as y * size + x, or NO_TARGET
+     * @return the encoded turn
+     */
+    public static long encode(int destination, int target) {
+        return ((long) destination << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Getter for the grid space an encoded turn moves to.
+     * @param action an encoded turn
+     * @return the grid space moved to, as y * size + x
+     */
+    public static int destinationOf(long action) {
+        return (int) (action >>> 32);
+    }
+
+    /**
+     * Getter for the grid space an encoded turn attacks.
+     * @param action an encoded turn
+     * @return the grid space attacked, as y * size + x, or NO_TARGET
+     */
+    public static int targetOf(long action) {
+        return (int) action;
+    }
+
+    /**
+     * Getter for the location this turn moves to.
+     * @return the location to move to
+     */
+    public Coords getDestination() {
+        return destination;
+    }
+
+    /**
+     * Getter for the location this turn attacks.
+     * @return the location of the piece to attack, or null if there is none
+     */
+    public Coords getTarget() {
+        return target;
+    }
+
+    /**
+     * Plays this turn for an Attacker on its board, rolling for the attack.
+     * @param actor the Attacker whose turn it is
+     * @return false if the move or attack turned out not to be allowed
+     */
+    public boolean play(Attacker actor) {
+        GameBoard board = actor.getBoard();
+        Coords start = actor.getLocation();
+        if ((this.destination.getX() != start.getX() || this.destination.getY() != start.getY())
+                && !board.move(start, this.destination)) {
+            return false;
+        }
+        if (this.target != null) {
+            if (!board.validateAttack(actor.getLocation(), this.target)) {
+                return false;
+            }
+            board.observeAttack(actor.getLocation(), this.target);
+        }
+        return true;
+    }
+
+    /**
+     * Builds a short description of this turn.
+     * @return a String such as "move to (3, 4), attack (4, 4)"
+     */
+    @Override
+    public String toString() {
+        String move = "move to (" + destination.getX() + ", " + destination.getY() + ")";
+        return target == null ? move : move + ", attack (" + target.getX() + ", " + target.getY() + ")";
+    }
+}
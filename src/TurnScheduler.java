@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whose turn it is in a fight and plays the turns of every Attacker
+ * that has a Strategy. Turn order is set by rolling initiative: each
+ * Attacker rolls a d20 and adds its modifier, and higher totals go first.
+ * Attackers without a Strategy are controlled by the user, and the
+ * scheduler stops and waits when it reaches one of them.
+ *
+ * @author Mark Danza
+ */
+public class TurnScheduler {
+    /** the board the fight takes place on */
+    private final GameBoard board;
+    /** every Attacker in the fight, in turn order */
+    private final Attacker[] order;
+    /** the initiative total of each Attacker in order */
+    private final int[] initiative;
+    /** the position in order of the Attacker whose turn it is */
+    private int current;
+    /** the number of the round in progress, starting at 1 */
+    private int round;
+    /** the total damage dealt by Players during automated turns */
+    private int playerDamage;
+    /** the total damage dealt by Enemies during automated turns */
+    private int enemyDamage;
+
+    /**
+     * Creates a new TurnScheduler for pieces that have already been placed on
+     * a board. Until rollInitiative() is called, turns are taken in the order
+     * the pieces are given.
+     * @param board the GameBoard the fight takes place on
+     * @param combatants every Attacker in the fight
+     */
+    public TurnScheduler(GameBoard board, List<? extends Attacker> combatants) {
+        this.board = board;
+        this.order = combatants.toArray(new Attacker[0]);
+        this.initiative = new int[this.order.length];
+        this.current = 0;
+        this.round = 1;
+        this.playerDamage = 0;
+        this.enemyDamage = 0;
+    }
+
+    /**
+     * Rolls initiative for every Attacker with the board's Dice, sorts the
+     * turn order by it and starts again from the first turn of round 1.
+     * Ties go to the Attacker with the higher modifier, then to the one given
+     * first.
+     */
+    public void rollInitiative() {
+        Dice dice = this.board.getDice();
+        for (int i = 0; i < this.order.length; i++) {
+            this.initiative[i] = dice.roll(Attacker.D20) + this.order[i].getModifier();
+        }
+        // insertion sort, which keeps ties in the order they were given
+        for (int i = 1; i < this.order.length; i++) {
+            Attacker actor = this.order[i];
+            int total = this.initiative[i];
+            int j = i - 1;
+            while (j >= 0 && (this.initiative[j] < total
+                    || (this.initiative[j] == total && this.order[j].getModifier() < actor.getModifier()))) {
+                this.order[j + 1] = this.order[j];
+                this.initiative[j + 1] = this.initiative[j];
+                j--;
+            }
+            this.order[j + 1] = actor;
+            this.initiative[j + 1] = total;
+        }
+        this.current = 0;
+        this.round = 1;
+    }
+
+    /**
+     * Getter for the Attacker whose turn it is.
+     * @return the Attacker whose turn it is
+     */
+    public Attacker getCurrent() {
+        return order[current];
+    }
+
+    /**
+     * Lists every Attacker in turn order, starting with the one whose turn
+     * it is, for planners that need to know who acts next.
+     * @return a new list of every Attacker in the fight, living or not,
+     * starting with the current one
+     */
+    public List<Attacker> getTurnOrder() {
+        List<Attacker> turnOrder = new ArrayList<>(this.order.length);
+        for (int i = 0; i < this.order.length; i++) {
+            turnOrder.add(this.order[(this.current + i) % this.order.length]);
+        }
+        return turnOrder;
+    }
+
+    /**
+     * Getter for the round in progress.
+     * @return the number of the round in progress, starting at 1
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Getter for the damage dealt by Players during automated turns.
+     * @return the total damage dealt by Players' Strategies so far
+     */
+    public int getPlayerDamage() {
+        return playerDamage;
+    }
+
+    /**
+     * Getter for the damage dealt by Enemies during automated turns.
+     * @return the total damage dealt by Enemies' Strategies so far
+     */
+    public int getEnemyDamage() {
+        return enemyDamage;
+    }
+
+    /**
+     * Checks whether the fight is over.
+     * @return true if either side has no living Attackers left
+     */
+    public boolean isOver() {
+        return !anyAlive(true) || !anyAlive(false);
+    }
+
+    /**
+     * Getter for the result of the fight so far.
+     * @return PLAYERS_WIN or ENEMIES_WIN if one side has been wiped out,
+     * otherwise DRAW
+     */
+    public Encounter.Outcome getOutcome() {
+        if (!anyAlive(false)) {
+            return Encounter.Outcome.PLAYERS_WIN;
+        } else if (!anyAlive(true)) {
+            return Encounter.Outcome.ENEMIES_WIN;
+        }
+        return Encounter.Outcome.DRAW;
+    }
+
+    /**
+     * Plays the turn of the Attacker whose turn it is, if it is alive and has
+     * a Strategy, then passes the turn to the next Attacker.
+     * @return the damage dealt during the turn
+     */
+    public int playTurn() {
+        Attacker actor = this.order[this.current];
+        int dmg = 0;
+        if (actor.getHP() > 0 && actor.getStrategy() != null) {
+            dmg = actor.getStrategy().takeTurn(actor);
+            if (actor instanceof Player) {
+                this.playerDamage += dmg;
+            } else {
+                this.enemyDamage += dmg;
+            }
+        }
+        advance();
+        return dmg;
+    }
+
+    /**
+     * Plays automated turns until it is the turn of a living Attacker the
+     * user controls, or the fight is over. At most one full round is played,
+     * so this returns even if nobody is left for the user to control.
+     */
+    public void playUntilUser() {
+        for (int turns = 0; turns < this.order.length && !isOver(); turns++) {
+            Attacker actor = this.order[this.current];
+            if (actor.getHP() > 0 && actor.getStrategy() == null) {
+                return;
+            }
+            playTurn();
+        }
+    }
+
+    /**
+     * Ends the turn of the Attacker whose turn it is without playing it, then
+     * plays automated turns until it is the user's turn again.
+     */
+    public void endTurn() {
+        advance();
+        playUntilUser();
+    }
+
+    /**
+     * Plays every turn until one side is wiped out or maxRounds rounds have
+     * been played. Attackers the user controls do nothing on their turns.
+     * @param maxRounds the number of rounds after which the fight is a draw
+     * @return the outcome of the fight
+     */
+    public Encounter.Outcome run(int maxRounds) {
+        if (isOver()) {
+            return getOutcome();
+        }
+        while (this.round <= maxRounds) {
+            // only a turn that dealt damage can have ended the fight
+            if (playTurn() > 0 && isOver()) {
+                return getOutcome();
+            }
+        }
+        return Encounter.Outcome.DRAW;
+    }
+
+    /**
+     * Passes the turn to the next Attacker in order, starting a new round
+     * after the last one.
+     */
+    private void advance() {
+        if (++this.current == this.order.length) {
+            this.current = 0;
+            this.round++;
+        }
+    }
+
+    /**
+     * Checks whether either side still has a living piece.
+     * @param players true to check the Players, false to check the Enemies
+     * @return true if at least one piece on that side has hp left
+     */
+    private boolean anyAlive(boolean players) {
+        for (Attacker piece : this.order) {
+            if ((piece instanceof Player) == players && piece.getHP() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a one-line description of the turn order.
+     * @return each Attacker's name and initiative, in turn order
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder("Initiative:");
+        for (int i = 0; i < this.order.length; i++) {
+            line.append(i == 0 ? " " : ", ").append(this.order[i].getName()).append(" ").append(this.initiative[i]);
+        }
+        return line.toString();
+    }
+}
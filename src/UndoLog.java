@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+/**
+ * A record of every change made to a GameBoard since a mark was set, so the
+ * board can be put back exactly as it was at the mark: its grid, its
+ * SpatialIndex, the location, HP and XP of every piece, and the position of
+ * its Dice. Only the changes are stored, each as the value it overwrote, so
+ * trying out a line of play and rolling it back costs time in proportion to
+ * the number of changes made rather than to the size of the board.
+ *
+ * Marks nest: a search can mark the board, try a move, mark again to try
+ * several replies, and roll each reply back to the inner mark before rolling
+ * the move back to the outer one. Nothing is recorded while no mark is set.
+ * Entries are kept in parallel arrays that grow once and are reused, so
+ * recording allocates nothing once warmed up.
+ *
+ * @author Mark Danza
+ */
+public class UndoLog {
+    /** a grid space's contents were overwritten */
+    private static final byte CELL = 0;
+    /** a piece was added to the SpatialIndex */
+    private static final byte INDEX_ADD = 1;
+    /** a piece was removed from the SpatialIndex */
+    private static final byte INDEX_REMOVE = 2;
+    /** a piece's location was changed */
+    private static final byte LOCATION = 3;
+    /** an Attacker's HP was changed */
+    private static final byte HP = 4;
+    /** an Attacker's XP was changed */
+    private static final byte XP = 5;
+
+    /** the kind of each entry */
+    private byte[] kinds = new byte[64];
+    /** the x-coordinate of each CELL and INDEX entry */
+    private int[] xs = new int[64];
+    /** the y-coordinate of each CELL and INDEX entry */
+    private int[] ys = new int[64];
+    /** the old HP or XP of each HP and XP entry, or the bucket position of each INDEX_REMOVE entry */
+    private int[] values = new int[64];
+    /** the piece of each entry, or the old location of each LOCATION entry */
+    private Object[] refs = new Object[64];
+    /** the piece whose location changed, for each LOCATION entry */
+    private Piece[] movers = new Piece[64];
+    /** the number of entries in use */
+    private int size;
+
+    /** the number of entries in use when each mark was set */
+    private int[] marks = new int[8];
+    /** the state of the board's Dice when each mark was set */
+    private long[] diceStates = new long[8];
+    /** the hash of the board when each mark was set */
+    private long[] hashes = new long[8];
+    /** the number of marks set */
+    private int depth;
+    /** true while a rollback is in progress, so undoing a change is not itself recorded */
+    private boolean undoing;
+
+    /**
+     * Checks whether changes should be recorded.
+     * @return true if a mark is set and no rollback is in progress
+     */
+    public boolean isRecording() {
+        return depth > 0 && !undoing;
+    }
+
+    /**
+     * Getter for the number of marks set.
+     * @return how many marks have been set and not released
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets a new mark that rollback() will return to.
+     * @param dice the Dice of the board, whose state is saved with the mark
+     * @param hash the hash of the board, which is saved with the mark
+     */
+    public void mark(RewindableDice dice, long hash) {
+        if (this.depth == this.marks.length) {
+            this.marks = Arrays.copyOf(this.marks, this.depth * 2);
+            this.diceStates = Arrays.copyOf(this.diceStates, this.depth * 2);
+            this.hashes = Arrays.copyOf(this.hashes, this.depth * 2);
+        }
+        this.marks[this.depth] = this.size;
+        this.diceStates[this.depth] = dice.getState();
+        this.hashes[this.depth] = hash;
+        this.depth++;
+    }
+
+    /**
+     * Undoes every change recorded since the last mark, newest first. The
+     * mark stays set, so the same position can be rolled back to again.
+     * @param grid the grid of the board
+     * @param occupancy the OccupancyBits of the board
+     * @param index the SpatialIndex of the board
+     * @param dice the Dice of the board
+     * @return the hash of the board when the mark was set
+     * @pre a mark must be set
+     */
+    public long rollback(Piece[][] grid, OccupancyBits occupancy, SpatialIndex index, RewindableDice dice) {
+        int mark = this.marks[this.depth - 1];
+        this.undoing = true;
+        for (int i = this.size - 1; i >= mark; i--) {
+            switch (this.kinds[i]) {
+                case CELL:
+                    grid[this.ys[i]][this.xs[i]] = (Piece) this.refs[i];
+                    occupancy.update(this.xs[i], this.ys[i], (Piece) this.refs[i]);
+                    break;
+                case INDEX_ADD:
+                    index.remove((Piece) this.refs[i], this.xs[i], this.ys[i]);
+                    break;
+                case INDEX_REMOVE:
+                    index.restore((Piece) this.refs[i], this.xs[i], this.ys[i], this.values[i]);
+                    break;
+                case LOCATION:
+                    this.movers[i].setLocation((Coords) this.refs[i]);
+                    this.movers[i] = null;
+                    break;
+                case HP:
+                    ((Attacker) this.refs[i]).setHP(this.values[i]);
+                    break;
+                default:
+                    Attacker attacker = (Attacker) this.refs[i];
+                    attacker.addXP(this.values[i] - attacker.getXP());
+            }
+            this.refs[i] = null;
+        }
+        this.undoing = false;
+        this.size = mark;
+        dice.setState(this.diceStates[this.depth - 1]);
+        return this.hashes[this.depth - 1];
+    }
+
+    /**
+     * Removes the last mark without undoing anything, keeping the changes
+     * made since it. They can still be undone by rolling back to an earlier
+     * mark; once no marks are left, the record is discarded.
+     * @pre a mark must be set
+     */
+    public void release() {
+        this.depth--;
+        if (this.depth == 0) {
+            clear();
+        }
+    }
+
+    /**
+     * Removes every mark and discards every recorded change.
+     */
+    public void clear() {
+        Arrays.fill(this.refs, 0, this.size, null);
+        Arrays.fill(this.movers, 0, this.size, null);
+        this.size = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Records that a grid space is about to be overwritten.
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @param old the piece at the grid space before the change, or null
+     */
+    public void recordCell(int x, int y, Piece old) {
+        int i = add(CELL, old);
+        this.xs[i] = x;
+        this.ys[i] = y;
+    }
+
+    /**
+     * Records that a piece was added to the SpatialIndex.
+     * @param piece the piece that was added
+     * @param x the x-coordinate it was added at
+     * @param y the y-coordinate it was added at
+     */
+    public void recordIndexAdd(Piece piece, int x, int y) {
+        int i = add(INDEX_ADD, piece);
+        this.xs[i] = x;
+        this.ys[i] = y;
+    }
+
+    /**
+     * Records that a piece was removed from the SpatialIndex.
+     * @param piece the piece that was removed
+     * @param x the x-coordinate it was added at
+     * @param y the y-coordinate it was added at
+     * @param position where it was in its bucket, as returned by SpatialIndex.remove()
+     */
+    public void recordIndexRemove(Piece piece, int x, int y, int position) {
+        int i = add(INDEX_REMOVE, piece);
+        this.xs[i] = x;
+        this.ys[i] = y;
+        this.values[i] = position;
+    }
+
+    /**
+     * Records that a piece's location is about to change.
+     * @param piece the piece being moved
+     * @param old its location before the change
+     */
+    public void recordLocation(Piece piece, Coords old) {
+        int i = add(LOCATION, old);
+        this.movers[i] = piece;
+    }
+
+    /**
+     * Records that an Attacker's HP is about to change.
+     * @param attacker the Attacker
+     * @param old its HP before the change
+     */
+    public void recordHP(Attacker attacker, int old) {
+        int i = add(HP, attacker);
+        this.values[i] = old;
+    }
+
+    /**
+     * Records that an Attacker's XP is about to change.
+     * @param attacker the Attacker
+     * @param old its XP before the change
+     */
+    public void recordXP(Attacker attacker, int old) {
+        int i = add(XP, attacker);
+        this.values[i] = old;
+    }
+
+    /**
+     * Adds a new entry, growing the arrays if they are full.
+     * @param kind the kind of the entry
+     * @param ref the piece or location of the entry
+     * @return the position of the new entry
+     */
+    private int add(byte kind, Object ref) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.size * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.xs = Arrays.copyOf(this.xs, capacity);
+            this.ys = Arrays.copyOf(this.ys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.refs = Arrays.copyOf(this.refs, capacity);
+            this.movers = Arrays.copyOf(this.movers, capacity);
+        }
+        this.kinds[this.size] = kind;
+        this.refs[this.size] = ref;
+        return this.size++;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * An object that stores information that will be used when
  * Attackers make attacks on the GameBoard. Every valid Attacker must
@@ -37,6 +35,14 @@ public class Weapon {
         return this.name;
     }
 
+    /**
+     * Getter for the damage die of this weapon.
+     * @return the number of sides on this weapon's damage die
+     */
+    public int getDmgDie() {
+        return dmgDie;
+    }
+
     /**
      * Getter for the attack range of this weapon.
      * @return this weapon's range (in feet)
@@ -51,10 +57,47 @@ public class Weapon {
      * @return a random number between 1 and the dmgDie value (inclusive)
      */
     public int rollDmg() {
-        Random rand = new Random();
-        return rand.nextInt(dmgDie) + 1; // nextInt produces a number between 0 (inclusive) and its argument (exclusive)
+        return rollDmg(SplitMixDice.current());
+    }
+
+    /**
+     * Rolls this weapon's damage die using the given Dice.
+     * @param dice the Dice to roll with
+     * @return a random number between 1 and the dmgDie value (inclusive)
+     */
+    public int rollDmg(Dice dice) {
+        return dice.roll(dmgDie);
+    }
+
+    /**
+     * Checks whether another object is a Weapon with the same name, damage
+     * die and range, so that WeaponCatalog can share one copy of each.
+     * @param other the object to compare to
+     * @return true if other is an identical Weapon
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Weapon)) {
+            return false;
+        }
+        Weapon weapon = (Weapon) other;
+        return this.dmgDie == weapon.dmgDie && this.range == weapon.range && this.name.equals(weapon.name);
+    }
+
+    /**
+     * Builds a hash code consistent with equals().
+     * @return a hash of the name, damage die and range
+     */
+    @Override
+    public int hashCode() {
+        return (this.name.hashCode() * 31 + this.dmgDie) * 31 + this.range;
     }
 
     /** a predefined shortsword weapon */
     public static final Weapon shortsword = new Weapon("Shortsword", 6, 5);
+    /** a predefined shortbow weapon, for attacking from a distance */
+    public static final Weapon shortbow = new Weapon("Shortbow", 6, 80);
 }
@@ -0,0 +1,87 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Weapons known by name, for scenarios read from files. Every Weapon
+ * handed out is interned: defining or interning a Weapon that is identical
+ * to one already known (same name, damage die and range) returns the known
+ * one, so a catalog of thousands of scenarios holds one copy of each distinct
+ * weapon however many pieces carry it. A catalog can be used by several
+ * loaders on different threads at once.
+ *
+ * @author Mark Danza
+ */
+public class WeaponCatalog {
+    /** the one shared copy of every distinct Weapon */
+    private final ConcurrentHashMap<Weapon, Weapon> interned;
+    /** the Weapon defined under each name */
+    private final ConcurrentHashMap<String, Weapon> byName;
+
+    /**
+     * Creates a new WeaponCatalog that knows the predefined Weapons.
+     */
+    public WeaponCatalog() {
+        this.interned = new ConcurrentHashMap<>();
+        this.byName = new ConcurrentHashMap<>();
+        define(Weapon.shortsword);
+        define(Weapon.shortbow);
+    }
+
+    /**
+     * Returns the shared copy of a Weapon, making the given one the shared
+     * copy if no identical Weapon is known yet. The Weapon is not defined
+     * under its name.
+     * @param weapon a Weapon
+     * @return the known Weapon identical to weapon
+     */
+    public Weapon intern(Weapon weapon) {
+        Weapon known = this.interned.putIfAbsent(weapon, weapon);
+        return known == null ? weapon : known;
+    }
+
+    /**
+     * Defines a Weapon under its name.
+     * @param weapon the Weapon to define
+     * @return the shared copy of weapon
+     * @throws IllegalArgumentException if a different Weapon is already
+     * defined with the same name
+     */
+    public Weapon define(Weapon weapon) {
+        Weapon shared = intern(weapon);
+        Weapon existing = this.byName.putIfAbsent(shared.getName(), shared);
+        if (existing != null && existing != shared) {
+            throw new IllegalArgumentException("weapon " + shared.getName() + " is already defined as a d"
+                    + existing.getDmgDie() + " with range " + existing.getRange());
+        }
+        return shared;
+    }
+
+    /**
+     * Defines a Weapon under its name.
+     * @param name the name of the weapon
+     * @param dmgDie the number of sides on its damage die
+     * @param range its range (in feet)
+     * @return the shared copy of the weapon
+     * @throws IllegalArgumentException if a different Weapon is already
+     * defined with the same name
+     */
+    public Weapon define(String name, int dmgDie, int range) {
+        return define(new Weapon(name, dmgDie, range));
+    }
+
+    /**
+     * Looks up a Weapon by name.
+     * @param name the name of the weapon
+     * @return the Weapon defined under name, or null if there is none
+     */
+    public Weapon get(String name) {
+        return this.byName.get(name);
+    }
+
+    /**
+     * Getter for the number of distinct Weapons known.
+     * @return the number of interned Weapons
+     */
+    public int size() {
+        return this.interned.size();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Builds the hash keys that identify positions on a GameBoard. Each piece
+ * on the board contributes one key, picked by the piece's identity (its name
+ * and kind), the grid space it stands on and its HP bucket, and the hash of
+ * the whole board is every such key XORed together. A change to one piece
+ * is then an O(1) update to the hash: XOR out its old key and XOR in its new
+ * one.
+ *
+ * The keys are not stored in a table, which would need one entry per piece,
+ * grid space and HP value; each is made on demand by scrambling those three
+ * numbers with a fixed seed. Every board therefore uses the same keys, so a
+ * fork has the same hash as its original and positions reached on different
+ * forks can be looked up in one shared TranspositionTable.
+ *
+ * @author Mark Danza
+ */
+public class Zobrist {
+    /** the highest HP with a bucket of its own; every HP above it shares one bucket */
+    public static final int MAX_HP_BUCKET = 1023;
+    /** the seed every key is derived from */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /**
+     * Zobrist only has static methods, so it should not be instantiated.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Builds the key of a piece standing on a grid space.
+     * @param piece the piece
+     * @param x the x-coordinate of the grid space
+     * @param y the y-coordinate of the grid space
+     * @param hp the HP of the piece, or 0 if it is not an Attacker
+     * @return the key the piece contributes to its board's hash
+     */
+    public static long pieceKey(Piece piece, int x, int y, int hp) {
+        long identity = piece.getName().hashCode() * 31L + piece.toChar();
+        long place = ((long) y << 32) | (x & 0xFFFFFFFFL);
+        return mix(mix(mix(SEED ^ identity) ^ place) + hpBucket(hp));
+    }
+
+    /**
+     * Builds a key for a small number, such as whose turn it is, so that it
+     * can be XORed into a board's hash.
+     * @param value the number
+     * @return a key for value
+     */
+    public static long key(long value) {
+        return mix(SEED + value * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Finds the HP bucket an HP value is hashed by.
+     * @param hp an HP value
+     * @return hp, limited to the range 0 to MAX_HP_BUCKET
+     */
+    public static int hpBucket(int hp) {
+        return hp <= 0 ? 0 : Math.min(hp, MAX_HP_BUCKET);
+    }
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finalizer), so that
+     * inputs differing in one bit give unrelated outputs.
+     * @param z the number to scramble
+     * @return the scrambled number
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}